@@ -0,0 +1,32 @@
+package de.sub.goobi.config;
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+/**
+ * Listener for changes of goobi_config.properties, see {@link ConfigurationHelper#addChangeListener(ConfigurationChangeListener)}
+ */
+public interface ConfigurationChangeListener {
+
+    /**
+     * Called by the configuration watcher after the changed configuration was loaded. The new values are available from
+     * {@link ConfigurationHelper#getInstance()}.
+     */
+    public void configurationChanged();
+}
@@ -18,6 +18,7 @@ package de.sub.goobi.config;
  * Temple Place, Suite 330, Boston, MA 02111-1307 USA
  * 
  */
+import java.io.File;
 import java.io.Serializable;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
@@ -26,13 +27,21 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax.faces.context.FacesContext;
 import javax.servlet.http.HttpSession;
 
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.commons.configuration.BaseConfiguration;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
-import org.apache.commons.configuration.reloading.FileChangedReloadingStrategy;
 import org.apache.log4j.Logger;
 import org.goobi.production.flow.statistics.hibernate.SearchIndexField;
 
@@ -47,52 +56,118 @@ public class ConfigurationHelper implements Serializable {
 
     private static final Logger logger = Logger.getLogger(ConfigurationHelper.class);
     private static String imagesPath = null;
-    private static ConfigurationHelper instance;
+    private static volatile ConfigurationHelper instance;
     public static String CONFIG_FILE_NAME = "goobi_config.properties";
-    private PropertiesConfiguration config;
-    private PropertiesConfiguration configLocal;
+
+    private static final List<ConfigurationChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private static ScheduledExecutorService watcher = null;
+
+    // the current content of the configuration files, replaced as a whole when a file changes
+    private volatile ConfigurationSnapshot snapshot;
 
     private ConfigurationHelper() {
-        try {
-            config = new PropertiesConfiguration(CONFIG_FILE_NAME);
+        snapshot = ConfigurationSnapshot.load();
+    }
 
-            config.setReloadingStrategy(new FileChangedReloadingStrategy());
-            // Load local config file
-            logger.info("Default configuration file loaded.");
-            Path fileLocal = Paths.get(getConfigLocalPath(), CONFIG_FILE_NAME);
-            if (Files.exists(fileLocal)) {
-                configLocal = new PropertiesConfiguration(fileLocal.toFile());
-                configLocal.setReloadingStrategy(new FileChangedReloadingStrategy());
-                logger.info("Local configuration file '" + fileLocal.toString() + "' loaded.");
-            } else {
-                configLocal = new PropertiesConfiguration();
+    /**
+     * Get the configuration. The instance is created once, afterwards no lock is needed.
+     */
+    public static ConfigurationHelper getInstance() {
+        ConfigurationHelper helper = instance;
+        if (helper == null) {
+            synchronized (ConfigurationHelper.class) {
+                helper = instance;
+                if (helper == null) {
+                    helper = new ConfigurationHelper();
+                    instance = helper;
+                    startWatcher(helper);
+                }
             }
-        } catch (ConfigurationException e) {
-            logger.error(e);
-            config = new PropertiesConfiguration();
         }
+        return helper;
+    }
 
+    /**
+     * Register a listener that is called after the configuration files were changed and loaded again
+     * 
+     * @param listener the listener
+     */
+    public static void addChangeListener(ConfigurationChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeChangeListener(ConfigurationChangeListener listener) {
+        listeners.remove(listener);
     }
 
-    public static synchronized ConfigurationHelper getInstance() {
-        if (instance == null) {
-            instance = new ConfigurationHelper();
+    /**
+     * Check the configuration files regularly and load them again, if one of them was modified
+     */
+    private static void startWatcher(final ConfigurationHelper helper) {
+        long interval = helper.getLocalLong("ConfigurationReloadInterval", 5000);
+        if (interval <= 0) {
+            return;
         }
-        return instance;
+        watcher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "configuration-watcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        watcher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    helper.reloadIfModified();
+                } catch (RuntimeException e) {
+                    logger.error("Cannot reload configuration", e);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
     }
 
-    public String getGoobiFolder() {
-        String goobiFolder = config.getString("goobiFolder", "/opt/digiverso/goobi/");
-        return goobiFolder;
+    /**
+     * Stop checking the configuration files for changes
+     */
+    public static synchronized void stopWatcher() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
     }
 
-    private String getConfigLocalPath() {
-        return getGoobiFolder() + "config/";
+    /**
+     * Load the configuration files again, if one of them was modified since it was loaded, and inform the registered listeners
+     * 
+     * @return true, if the configuration was loaded again
+     */
+    public boolean reloadIfModified() {
+        if (!snapshot.isModified()) {
+            return false;
+        }
+        snapshot = ConfigurationSnapshot.load();
+        logger.info("Configuration file changed, configuration reloaded.");
+        for (ConfigurationChangeListener listener : listeners) {
+            try {
+                listener.configurationChanged();
+            } catch (RuntimeException e) {
+                logger.error("Error while informing listener about changed configuration", e);
+            }
+        }
+        return true;
+    }
+
+    public String getGoobiFolder() {
+        return snapshot.config.getString("goobiFolder", "/opt/digiverso/goobi/");
     }
 
     private int getLocalInt(String inPath, int inDefault) {
         try {
-            return configLocal.getInt(inPath, config.getInt(inPath, inDefault));
+            ConfigurationSnapshot current = snapshot;
+            return current.configLocal.getInt(inPath, current.config.getInt(inPath, inDefault));
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
             return inDefault;
@@ -101,7 +176,8 @@ public class ConfigurationHelper implements Serializable {
 
     private int getLocalInt(String inPath) {
         try {
-            return configLocal.getInt(inPath, config.getInt(inPath));
+            ConfigurationSnapshot current = snapshot;
+            return current.configLocal.getInt(inPath, current.config.getInt(inPath));
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
             return 0;
@@ -110,7 +186,8 @@ public class ConfigurationHelper implements Serializable {
 
     private long getLocalLong(String inPath, int inDefault) {
         try {
-            return configLocal.getLong(inPath, config.getLong(inPath, inDefault));
+            ConfigurationSnapshot current = snapshot;
+            return current.configLocal.getLong(inPath, current.config.getLong(inPath, inDefault));
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
             return inDefault;
@@ -119,7 +196,8 @@ public class ConfigurationHelper implements Serializable {
 
     private String getLocalString(String inPath, String inDefault) {
         try {
-            return configLocal.getString(inPath, config.getString(inPath, inDefault));
+            ConfigurationSnapshot current = snapshot;
+            return current.configLocal.getString(inPath, current.config.getString(inPath, inDefault));
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
             return inDefault;
@@ -128,25 +206,29 @@ public class ConfigurationHelper implements Serializable {
 
     @SuppressWarnings("unchecked")
     private Iterator<String> getLocalKeys(String prefix) {
-        Iterator<String> it = configLocal.getKeys(prefix);
+        ConfigurationSnapshot current = snapshot;
+        Iterator<String> it = current.configLocal.getKeys(prefix);
         if (!it.hasNext()) {
-            it = config.getKeys(prefix);
+            it = current.config.getKeys(prefix);
         }
         return it;
     }
 
     private String getLocalString(String inPath) {
-        return configLocal.getString(inPath, config.getString(inPath));
+        ConfigurationSnapshot current = snapshot;
+        return current.configLocal.getString(inPath, current.config.getString(inPath));
     }
 
     @SuppressWarnings({ "unchecked" })
     private List<String> getLocalList(String inPath) {
-        return configLocal.getList(inPath, config.getList(inPath));
+        ConfigurationSnapshot current = snapshot;
+        return current.configLocal.getList(inPath, current.config.getList(inPath));
     }
 
     private boolean getLocalBoolean(String inPath, boolean inDefault) {
         try {
-            return configLocal.getBoolean(inPath, config.getBoolean(inPath, inDefault));
+            ConfigurationSnapshot current = snapshot;
+            return current.configLocal.getBoolean(inPath, current.config.getBoolean(inPath, inDefault));
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
             return inDefault;
@@ -348,6 +430,23 @@ public class ConfigurationHelper implements Serializable {
         return getLocalString("S3Endpoint", "");
     }
 
+    public int getS3TransferThreads() {
+        return getLocalInt("S3TransferThreads", 8);
+    }
+
+    /**
+     * Files larger than this size in MB are uploaded, copied and downloaded in parts
+     * 
+     * @return threshold in MB
+     */
+    public long getS3MultipartThreshold() {
+        return getLocalInt("S3MultipartThreshold", 16);
+    }
+
+    public int getS3TransferRetries() {
+        return getLocalInt("S3TransferRetries", 3);
+    }
+
     // process creation
 
     public String getTiffHeaderArtists() {
@@ -654,6 +753,14 @@ public class ConfigurationHelper implements Serializable {
         return getLocalString("DatabaseRightTruncationCharacter", "%");
     }
 
+    public boolean isMetadataSearchIndexEnabled() {
+        return getLocalBoolean("MetadataSearchIndex", false);
+    }
+
+    public boolean isStepPermissionTableEnabled() {
+        return getLocalBoolean("StepPermissionTable", false);
+    }
+
     public List<SearchIndexField> getIndexFields() {
         List<SearchIndexField> list = new ArrayList<>();
         Iterator<String> it = getLocalKeys("index");
@@ -667,11 +774,8 @@ public class ConfigurationHelper implements Serializable {
     }
 
     // for junit tests
-    public void setParameter(String inParameter, String value) {
-        config.setProperty(inParameter, value);
-        if (configLocal != null) {
-            configLocal.setProperty(inParameter, value);
-        }
+    public synchronized void setParameter(String inParameter, String value) {
+        snapshot = snapshot.withProperty(inParameter, value);
     }
 
     public int getMetsEditorNumberOfImagesPerPage() {
@@ -707,6 +811,46 @@ public class ConfigurationHelper implements Serializable {
 
     }
 
+    public int getImageCacheSize() {
+        return getLocalInt("ImageCacheSize", 1000);
+    }
+
+    public int getImageCacheExpiration() {
+        return getLocalInt("ImageCacheExpiration", 60);
+    }
+
+    public int getImageClientCacheMaxAge() {
+        return getLocalInt("ImageClientCacheMaxAge", 0);
+    }
+
+    /**
+     * Widths of the thumbnails created for the image folders. If nothing is configured, the sizes used by the METS editor are created.
+     */
+    public List<Integer> getThumbnailSizes() {
+        Set<Integer> sizes = new TreeSet<>();
+        List<String> configured = getLocalList("ThumbnailSize");
+        if (configured.isEmpty()) {
+            sizes.add(getMetsEditorThumbnailSize());
+            configured = getMetsEditorImageSizes();
+        }
+        for (String size : configured) {
+            try {
+                sizes.add(Integer.parseInt(size.trim()));
+            } catch (NumberFormatException e) {
+                logger.error("Invalid thumbnail size " + size);
+            }
+        }
+        return new ArrayList<>(sizes);
+    }
+
+    public boolean isThumbnailsCreateAfterImageUpload() {
+        return getLocalBoolean("ThumbnailCreateAfterImageUpload", false);
+    }
+
+    public boolean isThumbnailsCreateOnDemand() {
+        return getLocalBoolean("ThumbnailCreateOnDemand", false);
+    }
+
     public boolean isShowSecondLogField() {
         return getLocalBoolean("ProcessLogShowSecondField", false);
 
@@ -731,6 +875,18 @@ public class ConfigurationHelper implements Serializable {
         return getLocalInt("MessageBrokerNumberOfParallelMessages", 1);
     }
 
+    public int getMessageBrokerPrefetchCount() {
+        return getLocalInt("MessageBrokerPrefetchCount", 10);
+    }
+
+    public int getMessageBrokerMaxRetries() {
+        return getLocalInt("MessageBrokerMaxRetries", 3);
+    }
+
+    public long getMessageBrokerRetryDelay() {
+        return getLocalLong("MessageBrokerRetryDelay", 10000);
+    }
+
     public String getMessageBrokerUrl( ) {
         return getLocalString("MessageBrokerServer", "localhost");
     }
@@ -747,6 +903,165 @@ public class ConfigurationHelper implements Serializable {
         return getLocalString("MessageBrokerPassword");
     }
 
+    /**
+     * Get the number of automatic tasks of the given type that are executed in parallel
+     * 
+     * @param taskType Script, Export, Plugin or Http
+     * @return number of threads
+     */
+    public int getAutomaticTasksThreads(String taskType) {
+        return getLocalInt("AutomaticTasksThreads" + taskType, 4);
+    }
+
+    public int getAutomaticTasksQueueSize() {
+        return getLocalInt("AutomaticTasksQueueSize", 100);
+    }
+
+    public int getGoobiScriptThreads() {
+        return getLocalInt("GoobiScriptThreads", 4);
+    }
+
+    public int getGoobiScriptMaxResults() {
+        return getLocalInt("GoobiScriptMaxResults", 10000);
+    }
+
+    /**
+     * Get the number of seconds to wait for the write lock of a metadata file
+     * 
+     * @return timeout in seconds
+     */
+    public int getProcessWriteLockTimeout() {
+        return getLocalInt("ProcessWriteLockTimeout", 300);
+    }
+
+    /**
+     * Get the maximal run time of a script in seconds. A timeout configured for the title of the task is used before the general one.
+     * 
+     * @param stepTitle title of the task that runs the script, may be null
+     * @return timeout in seconds, 0 for no timeout
+     */
+    public int getScriptTimeout(String stepTitle) {
+        int timeout = getLocalInt("ScriptTimeout", 0);
+        if (stepTitle != null) {
+            timeout = getLocalInt("ScriptTimeout." + stepTitle, timeout);
+        }
+        return timeout;
+    }
+
+    /**
+     * Get the number of external commands that may run at the same time on this node
+     * 
+     * @return maximal number of commands, 0 for no limit
+     */
+    public int getExternalProcessLimit() {
+        return getLocalInt("ExternalProcessLimit", 0);
+    }
+
+    /**
+     * Get the jdbc url of the database. If it is empty, the data source java:comp/env/goobi of the servlet container is used.
+     */
+    public String getDatabaseUrl() {
+        return getLocalString("DatabaseUrl", "");
+    }
+
+    public String getDatabaseUser() {
+        return getLocalString("DatabaseUser", "");
+    }
+
+    public String getDatabasePassword() {
+        return getLocalString("DatabasePassword", "");
+    }
+
+    public int getDatabasePoolMaxTotal() {
+        return getLocalInt("DatabasePoolMaxTotal", -1);
+    }
+
+    public int getDatabasePoolMaxIdle() {
+        return getLocalInt("DatabasePoolMaxIdle", 8);
+    }
+
+    public long getDatabasePoolMaxWait() {
+        return getLocalLong("DatabasePoolMaxWait", 30000);
+    }
+
+    public long getDatabasePoolValidationInterval() {
+        return getLocalLong("DatabasePoolValidationInterval", 60000);
+    }
+
+    /**
+     * Get the maximal execution time of a single statement
+     * 
+     * @return timeout in seconds, 0 for no timeout
+     */
+    public int getDatabaseQueryTimeout() {
+        return getLocalInt("DatabaseQueryTimeout", 0);
+    }
+
+    public long getDatabaseSlowQueryThreshold() {
+        return getLocalLong("DatabaseSlowQueryThreshold", 1000);
+    }
+
+    /**
+     * Get the interval to write the database statistics to the log
+     * 
+     * @return interval in seconds, 0 if the statistics are not logged
+     */
+    public long getDatabaseStatisticsLogInterval() {
+        return getLocalLong("DatabaseStatisticsLogInterval", 0);
+    }
+
+    public int getDatabaseFetchSize() {
+        return getLocalInt("DatabaseFetchSize", 1000);
+    }
+
+    public int getHistoryAnalyserThreads() {
+        return getLocalInt("HistoryAnalyserThreads", 2);
+    }
+
+    /**
+     * Get the pause of a history analyser thread after each process
+     * 
+     * @return delay in milliseconds
+     */
+    public long getHistoryAnalyserDelay() {
+        return getLocalLong("HistoryAnalyserDelay", 0);
+    }
+
+    public int getLongRunningTaskThreads() {
+        return getLocalInt("LongRunningTaskThreads", 2);
+    }
+
+    /**
+     * Get the number of tasks of a type that may run at the same time
+     * 
+     * @param taskType simple class name of the task
+     * @return maximal number of tasks, 0 if only the number of threads limits them
+     */
+    public int getLongRunningTaskLimit(String taskType) {
+        return getLocalInt("LongRunningTaskLimit." + taskType, 0);
+    }
+
+    public boolean isProcessLogAsynchronous() {
+        return getLocalBoolean("ProcessLogAsynchronous", true);
+    }
+
+    public int getProcessLogQueueSize() {
+        return getLocalInt("ProcessLogQueueSize", 10000);
+    }
+
+    /**
+     * Get the maximal time a process log entry waits until it is written
+     * 
+     * @return interval in milliseconds
+     */
+    public long getProcessLogFlushInterval() {
+        return getLocalLong("ProcessLogFlushInterval", 1000);
+    }
+
+    public int getScriptOutputLines() {
+        return getLocalInt("ScriptOutputLines", 1000);
+    }
+
     /**
      * Check if Mysql or H2 is used as internal database
      *
@@ -765,4 +1080,76 @@ public class ConfigurationHelper implements Serializable {
         return getLocalBoolean("TaskEnableFinalizeButton", true);
     }
 
+
+    /**
+     * Immutable copy of the global and the local configuration file. The copies are never changed after they were created, so they can be read
+     * by many threads without locking and without checking the files on every access.
+     */
+    private static final class ConfigurationSnapshot {
+        private final AbstractConfiguration config;
+        private final AbstractConfiguration configLocal;
+        private final File file;
+        private final long fileModified;
+        private final File fileLocal;
+        private final long fileLocalModified;
+
+        private ConfigurationSnapshot(AbstractConfiguration config, AbstractConfiguration configLocal, File file, File fileLocal) {
+            this.config = config;
+            this.configLocal = configLocal;
+            this.file = file;
+            this.fileModified = lastModified(file);
+            this.fileLocal = fileLocal;
+            this.fileLocalModified = lastModified(fileLocal);
+        }
+
+        private static ConfigurationSnapshot load() {
+            PropertiesConfiguration config;
+            File file = null;
+            try {
+                config = new PropertiesConfiguration(CONFIG_FILE_NAME);
+                file = config.getFile();
+                logger.info("Default configuration file loaded.");
+            } catch (ConfigurationException e) {
+                logger.error(e);
+                config = new PropertiesConfiguration();
+            }
+            // Load local config file
+            Path fileLocal = Paths.get(config.getString("goobiFolder", "/opt/digiverso/goobi/") + "config/", CONFIG_FILE_NAME);
+            PropertiesConfiguration configLocal = new PropertiesConfiguration();
+            if (Files.exists(fileLocal)) {
+                try {
+                    configLocal = new PropertiesConfiguration(fileLocal.toFile());
+                    logger.info("Local configuration file '" + fileLocal.toString() + "' loaded.");
+                } catch (ConfigurationException e) {
+                    logger.error(e);
+                }
+            }
+            return new ConfigurationSnapshot(copy(config), copy(configLocal), file, fileLocal.toFile());
+        }
+
+        private static AbstractConfiguration copy(AbstractConfiguration source) {
+            BaseConfiguration copy = new BaseConfiguration();
+            // the values are already split into lists
+            copy.setDelimiterParsingDisabled(true);
+            copy.copy(source);
+            return copy;
+        }
+
+        private ConfigurationSnapshot withProperty(String key, String value) {
+            AbstractConfiguration newConfig = copy(config);
+            newConfig.setProperty(key, value);
+            AbstractConfiguration newConfigLocal = copy(configLocal);
+            newConfigLocal.setProperty(key, value);
+            return new ConfigurationSnapshot(newConfig, newConfigLocal, file, fileLocal);
+        }
+
+        private boolean isModified() {
+            return lastModified(file) != fileModified || lastModified(fileLocal) != fileLocalModified;
+        }
+
+        private static long lastModified(File f) {
+            // 0 if the file does not exist, so a new local file is found as well
+            return f == null ? 0 : f.lastModified();
+        }
+    }
 }
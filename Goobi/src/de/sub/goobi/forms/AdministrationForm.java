@@ -24,6 +24,7 @@ package de.sub.goobi.forms;
  * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
  * exception statement from your version.
  */
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
@@ -31,17 +32,21 @@ import java.util.List;
 import javax.faces.bean.ManagedBean;
 import javax.faces.bean.SessionScoped;
 
+import org.apache.log4j.Logger;
+import org.goobi.api.mq.GoobiDefaultQueueListener;
 import org.goobi.production.enums.PluginType;
 import org.goobi.production.flow.jobs.HistoryAnalyserJob;
 import org.goobi.production.plugin.PluginLoader;
 import org.goobi.production.plugin.interfaces.IAdministrationPlugin;
 
+import de.sub.goobi.config.ConfigurationHelper;
 import de.sub.goobi.helper.Helper;
 
 @ManagedBean(name = "AdministrationForm")
 @SessionScoped
 public class AdministrationForm implements Serializable {
     private static final long serialVersionUID = 5648439270064158243L;
+    private static final Logger logger = Logger.getLogger(AdministrationForm.class);
     public final static String DIRECTORY_SUFFIX = "_tif";
 
     private List<String> possibleAdministrationPluginNames;
@@ -65,6 +70,36 @@ public class AdministrationForm implements Serializable {
         }
     }
 
+    /**
+     * @return true, if the tickets of the message queue are handled by this Goobi
+     */
+    public boolean isMessageBrokerStarted() {
+        return ConfigurationHelper.getInstance().isStartInternalMessageBroker();
+    }
+
+    /**
+     * Send the tickets of the dead letter queue to the message queue again
+     */
+    public void requeueDeadLetterTickets() {
+        try {
+            int count = GoobiDefaultQueueListener.requeueDeadLetters();
+            Helper.setMeldung(Helper.getTranslation("deadLetterTicketsRequeued", String.valueOf(count)));
+        } catch (IOException e) {
+            logger.error(e);
+            Helper.setFehlerMeldung("deadLetterTicketsNotRequeued", e);
+        }
+    }
+
+    /**
+     * Scan the plugin folders again, e.g. after a plugin was replaced on a file system that does not report changes
+     */
+    public void reloadPlugins() {
+        PluginLoader.reload();
+        possibleAdministrationPluginNames = PluginLoader.getListOfPlugins(PluginType.Administration);
+        Collections.sort(possibleAdministrationPluginNames);
+        Helper.setMeldung("pluginsReloaded");
+    }
+
     @Deprecated
     public void test() {
         Helper.setFehlerMeldung("Fehlermeldung mit extrem langem Text, die sich über viele Zeilen erstreckt und so weiter geht bis ein Zeilenumbruch kommt der dann in einem Zeilenumbruch endet und damit die Zeile umgebrochen hat 1");
@@ -186,6 +186,9 @@ public class HelperForm {
         SelectItem deactivated = new SelectItem("5", Helper.getTranslation("statusDeactivated"));
         ssl.add(deactivated);
 
+        SelectItem queued = new SelectItem("6", Helper.getTranslation("statusQueued"));
+        ssl.add(queued);
+
         return ssl;
     }
 
@@ -32,6 +32,7 @@ import org.apache.log4j.Logger;
 import org.goobi.beans.Process;
 import de.sub.goobi.helper.tasks.LongRunningTask;
 import de.sub.goobi.helper.tasks.LongRunningTaskManager;
+import de.sub.goobi.helper.tasks.LongRunningTaskStatus;
 
 public class LongRunningTasksForm {
 	private Process prozess;
@@ -55,20 +56,11 @@ public class LongRunningTasksForm {
 	 * Thread entweder starten oder restarten ================================================================
 	 */
 	public void executeTask() {
-		if (this.task.getStatusProgress() == 0) {
+		if (this.task.getStatus() == LongRunningTaskStatus.WAITING) {
 			LongRunningTaskManager.getInstance().executeTask(this.task);
-		} else {
-			/* Thread lief schon und wurde abgebrochen */
-			try {
-				LongRunningTask lrt = this.task.getClass().newInstance();
-				lrt.initialize(this.task.getProzess());
-				LongRunningTaskManager.getInstance().replaceTask(this.task, lrt);
-				LongRunningTaskManager.getInstance().executeTask(lrt);
-			} catch (InstantiationException e) {
-				logger.error(e);
-			} catch (IllegalAccessException e) {
-				logger.error(e);
-			}
+		} else if (!LongRunningTaskManager.getInstance().retryTask(this.task)) {
+			/* Thread lief schon und kann nicht wiederholt werden */
+			logger.warn("Task " + this.task.getTitle() + " cannot be executed again");
 		}
 	}
 
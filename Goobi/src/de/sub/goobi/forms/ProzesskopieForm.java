@@ -75,9 +75,9 @@ import org.jdom2.input.SAXBuilder;
 
 import de.sub.goobi.config.ConfigProjects;
 import de.sub.goobi.config.ConfigurationHelper;
+import de.sub.goobi.helper.AutomaticStepExecutor;
 import de.sub.goobi.helper.BeanHelper;
 import de.sub.goobi.helper.Helper;
-import de.sub.goobi.helper.ScriptThreadWithoutHibernate;
 import de.sub.goobi.helper.StorageProvider;
 import de.sub.goobi.helper.UghHelper;
 import de.sub.goobi.helper.enums.StepEditType;
@@ -840,8 +840,7 @@ public class ProzesskopieForm {
         List<Step> steps = StepManager.getStepsForProcess(prozessKopie.getId());
         for (Step s : steps) {
             if (s.getBearbeitungsstatusEnum().equals(StepStatus.OPEN) && s.isTypAutomatisch()) {
-                ScriptThreadWithoutHibernate myThread = new ScriptThreadWithoutHibernate(s);
-                myThread.start();
+                AutomaticStepExecutor.getInstance().submit(s);
             }
         }
         return "process_new3";
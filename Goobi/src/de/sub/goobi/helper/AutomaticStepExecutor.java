@@ -0,0 +1,366 @@
+package de.sub.goobi.helper;
+
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *     		- https://goobi.io
+ * 			- https://www.intranda.com
+ * 			- https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ * Linking this library statically or dynamically with other modules is making a combined work based on this library. Thus, the terms and conditions
+ * of the GNU General Public License cover the whole combination. As a special exception, the copyright holders of this library give you permission to
+ * link this library with independent modules to produce an executable, regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that you also meet, for each linked independent module, the terms and
+ * conditions of the license of that module. An independent module is a module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.goobi.beans.Step;
+
+import de.sub.goobi.config.ConfigurationHelper;
+import de.sub.goobi.helper.enums.StepStatus;
+import de.sub.goobi.helper.exceptions.DAOException;
+import de.sub.goobi.persistence.managers.StepManager;
+
+/**
+ * Executes automatic steps in a bounded thread pool for each kind of task. Each pool has a bounded queue in memory. A submitted step gets the
+ * status {@link StepStatus#QUEUED} before it is added to the queue and the status {@link StepStatus#INWORK} when a thread starts it, so the steps
+ * of the queue are not lost if the application stops unexpectedly. If the queue is full, the step stays in the database only and is loaded again as
+ * soon as a thread is available. Queued steps are loaded again on startup as well.
+ */
+public class AutomaticStepExecutor {
+
+    private static final Logger logger = Logger.getLogger(AutomaticStepExecutor.class);
+
+    public enum TaskType {
+        SCRIPT("Script", "schritte.typScriptStep = true"),
+        EXPORT("Export", "schritte.typScriptStep = false AND schritte.typExportDMS = true"),
+        PLUGIN("Plugin", "schritte.typScriptStep = false AND schritte.typExportDMS = false AND schritte.stepPlugin IS NOT NULL AND schritte.stepPlugin <> ''"),
+        HTTP("Http", "schritte.typScriptStep = false AND schritte.typExportDMS = false AND (schritte.stepPlugin IS NULL OR schritte.stepPlugin = '')");
+
+        private String name;
+        private String filter;
+
+        private TaskType(String name, String filter) {
+            this.name = name;
+            this.filter = filter;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the type of the given step. The order of the checks matches {@link ScriptThreadWithoutHibernate#run()}.
+         * 
+         * @param step automatic step
+         * @return type of the task
+         */
+        public static TaskType getTaskType(Step step) {
+            if (step.getTypScriptStep()) {
+                return SCRIPT;
+            } else if (step.isTypExportDMS()) {
+                return EXPORT;
+            } else if (step.getStepPlugin() != null && !step.getStepPlugin().isEmpty()) {
+                return PLUGIN;
+            }
+            return HTTP;
+        }
+    }
+
+    private static AutomaticStepExecutor instance = null;
+
+    private final Map<TaskType, ThreadPoolExecutor> executors = new EnumMap<>(TaskType.class);
+    // number of steps of each type with status queued in the database
+    private final Map<TaskType, AtomicInteger> queuedSteps = new EnumMap<>(TaskType.class);
+    private final Map<Integer, Step> runningSteps = new ConcurrentHashMap<>();
+    // ids of the steps that wait in the queue in memory, they are queued in the database as well
+    private final Set<Integer> pendingSteps = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+    private AutomaticStepExecutor() {
+        ConfigurationHelper config = ConfigurationHelper.getInstance();
+        int queueSize = Math.max(1, config.getAutomaticTasksQueueSize());
+        for (TaskType type : TaskType.values()) {
+            createExecutor(type, Math.max(1, config.getAutomaticTasksThreads(type.getName())), queueSize);
+        }
+    }
+
+    /**
+     * Creates an executor with the same number of threads for each kind of task, the steps that are queued in the database are not loaded
+     */
+    AutomaticStepExecutor(int threads, int queueSize) {
+        for (TaskType type : TaskType.values()) {
+            createExecutor(type, threads, queueSize);
+        }
+    }
+
+    private void createExecutor(final TaskType type, int threads, int queueSize) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(queueSize),
+                new AutomaticStepThreadFactory(type), new QueueStepPolicy(type)) {
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                super.beforeExecute(t, r);
+                Step step = ((ScriptThreadWithoutHibernate) r).getStep();
+                pendingSteps.remove(step.getId());
+                step.setBearbeitungsstatusEnum(StepStatus.INWORK);
+                saveStep(step);
+                runningSteps.put(step.getId(), step);
+            }
+
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                super.afterExecute(r, t);
+                runningSteps.remove(((ScriptThreadWithoutHibernate) r).getStep().getId());
+                loadQueuedSteps(type);
+            }
+        };
+        executor.allowCoreThreadTimeOut(true);
+        executors.put(type, executor);
+        queuedSteps.put(type, new AtomicInteger());
+    }
+
+    public static synchronized AutomaticStepExecutor getInstance() {
+        if (instance == null) {
+            instance = new AutomaticStepExecutor();
+            // continue with the steps that were queued before the last shutdown or crash
+            for (TaskType type : TaskType.values()) {
+                instance.queuedSteps.get(type).set(instance.countQueuedSteps(type));
+                instance.loadQueuedSteps(type);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Submit an automatic step for execution. The step gets the status queued until a thread starts it. If all threads for this kind of task are
+     * busy and the queue is full, the step is loaded from the database again later.
+     * 
+     * @param step automatic step
+     */
+    public void submit(Step step) {
+        TaskType type = TaskType.getTaskType(step);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Submit " + type.getName() + " task for step with stepId " + step.getId() + " and processId " + step.getProcessId());
+        }
+        // mark the step as pending first, otherwise loadQueuedSteps could load it a second time
+        pendingSteps.add(step.getId());
+        step.setBearbeitungsstatusEnum(StepStatus.QUEUED);
+        saveStep(step);
+        executors.get(type).execute(new ScriptThreadWithoutHibernate(step));
+    }
+
+    /**
+     * Loads steps with status queued from the database until the queue in memory is full.
+     * 
+     * @param type type of the task
+     */
+    private void loadQueuedSteps(TaskType type) {
+        ThreadPoolExecutor executor = executors.get(type);
+        AtomicInteger queued = queuedSteps.get(type);
+        synchronized (queued) {
+            int freeSlots = executor.getQueue().remainingCapacity();
+            if (queued.get() <= 0 || freeSlots <= 0 || executor.isShutdown()) {
+                return;
+            }
+            List<Step> steps = getQueuedSteps(type, pendingSteps, freeSlots);
+            if (steps.size() < freeSlots) {
+                queued.set(0);
+            } else {
+                queued.addAndGet(-steps.size());
+            }
+            for (Step step : steps) {
+                pendingSteps.add(step.getId());
+                executor.execute(new ScriptThreadWithoutHibernate(step));
+            }
+        }
+    }
+
+    /**
+     * Stores the new status of a step in the database
+     */
+    void saveStep(Step step) {
+        try {
+            StepManager.saveStep(step);
+        } catch (DAOException e) {
+            logger.error("An exception occurred while saving the status of a step for process with ID " + step.getProcessId(), e);
+        }
+    }
+
+    /**
+     * Loads the oldest steps with status queued from the database
+     * 
+     * @param type type of the task
+     * @param excludedIds ids of the steps that are in the queue in memory already
+     * @param count maximum number of steps
+     * @return the steps
+     */
+    List<Step> getQueuedSteps(TaskType type, Set<Integer> excludedIds, int count) {
+        return StepManager.getSteps("schritte.BearbeitungsBeginn, schritte.SchritteID", getQueuedFilter(type) + getExcludeFilter(excludedIds), 0,
+                count);
+    }
+
+    int countQueuedSteps(TaskType type) {
+        try {
+            return StepManager.countSteps(null, getQueuedFilter(type));
+        } catch (DAOException e) {
+            logger.error("Cannot count the queued automatic steps", e);
+            return 0;
+        }
+    }
+
+    private static String getQueuedFilter(TaskType type) {
+        return "schritte.Bearbeitungsstatus = " + StepStatus.QUEUED.getValue() + " AND schritte.typAutomatisch = true AND " + type.filter;
+    }
+
+    private static String getExcludeFilter(Set<Integer> excludedIds) {
+        if (excludedIds.isEmpty()) {
+            return "";
+        }
+        StringBuilder filter = new StringBuilder(" AND schritte.SchritteID NOT IN (");
+        boolean first = true;
+        for (Integer id : excludedIds) {
+            if (!first) {
+                filter.append(", ");
+            }
+            filter.append(id);
+            first = false;
+        }
+        return filter.append(")").toString();
+    }
+
+    /**
+     * Leaves a step that did not fit into the queue in the database only, it already has the status queued.
+     */
+    private void queueStep(TaskType type, Step step) {
+        pendingSteps.remove(step.getId());
+        queuedSteps.get(type).incrementAndGet();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Queued step with stepId " + step.getId() + " and processId " + step.getProcessId());
+        }
+    }
+
+    /**
+     * Stops all threads. Steps that did not start yet keep the status queued and are executed after the next start.
+     */
+    public static synchronized void shutdown() {
+        if (instance == null) {
+            return;
+        }
+        instance.stop();
+        instance = null;
+    }
+
+    void stop() {
+        for (ThreadPoolExecutor executor : executors.values()) {
+            executor.shutdownNow();
+        }
+        pendingSteps.clear();
+    }
+
+    /**
+     * @return the steps that are currently executed, ordered by start date
+     */
+    public List<Step> getRunningSteps() {
+        List<Step> steps = new ArrayList<>(runningSteps.values());
+        Collections.sort(steps, (s1, s2) -> {
+            Date d1 = s1.getBearbeitungsbeginn();
+            Date d2 = s2.getBearbeitungsbeginn();
+            if (d1 == null || d2 == null) {
+                return d1 == null ? (d2 == null ? 0 : -1) : 1;
+            }
+            return d1.compareTo(d2);
+        });
+        return steps;
+    }
+
+    public int getNumberOfRunningSteps(TaskType type) {
+        return executors.get(type).getActiveCount();
+    }
+
+    /**
+     * @param type type of the task
+     * @return number of steps that wait in memory or in the database
+     */
+    public int getNumberOfQueuedSteps(TaskType type) {
+        return executors.get(type).getQueue().size() + Math.max(0, queuedSteps.get(type).get());
+    }
+
+    public int getNumberOfRunningSteps() {
+        int count = 0;
+        for (TaskType type : TaskType.values()) {
+            count += getNumberOfRunningSteps(type);
+        }
+        return count;
+    }
+
+    public int getNumberOfQueuedSteps() {
+        int count = 0;
+        for (TaskType type : TaskType.values()) {
+            count += getNumberOfQueuedSteps(type);
+        }
+        return count;
+    }
+
+    /**
+     * Keeps steps that do not fit into the queue in the database instead of rejecting them.
+     */
+    private class QueueStepPolicy implements RejectedExecutionHandler {
+        private TaskType type;
+
+        private QueueStepPolicy(TaskType type) {
+            this.type = type;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            queueStep(type, ((ScriptThreadWithoutHibernate) r).getStep());
+            if (!executor.isShutdown()) {
+                // all threads might have finished in the meantime
+                loadQueuedSteps(type);
+            }
+        }
+    }
+
+    private static class AutomaticStepThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private AutomaticStepThreadFactory(TaskType type) {
+            prefix = "automatic-" + type.getName().toLowerCase() + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
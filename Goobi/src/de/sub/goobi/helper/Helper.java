@@ -216,13 +216,7 @@ public class Helper implements Serializable, Observer {
 	}
     
     public static void addMessageToProcessLog(Integer processId, LogType type, String message, String username) {
-		LogEntry logEntry = new LogEntry();
-        logEntry.setContent(message);
-        logEntry.setCreationDate(new Date());
-        logEntry.setProcessId(processId);
-        logEntry.setType(type);
-        logEntry.setUserName(username);
-        ProcessManager.saveLogEntry(logEntry);
+        ProcessManager.addLogEntry(LogEntry.build(processId, type, message, username));
 	}
     
     /**
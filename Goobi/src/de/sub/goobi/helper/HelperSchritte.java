@@ -35,7 +35,6 @@ import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -65,14 +64,6 @@ import org.goobi.production.flow.jobs.HistoryAnalyserJob;
 import org.goobi.production.plugin.PluginLoader;
 import org.goobi.production.plugin.interfaces.IExportPlugin;
 import org.goobi.production.plugin.interfaces.IValidatorPlugin;
-import org.jdom2.Document;
-import org.jdom2.Element;
-import org.jdom2.JDOMException;
-import org.jdom2.Namespace;
-import org.jdom2.filter.Filters;
-import org.jdom2.input.SAXBuilder;
-import org.jdom2.xpath.XPathExpression;
-import org.jdom2.xpath.XPathFactory;
 
 import de.sub.goobi.config.ConfigurationHelper;
 import de.sub.goobi.export.dms.ExportDms;
@@ -83,8 +74,8 @@ import de.sub.goobi.helper.exceptions.DAOException;
 import de.sub.goobi.helper.exceptions.ExportFileException;
 import de.sub.goobi.helper.exceptions.SwapException;
 import de.sub.goobi.helper.exceptions.UghHelperException;
+import de.sub.goobi.metadaten.ThumbnailGenerator;
 import de.sub.goobi.persistence.managers.HistoryManager;
-import de.sub.goobi.persistence.managers.MetadataManager;
 import de.sub.goobi.persistence.managers.ProcessManager;
 import de.sub.goobi.persistence.managers.StepManager;
 import ugh.dl.DigitalDocument;
@@ -96,9 +87,6 @@ import ugh.exceptions.UGHException;
 public class HelperSchritte {
     private static final Logger logger = Logger.getLogger(HelperSchritte.class);
     public final static String DIRECTORY_PREFIX = "orig_";
-    private static final Namespace goobiNamespace = Namespace.getNamespace("goobi", "http://meta.goobi.org/v1.5.1/");
-    private static final Namespace mets = Namespace.getNamespace("mets", "http://www.loc.gov/METS/");
-    private static final Namespace mods = Namespace.getNamespace("mods", "http://www.loc.gov/mods/v3");
 
     /**
      * Schritt abschliessen und dabei parallele Schritte berücksichtigen ================================================================
@@ -132,28 +120,13 @@ public class HelperSchritte {
             logger.error("An exception occurred while closing the step '" + currentStep.getTitel() + "' of process with ID " + processId, e);
         }
 
+        if (currentStep.isTypImagesSchreiben() && ConfigurationHelper.getInstance().isThumbnailsCreateAfterImageUpload()) {
+            ThumbnailGenerator.queueThumbnailTask(currentStep.getProzess());
+        }
+
         if (currentStep.isUpdateMetadataIndex()) {
             try {
-                String metdatdaPath = currentStep.getProzess().getMetadataFilePath();
-                String anchorPath = metdatdaPath.replace("meta.xml", "meta_anchor.xml");
-                Path metadataFile = Paths.get(metdatdaPath);
-                Path anchorFile = Paths.get(anchorPath);
-                Map<String, List<String>> pairs = new HashMap<>();
-
-                extractMetadata(metadataFile, pairs);
-
-                if (StorageProvider.getInstance().isFileExists(anchorFile)) {
-                    extractMetadata(anchorFile, pairs);
-                }
-
-                MetadataManager.updateMetadata(currentStep.getProzess().getId(), pairs);
-
-                // now add all authority fields to the metadata pairs
-                extractAuthorityMetadata(metadataFile, pairs);
-                if (StorageProvider.getInstance().isFileExists(anchorFile)) {
-                    extractAuthorityMetadata(anchorFile, pairs);
-                }
-                MetadataManager.updateJSONMetadata(processId, pairs);
+                MetadataIndexer.updateIndex(processId, Paths.get(currentStep.getProzess().getMetadataFilePath()));
 
                 HistoryAnalyserJob.updateHistory(currentStep.getProzess());
 
@@ -260,8 +233,7 @@ public class HelperSchritte {
             if (logger.isDebugEnabled()) {
                 logger.debug("Starting scripts for step with stepId " + automaticStep.getId() + " and processId " + automaticStep.getProcessId());
             }
-            ScriptThreadWithoutHibernate myThread = new ScriptThreadWithoutHibernate(automaticStep);
-            myThread.start();
+            AutomaticStepExecutor.getInstance().submit(automaticStep);
         }
         for (Step finish : stepsToFinish) {
             CloseStepObjectAutomatic(finish);
@@ -519,7 +491,8 @@ public class HelperSchritte {
 
             Helper.addMessageToProcessLog(step.getProcessId(), LogType.DEBUG, message.toString());
 
-            rueckgabe = ShellScript.callShell(parameterList, step.getProcessId());
+            rueckgabe = ShellScript.callShell(parameterList, step.getProcessId(), ConfigurationHelper.getInstance().getScriptTimeout(step
+                    .getTitel()));
             if (automatic) {
                 if (rueckgabe == 0) {
                     step.setEditTypeEnum(StepEditType.AUTOMATIC);
@@ -623,97 +596,25 @@ public class HelperSchritte {
 
     }
 
+    /**
+     * Adds the authority values of a mets file to the metadata pairs.
+     * 
+     * @deprecated use {@link MetadataIndexer#readMetadata(Path, Map, Map)} to read metadata and authority values in one pass
+     */
+    @Deprecated
     public static void extractAuthorityMetadata(Path metadataFile, Map<String, List<String>> metadataPairs) {
-        XPathFactory xFactory = XPathFactory.instance();
-        XPathExpression<Element> authorityMetaXpath = xFactory.compile(
-                "//mets:xmlData/mods:mods/mods:extension/goobi:goobi/goobi:metadata[goobi:authorityValue]",
-                Filters.element(), null, mods, mets, goobiNamespace);
-        SAXBuilder builder = new SAXBuilder();
-        Document doc;
-        try {
-            doc = builder.build(metadataFile.toString());
-        } catch (JDOMException | IOException e1) {
-            return;
-        }
-        for (Element meta : authorityMetaXpath.evaluate(doc)) {
-            String name = meta.getAttributeValue("name");
-            if (name == null) {
-                continue;
-            } else {
-                String key = name + "_authority";
-                List<String> values = metadataPairs.get(key);
-                if (values == null) {
-                    values = new ArrayList<>();
-                    metadataPairs.put(key, values);
-                }
-                values.add(meta.getChildText("authorityValue", goobiNamespace));
-            }
-        }
+        Map<String, List<String>> authorityPairs = new HashMap<>();
+        MetadataIndexer.readMetadata(metadataFile, new HashMap<String, List<String>>(), authorityPairs);
+        MetadataIndexer.addAll(authorityPairs, metadataPairs);
     }
 
+    /**
+     * Adds the metadata values of a mets file to the metadata pairs.
+     * 
+     * @deprecated use {@link MetadataIndexer#readMetadata(Path, Map, Map)} to read metadata and authority values in one pass
+     */
+    @Deprecated
     public static void extractMetadata(Path metadataFile, Map<String, List<String>> metadataPairs) {
-        SAXBuilder builder = new SAXBuilder();
-        Document doc;
-        try {
-            doc = builder.build(metadataFile.toString());
-        } catch (JDOMException | IOException e1) {
-            return;
-        }
-        Element root = doc.getRootElement();
-        try {
-            Element goobi = root.getChildren("dmdSec", mets).get(0).getChild("mdWrap", mets).getChild("xmlData", mets).getChild("mods", mods)
-                    .getChild("extension", mods).getChild("goobi", goobiNamespace);
-            List<Element> metadataList = goobi.getChildren();
-            addMetadata(metadataList, metadataPairs);
-            for (Element el : root.getChildren("dmdSec", mets)) {
-                if (el.getAttributeValue("ID").equals("DMDPHYS_0000")) {
-                    Element phys = el.getChild("mdWrap", mets).getChild("xmlData", mets).getChild("mods", mods).getChild("extension", mods).getChild(
-                            "goobi", goobiNamespace);
-                    List<Element> physList = phys.getChildren();
-                    addMetadata(physList, metadataPairs);
-                }
-            }
-            // create field for "DocStruct"
-            String docType = root.getChildren("structMap", mets).get(0).getChild("div", mets).getAttributeValue("TYPE");
-            metadataPairs.put("DocStruct", Collections.singletonList(docType));
-
-        } catch (Exception e) {
-            logger.error(e);
-            logger.error("Cannot extract metadata from " + metadataFile.toString());
-        }
-    }
-
-    private static void addMetadata(List<Element> elements, Map<String, List<String>> metadataPairs) {
-        for (Element goobimetadata : elements) {
-            String metadataType = goobimetadata.getAttributeValue("name");
-            String metadataValue = "";
-            if (goobimetadata.getAttributeValue("type") != null && goobimetadata.getAttributeValue("type").equals("person")) {
-                Element displayName = goobimetadata.getChild("displayName", goobiNamespace);
-                if (displayName != null && !displayName.getValue().equals(",")) {
-                    metadataValue = displayName.getValue();
-                }
-            } else if (goobimetadata.getAttributeValue("type") != null && goobimetadata.getAttributeValue("type").equals("group")) {
-                List<Element> groupMetadataList = goobimetadata.getChildren();
-                addMetadata(groupMetadataList, metadataPairs);
-            } else {
-                metadataValue = goobimetadata.getValue();
-            }
-            if (!metadataValue.equals("")) {
-
-                if (metadataPairs.containsKey(metadataType)) {
-                    List<String> oldValue = metadataPairs.get(metadataType);
-                    if (!oldValue.contains(metadataValue)) {
-                        oldValue.add(metadataValue);
-                        metadataPairs.put(metadataType, oldValue);
-                    }
-                } else {
-                    List<String> list = new ArrayList<>();
-                    list.add(metadataValue);
-                    metadataPairs.put(metadataType, list);
-                }
-            }
-
-        }
-        return;
+        MetadataIndexer.readMetadata(metadataFile, metadataPairs, new HashMap<String, List<String>>());
     }
 }
@@ -0,0 +1,333 @@
+package de.sub.goobi.helper;
+
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *     		- https://goobi.io
+ * 			- https://www.intranda.com
+ * 			- https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ * Linking this library statically or dynamically with other modules is making a combined work based on this library. Thus, the terms and conditions
+ * of the GNU General Public License cover the whole combination. As a special exception, the copyright holders of this library give you permission to
+ * link this library with independent modules to produce an executable, regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that you also meet, for each linked independent module, the terms and
+ * conditions of the license of that module. An independent module is a module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.log4j.Logger;
+
+import de.sub.goobi.persistence.managers.MetadataManager;
+
+/**
+ * Reads the metadata of a mets file in a single streaming pass and updates the metadata tables of a process.
+ * 
+ * The metadata of the first dmdSec and of the dmdSec DMDPHYS_0000 is collected, persons are indexed with their display name and groups with the
+ * values of their metadata. In addition the authority values of all metadata and the type of the first logical element are collected.
+ */
+public class MetadataIndexer {
+
+    private static final Logger logger = Logger.getLogger(MetadataIndexer.class);
+
+    private static final String METS_NAMESPACE = "http://www.loc.gov/METS/";
+    private static final String MODS_NAMESPACE = "http://www.loc.gov/mods/v3";
+    private static final String GOOBI_NAMESPACE = "http://meta.goobi.org/v1.5.1/";
+
+    private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+    static {
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    /**
+     * Reads meta.xml and meta_anchor.xml of a process and writes the changed values into the metadata tables.
+     * 
+     * @param processId id of the process
+     * @param metadataFile path to meta.xml
+     */
+    public static void updateIndex(int processId, Path metadataFile) {
+        Path anchorFile = Paths.get(metadataFile.toString().replace("meta.xml", "meta_anchor.xml"));
+        Map<String, List<String>> pairs = new HashMap<>();
+        Map<String, List<String>> authorityPairs = new HashMap<>();
+
+        readMetadata(metadataFile, pairs, authorityPairs);
+        if (StorageProvider.getInstance().isFileExists(anchorFile)) {
+            readMetadata(anchorFile, pairs, authorityPairs);
+        }
+
+        MetadataManager.updateMetadata(processId, pairs);
+
+        // the json metadata contains the authority fields as well
+        addAll(authorityPairs, pairs);
+        MetadataManager.updateJSONMetadata(processId, pairs);
+    }
+
+    /**
+     * Reads the metadata of a mets file.
+     * 
+     * @param metadataFile the mets file
+     * @param metadataPairs map to add the metadata values to, values of the same metadata are added only once
+     * @param authorityPairs map to add the authority values to, with the metadata name and the suffix '_authority' as key
+     */
+    public static void readMetadata(Path metadataFile, Map<String, List<String>> metadataPairs, Map<String, List<String>> authorityPairs) {
+        try (InputStream in = StorageProvider.getInstance().newInputStream(metadataFile)) {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+            try {
+                new Parser(metadataPairs, authorityPairs).parse(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            logger.error("Cannot extract metadata from " + metadataFile.toString(), e);
+        }
+    }
+
+    /**
+     * Adds all values of source to the lists in target.
+     */
+    static void addAll(Map<String, List<String>> source, Map<String, List<String>> target) {
+        for (Map.Entry<String, List<String>> entry : source.entrySet()) {
+            List<String> values = target.get(entry.getKey());
+            if (values == null) {
+                values = new ArrayList<>();
+                target.put(entry.getKey(), values);
+            }
+            values.addAll(entry.getValue());
+        }
+    }
+
+    private static boolean is(XMLStreamReader reader, String namespace, String localName) {
+        return namespace.equals(reader.getNamespaceURI()) && localName.equals(reader.getLocalName());
+    }
+
+    /**
+     * A metadata element within the goobi extension.
+     */
+    private static class MetadataElement {
+        private final int depth;
+        private final boolean topLevel;
+        private final boolean goobiMetadata;
+        private final String name;
+        private final String type;
+        private final StringBuilder value = new StringBuilder();
+        private StringBuilder displayName;
+        private int displayNameDepth = -1;
+        private StringBuilder authorityValue;
+        private int authorityValueDepth = -1;
+
+        private MetadataElement(XMLStreamReader reader, int depth, boolean topLevel) {
+            this.depth = depth;
+            this.topLevel = topLevel;
+            this.goobiMetadata = is(reader, GOOBI_NAMESPACE, "metadata");
+            this.name = reader.getAttributeValue(null, "name");
+            this.type = reader.getAttributeValue(null, "type");
+        }
+
+        private boolean isGroup() {
+            return "group".equals(type);
+        }
+
+        private String getIndexValue() {
+            if ("person".equals(type)) {
+                if (displayName != null && !displayName.toString().equals(",")) {
+                    return displayName.toString();
+                }
+                return "";
+            }
+            return value.toString();
+        }
+    }
+
+    private static class Parser {
+        private final Map<String, List<String>> metadataPairs;
+        private final Map<String, List<String>> authorityPairs;
+
+        private int depth = 0;
+        private int dmdSecCount = 0;
+        private boolean indexDmdSec = false;
+        private boolean dmdSecRead = false;
+        private int goobiDepth = -1;
+        private boolean indexGoobi = false;
+        private int structMapDepth = -1;
+        private boolean structMapRead = false;
+        // namespace and name of the open elements outside of the goobi extension
+        private final Deque<String> path = new ArrayDeque<>();
+        private final Deque<MetadataElement> elements = new ArrayDeque<>();
+
+        private Parser(Map<String, List<String>> metadataPairs, Map<String, List<String>> authorityPairs) {
+            this.metadataPairs = metadataPairs;
+            this.authorityPairs = authorityPairs;
+        }
+
+        private void parse(XMLStreamReader reader) throws XMLStreamException {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        startElement(reader);
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        endElement();
+                        depth--;
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        characters(reader);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        private void startElement(XMLStreamReader reader) {
+            if (goobiDepth != -1) {
+                startElementInGoobi(reader);
+                return;
+            }
+            if (is(reader, METS_NAMESPACE, "dmdSec")) {
+                indexDmdSec = dmdSecCount == 0 || "DMDPHYS_0000".equals(reader.getAttributeValue(null, "ID"));
+                dmdSecRead = false;
+                dmdSecCount++;
+            } else if (is(reader, GOOBI_NAMESPACE, "goobi") && path.size() >= 3 && path.peekLast().equals(MODS_NAMESPACE + "|extension")
+                    && getParent(1).equals(MODS_NAMESPACE + "|mods") && getParent(2).equals(METS_NAMESPACE + "|xmlData")) {
+                goobiDepth = depth;
+                // only the first goobi extension of a dmdSec is indexed
+                indexGoobi = indexDmdSec && !dmdSecRead;
+                dmdSecRead = true;
+                return;
+            } else if (is(reader, METS_NAMESPACE, "structMap") && !structMapRead) {
+                structMapDepth = depth;
+                structMapRead = true;
+            } else if (is(reader, METS_NAMESPACE, "div") && depth == structMapDepth + 1) {
+                // type of the first element of the first structMap
+                metadataPairs.put("DocStruct", Collections.singletonList(reader.getAttributeValue(null, "TYPE")));
+                structMapDepth = -1;
+            }
+            path.addLast(reader.getNamespaceURI() + "|" + reader.getLocalName());
+        }
+
+        private String getParent(int level) {
+            int index = path.size() - 1 - level;
+            for (String entry : path) {
+                if (index-- == 0) {
+                    return entry;
+                }
+            }
+            return "";
+        }
+
+        private void startElementInGoobi(XMLStreamReader reader) {
+            MetadataElement parent = elements.peek();
+            if (parent == null || (parent.isGroup() && depth == parent.depth + 1)) {
+                elements.push(new MetadataElement(reader, depth, parent == null));
+            } else if (depth == parent.depth + 1 && parent.displayName == null && is(reader, GOOBI_NAMESPACE, "displayName")) {
+                parent.displayName = new StringBuilder();
+                parent.displayNameDepth = depth;
+            } else if (depth == parent.depth + 1 && parent.authorityValue == null && is(reader, GOOBI_NAMESPACE, "authorityValue")) {
+                parent.authorityValue = new StringBuilder();
+                parent.authorityValueDepth = depth;
+            }
+        }
+
+        private void characters(XMLStreamReader reader) {
+            MetadataElement element = elements.peek();
+            if (element == null) {
+                return;
+            }
+            String text = reader.getText();
+            element.value.append(text);
+            if (element.displayNameDepth != -1 && depth >= element.displayNameDepth) {
+                element.displayName.append(text);
+            }
+            if (element.authorityValueDepth == depth) {
+                element.authorityValue.append(text);
+            }
+        }
+
+        private void endElement() {
+            if (goobiDepth == -1) {
+                path.pollLast();
+                if (depth == structMapDepth) {
+                    structMapDepth = -1;
+                }
+                return;
+            }
+            if (depth == goobiDepth) {
+                goobiDepth = -1;
+                return;
+            }
+            MetadataElement element = elements.peek();
+            if (element == null) {
+                return;
+            }
+            if (depth == element.displayNameDepth) {
+                element.displayNameDepth = -1;
+            } else if (depth == element.authorityValueDepth) {
+                element.authorityValueDepth = -1;
+            } else if (depth == element.depth) {
+                elements.pop();
+                endMetadata(element);
+            }
+        }
+
+        private void endMetadata(MetadataElement element) {
+            if (element.name == null) {
+                return;
+            }
+            if (indexGoobi && !element.isGroup()) {
+                String value = element.getIndexValue();
+                if (!value.isEmpty()) {
+                    List<String> values = metadataPairs.get(element.name);
+                    if (values == null) {
+                        values = new ArrayList<>();
+                        metadataPairs.put(element.name, values);
+                    }
+                    if (!values.contains(value)) {
+                        values.add(value);
+                    }
+                }
+            }
+            if (element.topLevel && element.goobiMetadata && element.authorityValue != null) {
+                String key = element.name + "_authority";
+                List<String> values = authorityPairs.get(key);
+                if (values == null) {
+                    values = new ArrayList<>();
+                    authorityPairs.put(key, values);
+                }
+                values.add(element.authorityValue.toString());
+            }
+        }
+    }
+}
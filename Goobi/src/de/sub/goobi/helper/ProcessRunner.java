@@ -0,0 +1,367 @@
+package de.sub.goobi.helper;
+
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *     		- https://goobi.io
+ * 			- https://www.intranda.com
+ * 			- https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ * Linking this library statically or dynamically with other modules is making a combined work based on this library. Thus, the terms and conditions
+ * of the GNU General Public License cover the whole combination. As a special exception, the copyright holders of this library give you permission to
+ * link this library with independent modules to produce an executable, regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that you also meet, for each linked independent module, the terms and
+ * conditions of the license of that module. An independent module is a module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.sub.goobi.config.ConfigurationChangeListener;
+import de.sub.goobi.config.ConfigurationHelper;
+import lombok.extern.log4j.Log4j;
+
+/**
+ * Runs an external command. Standard out and standard error are read at the same time, so a command writing a lot to one of them cannot block,
+ * and only the last lines of each are kept. A command that runs longer than the timeout is killed. The number of commands running at the same
+ * time on this node is limited, further commands wait until a running command is finished.
+ */
+@Log4j
+class ProcessRunner {
+
+    // longest line that is kept, the rest of the line is dropped
+    static final int MAX_LINE_LENGTH = 10000;
+
+    // time to wait for the remaining output after the command has finished
+    private static final long DRAIN_TIMEOUT = 5000;
+
+    // time to wait for the command to terminate after it was asked to, before it gets killed
+    private static final long KILL_TIMEOUT = 5000;
+
+    private static final ExecutorService drainers = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "process-output-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static Semaphore slots = null;
+
+    private static boolean slotsInitialized = false;
+
+    private static int processLimit = 0;
+
+    private static boolean listening = false;
+
+    private final List<String> commandLine;
+
+    private final Map<String, String> environment = new HashMap<>();
+
+    private final long timeout;
+
+    private final int maxLines;
+
+    /**
+     * @param commandLine the command and its arguments
+     * @param timeout maximal run time in seconds, 0 to wait until the command is finished
+     * @param maxLines number of lines kept from standard out and standard error each
+     */
+    ProcessRunner(List<String> commandLine, long timeout, int maxLines) {
+        this.commandLine = new ArrayList<>(commandLine);
+        this.timeout = timeout;
+        this.maxLines = Math.max(1, maxLines);
+    }
+
+    void addEnvironment(String name, String value) {
+        environment.put(name, value);
+    }
+
+    /**
+     * Set the number of commands that may run at the same time. Commands that are already waiting keep using the old limit.
+     * 
+     * @param limit maximal number of commands, 0 for no limit
+     */
+    static synchronized void setProcessLimit(int limit) {
+        slots = limit > 0 ? new Semaphore(limit, true) : null;
+        processLimit = limit;
+        slotsInitialized = true;
+    }
+
+    private static synchronized Semaphore getSlots() {
+        if (!slotsInitialized) {
+            setProcessLimit(ConfigurationHelper.getInstance().getExternalProcessLimit());
+            if (!listening) {
+                ConfigurationHelper.addChangeListener(new ConfigurationChangeListener() {
+                    @Override
+                    public void configurationChanged() {
+                        int limit = ConfigurationHelper.getInstance().getExternalProcessLimit();
+                        synchronized (ProcessRunner.class) {
+                            if (slotsInitialized && limit != processLimit) {
+                                setProcessLimit(limit);
+                            }
+                        }
+                    }
+                });
+                listening = true;
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Start the command and wait until it is finished or the timeout is reached.
+     * 
+     * @return exit code, output and run time of the command
+     * @throws IOException if the command could not be started
+     * @throws InterruptedException if the thread was interrupted, the command is killed in this case
+     */
+    Result run() throws IOException, InterruptedException {
+        Semaphore semaphore = getSlots();
+        if (semaphore != null && !semaphore.tryAcquire()) {
+            log.debug("Waiting for a free slot to execute " + commandLine.get(0));
+            semaphore.acquire();
+        }
+        try {
+            return execute();
+        } finally {
+            if (semaphore != null) {
+                semaphore.release();
+            }
+        }
+    }
+
+    private Result execute() throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(commandLine);
+        pb.environment().putAll(environment);
+        long start = System.currentTimeMillis();
+        Process process = pb.start();
+        closeQuietly(process.getOutputStream());
+
+        OutputBuffer stdOut = new OutputBuffer(maxLines);
+        OutputBuffer stdErr = new OutputBuffer(maxLines);
+        Future<?> outFuture = drainers.submit(new StreamDrainer(process.getInputStream(), stdOut));
+        Future<?> errFuture = drainers.submit(new StreamDrainer(process.getErrorStream(), stdErr));
+
+        boolean timedOut = false;
+        try {
+            if (timeout > 0) {
+                if (!process.waitFor(timeout, TimeUnit.SECONDS)) {
+                    timedOut = true;
+                    log.warn("Command " + commandLine.get(0) + " did not finish within " + timeout + " seconds and gets killed");
+                    kill(process);
+                }
+            } else {
+                process.waitFor();
+            }
+        } catch (InterruptedException e) {
+            kill(process);
+            throw e;
+        } finally {
+            // a child process started in the background may keep the streams open, don't wait for it forever
+            finishDrain(outFuture, process.getInputStream());
+            finishDrain(errFuture, process.getErrorStream());
+        }
+        long duration = System.currentTimeMillis() - start;
+        return new Result(process.exitValue(), duration, timedOut, stdOut, stdErr);
+    }
+
+    private static void kill(Process process) throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(KILL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            process.destroyForcibly();
+            process.waitFor();
+        }
+    }
+
+    private static void finishDrain(Future<?> future, InputStream stream) {
+        try {
+            future.get(DRAIN_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.debug("Output of command is still open, stop reading it");
+            future.cancel(true);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("Could not read output of command", e.getCause());
+        } finally {
+            closeQuietly(stream);
+        }
+    }
+
+    private static void closeQuietly(Closeable stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            log.debug("Could not close stream", e);
+        }
+    }
+
+    /**
+     * Keeps the last lines of a stream
+     */
+    static class OutputBuffer {
+        private final Deque<String> lines = new ArrayDeque<>();
+        private final int maxLines;
+        private long totalLines = 0;
+
+        OutputBuffer(int maxLines) {
+            this.maxLines = maxLines;
+        }
+
+        synchronized void add(String line) {
+            if (lines.size() == maxLines) {
+                lines.removeFirst();
+            }
+            lines.addLast(line);
+            totalLines++;
+        }
+
+        synchronized LinkedList<String> getLines() {
+            return new LinkedList<>(lines);
+        }
+
+        synchronized long getTotalLines() {
+            return totalLines;
+        }
+    }
+
+    /**
+     * Reads a stream line by line into a buffer. Overlong lines are cut, so a command writing binary data cannot exhaust the memory.
+     */
+    private static class StreamDrainer implements Runnable {
+        private final InputStream stream;
+        private final OutputBuffer buffer;
+
+        private StreamDrainer(InputStream stream, OutputBuffer buffer) {
+            this.stream = stream;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void run() {
+            StringBuilder line = new StringBuilder();
+            boolean pending = false;
+            char[] chars = new char[8192];
+            try (Reader reader = new InputStreamReader(stream, Charset.defaultCharset())) {
+                int read;
+                while ((read = reader.read(chars)) != -1) {
+                    for (int i = 0; i < read; i++) {
+                        char c = chars[i];
+                        if (c == '\n') {
+                            buffer.add(stripCarriageReturn(line));
+                            line.setLength(0);
+                            pending = false;
+                        } else {
+                            if (line.length() < MAX_LINE_LENGTH) {
+                                line.append(c);
+                            }
+                            pending = true;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // stream was closed, because the command was killed or its output was abandoned
+                log.debug("Stopped reading output of command: " + e.getMessage());
+            }
+            if (pending) {
+                buffer.add(stripCarriageReturn(line));
+            }
+        }
+
+        private static String stripCarriageReturn(StringBuilder line) {
+            int length = line.length();
+            if (length > 0 && line.charAt(length - 1) == '\r') {
+                return line.substring(0, length - 1);
+            }
+            return line.toString();
+        }
+    }
+
+    /**
+     * Outcome of a finished command
+     */
+    static class Result {
+        private final int exitCode;
+        private final long duration;
+        private final boolean timedOut;
+        private final OutputBuffer stdOut;
+        private final OutputBuffer stdErr;
+
+        private Result(int exitCode, long duration, boolean timedOut, OutputBuffer stdOut, OutputBuffer stdErr) {
+            this.exitCode = exitCode;
+            this.duration = duration;
+            this.timedOut = timedOut;
+            this.stdOut = stdOut;
+            this.stdErr = stdErr;
+        }
+
+        int getExitCode() {
+            return exitCode;
+        }
+
+        /**
+         * @return run time in milliseconds
+         */
+        long getDuration() {
+            return duration;
+        }
+
+        boolean isTimedOut() {
+            return timedOut;
+        }
+
+        LinkedList<String> getStdOut() {
+            return stdOut.getLines();
+        }
+
+        LinkedList<String> getStdErr() {
+            return stdErr.getLines();
+        }
+
+        long getStdOutLineCount() {
+            return stdOut.getTotalLines();
+        }
+
+        long getStdErrLineCount() {
+            return stdErr.getTotalLines();
+        }
+    }
+}
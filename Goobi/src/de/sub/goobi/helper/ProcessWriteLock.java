@@ -0,0 +1,147 @@
+package de.sub.goobi.helper;
+
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *     		- https://goobi.io
+ * 			- https://www.intranda.com
+ * 			- https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ * Linking this library statically or dynamically with other modules is making a combined work based on this library. Thus, the terms and conditions
+ * of the GNU General Public License cover the whole combination. As a special exception, the copyright holders of this library give you permission to
+ * link this library with independent modules to produce an executable, regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that you also meet, for each linked independent module, the terms and
+ * conditions of the license of that module. An independent module is a module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+import de.sub.goobi.config.ConfigurationHelper;
+
+/**
+ * Registry of write locks for the metadata files of processes. Writes to the same process are serialized, writes to different processes can run in
+ * parallel. Locks are reentrant and are removed from the registry as soon as no thread holds or waits for them.
+ */
+public class ProcessWriteLock {
+
+    private static final Logger logger = Logger.getLogger(ProcessWriteLock.class);
+
+    private static final Map<Integer, ProcessWriteLock> locks = new ConcurrentHashMap<>();
+
+    private final int processId;
+    private final ReentrantLock lock = new ReentrantLock();
+    // number of threads that hold the lock or wait for it, guarded by the map
+    private int users = 0;
+    private volatile String owner;
+    private volatile long lockedSince;
+
+    private ProcessWriteLock(int processId) {
+        this.processId = processId;
+    }
+
+    /**
+     * Acquires the write lock of a process. The lock must be released with {@link #unlock(int)} in a finally block.
+     * 
+     * @param processId id of the process
+     * @throws IOException if the lock cannot be acquired within the configured timeout
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public static void lock(int processId) throws IOException, InterruptedException {
+        ProcessWriteLock entry = locks.compute(processId, (id, current) -> {
+            ProcessWriteLock l = current == null ? new ProcessWriteLock(id) : current;
+            l.users++;
+            return l;
+        });
+        long timeout = ConfigurationHelper.getInstance().getProcessWriteLockTimeout();
+        boolean locked = false;
+        try {
+            if (logger.isDebugEnabled() && entry.lock.isLocked() && !entry.lock.isHeldByCurrentThread()) {
+                logger.debug("Waiting for write lock of process " + processId + ": " + entry.getDescription());
+            }
+            locked = entry.lock.tryLock(timeout, TimeUnit.SECONDS);
+            if (!locked) {
+                throw new IOException("Timeout after " + timeout + " seconds while waiting for the write lock of process " + processId + ": " + entry
+                        .getDescription());
+            }
+            if (entry.lock.getHoldCount() == 1) {
+                entry.owner = Thread.currentThread().getName();
+                entry.lockedSince = System.currentTimeMillis();
+            }
+        } finally {
+            if (!locked) {
+                release(entry);
+            }
+        }
+    }
+
+    /**
+     * Releases the write lock of a process held by the current thread.
+     * 
+     * @param processId id of the process
+     */
+    public static void unlock(int processId) {
+        ProcessWriteLock entry = locks.get(processId);
+        if (entry == null || !entry.lock.isHeldByCurrentThread()) {
+            logger.error("Write lock of process " + processId + " is not held by thread " + Thread.currentThread().getName());
+            return;
+        }
+        if (entry.lock.getHoldCount() == 1) {
+            entry.owner = null;
+        }
+        entry.lock.unlock();
+        release(entry);
+    }
+
+    private static void release(ProcessWriteLock entry) {
+        locks.computeIfPresent(entry.processId, (id, current) -> {
+            current.users--;
+            return current.users == 0 ? null : current;
+        });
+    }
+
+    private String getDescription() {
+        String currentOwner = owner;
+        if (currentOwner == null) {
+            return "not locked";
+        }
+        return "locked by thread '" + currentOwner + "' since " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(lockedSince)) + ", "
+                + lock.getQueueLength() + " thread(s) waiting";
+    }
+
+    /**
+     * Lists the processes that are currently locked, for diagnostic purposes.
+     * 
+     * @return one line for each locked process with the thread that holds the lock, the time since it is held and the number of waiting threads
+     */
+    public static List<String> getLockedProcesses() {
+        List<String> answer = new ArrayList<>();
+        for (ProcessWriteLock entry : locks.values()) {
+            if (entry.lock.isLocked()) {
+                answer.add("Process " + entry.processId + ": " + entry.getDescription());
+            }
+        }
+        return answer;
+    }
+}
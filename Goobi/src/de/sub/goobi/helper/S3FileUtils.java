@@ -1,10 +1,9 @@
 package de.sub.goobi.helper;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
@@ -21,6 +20,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
@@ -29,7 +29,6 @@ import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
-import com.amazonaws.services.s3.model.CopyObjectRequest;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
@@ -44,8 +43,10 @@ import lombok.extern.log4j.Log4j;
 public class S3FileUtils implements StorageProviderInterface {
 
     private final AmazonS3 s3;
+    private final S3TransferEngine transfer;
     private NIOFileUtils nio;
     private static Pattern processDirPattern;
+    private static AmazonS3 client;
 
     static {
         String metadataFolder = ConfigurationHelper.getInstance().getMetadataFolder();
@@ -57,26 +58,37 @@ public class S3FileUtils implements StorageProviderInterface {
 
     public S3FileUtils() {
         super();
-        ConfigurationHelper conf = ConfigurationHelper.getInstance();
-        if (conf.useCustomS3()) {
-            AWSCredentials credentials = new BasicAWSCredentials(conf.getS3AccessKeyID(), conf.getS3SecretAccessKey());
-            ClientConfiguration clientConfiguration = new ClientConfiguration();
-            clientConfiguration.setSignerOverride("AWSS3V4SignerType");
-
-            this.s3 = AmazonS3ClientBuilder
-                    .standard()
-                    .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(conf.getS3Endpoint(), Regions.US_EAST_1.name()))
-                    .withPathStyleAccessEnabled(true)
-                    .withClientConfiguration(clientConfiguration)
-                    .withCredentials(new AWSStaticCredentialsProvider(credentials))
-                    .build();
-        } else {
-            this.s3 = AmazonS3ClientBuilder.defaultClient();
-        }
+        this.s3 = getClient();
+        this.transfer = S3TransferEngine.getInstance(s3);
         this.nio = new NIOFileUtils();
 
     }
 
+    /**
+     * The client is created once and shared by all instances, together with its transfer engine
+     */
+    private static synchronized AmazonS3 getClient() {
+        if (client == null) {
+            ConfigurationHelper conf = ConfigurationHelper.getInstance();
+            if (conf.useCustomS3()) {
+                AWSCredentials credentials = new BasicAWSCredentials(conf.getS3AccessKeyID(), conf.getS3SecretAccessKey());
+                ClientConfiguration clientConfiguration = new ClientConfiguration();
+                clientConfiguration.setSignerOverride("AWSS3V4SignerType");
+
+                client = AmazonS3ClientBuilder
+                        .standard()
+                        .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(conf.getS3Endpoint(), Regions.US_EAST_1.name()))
+                        .withPathStyleAccessEnabled(true)
+                        .withClientConfiguration(clientConfiguration)
+                        .withCredentials(new AWSStaticCredentialsProvider(credentials))
+                        .build();
+            } else {
+                client = AmazonS3ClientBuilder.defaultClient();
+            }
+        }
+        return client;
+    }
+
     private String path2Prefix(Path inDir) {
         return string2Prefix(inDir.toAbsolutePath().toString());
     }
@@ -116,20 +128,27 @@ public class S3FileUtils implements StorageProviderInterface {
         return ConfigurationHelper.getInstance().getS3Bucket();
     }
 
-    private void copyS3Object(String sourcePrefix, String targetPrefix, S3ObjectSummary os) {
-        String sourceKey = os.getKey();
-        String destinationKey = targetPrefix + sourceKey.replace(sourcePrefix, "");
-        CopyObjectRequest copyReq = new CopyObjectRequest(getBucket(), sourceKey, getBucket(), destinationKey);
-        s3.copyObject(copyReq);
+    private void copyS3Object(S3TransferEngine.Batch batch, String sourcePrefix, String targetPrefix, S3ObjectSummary os) throws IOException {
+        final String sourceKey = os.getKey();
+        final String destinationKey = targetPrefix + sourceKey.replace(sourcePrefix, "");
+        batch.submit("copy of " + sourceKey, new S3TransferEngine.S3Task() {
+            @Override
+            public void execute() throws IOException {
+                transfer.copy(getBucket(), sourceKey, destinationKey);
+            }
+        });
     }
 
-    private void downloadS3ObjectToFolder(String sourcePrefix, Path target, S3ObjectSummary os) throws IOException {
-        String key = os.getKey();
-        Path targetPath = target.resolve(key.replace(sourcePrefix, ""));
-        S3Object obj = s3.getObject(os.getBucketName(), key);
-        try (InputStream in = obj.getObjectContent()) {
-            Files.copy(in, targetPath);
-        }
+    private void downloadS3ObjectToFolder(S3TransferEngine.Batch batch, String sourcePrefix, Path target, final S3ObjectSummary os)
+            throws IOException {
+        final String key = os.getKey();
+        final Path targetPath = target.resolve(key.replace(sourcePrefix, ""));
+        batch.submit("download of " + key, new S3TransferEngine.S3Task() {
+            @Override
+            public void execute() throws IOException {
+                transfer.download(os.getBucketName(), key, targetPath);
+            }
+        });
     }
 
     private void deletePathOnS3(Path dir) {
@@ -368,31 +387,35 @@ public class S3FileUtils implements StorageProviderInterface {
         }
         String sourcePrefix = path2Prefix(source);
         String targetPrefix = path2Prefix(target);
+        S3TransferEngine.Batch batch = transfer.newBatch();
         ObjectListing listing = s3.listObjects(getBucket(), sourcePrefix);
         for (S3ObjectSummary os : listing.getObjectSummaries()) {
-            copyS3Object(sourcePrefix, targetPrefix, os);
+            copyS3Object(batch, sourcePrefix, targetPrefix, os);
         }
         while (listing.isTruncated()) {
             listing = s3.listNextBatchOfObjects(listing);
             for (S3ObjectSummary os : listing.getObjectSummaries()) {
-                copyS3Object(sourcePrefix, targetPrefix, os);
+                copyS3Object(batch, sourcePrefix, targetPrefix, os);
             }
         }
+        batch.await();
     }
 
     @Override
     public void uploadDirectory(final Path source, final Path target) throws IOException {
+        final S3TransferEngine.Batch batch = transfer.newBatch();
         Files.walkFileTree(source, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new FileVisitor<Path>() {
 
             @Override
-            public FileVisitResult visitFile(Path p, BasicFileAttributes bfa) throws IOException {
+            public FileVisitResult visitFile(final Path p, BasicFileAttributes bfa) throws IOException {
                 String fileName = p.getFileName().toString();
-                String key = path2Prefix(target) + fileName;
-                ObjectMetadata om = new ObjectMetadata();
-                om.setContentType(Files.probeContentType(p));
-                try (InputStream is = Files.newInputStream(p)) {
-                    s3.putObject(getBucket(), key, is, om);
-                }
+                final String key = path2Prefix(target) + fileName;
+                batch.submit("upload of " + key, new S3TransferEngine.S3Task() {
+                    @Override
+                    public void execute() throws IOException {
+                        transfer.upload(getBucket(), key, p);
+                    }
+                });
                 return FileVisitResult.CONTINUE;
             }
 
@@ -412,21 +435,24 @@ public class S3FileUtils implements StorageProviderInterface {
                 throw e;
             }
         });
+        batch.await();
     }
 
     @Override
     public void downloadDirectory(final Path source, final Path target) throws IOException {
         String sourcePrefix = path2Prefix(source);
+        S3TransferEngine.Batch batch = transfer.newBatch();
         ObjectListing listing = s3.listObjects(getBucket(), sourcePrefix);
         for (S3ObjectSummary os : listing.getObjectSummaries()) {
-            downloadS3ObjectToFolder(sourcePrefix, target, os);
+            downloadS3ObjectToFolder(batch, sourcePrefix, target, os);
         }
         while (listing.isTruncated()) {
             listing = s3.listNextBatchOfObjects(listing);
             for (S3ObjectSummary os : listing.getObjectSummaries()) {
-                downloadS3ObjectToFolder(sourcePrefix, target, os);
+                downloadS3ObjectToFolder(batch, sourcePrefix, target, os);
             }
         }
+        batch.await();
     }
 
     @Override
@@ -451,16 +477,15 @@ public class S3FileUtils implements StorageProviderInterface {
                 nio.copyFile(srcFile, destFile);
             } else {
                 // src local, dest s3 => upload file
-                s3.putObject(getBucket(), path2Key(destFile), srcFile.toFile());
+                transfer.upload(getBucket(), path2Key(destFile), srcFile);
             }
         } else {
             if (getPathStorageType(destFile) == StorageType.S3) {
                 // both on s3 => standard copy on s3
-                s3.copyObject(getBucket(), path2Key(srcFile), getBucket(), path2Key(destFile));
+                transfer.copy(getBucket(), path2Key(srcFile), path2Key(destFile));
             } else {
                 // src on s3 and dest local => download file from s3 to local location
-                S3Object s3o = s3.getObject(getBucket(), path2Key(srcFile));
-                Files.copy(s3o.getObjectContent(), destFile);
+                transfer.download(getBucket(), path2Key(srcFile), destFile);
             }
         }
 
@@ -523,8 +548,25 @@ public class S3FileUtils implements StorageProviderInterface {
         if (getPathStorageType(path) == StorageType.LOCAL) {
             return nio.isFileExists(path);
         }
-        // handle prefix, too
-        return s3.doesObjectExist(getBucket(), path2Key(path)) || s3.listObjects(getBucket(), path2Prefix(path)).getObjectSummaries().size() > 0;
+        // handle prefix, too. A delimited listing contains the object itself and the "folder" as common prefix, so one request answers both
+        String key = path2Key(path);
+        String prefix = path2Prefix(path);
+        ObjectListing listing = s3.listObjects(new ListObjectsRequest().withBucketName(getBucket()).withPrefix(key).withDelimiter("/"));
+        for (S3ObjectSummary os : listing.getObjectSummaries()) {
+            if (os.getKey().equals(key)) {
+                return true;
+            }
+        }
+        if (listing.getCommonPrefixes().contains(prefix)) {
+            return true;
+        }
+        if (listing.isTruncated()) {
+            // too many siblings with the same name prefix, check the folder directly
+            return !s3.listObjects(new ListObjectsRequest().withBucketName(getBucket()).withPrefix(prefix).withMaxKeys(1))
+                    .getObjectSummaries()
+                    .isEmpty();
+        }
+        return false;
     }
 
     @Override
@@ -605,20 +647,17 @@ public class S3FileUtils implements StorageProviderInterface {
         }
         if (oldType == StorageType.LOCAL && (newType == StorageType.S3 || newType == StorageType.BOTH)) {
             //new path is on s3. Upload object
-            s3.putObject(getBucket(), path2Key(newPath), oldPath.toFile());
+            transfer.upload(getBucket(), path2Key(newPath), oldPath);
             Files.delete(oldPath);
         }
         if ((oldType == StorageType.S3 || oldType == StorageType.BOTH) && newType == StorageType.LOCAL) {
             //download object
-            S3Object obj = s3.getObject(getBucket(), path2Key(oldPath));
-            try (InputStream in = obj.getObjectContent()) {
-                Files.copy(in, newPath);
-            }
+            transfer.download(getBucket(), path2Key(oldPath), newPath);
             s3.deleteObject(getBucket(), path2Key(oldPath));
         }
         if (oldType == StorageType.S3 && newType == StorageType.S3) {
             //copy on s3
-            s3.copyObject(getBucket(), path2Key(oldPath), getBucket(), path2Key(newPath));
+            transfer.copy(getBucket(), path2Key(oldPath), path2Key(newPath));
             s3.deleteObject(getBucket(), path2Key(oldPath));
         }
 
@@ -694,11 +733,15 @@ public class S3FileUtils implements StorageProviderInterface {
             return nio.newInputStream(src);
         }
         String key = path2Key(src);
-        if (!s3.doesObjectExist(getBucket(), key)) {
-            throw new IOException(String.format("Key '%s' not found in bucket '%s'", key, getBucket()));
+        try {
+            S3Object so = s3.getObject(getBucket(), key);
+            return so.getObjectContent();
+        } catch (AmazonServiceException e) {
+            if (e.getStatusCode() == 404) {
+                throw new IOException(String.format("Key '%s' not found in bucket '%s'", key, getBucket()), e);
+            }
+            throw new IOException(e.getMessage(), e);
         }
-        S3Object so = s3.getObject(getBucket(), key);
-        return so.getObjectContent();
     }
 
     @Override
@@ -706,19 +749,30 @@ public class S3FileUtils implements StorageProviderInterface {
         if (getPathStorageType(dest) == StorageType.LOCAL) {
             return nio.newOutputStream(dest);
         }
-        final PipedInputStream in = new PipedInputStream();
-        PipedOutputStream out = new PipedOutputStream(in);
-        new Thread(new Runnable() {
+        // write into a local temporary file and upload it when the stream gets closed. This needs no extra thread and upload errors are
+        // reported to the caller
+        final Path tempFile = nio.createTemporaryFile("s3upload", null);
+        return new FilterOutputStream(Files.newOutputStream(tempFile)) {
+            private boolean closed = false;
+
             @Override
-            public void run() {
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
                 try {
-                    StorageProvider.getInstance().uploadFile(in, dest);
-                } catch (IOException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
+                    super.close();
+                    transfer.upload(getBucket(), path2Key(dest), tempFile);
+                } finally {
+                    Files.deleteIfExists(tempFile);
                 }
             }
-        }).start();
-        return out;
+        };
     }
 }
@@ -0,0 +1,406 @@
+package de.sub.goobi.helper;
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *     		- https://goobi.io
+ * 			- https://www.intranda.com
+ * 			- https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ * Linking this library statically or dynamically with other modules is making a combined work based on this library. Thus, the terms and conditions
+ * of the GNU General Public License cover the whole combination. As a special exception, the copyright holders of this library give you permission to
+ * link this library with independent modules to produce an executable, regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that you also meet, for each linked independent module, the terms and
+ * conditions of the license of that module. An independent module is a module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ssl.SSLException;
+
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.client.builder.ExecutorFactory;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.transfer.PersistableTransfer;
+import com.amazonaws.services.s3.transfer.PersistableUpload;
+import com.amazonaws.services.s3.transfer.Transfer;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
+import com.amazonaws.services.s3.transfer.internal.S3ProgressListener;
+import com.amazonaws.services.s3.transfer.internal.S3SyncProgressListener;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import de.sub.goobi.config.ConfigurationHelper;
+import lombok.extern.log4j.Log4j;
+
+/**
+ * Transfer engine used by {@link S3FileUtils} for all object transfers.
+ * 
+ * Single objects are transferred with a {@link TransferManager}, so large files are uploaded, copied and downloaded in parts. Directory operations
+ * submit one task per object into a bounded thread pool shared by all callers. Every transfer is retried with exponential backoff, if the error
+ * is a transient one.
+ * 
+ * There is one engine per client, use {@link #getInstance(AmazonS3)} to get it.
+ */
+@Log4j
+class S3TransferEngine {
+
+    private static final long RETRY_BASE_DELAY = 500;
+
+    private static final Map<AmazonS3, S3TransferEngine> engines = new IdentityHashMap<>();
+
+    private final TransferManager transferManager;
+    private final ThreadPoolExecutor fileExecutor;
+    private final int numberOfThreads;
+    private final int maxRetries;
+
+    /**
+     * Get the engine of the given client. It is created with the first call, so the thread pools exist only once for each client.
+     * 
+     * @param s3 the client to use
+     * @return the engine of this client
+     */
+    static synchronized S3TransferEngine getInstance(AmazonS3 s3) {
+        S3TransferEngine engine = engines.get(s3);
+        if (engine == null) {
+            engine = new S3TransferEngine(s3);
+            engines.put(s3, engine);
+        }
+        return engine;
+    }
+
+    S3TransferEngine(AmazonS3 s3) {
+        this(s3, ConfigurationHelper.getInstance().getS3TransferThreads(), ConfigurationHelper.getInstance().getS3TransferRetries(),
+                ConfigurationHelper.getInstance().getS3MultipartThreshold() * 1024l * 1024l);
+    }
+
+    /**
+     * @param s3 the client to use
+     * @param threads number of objects and number of parts that are transferred at the same time
+     * @param retries number of retries of a failed transfer
+     * @param threshold size in bytes, larger objects are transferred in parts of this size
+     */
+    S3TransferEngine(AmazonS3 s3, int threads, int retries, long threshold) {
+        numberOfThreads = Math.max(1, threads);
+        maxRetries = Math.max(0, retries);
+
+        fileExecutor = createExecutor("s3-transfer-", numberOfThreads);
+        final ExecutorService partExecutor = createExecutor("s3-part-", numberOfThreads);
+        transferManager = TransferManagerBuilder.standard()
+                .withS3Client(s3)
+                .withExecutorFactory(new ExecutorFactory() {
+                    @Override
+                    public ExecutorService newExecutor() {
+                        return partExecutor;
+                    }
+                })
+                .withShutDownThreadPools(false)
+                .withMultipartUploadThreshold(threshold)
+                .withMinimumUploadPartSize(threshold)
+                .withMultipartCopyThreshold(threshold)
+                .withMultipartCopyPartSize(threshold)
+                .build();
+    }
+
+    /**
+     * A single transfer task, executed by the pool
+     */
+    interface S3Task {
+        void execute() throws IOException;
+    }
+
+    /**
+     * Upload a local file, large files are uploaded in parts. If a part fails, the retry uploads only the parts that are missing. The multipart
+     * upload is aborted if the file cannot be uploaded, so no parts are left behind.
+     * 
+     * @param bucket target bucket
+     * @param key target key
+     * @param file file to upload
+     * @throws IOException
+     */
+    void upload(final String bucket, final String key, final Path file) throws IOException {
+        final String contentType = Files.probeContentType(file);
+        // the multipart upload of the last attempt, it is published synchronously after the upload was initiated
+        final AtomicReference<PersistableUpload> multipartUpload = new AtomicReference<>();
+        final S3ProgressListener listener = new S3SyncProgressListener() {
+            @Override
+            public void onPersistableTransfer(PersistableTransfer persistableTransfer) {
+                multipartUpload.set((PersistableUpload) persistableTransfer);
+            }
+        };
+        try {
+            retry("upload of " + key, new S3Task() {
+                @Override
+                public void execute() throws IOException {
+                    PersistableUpload unfinished = multipartUpload.get();
+                    if (unfinished != null) {
+                        waitFor(transferManager.resumeUpload(unfinished));
+                        return;
+                    }
+                    PutObjectRequest request = new PutObjectRequest(bucket, key, file.toFile());
+                    if (contentType != null) {
+                        ObjectMetadata om = new ObjectMetadata();
+                        om.setContentType(contentType);
+                        request.setMetadata(om);
+                    }
+                    waitFor(transferManager.upload(request, listener));
+                }
+            });
+        } catch (IOException e) {
+            PersistableUpload unfinished = multipartUpload.get();
+            if (unfinished != null) {
+                abortMultipartUpload(bucket, key, unfinished);
+            }
+            throw e;
+        }
+    }
+
+    private void abortMultipartUpload(String bucket, String key, PersistableUpload upload) {
+        try {
+            // the upload id is only accessible in the serialized state of the upload
+            JsonElement uploadId = new Gson().fromJson(upload.serialize(), JsonObject.class).get("multipartUploadId");
+            if (uploadId == null || uploadId.isJsonNull()) {
+                log.error("Cannot abort multipart upload of " + key + ", the upload id is unknown");
+                return;
+            }
+            transferManager.getAmazonS3Client().abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId.getAsString()));
+        } catch (AmazonClientException | JsonParseException e) {
+            log.error("Cannot abort multipart upload of " + key, e);
+        }
+    }
+
+    /**
+     * Download an object into a local file. Existing files are overwritten, missing parent folders are created.
+     * 
+     * @param bucket source bucket
+     * @param key source key
+     * @param file target file
+     * @throws IOException
+     */
+    void download(final String bucket, final String key, final Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        retry("download of " + key, new S3Task() {
+            @Override
+            public void execute() throws IOException {
+                waitFor(transferManager.download(new GetObjectRequest(bucket, key), file.toFile()));
+            }
+        });
+    }
+
+    /**
+     * Copy an object inside of s3, large objects are copied in parts
+     * 
+     * @param bucket bucket of source and target
+     * @param sourceKey key to copy
+     * @param destinationKey target key
+     * @throws IOException
+     */
+    void copy(final String bucket, final String sourceKey, final String destinationKey) throws IOException {
+        retry("copy of " + sourceKey, new S3Task() {
+            @Override
+            public void execute() throws IOException {
+                waitFor(transferManager.copy(new CopyObjectRequest(bucket, sourceKey, bucket, destinationKey)));
+            }
+        });
+    }
+
+    /**
+     * Start a new batch of transfers. Tasks added to the batch are executed in the shared pool, the number of pending tasks per batch is limited
+     * to keep memory usage low for large folders.
+     * 
+     * @return new batch
+     */
+    Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * Run the task and retry it with an increasing delay as long as the error is a transient one and the maximum number of retries is not
+     * reached
+     */
+    void retry(String description, S3Task task) throws IOException {
+        int attempt = 0;
+        while (true) {
+            try {
+                task.execute();
+                return;
+            } catch (AmazonClientException | IOException e) {
+                if (e instanceof InterruptedIOException || attempt >= maxRetries || !isRetryable(e)) {
+                    throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+                }
+                long delay = RETRY_BASE_DELAY << attempt;
+                attempt++;
+                log.warn("S3 " + description + " failed, retry " + attempt + " of " + maxRetries + " in " + delay + " ms: " + e.getMessage());
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e1) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to retry S3 " + description);
+                }
+            }
+        }
+    }
+
+    static boolean isRetryable(Throwable e) {
+        if (e instanceof AmazonServiceException) {
+            AmazonServiceException ase = (AmazonServiceException) e;
+            return ase.getStatusCode() >= 500 || ase.getStatusCode() == 429 || "SlowDown".equals(ase.getErrorCode())
+                    || "RequestTimeout".equals(ase.getErrorCode());
+        }
+        if (e instanceof AmazonClientException || e instanceof ExecutionException) {
+            // the transfer manager wraps the error of a failed part, decide by the original error
+            if (e.getCause() != null) {
+                return isRetryable(e.getCause());
+            }
+            return e instanceof AmazonClientException && ((AmazonClientException) e).isRetryable();
+        }
+        // errors of the local file system are not transient, only the connection to s3 is tried again
+        return e instanceof SocketException || e instanceof SocketTimeoutException || e instanceof ConnectTimeoutException
+                || e instanceof UnknownHostException || e instanceof SSLException || e instanceof NoHttpResponseException
+                || e instanceof ConnectionClosedException;
+    }
+
+    private static void waitFor(Transfer transfer) throws IOException {
+        try {
+            transfer.waitForCompletion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during S3 transfer: " + transfer.getDescription());
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor(final String prefix, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger counter = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * A group of transfers belonging to one directory operation. {@link #await()} waits for all of them and reports the first error.
+     */
+    class Batch {
+        private final Semaphore pending = new Semaphore(numberOfThreads * 2);
+        private final List<Future<?>> futures = new ArrayList<>();
+
+        /**
+         * Add a task to the batch. Blocks while too many tasks of this batch are waiting for execution.
+         * 
+         * @param description used in log messages
+         * @param task the transfer
+         * @throws IOException if the thread was interrupted
+         */
+        void submit(final String description, final S3Task task) throws IOException {
+            try {
+                pending.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new InterruptedIOException("Interrupted while submitting S3 " + description);
+            }
+            try {
+                futures.add(fileExecutor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        try {
+                            retry(description, task);
+                        } finally {
+                            pending.release();
+                        }
+                        return null;
+                    }
+                }));
+            } catch (RuntimeException e) {
+                pending.release();
+                throw e;
+            }
+        }
+
+        /**
+         * Wait until all transfers of this batch are finished. If one of them failed, the remaining ones are cancelled and the error is thrown.
+         * 
+         * @throws IOException
+         */
+        void await() throws IOException {
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new InterruptedIOException("Interrupted while waiting for S3 transfers");
+            } catch (ExecutionException e) {
+                cancel();
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause.getMessage(), cause);
+            }
+        }
+
+        private void cancel() {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+}
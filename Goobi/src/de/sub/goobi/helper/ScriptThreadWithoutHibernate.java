@@ -36,7 +36,10 @@ import org.goobi.production.plugin.interfaces.IDelayPlugin;
 import org.goobi.production.plugin.interfaces.IStepPlugin;
 import org.goobi.production.plugin.interfaces.IStepPluginVersion2;
 
-public class ScriptThreadWithoutHibernate extends Thread {
+/**
+ * Executes an automatic step. Instances are submitted to the {@link AutomaticStepExecutor}.
+ */
+public class ScriptThreadWithoutHibernate implements Runnable {
     HelperSchritte hs = new HelperSchritte();
     private Step step;
     public String rueckgabe = "";
@@ -45,11 +48,22 @@ public class ScriptThreadWithoutHibernate extends Thread {
 
     public ScriptThreadWithoutHibernate(Step step) {
         this.step = step;
-        setDaemon(true);
+    }
+
+    public Step getStep() {
+        return step;
     }
 
     @Override
     public void run() {
+        try {
+            runStep();
+        } catch (RuntimeException e) {
+            logger.error("An exception occurred while executing step with ID " + step.getId() + " for process with ID " + step.getProcessId(), e);
+        }
+    }
+
+    private void runStep() {
 
         boolean automatic = this.step.isTypAutomatisch();
         List<String> scriptPaths = step.getAllScriptPaths();
@@ -26,7 +26,6 @@
  */
 package de.sub.goobi.helper;
 
-import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -56,6 +55,11 @@ public class ShellScript {
     private final String command;
     private LinkedList<String> outputChannel, errorChannel;
     private Integer errorLevel;
+    private Integer timeout;
+    private long duration;
+    private boolean timedOut;
+    private long stdOutLineCount;
+    private long stdErrLineCount;
 
     /**
      * This returns the command.
@@ -102,6 +106,33 @@ public class ShellScript {
         return errorLevel;
     }
 
+    /**
+     * Provides the run time of the script in milliseconds.
+     * 
+     * @return the run time
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Check if the script was killed, because it did not finish in time.
+     * 
+     * @return true if the timeout was reached
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Set the maximal run time of the script. If no timeout is set, the general timeout from the configuration is used.
+     * 
+     * @param timeout timeout in seconds, 0 for no timeout
+     */
+    public void setTimeout(Integer timeout) {
+        this.timeout = timeout;
+    }
+
     /**
      * A shell script must be initialised with an existing file on the local file system.
      * 
@@ -151,31 +182,23 @@ public class ShellScript {
         if (args != null) {
             commandLine.addAll(args);
         }
-        Process process = null;
-        try {
-            String[] callSequence = commandLine.toArray(new String[commandLine.size()]);
-            ProcessBuilder pb = new ProcessBuilder(callSequence);
-            ConfigurationHelper config = ConfigurationHelper.getInstance();
-            if (config.useCustomS3()) {
-                pb.environment().put("CUSTOM_S3", "true");
-                pb.environment().put("S3_ENDPOINT_URL", config.getS3Endpoint());
-                pb.environment().put("S3_ACCESSKEYID", config.getS3AccessKeyID());
-                pb.environment().put("S3_SECRETACCESSKEY", config.getS3SecretAccessKey());
-            }
-            process = pb.start();
-
-            outputChannel = inputStreamToLinkedList(process.getInputStream());
-            errorChannel = inputStreamToLinkedList(process.getErrorStream());
-        } catch (IOException error) {
-            throw new IOException(error.getMessage());
-        } finally {
-            if (process != null) {
-                closeStream(process.getInputStream());
-                closeStream(process.getOutputStream());
-                closeStream(process.getErrorStream());
-            }
+        ConfigurationHelper config = ConfigurationHelper.getInstance();
+        int maxRunTime = timeout != null ? timeout : config.getScriptTimeout(null);
+        ProcessRunner runner = new ProcessRunner(commandLine, maxRunTime, config.getScriptOutputLines());
+        if (config.useCustomS3()) {
+            runner.addEnvironment("CUSTOM_S3", "true");
+            runner.addEnvironment("S3_ENDPOINT_URL", config.getS3Endpoint());
+            runner.addEnvironment("S3_ACCESSKEYID", config.getS3AccessKeyID());
+            runner.addEnvironment("S3_SECRETACCESSKEY", config.getS3SecretAccessKey());
         }
-        errorLevel = process.waitFor();
+        ProcessRunner.Result result = runner.run();
+        outputChannel = result.getStdOut();
+        errorChannel = result.getStdErr();
+        duration = result.getDuration();
+        timedOut = result.isTimedOut();
+        stdOutLineCount = result.getStdOutLineCount();
+        stdErrLineCount = result.getStdErrLineCount();
+        errorLevel = result.getExitCode();
         return errorLevel;
     }
 
@@ -202,24 +225,21 @@ public class ShellScript {
         return result;
     }
 
+    public static int callShell(List<String> parameter, Integer processID) throws IOException, InterruptedException {
+        return callShell(parameter, processID, null);
+    }
+
     /**
-     * This behaviour was already implemented. I can’t say if it’s necessary.
+     * Run a script and write its output, exit code and run time to the process log. Any output on standard error is treated as an error.
      * 
-     * @param inputStream A stream to close.
+     * @param parameter the script and its parameters
+     * @param processID the process to log to
+     * @param timeout maximal run time of the script in seconds, null to use the general timeout from the configuration
+     * @return the exit code of the script, 1 if it wrote to standard error or did not finish in time
+     * @throws IOException If an I/O error happens
+     * @throws InterruptedException In case the script was interrupted due to concurrency
      */
-    private static void closeStream(Closeable inputStream) {
-        if (inputStream == null) {
-            return;
-        }
-        try {
-            inputStream.close();
-        } catch (IOException e) {
-            logger.warn("Could not close stream.", e);
-            Helper.setFehlerMeldung("Could not close open stream.");
-        }
-    }
-
-    public static int callShell(List<String> parameter, Integer processID) throws IOException, InterruptedException {
+    public static int callShell(List<String> parameter, Integer processID, Integer timeout) throws IOException, InterruptedException {
         int err = ShellScript.ERRORLEVEL_ERROR;
 
         if (parameter.isEmpty()) {
@@ -237,24 +257,10 @@ public class ShellScript {
         }
         try {
             ShellScript s = new ShellScript(Paths.get(scriptname));
+            s.setTimeout(timeout);
 
             err = s.run(parameterWithoutCommand);
-            String msg = "";
-            for (String line : s.getStdOut()) {
-                msg += line + "\n";
-                //            Helper.setMeldung(line);
-            }
-            Helper.addMessageToProcessLog(processID, LogType.DEBUG, "Script '" + scriptname + "' was executed with result: " + msg);
-            Helper.setMeldung(msg);
-            if (s.getStdErr().size() > 0) {
-                err = ShellScript.ERRORLEVEL_ERROR;
-                String message = "";
-                for (String line : s.getStdErr()) {
-                    message += line + "\n";
-                }
-                Helper.addMessageToProcessLog(processID, LogType.ERROR, "Error occured while executing script '" + scriptname + "': " + message);
-                Helper.setFehlerMeldung(message);
-            }
+            err = s.logResult(scriptname, processID, err);
         } catch (FileNotFoundException e) {
             logger.error("FileNotFoundException in callShell2()", e);
             Helper.addMessageToProcessLog(processID, LogType.ERROR, "Exception occured while executing script '" + scriptname + "': " + e
@@ -308,27 +314,7 @@ public class ShellScript {
                 scriptingArgs.add(paramList);
             }
             err = s.run(scriptingArgs);
-            String msg = "";
-            for (String line : s.getStdOut()) {
-                msg += line + "\n";
-                //                Helper.setMeldung(line);
-            }
-            Helper.addMessageToProcessLog(processID, LogType.DEBUG, "Script '" + nonSpacesafeScriptingCommand + "' was executed with result: " + msg);
-            if (StringUtils.isNotBlank(msg)) {
-                Helper.setMeldung(msg);
-            }
-            if (s.getStdErr().size() > 0) {
-                err = ShellScript.ERRORLEVEL_ERROR;
-                String message = "";
-                for (String line : s.getStdErr()) {
-                    message += line + "\n";
-                }
-                Helper.addMessageToProcessLog(processID, LogType.ERROR, "Error occured while executing script '" + nonSpacesafeScriptingCommand
-                        + "': " + message);
-                if (StringUtils.isNotBlank(message)) {
-                    Helper.setFehlerMeldung(message);
-                }
-            }
+            err = s.logResult(nonSpacesafeScriptingCommand, processID, err);
         } catch (FileNotFoundException e) {
             logger.error("FileNotFoundException in callShell2()", e);
             Helper.addMessageToProcessLog(processID, LogType.ERROR, "Exception occured while executing script '" + nonSpacesafeScriptingCommand
@@ -337,4 +323,43 @@ public class ShellScript {
         }
         return err;
     }
-}
\ No newline at end of file
+
+    /**
+     * Write exit code, run time and output of the last run to the process log and to the messages of the user.
+     * 
+     * @return the error level, 1 if the script wrote to standard error or did not finish in time
+     */
+    private int logResult(String scriptname, Integer processID, int err) {
+        String msg = joinLines(outputChannel, stdOutLineCount);
+        Helper.addMessageToProcessLog(processID, LogType.DEBUG, "Script '" + scriptname + "' finished with exit code " + err + " after " + duration
+                + " ms. Result: " + msg);
+        if (StringUtils.isNotBlank(msg)) {
+            Helper.setMeldung(msg);
+        }
+        if (timedOut) {
+            err = ShellScript.ERRORLEVEL_ERROR;
+            Helper.addMessageToProcessLog(processID, LogType.ERROR, "Script '" + scriptname + "' did not finish in time and was killed after " + duration
+                    + " ms.");
+        }
+        if (!errorChannel.isEmpty()) {
+            err = ShellScript.ERRORLEVEL_ERROR;
+            String message = joinLines(errorChannel, stdErrLineCount);
+            Helper.addMessageToProcessLog(processID, LogType.ERROR, "Error occured while executing script '" + scriptname + "': " + message);
+            if (StringUtils.isNotBlank(message)) {
+                Helper.setFehlerMeldung(message);
+            }
+        }
+        return err;
+    }
+
+    private static String joinLines(List<String> lines, long totalLines) {
+        StringBuilder sb = new StringBuilder();
+        if (totalLines > lines.size()) {
+            sb.append("[last ").append(lines.size()).append(" of ").append(totalLines).append(" lines]\n");
+        }
+        for (String line : lines) {
+            sb.append(line).append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -58,7 +58,11 @@ public enum StepStatus {
     /**
      * deactivated = step is deactivated and gets activated maybe
      */
-    DEACTIVATED(5, "statusDeactivated", "red_10.gif", "red_15a.gif", "stepdeactivated", "status-deactivated");
+    DEACTIVATED(5, "statusDeactivated", "red_10.gif", "red_15a.gif", "stepdeactivated", "status-deactivated"),
+    /**
+     * queued = automatic step waits for a free thread
+     */
+    QUEUED(6, "statusQueued", "yellow_10.gif", "yellow_15a.gif", "stepqueued", "status-queued");
 
     private int value;
     private String title;
@@ -128,6 +132,46 @@ public enum StepStatus {
         return color;
     }
     
+    /**
+     * get the status of a step that is moved one status forward manually
+     * 
+     * @return the next status, done and deactivated steps keep their status
+     */
+    public StepStatus getNextStatus() {
+        switch (this) {
+            case LOCKED:
+                return OPEN;
+            case OPEN:
+            case QUEUED:
+                return INWORK;
+            case INWORK:
+            case ERROR:
+                return DONE;
+            default:
+                return this;
+        }
+    }
+
+    /**
+     * get the status of a step that is moved one status back manually
+     * 
+     * @return the previous status, locked and deactivated steps keep their status
+     */
+    public StepStatus getPreviousStatus() {
+        switch (this) {
+            case OPEN:
+                return LOCKED;
+            case INWORK:
+            case QUEUED:
+            case ERROR:
+                return OPEN;
+            case DONE:
+                return INWORK;
+            default:
+                return this;
+        }
+    }
+
     /**
      * retrieve StepStatus by integer value, neccessary for database handlings, where only integer is saved but not type safe
      * 
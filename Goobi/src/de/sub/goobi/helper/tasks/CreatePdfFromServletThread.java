@@ -76,6 +76,8 @@ public class CreatePdfFromServletThread extends LongRunningTask {
     public void initialize(Process inProzess) {
         super.initialize(inProzess);
         setTitle("Create PDF: " + inProzess.getTitel());
+        // the paths and urls are not stored in the queue
+        setRecoverable(false);
     }
 
     /**
@@ -0,0 +1,106 @@
+package de.sub.goobi.helper.tasks;
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *     		- https://goobi.io
+ * 			- https://www.intranda.com
+ * 			- https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ * Linking this library statically or dynamically with other modules is making a combined work based on this library. Thus, the terms and conditions
+ * of the GNU General Public License cover the whole combination. As a special exception, the copyright holders of this library give you permission to
+ * link this library with independent modules to produce an executable, regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that you also meet, for each linked independent module, the terms and
+ * conditions of the license of that module. An independent module is a module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.goobi.api.rest.ImageCache;
+import org.goobi.beans.Process;
+
+import de.sub.goobi.helper.StorageProvider;
+import de.sub.goobi.metadaten.ThumbnailGenerator;
+
+/**
+ * Creates the thumbnails of the media and master folder of a process, see {@link ThumbnailGenerator}
+ */
+public class CreateThumbnailsTask extends LongRunningTask {
+
+    @Override
+    public void initialize(Process inProzess) {
+        super.initialize(inProzess);
+        setTitle("Thumbnails: " + inProzess.getTitel());
+    }
+
+    @Override
+    public void run() {
+        setStatusProgress(1);
+        Process process = getProzess();
+        List<Path> imageFolders = new ArrayList<>();
+        Path thumbsFolder;
+        try {
+            thumbsFolder = Paths.get(process.getThumbsDirectory());
+            Path mediaFolder = Paths.get(process.getImagesTifDirectory(false));
+            Path masterFolder = Paths.get(process.getImagesOrigDirectory(false));
+            for (Path folder : new Path[] { mediaFolder, masterFolder }) {
+                if (!imageFolders.contains(folder) && StorageProvider.getInstance().isDirectory(folder)) {
+                    imageFolders.add(folder);
+                }
+            }
+        } catch (Exception e) {
+            logger.error(e);
+            setStatusMessage("Error while getting process data folder: " + e.getClass().getName() + " - " + e.getMessage());
+            setStatusProgress(-1);
+            return;
+        }
+        if (imageFolders.isEmpty()) {
+            setStatusMessage("No imagefolder found");
+            setStatusProgress(100);
+            return;
+        }
+
+        ThumbnailGenerator generator = ThumbnailGenerator.fromConfiguration();
+        int created = 0;
+        try {
+            for (int i = 0; i < imageFolders.size(); i++) {
+                if (isInterrupted()) {
+                    stopped();
+                    return;
+                }
+                setStatusMessage("Creating thumbnails for " + imageFolders.get(i).getFileName());
+                created += generator.createThumbnails(imageFolders.get(i), thumbsFolder);
+                setStatusProgress(99 * (i + 1) / imageFolders.size());
+            }
+        } catch (Exception e) {
+            logger.error("Error while creating thumbnails for process " + process.getTitel(), e);
+            setStatusMessage("Error while creating thumbnails: " + e.getMessage());
+            setStatusProgress(-1);
+            return;
+        } finally {
+            // the image server reads the new thumbnail folders and manifests
+            ImageCache.invalidateProcess(process.getId());
+        }
+        if (isInterrupted()) {
+            stopped();
+            return;
+        }
+        setStatusMessage("done, created thumbnails for " + created + " images");
+        setStatusProgress(100);
+    }
+}
@@ -25,6 +25,8 @@ package de.sub.goobi.helper.tasks;
  * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
  * exception statement from your version.
  */
+import java.util.Date;
+
 import org.apache.log4j.Logger;
 
 import org.goobi.beans.Process;
@@ -33,17 +35,51 @@ import de.sub.goobi.helper.Helper;
 public class LongRunningTask extends Thread {
     protected static final Logger logger = Logger.getLogger(LongRunningTask.class);
 
-    private int statusProgress = 0;
-    private String statusMessage = "";
+    private volatile int statusProgress = 0;
+    private volatile String statusMessage = "";
     private String longMessage = "";
     private String title = "MasterTask";
     private Process prozess;
     private boolean isSingleThread = true;
 
+    // state in the queue of the LongRunningTaskManager
+    private Integer id;
+    private int priority = 0;
+    private volatile LongRunningTaskStatus status = LongRunningTaskStatus.WAITING;
+    private Date creationDate;
+    private Date startDate;
+    private Date endDate;
+    private int attempts = 0;
+    private boolean recoverable = true;
+    private volatile boolean cancelRequested = false;
+    // worker thread of the LongRunningTaskManager, only set while the task is running
+    private final Object workerLock = new Object();
+    private Thread worker;
+
     public void initialize(Process inProzess) {
         this.prozess = inProzess;
     }
 
+    /**
+     * Create a new task of the given type for a process
+     * 
+     * @param taskType class name of the task
+     * @param process the process, may be null
+     * @return the initialized task
+     * @throws ReflectiveOperationException if the class cannot be instantiated
+     */
+    public static LongRunningTask createInstance(String taskType, Process process) throws ReflectiveOperationException {
+        Class<?> clazz = Class.forName(taskType);
+        if (!LongRunningTask.class.isAssignableFrom(clazz)) {
+            throw new ClassNotFoundException(taskType + " is not a LongRunningTask");
+        }
+        LongRunningTask task = (LongRunningTask) clazz.newInstance();
+        if (process != null) {
+            task.initialize(process);
+        }
+        return task;
+    }
+
     public void execute() {
         this.statusProgress = 1;
         this.statusMessage = "running";
@@ -53,7 +89,29 @@ public class LongRunningTask extends Thread {
 
     public void cancel() {
         this.statusMessage = "stopping";
-        this.interrupt();
+        this.cancelRequested = true;
+        // queued tasks are executed by a worker thread of the LongRunningTaskManager, not as thread of their own
+        synchronized (this.workerLock) {
+            if (this.worker != null) {
+                this.worker.interrupt();
+                return;
+            }
+        }
+        if (isAlive()) {
+            this.interrupt();
+        }
+    }
+
+    /**
+     * A task is interrupted, if it was cancelled, even if it runs in a worker thread of the {@link LongRunningTaskManager}
+     */
+    @Override
+    public boolean isInterrupted() {
+        return this.cancelRequested || super.isInterrupted();
+    }
+
+    public boolean isCancelRequested() {
+        return this.cancelRequested;
     }
 
     protected void stopped() {
@@ -146,6 +204,94 @@ public class LongRunningTask extends Thread {
         this.prozess = prozess;
     }
 
+    public Integer getTaskId() {
+        return this.id;
+    }
+
+    public void setTaskId(Integer id) {
+        this.id = id;
+    }
+
+    /**
+     * Tasks with a higher priority are started first, tasks with the same priority in the order they were added
+     */
+    public int getQueuePriority() {
+        return this.priority;
+    }
+
+    public void setQueuePriority(int priority) {
+        this.priority = priority;
+    }
+
+    public LongRunningTaskStatus getStatus() {
+        return this.status;
+    }
+
+    public void setStatus(LongRunningTaskStatus status) {
+        this.status = status;
+    }
+
+    public Date getCreationDate() {
+        return this.creationDate;
+    }
+
+    public void setCreationDate(Date creationDate) {
+        this.creationDate = creationDate;
+    }
+
+    public Date getStartDate() {
+        return this.startDate;
+    }
+
+    public void setStartDate(Date startDate) {
+        this.startDate = startDate;
+    }
+
+    public Date getEndDate() {
+        return this.endDate;
+    }
+
+    public void setEndDate(Date endDate) {
+        this.endDate = endDate;
+    }
+
+    public int getAttempts() {
+        return this.attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    /**
+     * Check if the task can be created again from its type and process, to resume it after a restart or to retry it
+     */
+    public boolean isRecoverable() {
+        return this.recoverable;
+    }
+
+    public void setRecoverable(boolean recoverable) {
+        this.recoverable = recoverable;
+    }
+
+    /**
+     * Set the worker thread when the task starts and remove it when the task finished, so that a cancel after the end does not interrupt the next
+     * task of the worker
+     */
+    void setWorker(Thread worker) {
+        synchronized (this.workerLock) {
+            this.worker = worker;
+        }
+    }
+
+    /**
+     * Restore progress and message of a task loaded from the database
+     */
+    public void restoreStatus(int statusProgress, String statusMessage) {
+        this.statusProgress = statusProgress;
+        this.statusMessage = statusMessage == null ? "" : statusMessage;
+    }
+
     public String getLongMessage() {
         return this.longMessage;
     }
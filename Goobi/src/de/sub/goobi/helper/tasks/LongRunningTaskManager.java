@@ -24,162 +24,488 @@ package de.sub.goobi.helper.tasks;
  * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
  * exception statement from your version.
  */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.log4j.Logger;
+
+import de.sub.goobi.config.ConfigurationHelper;
+import de.sub.goobi.persistence.managers.TaskQueueManager;
+
+/**
+ * Queue for long running tasks like swapping or the creation of pdf files. The queue is stored in the database, tasks that were waiting or
+ * running when the application stopped are waiting again after the next start.
+ * 
+ * The tasks are executed by a pool of worker threads. Like before, the queue starts paused and waiting tasks are started once it is resumed or
+ * a task is executed directly. Tasks with a higher priority are started first, moving a task up or down changes the priorities. The number of
+ * tasks of a type running at the same time can be limited in the configuration.
+ */
 public class LongRunningTaskManager {
-   static LinkedList<LongRunningTask> tasks = new LinkedList<LongRunningTask>();
-   private static LongRunningTaskManager lrtm;
-   static boolean running = false;
-   Timer autoRunTimer;
-
-   /**
-    * Singleton-Zugriff
-    * ================================================================*/
-   public static LongRunningTaskManager getInstance() {
-      if (lrtm == null) {
-         lrtm = new LongRunningTaskManager();
-      }
-      return lrtm;
-   }
-
-   /**
-    * privater Konstruktor
-    * ================================================================*/
-   private LongRunningTaskManager() {
-      /* --------------------------------
-       * Nachrichtensystem initialisieren
-       * --------------------------------*/
-      int delay = 5000;
-      int period = 2000;
-      this.autoRunTimer = new Timer();
-      this.autoRunTimer.scheduleAtFixedRate(new TimerTask() {
-         @Override
-		public void run() {
-            LongRunningTaskManager.check_autoRunningTasks();
-         }
-      }, delay, period);
-   }
-
-   /**
-    * Diese Methode überprüft, ob wir was neues in unserem Container haben.
-    * ================================================================
-    */
-   private static void check_autoRunningTasks() {
-      if (!running) {
-		return;
-	}
-      for (LongRunningTask lrt : tasks) {
-         if (lrt.getStatusProgress() > 0 && lrt.getStatusProgress() < 100) {
-			return;
-		}
-      }
-      if (tasks.size() > 0) {
-         for (LongRunningTask lrt : tasks) {
-            if (lrt.getStatusProgress() == 0) {
-               lrt.execute();
-               return;
-            }
-         }
-      }
-   }
-
-   /**
-    * alle Tasks der Warteschlange zurückgeben
-    * ================================================================*/
-   public LinkedList<LongRunningTask> getTasks() {
-      return tasks;
-   }
-
-   /**
-    * Reihenfolge eines Tasks nach oben
-    * ================================================================*/
-   public void moveTaskUp(LongRunningTask inTask) {
-      if (tasks.getFirst() == inTask) {
-		return;
-	}
-      int id = tasks.indexOf(inTask) - 1;
-      removeTask(inTask);
-      tasks.add(id, inTask);
-   }
-
-   /**
-    * Reihenfolge eines Tasks nach unten
-    * ================================================================*/
-   public void moveTaskDown(LongRunningTask inTask) {
-      if (tasks.getLast() == inTask) {
-		return;
-	}
-      int id = tasks.indexOf(inTask) + 1;
-      removeTask(inTask);
-      tasks.add(id, inTask);
-   }
-
-   /**
-    * LongRunningTask in Warteschlange einreihen
-    * ================================================================*/
-   public void addTask(LongRunningTask inTask) {
-      tasks.add(inTask);
-   }
-
-   /**
-    * LongRunningTask aus der Warteschlange entfernen
-    * ================================================================*/
-   public void removeTask(LongRunningTask inTask) {
-      tasks.remove(inTask);
-   }
-
-   /**
-    * LongRunningTask aus der Warteschlange entfernen
-    * ================================================================*/
-   public void replaceTask(LongRunningTask oldTask, LongRunningTask newTask) {
-      int id = tasks.indexOf(oldTask);
-      tasks.set(id, newTask);
-   }
-
-   /**
-    * LongRunningTask als Thread ausführen
-    * ================================================================*/
-   public void executeTask(LongRunningTask inTask) {
-      inTask.start();
-   }
-
-   /**
-    * LongRunningTask abbrechen
-    * ================================================================*/
-   public void cancelTask(LongRunningTask inTask) {
-      inTask.cancel();
-   }
-
-   /**
-    * abgeschlossene Tasks aus der Liste entfernen
-   * ================================================================*/
-   public void clearFinishedTasks() {
-      for (LongRunningTask lrt : new LinkedList<LongRunningTask>(tasks)) {
-         if (lrt.getStatusProgress() == 100) {
-			tasks.remove(lrt);
-		}
-      }
-   }
-   
-   /**
-    * alle Tasks aus der Liste entfernen
-   * ================================================================*/
-   public void clearAllTasks() {
-      for (LongRunningTask lrt : new LinkedList<LongRunningTask>(tasks)) {
-         if (lrt.getStatusProgress() == 100 || lrt.getStatusProgress() < 1) {
-			tasks.remove(lrt);
-		}
-      }
-   }
-
-   public boolean isRunning() {
-      return running;
-   }
-
-    public void setRunning(boolean running) {
-      LongRunningTaskManager.running = running;
-   }
+    private static final Logger logger = Logger.getLogger(LongRunningTaskManager.class);
+
+    // seconds between two updates of the progress of running tasks in the database
+    private static final long PROGRESS_INTERVAL = 5;
+
+    private static LongRunningTaskManager lrtm;
+
+    // all tasks in the order they were added, guarded by this
+    private final List<LongRunningTask> tasks = new ArrayList<>();
+
+    private final Map<String, Integer> runningPerType = new HashMap<>();
+
+    private final Map<String, Integer> typeLimits = new HashMap<>();
+
+    private final ThreadPoolExecutor executor;
+
+    private final ScheduledExecutorService progressWriter;
+
+    private final int numberOfThreads;
+
+    private int runningTasks = 0;
+
+    // the queue starts paused, waiting tasks are started on request or when the queue is resumed
+    private boolean running = false;
+
+    /**
+     * Singleton-Zugriff
+     * ================================================================*/
+    public static synchronized LongRunningTaskManager getInstance() {
+        if (lrtm == null) {
+            lrtm = new LongRunningTaskManager();
+            lrtm.recover();
+        }
+        return lrtm;
+    }
+
+    /**
+     * Stop the workers. Running tasks are interrupted and started again after the next start.
+     */
+    public static synchronized void shutdown() {
+        if (lrtm != null) {
+            lrtm.running = false;
+            lrtm.progressWriter.shutdownNow();
+            lrtm.executor.shutdownNow();
+            lrtm = null;
+        }
+    }
+
+    private LongRunningTaskManager() {
+        numberOfThreads = Math.max(1, ConfigurationHelper.getInstance().getLongRunningTaskThreads());
+        executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger counter = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "long-running-task-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        progressWriter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "long-running-task-progress");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        progressWriter.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                writeProgress();
+            }
+        }, PROGRESS_INTERVAL, PROGRESS_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Load the stored queue. Tasks that were running during the last shutdown are started again.
+     */
+    private void recover() {
+        List<LongRunningTask> stored = TaskQueueManager.getAllTasks();
+        for (LongRunningTask task : stored) {
+            if (task.getStatus() == LongRunningTaskStatus.RUNNING || task.getStatus() == LongRunningTaskStatus.WAITING) {
+                if (!task.isRecoverable()) {
+                    task.setStatus(LongRunningTaskStatus.ERROR);
+                    task.restoreStatus(-1, "Task was interrupted by a restart and cannot be resumed");
+                    task.setEndDate(new Date());
+                    TaskQueueManager.saveTask(task);
+                } else if (task.getStatus() == LongRunningTaskStatus.RUNNING) {
+                    logger.info("Long running task " + task.getTitle() + " was interrupted by the last shutdown and is waiting again");
+                    task.setStatus(LongRunningTaskStatus.WAITING);
+                    task.restoreStatus(0, "");
+                    task.setStartDate(null);
+                    TaskQueueManager.saveTask(task);
+                }
+            }
+        }
+        synchronized (this) {
+            tasks.addAll(stored);
+            dispatch();
+        }
+    }
+
+    /**
+     * alle Tasks der Warteschlange zurückgeben
+     * ================================================================*/
+    public synchronized LinkedList<LongRunningTask> getTasks() {
+        return new LinkedList<>(tasks);
+    }
+
+    /**
+     * Reihenfolge eines Tasks nach oben
+     * ================================================================*/
+    public void moveTaskUp(LongRunningTask inTask) {
+        moveTask(inTask, -1);
+    }
+
+    /**
+     * Reihenfolge eines Tasks nach unten
+     * ================================================================*/
+    public void moveTaskDown(LongRunningTask inTask) {
+        moveTask(inTask, 1);
+    }
+
+    private void moveTask(LongRunningTask inTask, int offset) {
+        List<LongRunningTask> changed;
+        synchronized (this) {
+            changed = moveTask(tasks, inTask, offset);
+        }
+        for (LongRunningTask task : changed) {
+            TaskQueueManager.saveTask(task);
+        }
+    }
+
+    /**
+     * Swap the task with its neighbour in the list. The priorities are numbered again in the order of the list, so the new order is used to start
+     * the tasks and is kept after a restart.
+     * 
+     * @param tasks all tasks in the order they are shown
+     * @param task the task to move
+     * @param offset -1 to move the task up, 1 to move it down
+     * @return the tasks whose priority changed
+     */
+    static List<LongRunningTask> moveTask(List<LongRunningTask> tasks, LongRunningTask task, int offset) {
+        List<LongRunningTask> changed = new ArrayList<>();
+        int index = tasks.indexOf(task);
+        int other = index + offset;
+        if (index == -1 || other < 0 || other >= tasks.size()) {
+            return changed;
+        }
+        Collections.swap(tasks, index, other);
+        for (int i = 0; i < tasks.size(); i++) {
+            LongRunningTask current = tasks.get(i);
+            if (current.getQueuePriority() != tasks.size() - i) {
+                current.setQueuePriority(tasks.size() - i);
+                changed.add(current);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * LongRunningTask in Warteschlange einreihen
+     * ================================================================*/
+    public void addTask(LongRunningTask inTask) {
+        inTask.setStatus(LongRunningTaskStatus.WAITING);
+        inTask.setCreationDate(new Date());
+        TaskQueueManager.saveTask(inTask);
+        synchronized (this) {
+            tasks.add(inTask);
+            dispatch();
+        }
+    }
+
+    /**
+     * LongRunningTask aus der Warteschlange entfernen, laufende Tasks werden nicht entfernt
+     * ================================================================*/
+    public void removeTask(LongRunningTask inTask) {
+        synchronized (this) {
+            if (inTask.getStatus() == LongRunningTaskStatus.RUNNING) {
+                return;
+            }
+            tasks.remove(inTask);
+        }
+        TaskQueueManager.deleteTask(inTask);
+    }
+
+    /**
+     * LongRunningTask durch einen neuen ersetzen, der neue Task wartet auf seine Ausführung
+     * ================================================================*/
+    public void replaceTask(LongRunningTask oldTask, LongRunningTask newTask) {
+        synchronized (this) {
+            int index = tasks.indexOf(oldTask);
+            if (index == -1 || oldTask.getStatus() == LongRunningTaskStatus.RUNNING) {
+                return;
+            }
+            newTask.setTaskId(oldTask.getTaskId());
+            newTask.setQueuePriority(oldTask.getQueuePriority());
+            newTask.setCreationDate(oldTask.getCreationDate());
+            newTask.setAttempts(oldTask.getAttempts());
+            newTask.setStatus(LongRunningTaskStatus.WAITING);
+            tasks.set(index, newTask);
+        }
+        TaskQueueManager.saveTask(newTask);
+        synchronized (this) {
+            dispatch();
+        }
+    }
+
+    /**
+     * LongRunningTask sofort ausführen, auch wenn die Warteschlange angehalten ist
+     * ================================================================*/
+    public void executeTask(LongRunningTask inTask) {
+        boolean known;
+        synchronized (this) {
+            known = tasks.contains(inTask);
+        }
+        if (!known) {
+            addTask(inTask);
+        }
+        synchronized (this) {
+            if (inTask.getStatus() == LongRunningTaskStatus.WAITING && tasks.contains(inTask) && !executor.isShutdown()) {
+                start(inTask);
+            }
+        }
+    }
+
+    /**
+     * Execute a failed or cancelled task again. A new instance of the task is created for the same process.
+     * 
+     * @param inTask the task to repeat
+     * @return true if the task was queued again
+     */
+    public boolean retryTask(LongRunningTask inTask) {
+        if (!inTask.getStatus().isFinished() || !inTask.isRecoverable()) {
+            return false;
+        }
+        LongRunningTask newTask;
+        try {
+            newTask = LongRunningTask.createInstance(inTask.getClass().getName(), inTask.getProzess());
+        } catch (ReflectiveOperationException e) {
+            logger.error("Cannot create task of type " + inTask.getClass().getName(), e);
+            return false;
+        }
+        synchronized (this) {
+            inTask.setAttempts(inTask.getAttempts() + 1);
+        }
+        replaceTask(inTask, newTask);
+        return true;
+    }
+
+    /**
+     * LongRunningTask abbrechen
+     * ================================================================*/
+    public void cancelTask(LongRunningTask inTask) {
+        boolean waiting;
+        synchronized (this) {
+            waiting = inTask.getStatus() == LongRunningTaskStatus.WAITING;
+            if (waiting) {
+                inTask.setStatus(LongRunningTaskStatus.CANCELLED);
+                inTask.setStatusMessage("stopped");
+                inTask.setEndDate(new Date());
+            } else if (inTask.getStatus() == LongRunningTaskStatus.RUNNING) {
+                inTask.cancel();
+            }
+        }
+        if (waiting) {
+            TaskQueueManager.saveTask(inTask);
+        }
+    }
+
+    /**
+     * abgeschlossene Tasks aus der Liste entfernen
+     * ================================================================*/
+    public void clearFinishedTasks() {
+        removeTasks(false);
+    }
+
+    /**
+     * alle nicht laufenden Tasks aus der Liste entfernen
+     * ================================================================*/
+    public void clearAllTasks() {
+        removeTasks(true);
+    }
+
+    private void removeTasks(boolean includeWaiting) {
+        List<LongRunningTask> removed = new ArrayList<>();
+        synchronized (this) {
+            for (LongRunningTask lrt : tasks) {
+                if (lrt.getStatus() == LongRunningTaskStatus.DONE || (includeWaiting && lrt.getStatus() != LongRunningTaskStatus.RUNNING)) {
+                    removed.add(lrt);
+                }
+            }
+            tasks.removeAll(removed);
+        }
+        for (LongRunningTask lrt : removed) {
+            TaskQueueManager.deleteTask(lrt);
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Pause or resume the start of waiting tasks. Running tasks are not affected.
+     */
+    public synchronized void setRunning(boolean running) {
+        this.running = running;
+        dispatch();
+    }
+
+    /**
+     * Start waiting tasks as long as workers are free
+     */
+    private void dispatch() {
+        if (!running || executor.isShutdown()) {
+            return;
+        }
+        while (runningTasks < numberOfThreads) {
+            LongRunningTask next = selectNext(tasks, runningPerType, typeLimits);
+            if (next == null) {
+                return;
+            }
+            start(next);
+        }
+    }
 
+    private void start(LongRunningTask task) {
+        String type = getType(task);
+        task.setStatus(LongRunningTaskStatus.RUNNING);
+        runningTasks++;
+        runningPerType.put(type, getCount(runningPerType, type) + 1);
+        if (runningTasks > executor.getMaximumPoolSize()) {
+            // a task that was started on request while all workers are busy gets a worker of its own
+            executor.setMaximumPoolSize(runningTasks);
+            executor.setCorePoolSize(runningTasks);
+        }
+        executor.execute(new Worker(task));
+    }
+
+    /**
+     * Find the waiting task with the highest priority whose type did not reach its limit
+     * 
+     * @param tasks all tasks in the order they were added
+     * @param runningPerType number of running tasks for each type
+     * @param typeLimits limit for each type, missing types are read from the configuration
+     * @return the task to start or null
+     */
+    static LongRunningTask selectNext(List<LongRunningTask> tasks, Map<String, Integer> runningPerType, Map<String, Integer> typeLimits) {
+        LongRunningTask next = null;
+        for (LongRunningTask task : tasks) {
+            if (task.getStatus() != LongRunningTaskStatus.WAITING || (next != null && task.getQueuePriority() <= next.getQueuePriority())) {
+                continue;
+            }
+            String type = getType(task);
+            Integer limit = typeLimits.get(type);
+            if (limit == null) {
+                limit = ConfigurationHelper.getInstance().getLongRunningTaskLimit(type);
+                typeLimits.put(type, limit);
+            }
+            if (limit > 0 && getCount(runningPerType, type) >= limit) {
+                continue;
+            }
+            next = task;
+        }
+        return next;
+    }
+
+    private static String getType(LongRunningTask task) {
+        return task.getClass().getSimpleName();
+    }
+
+    private static int getCount(Map<String, Integer> counts, String type) {
+        Integer count = counts.get(type);
+        return count == null ? 0 : count;
+    }
+
+    private void finished(LongRunningTask task, boolean failed) {
+        if (executor.isShutdown() && task.getStatusProgress() != 100) {
+            // interrupted by the shutdown, the task stays marked as running and is started again after the next start
+            return;
+        }
+        synchronized (this) {
+            if (task.getStatusProgress() == 100) {
+                task.setStatus(LongRunningTaskStatus.DONE);
+            } else if (task.isCancelRequested()) {
+                task.setStatus(LongRunningTaskStatus.CANCELLED);
+            } else if (failed || task.getStatusProgress() < 0) {
+                task.setStatus(LongRunningTaskStatus.ERROR);
+            } else {
+                task.setStatus(LongRunningTaskStatus.DONE);
+            }
+            task.setEndDate(new Date());
+        }
+        TaskQueueManager.saveTask(task);
+        synchronized (this) {
+            runningTasks--;
+            String type = getType(task);
+            runningPerType.put(type, getCount(runningPerType, type) - 1);
+            int poolSize = Math.max(numberOfThreads, runningTasks);
+            if (executor.getCorePoolSize() > poolSize) {
+                executor.setCorePoolSize(poolSize);
+                executor.setMaximumPoolSize(poolSize);
+            }
+            dispatch();
+        }
+    }
+
+    /**
+     * Store the progress of all running tasks, so it is visible in the database as well
+     */
+    private void writeProgress() {
+        List<LongRunningTask> runningList = new ArrayList<>();
+        synchronized (this) {
+            for (LongRunningTask task : tasks) {
+                if (task.getStatus() == LongRunningTaskStatus.RUNNING) {
+                    runningList.add(task);
+                }
+            }
+        }
+        for (LongRunningTask task : runningList) {
+            TaskQueueManager.saveTask(task);
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final LongRunningTask task;
+
+        private Worker(LongRunningTask task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            boolean failed = false;
+            task.setWorker(Thread.currentThread());
+            task.setStartDate(new Date());
+            TaskQueueManager.saveTask(task);
+            try {
+                task.execute();
+            } catch (RuntimeException e) {
+                logger.error("Error while executing long running task " + task.getTitle(), e);
+                task.setStatusMessage("error: " + e.getMessage());
+                failed = true;
+            } finally {
+                task.setWorker(null);
+                // don't leave the interrupt of a cancelled task on the worker thread
+                Thread.interrupted();
+                finished(task, failed);
+            }
+        }
+    }
 }
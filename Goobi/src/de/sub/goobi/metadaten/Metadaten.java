@@ -1125,6 +1125,9 @@ public class Metadaten {
         try {
             List<String> imageNames = imagehelper.getImageFiles(myProzess, currentTifFolder);
             if (imageNames != null && !imageNames.isEmpty()) {
+                if (ConfigurationHelper.getInstance().isThumbnailsCreateOnDemand()) {
+                    imagehelper.createThumbnailsIfOutdated(myProzess, currentTifFolder);
+                }
                 imageFolderName = myProzess.getImagesDirectory() + currentTifFolder + File.separator;
                 imageFolderName = imageFolderName.replaceAll("\\\\", "/");
                 int order = 1;
@@ -4476,6 +4479,9 @@ public class Metadaten {
         try {
             List<String> imageNames = imagehelper.getImageFiles(myProzess, currentTifFolder);
             if (imageNames != null && !imageNames.isEmpty()) {
+                if (ConfigurationHelper.getInstance().isThumbnailsCreateOnDemand()) {
+                    imagehelper.createThumbnailsIfOutdated(myProzess, currentTifFolder);
+                }
                 imageFolderName = myProzess.getImagesDirectory() + currentTifFolder + File.separator;
                 int order = 1;
                 for (String imagename : imageNames) {
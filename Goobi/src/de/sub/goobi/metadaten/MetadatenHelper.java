@@ -646,9 +646,10 @@ public class MetadatenHelper implements Comparator<Object> {
         /*
          * -------------------------------- zuerst mal alle addierbaren Metadatentypen ermitteln --------------------------------
          */
-        List<MetadataType> types = myDocStruct.getPossibleMetadataTypes();
-        if (types == null) {
-            types = new ArrayList<>();
+        // the list is changed below, so copy it, the types belong to the shared ruleset
+        List<MetadataType> types = new ArrayList<>();
+        if (myDocStruct.getPossibleMetadataTypes() != null) {
+            types.addAll(myDocStruct.getPossibleMetadataTypes());
         }
         if (inRoleName != null && inRoleName.length() > 0) {
             boolean addRole = true;
@@ -621,6 +621,21 @@ public class MetadatenImagesHelper {
         }
     }
 
+    /**
+     * Queue the creation of the thumbnails of a process, if they are missing for the given image folder or the folder was changed after they were
+     * created. The thumbnails are used by the image server instead of scaling the original images.
+     * 
+     * @param process the process
+     * @param directory name of the image folder within the images folder of the process
+     */
+    public void createThumbnailsIfOutdated(Process process, String directory) throws IOException, InterruptedException, SwapException,
+    DAOException {
+        Path imageFolder = Paths.get(process.getImagesDirectory(), directory);
+        if (ThumbnailGenerator.isOutdated(imageFolder, Paths.get(process.getThumbsDirectory()))) {
+            ThumbnailGenerator.requestThumbnails(process);
+        }
+    }
+
     // Add a method to validate the image files
 
     /**
@@ -0,0 +1,341 @@
+package de.sub.goobi.metadaten;
+
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *     		- https://goobi.io
+ * 			- https://www.intranda.com
+ * 			- https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ * Linking this library statically or dynamically with other modules is making a combined work based on this library. Thus, the terms and conditions
+ * of the GNU General Public License cover the whole combination. As a special exception, the copyright holders of this library give you permission to
+ * link this library with independent modules to produce an executable, regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that you also meet, for each linked independent module, the terms and
+ * conditions of the license of that module. An independent module is a module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.commons.io.FilenameUtils;
+import org.goobi.beans.Process;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import de.sub.goobi.config.ConfigurationHelper;
+import de.sub.goobi.helper.NIOFileUtils;
+import de.sub.goobi.helper.StorageProvider;
+import de.sub.goobi.helper.tasks.CreateThumbnailsTask;
+import de.sub.goobi.helper.tasks.LongRunningTask;
+import de.sub.goobi.helper.tasks.LongRunningTaskManager;
+import de.sub.goobi.helper.tasks.LongRunningTaskStatus;
+import de.sub.goobi.persistence.managers.ProcessManager;
+import lombok.extern.log4j.Log4j;
+
+/**
+ * Creates JPEG thumbnails of an image folder in several sizes. The thumbnails of the folder {@code images/<name>} are written to
+ * {@code thumbs/<name>_<size>}, the size is the width of the thumbnails. Only images which were changed since the last run are scaled again, the
+ * state is kept in a {@link ThumbnailManifest}.
+ * 
+ * Each image is decoded only once with a reduced resolution and then scaled down from the largest to the smallest thumbnail.
+ */
+@Log4j
+public class ThumbnailGenerator {
+
+    public static final String THUMBNAIL_SUFFIX = ".jpg";
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    // write the manifest after this number of images, so that a cancelled run does not start from the beginning
+    private static final int MANIFEST_SAVE_INTERVAL = 50;
+
+    // processes for which thumbnails were requested recently, so that image requests do not queue the same task again and again
+    private static final Cache<Integer, Boolean> REQUESTED_PROCESSES = CacheBuilder.newBuilder().expireAfterWrite(10, TimeUnit.MINUTES).build();
+
+    // sorted from the largest to the smallest size
+    private final List<Integer> sizes;
+
+    public ThumbnailGenerator(List<Integer> sizes) {
+        List<Integer> sorted = new ArrayList<>(new TreeSet<>(sizes));
+        Collections.reverse(sorted);
+        this.sizes = sorted;
+    }
+
+    public static Path getManifestPath(Path thumbsFolder, String imageFolderName) {
+        return thumbsFolder.resolve(imageFolderName + ThumbnailManifest.MANIFEST_SUFFIX);
+    }
+
+    public static Path getThumbnailFolder(Path thumbsFolder, String imageFolderName, int size) {
+        return thumbsFolder.resolve(imageFolderName + "_" + size);
+    }
+
+    public static String getThumbnailName(String imageName) {
+        return FilenameUtils.getBaseName(imageName) + THUMBNAIL_SUFFIX;
+    }
+
+    /**
+     * Create the missing and outdated thumbnails of an image folder and remove the thumbnails of deleted images. The run stops, if the current
+     * thread is interrupted.
+     * 
+     * @param imageFolder the folder containing the images
+     * @param thumbsFolder the thumbs folder of the process
+     * @return number of images for which thumbnails were created
+     * @throws IOException if the manifest cannot be written
+     */
+    public int createThumbnails(Path imageFolder, Path thumbsFolder) throws IOException {
+        String folderName = imageFolder.getFileName().toString();
+        Path manifestPath = getManifestPath(thumbsFolder, folderName);
+        ThumbnailManifest manifest = ThumbnailManifest.read(manifestPath);
+        if (manifest == null || !new TreeSet<>(manifest.getSizes()).equals(new TreeSet<>(sizes))) {
+            // other sizes are configured, all thumbnails are created again
+            manifest = new ThumbnailManifest(sizes);
+        }
+        for (int size : sizes) {
+            StorageProvider.getInstance().createDirectories(getThumbnailFolder(thumbsFolder, folderName, size));
+        }
+
+        List<Path> images = StorageProvider.getInstance().listFiles(imageFolder.toString(), NIOFileUtils.imageNameFilter);
+        Set<String> imageNames = new HashSet<>();
+        int created = 0;
+        int unsaved = 0;
+        for (Path image : images) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            String imageName = image.getFileName().toString();
+            imageNames.add(imageName);
+            long lastModified = StorageProvider.getInstance().getLastModifiedDate(image);
+            if (manifest.isFresh(imageName, lastModified)) {
+                continue;
+            }
+            try {
+                int width = createThumbnails(image, thumbsFolder, folderName);
+                manifest.put(imageName, lastModified, width);
+                created++;
+            } catch (IOException | RuntimeException e) {
+                log.error("Cannot create thumbnails for " + image, e);
+                manifest.remove(imageName);
+            }
+            if (++unsaved >= MANIFEST_SAVE_INTERVAL) {
+                manifest.write(manifestPath);
+                unsaved = 0;
+            }
+        }
+        if (!Thread.currentThread().isInterrupted()) {
+            for (String imageName : manifest.getFilenames()) {
+                if (!imageNames.contains(imageName)) {
+                    deleteThumbnails(thumbsFolder, folderName, imageName);
+                    manifest.remove(imageName);
+                }
+            }
+        }
+        manifest.write(manifestPath);
+        return created;
+    }
+
+    /**
+     * Create the thumbnails of a single image
+     * 
+     * @return the width of the image
+     */
+    private int createThumbnails(Path image, Path thumbsFolder, String folderName) throws IOException {
+        try (InputStream in = StorageProvider.getInstance().newInputStream(image); ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                throw new IOException("No image reader found for " + image);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int largestSize = 0;
+                for (int size : sizes) {
+                    if (size < width) {
+                        largestSize = Math.max(largestSize, size);
+                    }
+                }
+                if (largestSize == 0) {
+                    // the image is not larger than any thumbnail, it is delivered directly
+                    return width;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                // decode only every n-th pixel, the result is still at least twice as large as the largest thumbnail
+                int subsampling = Math.max(1, width / (2 * largestSize));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage current = reader.read(0, param);
+                for (int size : sizes) {
+                    if (size < width) {
+                        current = scale(current, size, Math.max(1, (int) Math.round(height * size / (double) width)));
+                        writeJpeg(current, getThumbnailFolder(thumbsFolder, folderName, size).resolve(getThumbnailName(image.getFileName()
+                                .toString())));
+                    }
+                }
+                return width;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scale an image down to the given size. Large reductions are done in several steps, which gives a better quality than a single bilinear
+     * step.
+     * 
+     * @param source the image to scale
+     * @param width target width
+     * @param height target height
+     * @return the scaled image
+     */
+    public static BufferedImage scale(BufferedImage source, int width, int height) {
+        int type = source.getType() == BufferedImage.TYPE_BYTE_GRAY ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage scaled = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = scaled;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(JPEG_QUALITY);
+        try (OutputStream out = StorageProvider.getInstance().newOutputStream(target); ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private void deleteThumbnails(Path thumbsFolder, String folderName, String imageName) {
+        for (int size : sizes) {
+            Path thumbnail = getThumbnailFolder(thumbsFolder, folderName, size).resolve(getThumbnailName(imageName));
+            try {
+                if (StorageProvider.getInstance().isFileExists(thumbnail)) {
+                    StorageProvider.getInstance().deleteFile(thumbnail);
+                }
+            } catch (IOException e) {
+                log.error("Cannot delete thumbnail " + thumbnail, e);
+            }
+        }
+    }
+
+    /**
+     * Check if the thumbnails of an image folder need to be updated. Only the modification dates of the folder and the manifest are compared, so
+     * images which were replaced under the same name are not detected here.
+     * 
+     * @param imageFolder the folder containing the images
+     * @param thumbsFolder the thumbs folder of the process
+     * @return true, if there is no manifest or the folder was changed after the manifest was written
+     */
+    public static boolean isOutdated(Path imageFolder, Path thumbsFolder) {
+        Path manifestPath = getManifestPath(thumbsFolder, imageFolder.getFileName().toString());
+        try {
+            return !StorageProvider.getInstance().isFileExists(manifestPath) || StorageProvider.getInstance().getLastModifiedDate(
+                    imageFolder) > StorageProvider.getInstance().getLastModifiedDate(manifestPath);
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Queue the creation of the thumbnails of a process in the {@link LongRunningTaskManager}, unless a task for this process is already waiting
+     * 
+     * @param process the process
+     */
+    public static void queueThumbnailTask(Process process) {
+        LongRunningTaskManager manager = LongRunningTaskManager.getInstance();
+        for (LongRunningTask task : manager.getTasks()) {
+            if (task instanceof CreateThumbnailsTask && task.getStatus() == LongRunningTaskStatus.WAITING && task.getProzess() != null && process
+                    .getId().equals(task.getProzess().getId())) {
+                return;
+            }
+        }
+        CreateThumbnailsTask task = new CreateThumbnailsTask();
+        task.initialize(process);
+        manager.addTask(task);
+    }
+
+    /**
+     * Request the thumbnails of a process, because they are missing or outdated. The task is queued only once within ten minutes for each process,
+     * so that it is not queued again for every image.
+     * 
+     * @param process the process
+     */
+    public static void requestThumbnails(Process process) {
+        if (REQUESTED_PROCESSES.asMap().putIfAbsent(process.getId(), Boolean.TRUE) == null) {
+            queueThumbnailTask(process);
+        }
+    }
+
+    /**
+     * Request the thumbnails of a process, the process is only loaded, if it was not requested within the last ten minutes
+     * 
+     * @param processId id of the process
+     */
+    public static void requestThumbnails(int processId) {
+        if (REQUESTED_PROCESSES.asMap().putIfAbsent(processId, Boolean.TRUE) == null) {
+            Process process = ProcessManager.getProcessById(processId);
+            if (process != null) {
+                queueThumbnailTask(process);
+            }
+        }
+    }
+
+    /**
+     * Create a generator for the sizes configured in ThumbnailSize
+     */
+    public static ThumbnailGenerator fromConfiguration() {
+        return new ThumbnailGenerator(ConfigurationHelper.getInstance().getThumbnailSizes());
+    }
+}
@@ -0,0 +1,173 @@
+package de.sub.goobi.metadaten;
+
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *     		- https://goobi.io
+ * 			- https://www.intranda.com
+ * 			- https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ * Linking this library statically or dynamically with other modules is making a combined work based on this library. Thus, the terms and conditions
+ * of the GNU General Public License cover the whole combination. As a special exception, the copyright holders of this library give you permission to
+ * link this library with independent modules to produce an executable, regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that you also meet, for each linked independent module, the terms and
+ * conditions of the license of that module. An independent module is a module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.lang.StringUtils;
+
+import de.sub.goobi.helper.StorageProvider;
+import lombok.extern.log4j.Log4j;
+
+/**
+ * List of the thumbnails created for an image folder. For each image the modification date of the image and its width at the time the thumbnails
+ * were created are stored. A thumbnail is fresh as long as the image was not changed since then. The manifest is stored next to the thumbnail
+ * folders as {@code thumbs/<image folder>.manifest}.
+ */
+@Log4j
+public class ThumbnailManifest {
+
+    public static final String MANIFEST_SUFFIX = ".manifest";
+
+    private static final String SIZES_KEY = "sizes";
+    private static final String IMAGE_PREFIX = "image.";
+
+    private final List<Integer> sizes = new ArrayList<>();
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    public ThumbnailManifest(List<Integer> sizes) {
+        this.sizes.addAll(new TreeSet<>(sizes));
+    }
+
+    /**
+     * Read a manifest from a file
+     * 
+     * @param manifestFile the file to read
+     * @return the manifest or null, if the file does not exist or cannot be read
+     */
+    public static ThumbnailManifest read(Path manifestFile) {
+        if (!StorageProvider.getInstance().isFileExists(manifestFile)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = StorageProvider.getInstance().newInputStream(manifestFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            log.error("Cannot read thumbnail manifest " + manifestFile, e);
+            return null;
+        }
+        List<Integer> sizes = new ArrayList<>();
+        for (String size : StringUtils.split(properties.getProperty(SIZES_KEY, ""), ',')) {
+            sizes.add(Integer.parseInt(size.trim()));
+        }
+        ThumbnailManifest manifest = new ThumbnailManifest(sizes);
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(IMAGE_PREFIX)) {
+                String[] values = StringUtils.split(properties.getProperty(key), ',');
+                if (values.length == 2) {
+                    manifest.entries.put(key.substring(IMAGE_PREFIX.length()), new Entry(Long.parseLong(values[0]), Integer.parseInt(values[1])));
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Write the manifest. The file is replaced only after it was written completely, so readers never see a partial manifest.
+     * 
+     * @param manifestFile the file to write
+     * @throws IOException
+     */
+    public synchronized void write(Path manifestFile) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(SIZES_KEY, StringUtils.join(sizes, ','));
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            properties.setProperty(IMAGE_PREFIX + entry.getKey(), entry.getValue().lastModified + "," + entry.getValue().width);
+        }
+        Path tempFile = manifestFile.resolveSibling(manifestFile.getFileName().toString() + ".tmp");
+        try (OutputStream out = StorageProvider.getInstance().newOutputStream(tempFile)) {
+            properties.store(out, null);
+        }
+        if (StorageProvider.getInstance().isFileExists(manifestFile)) {
+            StorageProvider.getInstance().deleteFile(manifestFile);
+        }
+        StorageProvider.getInstance().move(tempFile, manifestFile);
+    }
+
+    public List<Integer> getSizes() {
+        return Collections.unmodifiableList(sizes);
+    }
+
+    /**
+     * Check if the thumbnails of an image were created from its current version
+     * 
+     * @param filename name of the image
+     * @param lastModified current modification date of the image
+     * @return true, if the thumbnails are up to date
+     */
+    public synchronized boolean isFresh(String filename, long lastModified) {
+        Entry entry = entries.get(filename);
+        return entry != null && entry.lastModified == lastModified;
+    }
+
+    /**
+     * Check if a thumbnail of the given size was created for an image. Images which are not larger than the size have no thumbnail in this size.
+     * 
+     * @param filename name of the image
+     * @param size size of the thumbnail folder
+     * @return true, if the thumbnail exists
+     */
+    public synchronized boolean hasThumbnail(String filename, int size) {
+        Entry entry = entries.get(filename);
+        return entry != null && sizes.contains(size) && size < entry.width;
+    }
+
+    public synchronized void put(String filename, long lastModified, int width) {
+        entries.put(filename, new Entry(lastModified, width));
+    }
+
+    public synchronized void remove(String filename) {
+        entries.remove(filename);
+    }
+
+    public synchronized Set<String> getFilenames() {
+        return new TreeSet<>(entries.keySet());
+    }
+
+    private static class Entry {
+        private final long lastModified;
+        private final int width;
+
+        private Entry(long lastModified, int width) {
+            this.lastModified = lastModified;
+            this.width = width;
+        }
+    }
+}
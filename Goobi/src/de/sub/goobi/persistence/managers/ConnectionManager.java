@@ -29,16 +29,33 @@ package de.sub.goobi.persistence.managers;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.sql.DataSource;
 
-import org.apache.commons.pool2.ObjectPool;
+import org.apache.commons.dbcp2.ConnectionFactory;
+import org.apache.commons.dbcp2.DataSourceConnectionFactory;
+import org.apache.commons.dbcp2.DriverManagerConnectionFactory;
+import org.apache.commons.dbcp2.PoolableConnection;
+import org.apache.commons.dbcp2.PoolableConnectionFactory;
+import org.apache.commons.dbcp2.PoolingDataSource;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.apache.log4j.Logger;
 
+import de.sub.goobi.config.ConfigurationHelper;
+
 /**
+ * Pool of database connections. The connections are created by the data source registered as java:comp/env/goobi or, if DatabaseUrl is
+ * configured, directly by the jdbc driver.
+ * 
+ * Idle connections are validated in the background, borrowing a connection does not need a round trip to the database. All statements get the
+ * configured query timeout and their execution time is recorded in {@link QueryStatistics}.
  * 
  * @author Robert Sehr
  * 
@@ -47,58 +64,134 @@ public class ConnectionManager {
 
     private static final Logger logger = Logger.getLogger(ConnectionManager.class);
 
+    private static final int VALIDATION_TIMEOUT = 5;
+
     private DataSource ds = null;
-    @SuppressWarnings("rawtypes")
-    private static GenericObjectPool _pool = null;
 
-    /**
-     * @param config configuration from an XML file.
-     */
+    private GenericObjectPool<PoolableConnection> pool = null;
+
+    private final int queryTimeout;
+
     public ConnectionManager() {
+        ConfigurationHelper config = ConfigurationHelper.getInstance();
+        queryTimeout = config.getDatabaseQueryTimeout();
         try {
-            //			connectToDB(config);
-            connectToDB();
+            ConnectionFactory factory = createConnectionFactory(config);
+            if (factory != null) {
+                createPool(factory, config.getDatabasePoolMaxTotal(), config.getDatabasePoolMaxIdle(), config.getDatabasePoolMaxWait(), config
+                        .getDatabasePoolValidationInterval());
+            }
         } catch (Exception e) {
             logger.error("Failed to construct ConnectionManager", e);
         }
     }
 
     /**
-     * destructor
+     * Create a pool for the connections of the given factory
+     * 
+     * @param factory creates the physical connections
+     * @param maxTotal maximal number of connections
+     * @param maxIdle maximal number of idle connections kept in the pool
+     * @param maxWait time in milliseconds to wait for a free connection
+     * @param validationInterval time in milliseconds between the checks of idle connections
+     * @param queryTimeout timeout of each statement in seconds, 0 for no timeout
      */
-    @Override
-    protected void finalize() {
-        if (logger.isTraceEnabled()) {
-            logger.trace("Finalizing ConnectionManager");
-        }
-        try {
-            super.finalize();
-        } catch (Throwable ex) {
-            logger.error("ConnectionManager finalize failed to disconnect from mysql: ", ex);
-        }
+    ConnectionManager(ConnectionFactory factory, int maxTotal, int maxIdle, long maxWait, long validationInterval, int queryTimeout) {
+        this.queryTimeout = queryTimeout;
+        createPool(factory, maxTotal, maxIdle, maxWait, validationInterval);
     }
 
-    private void connectToDB() {
+    private ConnectionFactory createConnectionFactory(ConfigurationHelper config) {
+        String url = config.getDatabaseUrl();
+        if (StringUtils.isNotBlank(url)) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("Using database url " + url);
+            }
+            return new DriverManagerConnectionFactory(url, config.getDatabaseUser(), config.getDatabasePassword());
+        }
         if (logger.isTraceEnabled()) {
             logger.trace("Trying to connect to database...");
         }
         try {
             Context ctx = new InitialContext();
-            ds = (DataSource) ctx.lookup("java:comp/env/goobi");
+            DataSource jndiSource = (DataSource) ctx.lookup("java:comp/env/goobi");
             if (logger.isTraceEnabled()) {
                 logger.trace("Connection attempt to database succeeded.");
             }
+            return new DataSourceConnectionFactory(jndiSource);
         } catch (Exception e) {
             logger.error("Error when attempting to connect to DB ", e);
         }
+        return null;
+    }
+
+    private void createPool(ConnectionFactory factory, int maxTotal, int maxIdle, long maxWait, long validationInterval) {
+        PoolableConnectionFactory poolableFactory = new PoolableConnectionFactory(factory, null);
+        // without a validation query the driver checks the connection with isValid
+        poolableFactory.setValidationQueryTimeout(VALIDATION_TIMEOUT);
+
+        GenericObjectPoolConfig poolConfig = new GenericObjectPoolConfig();
+        poolConfig.setMaxTotal(maxTotal);
+        poolConfig.setMaxIdle(maxIdle);
+        poolConfig.setMaxWaitMillis(maxWait);
+        poolConfig.setTestOnBorrow(false);
+        poolConfig.setTestWhileIdle(true);
+        poolConfig.setTimeBetweenEvictionRunsMillis(validationInterval);
+        // check all idle connections on each run
+        poolConfig.setNumTestsPerEvictionRun(-1);
+        poolConfig.setJmxEnabled(false);
+
+        pool = new GenericObjectPool<>(poolableFactory, poolConfig);
+        poolableFactory.setPool(pool);
+        ds = new PoolingDataSource<>(pool);
     }
 
-    @SuppressWarnings("rawtypes")
-    public static void printDriverStats() throws Exception {
-        ObjectPool connectionPool = ConnectionManager._pool;
+    /**
+     * Borrow a connection from the pool. The connection is returned to the pool when it gets closed.
+     * 
+     * @return connection
+     * @throws SQLException if no connection is available within the configured wait time
+     */
+    public Connection getConnection() throws SQLException {
+        if (ds == null) {
+            throw new SQLException("No database configured");
+        }
+        return MonitoredConnection.wrap(ds.getConnection(), queryTimeout);
+    }
+
+    /**
+     * Get the current usage of the pool
+     * 
+     * @return map with the number of active, idle and waiting connections and the borrow wait times in milliseconds
+     */
+    public Map<String, Long> getPoolStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        if (pool != null) {
+            statistics.put("active", (long) pool.getNumActive());
+            statistics.put("idle", (long) pool.getNumIdle());
+            statistics.put("waiting", (long) pool.getNumWaiters());
+            statistics.put("maxTotal", (long) pool.getMaxTotal());
+            statistics.put("borrowed", pool.getBorrowedCount());
+            statistics.put("created", pool.getCreatedCount());
+            statistics.put("destroyed", pool.getDestroyedCount());
+            statistics.put("meanWaitTime", pool.getMeanBorrowWaitTimeMillis());
+            statistics.put("maxWaitTime", pool.getMaxBorrowWaitTimeMillis());
+        }
+        return statistics;
+    }
+
+    public void printDriverStats() {
         if (logger.isTraceEnabled()) {
-            logger.trace("NumActive: " + connectionPool.getNumActive());
-            logger.trace("NumIdle: " + connectionPool.getNumIdle());
+            logger.trace("Connection pool: " + getPoolStatistics());
+        }
+    }
+
+    /**
+     * Close all idle connections, active connections are closed when they are returned
+     */
+    public void close() {
+        if (pool != null) {
+            pool.close();
         }
     }
 
@@ -109,13 +202,8 @@ public class ConnectionManager {
      */
     public int getNumLockedProcesses() {
         int num_locked_connections = 0;
-        Connection con = null;
-        PreparedStatement p_stmt = null;
-        ResultSet rs = null;
-        try {
-            con = this.ds.getConnection();
-            p_stmt = con.prepareStatement("SHOW PROCESSLIST");
-            rs = p_stmt.executeQuery();
+        try (Connection con = getConnection(); PreparedStatement p_stmt = con.prepareStatement("SHOW PROCESSLIST"); ResultSet rs = p_stmt
+                .executeQuery()) {
             while (rs.next()) {
                 if (rs.getString("State") != null && rs.getString("State").equals("Locked")) {
                     num_locked_connections++;
@@ -125,14 +213,6 @@ public class ConnectionManager {
             if (logger.isTraceEnabled()) {
                 logger.trace("Failed to get get Locked Connections - Exception: " + e.toString());
             }
-        } finally {
-            try {
-                rs.close();
-                p_stmt.close();
-                con.close();
-            } catch (java.sql.SQLException ex) {
-                logger.error(ex.toString());
-            }
         }
         return num_locked_connections;
     }
@@ -45,7 +45,7 @@ import de.sub.goobi.helper.exceptions.DAOException;
 
 public class DatabaseVersion {
 
-    public static final int EXPECTED_VERSION = 28;
+    public static final int EXPECTED_VERSION = 32;
     private static final Logger logger = Logger.getLogger(DatabaseVersion.class);
 
     // TODO ALTER TABLE metadata add fulltext(value) after mysql is version 5.6 or higher
@@ -219,6 +219,26 @@ public class DatabaseVersion {
                     logger.trace("Update database to version 28.");
                 }
                 updateToVersion28();
+            case 28:
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Update database to version 29.");
+                }
+                updateToVersion29();
+            case 29:
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Update database to version 30.");
+                }
+                updateToVersion30();
+            case 30:
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Update database to version 31.");
+                }
+                updateToVersion31();
+            case 31:
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Update database to version 32.");
+                }
+                updateToVersion32();
 
             case 999:
                 // this has to be the last case
@@ -229,6 +249,124 @@ public class DatabaseVersion {
         }
     }
 
+    private static void updateToVersion32() {
+        if (checkIfTableExists("user_step_permissions")) {
+            return;
+        }
+        String tableOptions = MySQLHelper.isUsingH2() ? "" : " ENGINE = InnoDB DEFAULT CHARACTER SET = utf8";
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            QueryRunner runner = new QueryRunner();
+            runner.update(connection, "CREATE TABLE user_step_permissions (userid int(11) NOT NULL, stepid int(11) NOT NULL, "
+                    + "status int(11) NOT NULL)" + tableOptions);
+            runner.update(connection, "CREATE INDEX idx_user_step_permissions_user ON user_step_permissions (userid, status, stepid)");
+            runner.update(connection, "CREATE INDEX idx_user_step_permissions_step ON user_step_permissions (stepid)");
+        } catch (SQLException e) {
+            logger.error(e);
+        } finally {
+            if (connection != null) {
+                try {
+                    MySQLHelper.closeConnection(connection);
+                } catch (SQLException e) {
+                }
+            }
+        }
+    }
+
+    private static void updateToVersion31() {
+        if (checkIfTableExists("metadata_tokens")) {
+            return;
+        }
+        String tableOptions = MySQLHelper.isUsingH2() ? "" : " ENGINE = InnoDB DEFAULT CHARACTER SET = utf8";
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            QueryRunner runner = new QueryRunner();
+            runner.update(connection, "CREATE TABLE metadata_tokens (processid int(11) NOT NULL, name varchar(255) NOT NULL, "
+                    + "token varchar(100) NOT NULL)" + tableOptions);
+            runner.update(connection, "CREATE INDEX idx_metadata_tokens_token ON metadata_tokens (token, processid)");
+            runner.update(connection, "CREATE INDEX idx_metadata_tokens_process ON metadata_tokens (processid)");
+            runner.update(connection, "CREATE TABLE processlog_tokens (logid int(11) NOT NULL, processid int(11) NOT NULL, "
+                    + "token varchar(100) NOT NULL)" + tableOptions);
+            runner.update(connection, "CREATE INDEX idx_processlog_tokens_token ON processlog_tokens (token, processid)");
+            runner.update(connection, "CREATE INDEX idx_processlog_tokens_log ON processlog_tokens (logid)");
+            runner.update(connection, "CREATE INDEX idx_processlog_tokens_process ON processlog_tokens (processid)");
+        } catch (SQLException e) {
+            logger.error(e);
+        } finally {
+            if (connection != null) {
+                try {
+                    MySQLHelper.closeConnection(connection);
+                } catch (SQLException e) {
+                }
+            }
+        }
+    }
+
+    private static void updateToVersion30() {
+        if (checkIfTableExists("history_watermark")) {
+            return;
+        }
+        String createWatermark = "CREATE TABLE history_watermark (name varchar(255) NOT NULL, lastRun datetime DEFAULT NULL, PRIMARY KEY (name))";
+        if (!MySQLHelper.isUsingH2()) {
+            createWatermark += " ENGINE = InnoDB DEFAULT CHARACTER SET = utf8";
+        }
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            new QueryRunner().update(connection, createWatermark);
+        } catch (SQLException e) {
+            logger.error(e);
+        } finally {
+            if (connection != null) {
+                try {
+                    MySQLHelper.closeConnection(connection);
+                } catch (SQLException e) {
+                }
+            }
+        }
+    }
+
+    private static void updateToVersion29() {
+        if (checkIfTableExists("longrunningtasks")) {
+            return;
+        }
+        StringBuilder createTasks = new StringBuilder();
+        createTasks.append("CREATE TABLE longrunningtasks (");
+        createTasks.append("id int(11) NOT NULL AUTO_INCREMENT,");
+        createTasks.append("taskType varchar(255) NOT NULL,");
+        createTasks.append("processId int(11) DEFAULT NULL,");
+        createTasks.append("title varchar(255) DEFAULT NULL,");
+        createTasks.append("priority int(11) NOT NULL DEFAULT 0,");
+        createTasks.append("status varchar(20) NOT NULL,");
+        createTasks.append("progress int(11) NOT NULL DEFAULT 0,");
+        createTasks.append("statusMessage text DEFAULT NULL,");
+        createTasks.append("attempts int(11) NOT NULL DEFAULT 0,");
+        createTasks.append("creationDate datetime DEFAULT NULL,");
+        createTasks.append("startDate datetime DEFAULT NULL,");
+        createTasks.append("endDate datetime DEFAULT NULL,");
+        if (MySQLHelper.isUsingH2()) {
+            createTasks.append("PRIMARY KEY (id));");
+        } else {
+            createTasks.append("PRIMARY KEY (id)) ENGINE = InnoDB DEFAULT CHARACTER SET = utf8;");
+        }
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            new QueryRunner().update(connection, createTasks.toString());
+        } catch (SQLException e) {
+            logger.error(e);
+        } finally {
+            if (connection != null) {
+                try {
+                    MySQLHelper.closeConnection(connection);
+                } catch (SQLException e) {
+                }
+            }
+        }
+    }
+
     private static void updateToVersion28() {
         Connection connection = null;
         try {
@@ -21,7 +21,10 @@ import java.io.Serializable;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.dbutils.ResultSetHandler;
 import org.apache.log4j.Logger;
@@ -49,6 +52,26 @@ public class DocketManager implements IManager, Serializable {
         return o;
     }
 
+    /**
+     * Loads all dockets with the given ids in a single query
+     * 
+     * @param ids docket ids
+     * @return map of docket id and docket
+     * @throws DAOException
+     */
+    public static Map<Integer, Docket> getDocketsByIds(Collection<Integer> ids) throws DAOException {
+        Map<Integer, Docket> answer = new HashMap<>();
+        try {
+            for (Docket docket : DocketMysqlHelper.getDocketsForIds(ids)) {
+                answer.put(docket.getId(), docket);
+            }
+        } catch (SQLException e) {
+            logger.error("error while getting dockets with ids " + ids, e);
+            throw new DAOException(e);
+        }
+        return answer;
+    }
+
     public static void saveDocket(Docket o) throws DAOException {
         try {
             DocketMysqlHelper.saveDocket(o);
@@ -21,9 +21,12 @@ package de.sub.goobi.persistence.managers;
 import java.io.Serializable;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.goobi.beans.Docket;
 
@@ -101,6 +104,27 @@ class DocketMysqlHelper implements Serializable {
         }
     }
 
+    public static List<Docket> getDocketsForIds(Collection<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Connection connection = null;
+
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT * FROM dockets WHERE docketID IN (" + StringUtils.join(ids, ", ") + ")");
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            if (logger.isTraceEnabled()) {
+                logger.trace(sql.toString());
+            }
+            return new QueryRunner().query(connection, sql.toString(), DocketManager.resultSetToDocketListHandler);
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
     public static void saveDocket(Docket ro) throws SQLException {
         Connection connection = null;
 
@@ -0,0 +1,139 @@
+package de.sub.goobi.persistence.managers;
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang.StringEscapeUtils;
+
+/**
+ * A where condition with placeholders and the values to bind to them. The statement text only depends on the structure of the filter, not on the
+ * searched values, so the database can reuse prepared statements and execution plans.
+ * 
+ * Objects of this class are immutable.
+ */
+public class FilterQuery implements Serializable {
+
+    private static final long serialVersionUID = 6384957346412208412L;
+
+    private final String sql;
+    private final List<Object> parameters;
+
+    /**
+     * Creates a condition without placeholders
+     * 
+     * @param sql condition, may be null or empty
+     */
+    public FilterQuery(String sql) {
+        this(sql, Collections.emptyList());
+    }
+
+    /**
+     * Creates a condition with placeholders
+     * 
+     * @param sql condition, using ? as placeholder
+     * @param parameters the values of the placeholders in the order they appear in the condition
+     */
+    public FilterQuery(String sql, List<Object> parameters) {
+        this.sql = sql == null ? "" : sql;
+        this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return the values of the placeholders, as expected by the QueryRunner
+     */
+    public Object[] getParameterArray() {
+        return parameters.toArray();
+    }
+
+    public boolean isEmpty() {
+        return sql.trim().isEmpty();
+    }
+
+    /**
+     * Combines this condition with another one
+     * 
+     * @param condition condition without placeholders
+     * @return a new object containing both conditions
+     */
+    public FilterQuery and(String condition) {
+        return and(new FilterQuery(condition));
+    }
+
+    /**
+     * Combines this condition with another one. The parameters of the other condition are appended.
+     * 
+     * @param other the other condition
+     * @return a new object containing both conditions
+     */
+    public FilterQuery and(FilterQuery other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+        List<Object> combined = new ArrayList<>(parameters);
+        combined.addAll(other.parameters);
+        return new FilterQuery(sql + " AND " + other.sql, combined);
+    }
+
+    /**
+     * Creates the condition with the values written into the statement, for code that can not bind parameters
+     * 
+     * @return the condition without placeholders
+     */
+    public String toInlineSql() {
+        if (parameters.isEmpty()) {
+            return sql;
+        }
+        StringBuilder answer = new StringBuilder();
+        int index = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '?' && index < parameters.size()) {
+                Object value = parameters.get(index++);
+                if (value instanceof Number || value instanceof Boolean) {
+                    answer.append(value);
+                } else {
+                    answer.append('\'').append(StringEscapeUtils.escapeSql(String.valueOf(value))).append('\'');
+                }
+            } else {
+                answer.append(c);
+            }
+        }
+        return answer.toString();
+    }
+
+    @Override
+    public String toString() {
+        return sql + ", " + Arrays.toString(getParameterArray());
+    }
+}
@@ -70,6 +70,60 @@ public class HistoryManager implements Serializable {
         }
     }
     
+    /**
+     * Insert new and delete outdated history events in one batch
+     * 
+     * @param newEvents events to insert, the process of each event must be set
+     * @param deletedEvents stored events to delete
+     */
+    public static void saveHistoryEvents(List<HistoryEvent> newEvents, List<HistoryEvent> deletedEvents) {
+        try {
+            HistoryMysqlHelper.saveHistoryEvents(newEvents, deletedEvents);
+        } catch (SQLException e) {
+            logger.error("Cannot save history events", e);
+        }
+    }
+
+    public static List<Integer> getProcessIdsChangedSince(Date since) {
+        try {
+            return HistoryMysqlHelper.getProcessIdsChangedSince(since);
+        } catch (SQLException e) {
+            logger.error("Cannot get changed processes", e);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Get the start time of the last complete run of a history analysis
+     * 
+     * @param name name of the analysis
+     * @return the date or null, if the analysis never finished
+     */
+    public static Date getWatermark(String name) {
+        try {
+            return HistoryMysqlHelper.getWatermark(name);
+        } catch (SQLException e) {
+            logger.error("Cannot read watermark " + name, e);
+        }
+        return null;
+    }
+
+    public static void setWatermark(String name, Date lastRun) {
+        try {
+            HistoryMysqlHelper.setWatermark(name, lastRun);
+        } catch (SQLException e) {
+            logger.error("Cannot save watermark " + name, e);
+        }
+    }
+
+    public static void removeWatermark(String name) {
+        try {
+            HistoryMysqlHelper.removeWatermark(name);
+        } catch (SQLException e) {
+            logger.error("Cannot remove watermark " + name, e);
+        }
+    }
+
     public static int getNumberOfImages(int processId) {
         try {
           return  HistoryMysqlHelper.getNumberOfImages(processId);
@@ -124,6 +124,120 @@ public class HistoryMysqlHelper {
 
     }
 
+    /**
+     * Insert and delete history events within one transaction using jdbc batches
+     * 
+     * @param newEvents events to insert, the process of each event must be set
+     * @param deletedEvents stored events to delete
+     * @throws SQLException
+     */
+    public static void saveHistoryEvents(List<HistoryEvent> newEvents, List<HistoryEvent> deletedEvents) throws SQLException {
+        Connection connection = null;
+        boolean autoCommit = true;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            QueryRunner run = new QueryRunner();
+            if (!newEvents.isEmpty()) {
+                Object[][] params = new Object[newEvents.size()][];
+                for (int i = 0; i < newEvents.size(); i++) {
+                    HistoryEvent he = newEvents.get(i);
+                    params[i] = new Object[] { he.getNumericValue(), he.getStringValue(), he.getHistoryType().getValue(), new Timestamp(he.getDate()
+                            .getTime()), he.getProcess().getId() };
+                }
+                run.batch(connection, "INSERT INTO history (numericValue, stringvalue, type, date, processId) VALUES (?, ?, ?, ?, ?)", params);
+            }
+            if (!deletedEvents.isEmpty()) {
+                Object[][] params = new Object[deletedEvents.size()][];
+                for (int i = 0; i < deletedEvents.size(); i++) {
+                    params[i] = new Object[] { deletedEvents.get(i).getId() };
+                }
+                run.batch(connection, "DELETE FROM history WHERE historyid = ?", params);
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            MySQLHelper.rollback(connection);
+            throw e;
+        } finally {
+            if (connection != null) {
+                connection.setAutoCommit(autoCommit);
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    /**
+     * Get the processes that were created or whose tasks were edited since the given date
+     * 
+     * @param since the date of the last analysis
+     * @return list of process ids
+     * @throws SQLException
+     */
+    public static List<Integer> getProcessIdsChangedSince(Date since) throws SQLException {
+        Timestamp timestamp = new Timestamp(since.getTime());
+        String sql = "SELECT ProzesseID FROM prozesse WHERE erstellungsdatum >= ? UNION SELECT ProzesseID FROM schritte WHERE "
+                + "BearbeitungsZeitpunkt >= ? OR BearbeitungsBeginn >= ? OR BearbeitungsEnde >= ?";
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            return new QueryRunner().query(connection, sql, MySQLHelper.resultSetToIntegerListHandler, timestamp, timestamp, timestamp, timestamp);
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    public static Date getWatermark(String name) throws SQLException {
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            return new QueryRunner().query(connection, "SELECT lastRun FROM history_watermark WHERE name = ?", new ResultSetHandler<Date>() {
+                @Override
+                public Date handle(ResultSet rs) throws SQLException {
+                    if (rs.next()) {
+                        Timestamp time = rs.getTimestamp(1);
+                        return time == null ? null : new Date(time.getTime());
+                    }
+                    return null;
+                }
+            }, name);
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    public static void setWatermark(String name, Date lastRun) throws SQLException {
+        Timestamp timestamp = new Timestamp(lastRun.getTime());
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            QueryRunner run = new QueryRunner();
+            if (run.update(connection, "UPDATE history_watermark SET lastRun = ? WHERE name = ?", timestamp, name) == 0) {
+                run.update(connection, "INSERT INTO history_watermark (name, lastRun) VALUES (?, ?)", name, timestamp);
+            }
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    public static void removeWatermark(String name) throws SQLException {
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            new QueryRunner().update(connection, "DELETE FROM history_watermark WHERE name = ?", name);
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
     public static int getNumberOfImages(int processId) throws SQLException {
         String sql = "SELECT * FROM history WHERE type = 3 and processID = " + processId + " order by date desc";
         Connection connection = null;
@@ -0,0 +1,45 @@
+package de.sub.goobi.persistence.managers;
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+import java.util.List;
+
+import org.goobi.beans.DatabaseObject;
+
+import de.sub.goobi.helper.exceptions.DAOException;
+
+/**
+ * Manager that runs filters with bind parameters, see {@link FilterQuery}. The conditions are sent as prepared statements, so the database sees
+ * the same statement text for all filters of the same structure.
+ */
+public interface IFilterQueryManager extends IKeysetManager {
+
+    public int getHitSize(String order, FilterQuery filter) throws DAOException;
+
+    public List<? extends DatabaseObject> getList(String order, FilterQuery filter, Integer start, Integer count) throws DAOException;
+
+    /**
+     * Loads a page of results, see {@link IKeysetManager#getPage(String, String, Object[], Integer, Integer)}
+     */
+    public KeysetPage getPage(String order, FilterQuery filter, Object[] seekKey, Integer start, Integer count) throws DAOException;
+
+    /**
+     * Loads the ids of all hits with a forward-only cursor
+     */
+    public int[] getIdArray(FilterQuery filter);
+}
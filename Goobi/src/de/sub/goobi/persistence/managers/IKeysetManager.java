@@ -0,0 +1,40 @@
+package de.sub.goobi.persistence.managers;
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+import de.sub.goobi.helper.exceptions.DAOException;
+
+/**
+ * Manager that supports keyset pagination. Instead of skipping the first rows with an offset, the next page is selected by the sort key of the last
+ * row of the previous page. This keeps the costs for deep pages constant.
+ */
+public interface IKeysetManager extends IManager {
+
+    /**
+     * Loads a page of results. If a seek key is given, the page starts directly after the row with this key, otherwise the offset start is used.
+     * 
+     * @param order sort order
+     * @param filter filter
+     * @param seekKey sort key of the last row of the previous page or null
+     * @param start offset, only used if no seek key is given
+     * @param count page size
+     * @return the results of the page and the sort key of its last row
+     * @throws DAOException
+     */
+    public KeysetPage getPage(String order, String filter, Object[] seekKey, Integer start, Integer count) throws DAOException;
+}
@@ -0,0 +1,51 @@
+package de.sub.goobi.persistence.managers;
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.goobi.beans.DatabaseObject;
+
+/**
+ * One page of a keyset pagination: the loaded objects and the sort key of the last one, which is needed to load the following page.
+ */
+public class KeysetPage implements Serializable {
+
+    private static final long serialVersionUID = -3386126683546154497L;
+
+    private List<? extends DatabaseObject> results = new ArrayList<>();
+    private Object[] lastKey;
+
+    public KeysetPage(List<? extends DatabaseObject> results, Object[] lastKey) {
+        this.results = results;
+        this.lastKey = lastKey;
+    }
+
+    public List<? extends DatabaseObject> getResults() {
+        return results;
+    }
+
+    /**
+     * @return sort key of the last row or null, if the page is empty
+     */
+    public Object[] getLastKey() {
+        return lastKey;
+    }
+}
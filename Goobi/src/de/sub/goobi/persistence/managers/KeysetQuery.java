@@ -0,0 +1,243 @@
+package de.sub.goobi.persistence.managers;
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.log4j.Logger;
+
+/**
+ * Builds the sql parts for keyset pagination from an order clause like "prioritaet desc, prozesse.Titel". The id column is added as last sort key,
+ * if it is not part of the order yet, so that the order is unique.
+ * 
+ * The seek condition follows the null ordering of MySQL and H2, where null values come first in ascending and last in descending order.
+ */
+class KeysetQuery {
+
+    private static final Logger logger = Logger.getLogger(KeysetQuery.class);
+
+    private String idColumn;
+    private List<String> columns = new ArrayList<>();
+    private List<Boolean> descending = new ArrayList<>();
+
+    KeysetQuery(String order, String idColumn) {
+        this.idColumn = idColumn;
+        boolean containsId = false;
+        if (order != null) {
+            for (String part : order.split(",")) {
+                String[] tokens = part.trim().split("\\s+");
+                if (tokens[0].isEmpty()) {
+                    continue;
+                }
+                columns.add(tokens[0]);
+                descending.add(tokens.length > 1 && tokens[1].equalsIgnoreCase("desc"));
+                if (tokens[0].equalsIgnoreCase(idColumn)) {
+                    containsId = true;
+                }
+            }
+        }
+        if (!containsId) {
+            columns.add(idColumn);
+            descending.add(false);
+        }
+    }
+
+    /**
+     * @return the unique order clause
+     */
+    String getOrder() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(columns.get(i));
+            if (descending.get(i)) {
+                sb.append(" desc");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the sort columns as select list
+     */
+    String getSelectColumns() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(columns.get(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Creates a condition that matches all rows sorted after the row with the given key. The values for the placeholders are added to params.
+     * 
+     * @param key sort key of the last row of the previous page
+     * @param params list of parameters for the prepared statement
+     * @return condition
+     */
+    String getSeekCondition(Object[] key, List<Object> params) {
+        StringBuilder condition = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            String after = getAfterCondition(i, key[i]);
+            if (after == null) {
+                // nothing is sorted after null in descending order
+                continue;
+            }
+            if (condition.length() > 0) {
+                condition.append(" OR ");
+            }
+            condition.append("(");
+            for (int j = 0; j < i; j++) {
+                if (key[j] == null) {
+                    condition.append(columns.get(j)).append(" IS NULL AND ");
+                } else {
+                    condition.append(columns.get(j)).append(" = ? AND ");
+                    params.add(key[j]);
+                }
+            }
+            condition.append(after);
+            if (key[i] != null) {
+                params.add(key[i]);
+            }
+            condition.append(")");
+        }
+        if (condition.length() == 0) {
+            return "1 = 0";
+        }
+        return "(" + condition.toString() + ")";
+    }
+
+    private String getAfterCondition(int index, Object value) {
+        String column = columns.get(index);
+        if (descending.get(index)) {
+            return value == null ? null : "(" + column + " < ? OR " + column + " IS NULL)";
+        } else {
+            return value == null ? column + " IS NOT NULL" : column + " > ?";
+        }
+    }
+
+    /**
+     * Loads the id and the sort key of all rows of a page. Each row contains the id as first element, followed by the sort key.
+     * 
+     * @param baseQuery from clause including a where condition, the filter gets appended with AND
+     * @param filter filter, its parameters are bound before the ones of the seek condition
+     * @param seekKey sort key of the last row of the previous page or null
+     * @param start offset, only used if no seek key is given
+     * @param count page size
+     * @return id and sort key of each row
+     * @throws SQLException
+     */
+    List<Object[]> getPageKeys(String baseQuery, FilterQuery filter, Object[] seekKey, Integer start, Integer count) throws SQLException {
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            return getPageKeys(connection, baseQuery, filter, seekKey, start, count);
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    List<Object[]> getPageKeys(Connection connection, String baseQuery, FilterQuery filter, Object[] seekKey, Integer start, Integer count)
+            throws SQLException {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT " + idColumn + ", " + getSelectColumns() + " " + baseQuery);
+        if (filter != null && !filter.isEmpty()) {
+            sql.append(" AND (" + filter.getSql() + ")");
+            params.addAll(filter.getParameters());
+        }
+        if (seekKey != null) {
+            sql.append(" AND " + getSeekCondition(seekKey, params));
+        }
+        sql.append(" ORDER BY " + getOrder());
+        if (count != null) {
+            if (seekKey == null && start != null) {
+                sql.append(" LIMIT " + start + ", " + count);
+            } else {
+                sql.append(" LIMIT " + count);
+            }
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace(sql.toString() + ", " + params);
+        }
+        return new QueryRunner().query(connection, sql.toString(), keyHandler, params.toArray());
+    }
+
+    /**
+     * @return the ids of the given rows as comma separated list
+     */
+    static String getIds(List<Object[]> rows) {
+        StringBuilder sb = new StringBuilder();
+        for (Object[] row : rows) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(row[0]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the sort key of the last row or null, if there are no rows
+     */
+    static Object[] getLastKey(List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Object[] last = rows.get(rows.size() - 1);
+        return Arrays.copyOfRange(last, 1, last.length);
+    }
+
+    /**
+     * Reads the id column and the sort key of each row
+     */
+    private ResultSetHandler<List<Object[]>> keyHandler = new ResultSetHandler<List<Object[]>>() {
+        @Override
+        public List<Object[]> handle(ResultSet rs) throws SQLException {
+            List<Object[]> answer = new ArrayList<>();
+            try {
+                while (rs.next()) {
+                    Object[] row = new Object[columns.size() + 1];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    answer.add(row);
+                }
+            } finally {
+                if (rs != null) {
+                    rs.close();
+                }
+            }
+            return answer;
+        }
+    };
+}
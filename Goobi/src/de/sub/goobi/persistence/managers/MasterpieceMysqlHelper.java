@@ -163,6 +163,49 @@ class MasterpieceMysqlHelper implements Serializable {
         }
     }
 
+    /**
+     * Saves the given masterpieces and their properties on the given connection. Inserts and updates are executed as jdbc batches, commit and rollback
+     * are left to the caller.
+     * 
+     * @param masterpieces
+     * @param connection open connection
+     * @throws SQLException
+     */
+    static void saveMasterpieces(List<Masterpiece> masterpieces, Connection connection) throws SQLException {
+        List<Masterpiece> newMasterpieces = new ArrayList<>();
+        List<Object[]> insertParams = new ArrayList<>();
+        List<Object[]> updateParams = new ArrayList<>();
+        for (Masterpiece object : masterpieces) {
+            if (object.getId() == null) {
+                Object[] param = { object.getProzess().getId() };
+                newMasterpieces.add(object);
+                insertParams.add(param);
+            } else if (object.getProzess() != null) {
+                // process can be missing in embedded database, these rows are skipped as before
+                Object[] param = { object.getProzess().getId(), object.getId() };
+                updateParams.add(param);
+            }
+        }
+        if (!newMasterpieces.isEmpty()) {
+            List<Integer> ids = MySQLHelper.insertBatch(connection, "INSERT INTO werkstuecke (  ProzesseID ) VALUES ( ?)", insertParams.toArray(new Object[insertParams.size()][]));
+            for (int i = 0; i < newMasterpieces.size(); i++) {
+                newMasterpieces.get(i).setId(ids.get(i));
+            }
+        }
+        if (!updateParams.isEmpty()) {
+            new QueryRunner().batch(connection, "UPDATE werkstuecke set  ProzesseID = ? WHERE WerkstueckeID = ?", updateParams.toArray(new Object[updateParams.size()][]));
+        }
+
+        List<Masterpieceproperty> properties = new ArrayList<>();
+        for (Masterpiece object : masterpieces) {
+            for (Masterpieceproperty property : object.getEigenschaften()) {
+                property.setMasterpieceId(object.getId());
+                properties.add(property);
+            }
+        }
+        PropertyMysqlHelper.saveMasterpieceproperties(properties, connection);
+    }
+
     public static void deleteMasterpiece(Masterpiece object) throws SQLException {
         if (object.getId() != null) {
             for (Masterpieceproperty property : object.getEigenschaften()) {
@@ -22,6 +22,7 @@ import java.io.Serializable;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -73,8 +74,7 @@ public class MetadataManager implements Serializable {
     public static void updateJSONMetadata(int processID, Map<String, List<String>> metadata) {
         logger.trace("Update JSON metadata for process with id " + processID);
         try {
-            MetadataMysqlHelper.removeJSONMetadata(processID);
-            insertJSONMetadata(processID, metadata);
+            MetadataMysqlHelper.updateJSONMetadata(processID, metadata);
         } catch (SQLException e) {
             logger.error(e);
         }
@@ -82,9 +82,9 @@ public class MetadataManager implements Serializable {
 
     public static void updateMetadata(int processId, Map<String, List<String>> metadata) {
         logger.trace("Update metadata for process with id " + processId);
+        generateIndexFields(metadata);
         try {
-            MetadataMysqlHelper.removeMetadata(processId);
-            insertMetadata(processId, metadata);
+            MetadataMysqlHelper.updateMetadata(processId, metadata);
         } catch (SQLException e) {
             logger.error(e);
         }
@@ -145,6 +145,15 @@ public class MetadataManager implements Serializable {
         return new ArrayList<>();
     }
 
+    public static Map<Integer, Map<String, String>> getMetadataValues(List<Integer> processIds, List<String> names) {
+        try {
+            return MetadataMysqlHelper.getMetadataValues(processIds, names);
+        } catch (SQLException e) {
+            logger.error(e);
+        }
+        return new HashMap<>();
+    }
+
     private static void generateIndexFields(Map<String, List<String>> metadata) {
         List<SearchIndexField> fields = ConfigurationHelper.getInstance().getIndexFields();
         if (!fields.isEmpty()) {
@@ -23,10 +23,17 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
@@ -74,6 +81,9 @@ class MetadataMysqlHelper implements Serializable {
             QueryRunner run = new QueryRunner();
             String sql = "DELETE FROM metadata WHERE processid = " + processId;
             run.update(connection, sql);
+            if (SearchIndexManager.isMaintained()) {
+                SearchIndexMysqlHelper.deleteMetadataTokens(connection, processId);
+            }
         } finally {
             if (connection != null) {
                 MySQLHelper.closeConnection(connection);
@@ -115,24 +125,12 @@ class MetadataMysqlHelper implements Serializable {
 
         sql.append("INSERT INTO metadata (processid, name, value, print) VALUES ");
         List<Object> values = new ArrayList<>();
-        for (Entry<String, List<String>> pair : metadata.entrySet()) {
-            String metadataName = pair.getKey();
-            List<String> valueList = pair.getValue();
-            StringBuilder sb = new StringBuilder();
-            Iterator<String> iter = valueList.iterator();
-            while (iter.hasNext()) {
-                sb.append(StringEscapeUtils.escapeSql(iter.next()));
-                if (iter.hasNext()) {
-                    sb.append("; ");
-                }
-            }
-            for (String item : valueList) {
-                sql.append("(" + processid + ", ? , ?, ? ),");
-                values.add(metadataName);
-                values.add(item);
-                values.add(sb.toString());
-            }
-
+        List<Object[]> rows = getMetadataRows(metadata);
+        for (Object[] row : rows) {
+            sql.append("(" + processid + ", ? , ?, ? ),");
+            values.add(row[0]);
+            values.add(row[1]);
+            values.add(row[2]);
         }
         Connection connection = null;
         try {
@@ -143,10 +141,95 @@ class MetadataMysqlHelper implements Serializable {
             if (!values.isEmpty()) {
                 run.update(connection, sqlString, param);
             }
+            if (SearchIndexManager.isMaintained()) {
+                SearchIndexMysqlHelper.replaceMetadataTokens(connection, processid, rows);
+            }
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
 
-            //            sqlString = "INSERT INTO metadata_json (processid, value) VALUES (?,?)";
-            //            param = new Object[] { processid, gson.toJson(metadata) };
-            //            run.update(connection, sqlString, param);
+    /**
+     * Replaces the metadata of a process in the `metadata` table. Only the rows that differ from the stored rows are deleted or inserted.
+     * 
+     * @param processid the process id for the metadata
+     * @param metadata the metadata
+     * @throws SQLException
+     */
+    public static void updateMetadata(int processid, Map<String, List<String>> metadata) throws SQLException {
+        // name and value of a row, mapped to the printed value
+        Map<List<String>, String> newRows = new LinkedHashMap<>();
+        List<Object[]> rows = getMetadataRows(metadata);
+        for (Object[] row : rows) {
+            newRows.put(Arrays.asList((String) row[0], (String) row[1]), (String) row[2]);
+        }
+
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            QueryRunner run = new QueryRunner();
+            List<Object[]> oldRows = run.query(connection, "SELECT name, value, print FROM metadata WHERE processid = ?", resultSetToRowHandler,
+                    processid);
+
+            // rows are compared case sensitive, the column collation is not
+            String compare = MySQLHelper.isUsingH2(connection) ? "" : "BINARY ";
+            Set<List<String>> unchanged = new HashSet<>();
+            Set<List<String>> deleted = new HashSet<>();
+            for (Object[] row : oldRows) {
+                List<String> key = Arrays.asList((String) row[0], (String) row[1]);
+                if (unchanged.contains(key) || !newRows.containsKey(key) || !Objects.equals(newRows.get(key), row[2])) {
+                    // removed, changed or duplicated row
+                    unchanged.remove(key);
+                    deleted.add(key);
+                } else if (!deleted.contains(key)) {
+                    unchanged.add(key);
+                }
+            }
+            if (deleted.isEmpty() && unchanged.size() == newRows.size()) {
+                return;
+            }
+
+            List<Object[]> deleteParams = new ArrayList<>();
+            List<Object[]> deleteEmptyParams = new ArrayList<>();
+            for (List<String> key : deleted) {
+                if (key.get(1) == null) {
+                    deleteEmptyParams.add(new Object[] { processid, key.get(0) });
+                } else {
+                    deleteParams.add(new Object[] { processid, key.get(0), key.get(1) });
+                }
+            }
+            List<Object[]> insertParams = new ArrayList<>();
+            for (Entry<List<String>, String> row : newRows.entrySet()) {
+                if (!unchanged.contains(row.getKey())) {
+                    insertParams.add(new Object[] { processid, row.getKey().get(0), row.getKey().get(1), row.getValue() });
+                }
+            }
+            connection.setAutoCommit(false);
+            try {
+                if (!deleteParams.isEmpty()) {
+                    run.batch(connection, "DELETE FROM metadata WHERE processid = ? AND " + compare + "name = ? AND " + compare + "value = ?",
+                            deleteParams.toArray(new Object[deleteParams.size()][]));
+                }
+                if (!deleteEmptyParams.isEmpty()) {
+                    run.batch(connection, "DELETE FROM metadata WHERE processid = ? AND " + compare + "name = ? AND value IS NULL", deleteEmptyParams
+                            .toArray(new Object[deleteEmptyParams.size()][]));
+                }
+                if (!insertParams.isEmpty()) {
+                    run.batch(connection, "INSERT INTO metadata (processid, name, value, print) VALUES (?, ?, ?, ?)", insertParams.toArray(
+                            new Object[insertParams.size()][]));
+                }
+                if (SearchIndexManager.isMaintained()) {
+                    SearchIndexMysqlHelper.replaceMetadataTokens(connection, processid, rows);
+                }
+                MySQLHelper.commit(connection);
+            } catch (SQLException e) {
+                MySQLHelper.rollback(connection);
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
         } finally {
             if (connection != null) {
                 MySQLHelper.closeConnection(connection);
@@ -154,6 +237,62 @@ class MetadataMysqlHelper implements Serializable {
         }
     }
 
+    /**
+     * Replaces the metadata of a process in the `metadata_json` table, if it differs from the stored value.
+     * 
+     * @param processid the process id for the metadata
+     * @param metadata the metadata
+     * @throws SQLException
+     */
+    public static void updateJSONMetadata(int processid, Map<String, List<String>> metadata) throws SQLException {
+        String json = gson.toJson(metadata);
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            QueryRunner run = new QueryRunner();
+            List<String> oldValues = run.query(connection, "SELECT value FROM metadata_json WHERE processid = ?",
+                    MySQLHelper.resultSetToStringListHandler, processid);
+            if (oldValues.size() == 1 && json.equals(oldValues.get(0))) {
+                return;
+            }
+            if (oldValues.size() == 1) {
+                run.update(connection, "UPDATE metadata_json SET value = ? WHERE processid = ?", json, processid);
+            } else {
+                if (!oldValues.isEmpty()) {
+                    run.update(connection, "DELETE FROM metadata_json WHERE processid = ?", processid);
+                }
+                run.update(connection, "INSERT INTO metadata_json (processid, value) VALUES (?,?)", processid, json);
+            }
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    /**
+     * Creates the rows for the `metadata` table. Each row contains name, value and the printed value, which contains all values of the metadata.
+     */
+    private static List<Object[]> getMetadataRows(Map<String, List<String>> metadata) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Entry<String, List<String>> pair : metadata.entrySet()) {
+            String metadataName = pair.getKey();
+            List<String> valueList = pair.getValue();
+            StringBuilder sb = new StringBuilder();
+            Iterator<String> iter = valueList.iterator();
+            while (iter.hasNext()) {
+                sb.append(StringEscapeUtils.escapeSql(iter.next()));
+                if (iter.hasNext()) {
+                    sb.append("; ");
+                }
+            }
+            for (String item : valueList) {
+                rows.add(new Object[] { metadataName, item, sb.toString() });
+            }
+        }
+        return rows;
+    }
+
     public static List<String> getDistinctMetadataNames() throws SQLException {
         StringBuilder sql = new StringBuilder();
         sql.append(
@@ -238,6 +377,77 @@ class MetadataMysqlHelper implements Serializable {
         }
     }
 
+    private static ResultSetHandler<List<Object[]>> resultSetToRowHandler = new ResultSetHandler<List<Object[]>>() {
+        @Override
+        public List<Object[]> handle(ResultSet rs) throws SQLException {
+            List<Object[]> answer = new ArrayList<>();
+            try {
+                while (rs.next()) {
+                    answer.add(new Object[] { rs.getString("name"), rs.getString("value"), rs.getString("print") });
+                }
+            } finally {
+                if (rs != null) {
+                    rs.close();
+                }
+            }
+            return answer;
+        }
+    };
+
+    /**
+     * Get the printable values of some metadata fields for many processes with a single query. If a process has several values for a field, the
+     * first one is returned. The metadata names are compared case insensitive.
+     * 
+     * @param processIds ids of the processes
+     * @param names names of the metadata fields
+     * @return the values, grouped by process id and metadata name
+     * @throws SQLException
+     */
+    public static Map<Integer, Map<String, String>> getMetadataValues(List<Integer> processIds, List<String> names) throws SQLException {
+        Map<Integer, Map<String, String>> answer = new HashMap<>();
+        if (processIds.isEmpty() || names.isEmpty()) {
+            return answer;
+        }
+        StringBuilder sql = new StringBuilder("SELECT processid, name, print FROM metadata WHERE processid IN (");
+        List<Object> params = new ArrayList<>(processIds.size() + names.size());
+        appendPlaceholders(sql, processIds.size());
+        params.addAll(processIds);
+        sql.append(") AND name IN (");
+        appendPlaceholders(sql, names.size());
+        params.addAll(names);
+        sql.append(")");
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            return new QueryRunner().query(connection, sql.toString(), new ResultSetHandler<Map<Integer, Map<String, String>>>() {
+                @Override
+                public Map<Integer, Map<String, String>> handle(ResultSet rs) throws SQLException {
+                    while (rs.next()) {
+                        Map<String, String> values = answer.get(rs.getInt(1));
+                        if (values == null) {
+                            values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                            answer.put(rs.getInt(1), values);
+                        }
+                        if (!values.containsKey(rs.getString(2))) {
+                            values.put(rs.getString(2), rs.getString(3));
+                        }
+                    }
+                    return answer;
+                }
+            }, params.toArray());
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    private static void appendPlaceholders(StringBuilder sql, int count) {
+        for (int i = 0; i < count; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+    }
+
     public static ResultSetHandler<List<StringPair>> resultSetToMetadataHandler = new ResultSetHandler<List<StringPair>>() {
         @Override
         public List<StringPair> handle(ResultSet rs) throws SQLException {
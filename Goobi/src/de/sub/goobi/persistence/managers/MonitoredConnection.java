@@ -0,0 +1,115 @@
+package de.sub.goobi.persistence.managers;
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *     		- https://goobi.io
+ * 			- https://www.intranda.com
+ * 			- https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ * Linking this library statically or dynamically with other modules is making a combined work based on this library. Thus, the terms and conditions
+ * of the GNU General Public License cover the whole combination. As a special exception, the copyright holders of this library give you permission to
+ * link this library with independent modules to produce an executable, regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that you also meet, for each linked independent module, the terms and
+ * conditions of the license of that module. An independent module is a module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Wraps a pooled connection, so that every statement gets the query timeout and its execution time is recorded in {@link QueryStatistics}.
+ */
+class MonitoredConnection implements InvocationHandler {
+
+    private final Connection connection;
+    private final int queryTimeout;
+    private Connection proxy;
+
+    private MonitoredConnection(Connection connection, int queryTimeout) {
+        this.connection = connection;
+        this.queryTimeout = queryTimeout;
+    }
+
+    static Connection wrap(Connection connection, int queryTimeout) {
+        MonitoredConnection handler = new MonitoredConnection(connection, queryTimeout);
+        handler.proxy = (Connection) Proxy.newProxyInstance(MonitoredConnection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                handler);
+        return handler.proxy;
+    }
+
+    @Override
+    public Object invoke(Object proxyObject, Method method, Object[] args) throws Throwable {
+        Object result = invokeTarget(connection, method, args);
+        if (result instanceof Statement) {
+            Statement statement = (Statement) result;
+            if (queryTimeout > 0) {
+                statement.setQueryTimeout(queryTimeout);
+            }
+            // prepared statements know their sql already, plain statements get it on execution
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            Class<?> type = Statement.class;
+            if (result instanceof CallableStatement) {
+                type = CallableStatement.class;
+            } else if (result instanceof PreparedStatement) {
+                type = PreparedStatement.class;
+            }
+            return Proxy.newProxyInstance(MonitoredConnection.class.getClassLoader(), new Class<?>[] { type }, new MonitoredStatement(statement,
+                    sql));
+        }
+        return result;
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private class MonitoredStatement implements InvocationHandler {
+        private final Statement statement;
+        private final String sql;
+
+        private MonitoredStatement(Statement statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxyObject, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("getConnection")) {
+                return proxy;
+            }
+            if (!method.getName().startsWith("execute")) {
+                return invokeTarget(statement, method, args);
+            }
+            String executedSql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            long start = System.nanoTime();
+            try {
+                return invokeTarget(statement, method, args);
+            } finally {
+                QueryStatistics.getInstance().record(executedSql, (System.nanoTime() - start) / 1000000);
+            }
+        }
+    }
+}
@@ -32,30 +32,57 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
 import org.apache.log4j.Logger;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 
+import de.sub.goobi.config.ConfigurationHelper;
+
 public class MySQLHelper implements Serializable {
 
     private static final long serialVersionUID = -1396485589047649760L;
     private static final int MAX_TRIES_NEW_CONNECTION = 5;
-    private static final int TIME_FOR_CONNECTION_VALID_CHECK = 5;
+    private static final int STATISTICS_LOG_ENTRIES = 10;
 
     private static final Logger logger = Logger.getLogger(MySQLHelper.class);
 
     private static MySQLHelper helper = new MySQLHelper();
-    private ConnectionManager cm = null;
+    private final transient ConnectionManager cm;
+    private transient ScheduledExecutorService statisticsLog = null;
 
     protected static final DateTimeFormatter formatter = DateTimeFormat.forPattern("yyyy-MM-dd");
 
     private MySQLHelper() {
         this.cm = new ConnectionManager();
+        long interval = ConfigurationHelper.getInstance().getDatabaseStatisticsLogInterval();
+        if (interval > 0) {
+            statisticsLog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "database-statistics");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            statisticsLog.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    logStatistics();
+                }
+            }, interval, interval, TimeUnit.SECONDS);
+        }
     }
 
     /**
@@ -65,15 +92,26 @@ public class MySQLHelper implements Serializable {
      */
     public static boolean isUsingH2() {
         try (Connection connection = MySQLHelper.getInstance().getConnection()) {
-            DatabaseMetaData meta = connection.getMetaData();
-            String dbType = meta.getDatabaseProductName();
-            return (dbType.equals("H2"));
+            return isUsingH2(connection);
         } catch (SQLException e) {
             logger.error("Error getting database provider information", e);
         }
         return false;
     }
 
+    /**
+     * Check if the given connection is based on H2
+     * 
+     * @param connection
+     * @return
+     * @throws SQLException
+     */
+    public static boolean isUsingH2(Connection connection) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        String dbType = meta.getDatabaseProductName();
+        return (dbType.equals("H2"));
+    }
+
     /**
      * Checks connected database for MariaDB version >=10.2.3 (from which on mariadb is json capable)
      * 
@@ -141,35 +179,60 @@ public class MySQLHelper implements Serializable {
         return true;
     }
 
+    /**
+     * Get a connection from the pool. The pooled connections are validated in the background. If a new connection cannot be created, it is tried
+     * again. If no connection gets free within DatabasePoolMaxWait, the timeout is reported to the caller.
+     * 
+     * @return connection, must be closed by the caller
+     * @throws SQLException if no connection could be borrowed
+     */
     public Connection getConnection() throws SQLException {
-
-        Connection connection = this.cm.getDataSource().getConnection();
-        if (connection.isValid(TIME_FOR_CONNECTION_VALID_CHECK)) {
-            return connection;
-        }
-
+        SQLException lastException = null;
         for (int i = 0; i < MAX_TRIES_NEW_CONNECTION; i++) {
-
-            logger.warn("Connection failed: Trying to get new connection. Attempt:" + i);
-
-            connection = this.cm.getDataSource().getConnection();
-
-            if (connection.isValid(TIME_FOR_CONNECTION_VALID_CHECK)) {
-                return connection;
+            try {
+                return this.cm.getConnection();
+            } catch (SQLException e) {
+                lastException = e;
+                if (e.getCause() instanceof NoSuchElementException) {
+                    // all connections are in use, waiting again would only block the caller longer
+                    logger.error("No free database connection within the configured wait time: " + getPoolStatistics());
+                    throw e;
+                }
+                logger.warn("Connection failed: Trying to get new connection. Attempt:" + i, e);
             }
         }
+        logger.error("Connection failed!", lastException);
+        throw lastException;
+    }
 
-        logger.warn("Connection failed: Trying to get a connection from a new ConnectionManager");
-        this.cm = new ConnectionManager();
-        connection = this.cm.getDataSource().getConnection();
+    /**
+     * Get the current usage of the connection pool
+     * 
+     * @return number of active, idle and waiting connections and the borrow wait times in milliseconds
+     */
+    public static Map<String, Long> getPoolStatistics() {
+        return helper.cm.getPoolStatistics();
+    }
 
-        if (connection.isValid(TIME_FOR_CONNECTION_VALID_CHECK)) {
-            return connection;
+    /**
+     * Write the usage of the connection pool and the statements with the highest total execution time to the log
+     */
+    public static void logStatistics() {
+        StringBuilder sb = new StringBuilder("Database connection pool: ").append(getPoolStatistics());
+        for (QueryStatistics.Entry entry : QueryStatistics.getInstance().getEntries(STATISTICS_LOG_ENTRIES)) {
+            sb.append("\n    ").append(entry);
         }
+        logger.info(sb.toString());
+    }
 
-        logger.error("Connection failed!");
-
-        return connection;
+    /**
+     * Close the connection pool
+     */
+    public static void shutdown() {
+        if (helper.statisticsLog != null) {
+            helper.statisticsLog.shutdownNow();
+        }
+        helper.cm.close();
     }
 
     public static void closeConnection(Connection connection) throws SQLException {
@@ -180,6 +243,71 @@ public class MySQLHelper implements Serializable {
         return helper;
     }
 
+    /**
+     * Executes an insert statement for all parameter rows as a single jdbc batch on the given connection and returns the generated keys in the same
+     * order as the parameter rows. The connection is not closed and no commit is issued, this is left to the caller.
+     * 
+     * H2 only reports the key of the last row of a batch, therefore the rows are inserted one by one on the same connection when H2 is used.
+     * 
+     * @param connection open connection
+     * @param sql insert statement
+     * @param params one parameter array per row
+     * @return list of generated ids
+     * @throws SQLException
+     */
+    public static List<Integer> insertBatch(Connection connection, String sql, Object[][] params) throws SQLException {
+        QueryRunner run = new QueryRunner();
+        if (params.length == 0) {
+            return new ArrayList<>();
+        }
+        if (isUsingH2(connection)) {
+            List<Integer> ids = new ArrayList<>(params.length);
+            for (Object[] param : params) {
+                ids.add(run.insert(connection, sql, resultSetToIntegerHandler, param));
+            }
+            return ids;
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace(sql + ", " + params.length + " rows");
+        }
+        List<Integer> ids = run.insertBatch(connection, sql, resultSetToGeneratedKeysHandler, params);
+        if (ids.size() != params.length) {
+            throw new SQLException("Expected " + params.length + " generated keys, but got " + ids.size());
+        }
+        return ids;
+    }
+
+    /**
+     * Commits the given connection, if it is not in auto commit mode.
+     * 
+     * @param connection
+     * @throws SQLException
+     */
+    public static void commit(Connection connection) throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+
+    /**
+     * Rolls back the current transaction of the given connection. Exceptions are only logged, as this is usually called while handling another
+     * exception.
+     * 
+     * @param connection
+     */
+    public static void rollback(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            logger.error("Error during rollback", e);
+        }
+    }
+
     public static ResultSetHandler<List<Integer>> resultSetToIntegerListHandler = new ResultSetHandler<List<Integer>>() {
         @Override
         public List<Integer> handle(ResultSet rs) throws SQLException {
@@ -209,6 +337,52 @@ public class MySQLHelper implements Serializable {
         }
     };
 
+    /**
+     * Reads the first column of all rows into an array, null values are skipped
+     */
+    public static ResultSetHandler<int[]> resultSetToIntArrayHandler = new ResultSetHandler<int[]>() {
+        @Override
+        public int[] handle(ResultSet rs) throws SQLException {
+            int[] answer = new int[1024];
+            int size = 0;
+            try {
+                while (rs.next()) {
+                    int value = rs.getInt(1);
+                    if (rs.wasNull()) {
+                        continue;
+                    }
+                    if (size == answer.length) {
+                        answer = Arrays.copyOf(answer, size * 2);
+                    }
+                    answer[size++] = value;
+                }
+            } finally {
+                if (rs != null) {
+                    rs.close();
+                }
+            }
+            return Arrays.copyOf(answer, size);
+        }
+    };
+
+    public static ResultSetHandler<List<Integer>> resultSetToGeneratedKeysHandler = new ResultSetHandler<List<Integer>>() {
+        @Override
+        public List<Integer> handle(ResultSet rs) throws SQLException {
+            List<Integer> answer = new ArrayList<>();
+            try {
+                while (rs.next()) {
+                    // drivers report generated keys as Long or BigInteger, getInt converts both
+                    answer.add(rs.getInt(1));
+                }
+            } finally {
+                if (rs != null) {
+                    rs.close();
+                }
+            }
+            return answer;
+        }
+    };
+
     public static ResultSetHandler<List<String>> resultSetToStringListHandler = new ResultSetHandler<List<String>>() {
         @Override
         public List<String> handle(ResultSet rs) throws SQLException {
@@ -0,0 +1,218 @@
+package de.sub.goobi.persistence.managers;
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.log4j.Logger;
+import org.goobi.beans.LogEntry;
+
+import de.sub.goobi.config.ConfigurationHelper;
+
+/**
+ * Writes new process log entries in the background. The entries are collected in a bounded queue and inserted in jdbc batches, either when
+ * enough entries are waiting or after the flush interval. If the queue is full, the entry is written directly by the calling thread.
+ * 
+ * Entries that are still waiting are written by {@link #flush()} before the process log is read, and on shutdown.
+ */
+public class ProcessLogWriter {
+
+    private static final Logger logger = Logger.getLogger(ProcessLogWriter.class);
+
+    static final int BATCH_SIZE = 500;
+
+    private static ProcessLogWriter instance = null;
+
+    private final BlockingQueue<LogEntry> queue;
+
+    private final long flushInterval;
+
+    private final boolean asynchronous;
+
+    // held while entries are taken from the queue and written, so flush() returns only after all entries are stored
+    private final Object writeLock = new Object();
+
+    private final Object signal = new Object();
+
+    private volatile boolean running = true;
+
+    private Thread writer;
+
+    ProcessLogWriter(int queueSize, long flushInterval, boolean asynchronous) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.flushInterval = Math.max(1, flushInterval);
+        this.asynchronous = asynchronous;
+        if (asynchronous) {
+            writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    writeLoop();
+                }
+            }, "process-log-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    public static synchronized ProcessLogWriter getInstance() {
+        if (instance == null) {
+            ConfigurationHelper config = ConfigurationHelper.getInstance();
+            instance = new ProcessLogWriter(config.getProcessLogQueueSize(), config.getProcessLogFlushInterval(), config.isProcessLogAsynchronous());
+        }
+        return instance;
+    }
+
+    /**
+     * Stop the background thread and write all waiting entries
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * Add a new entry to the process log. The entry gets its id once it is written.
+     * 
+     * @param entry the new log entry
+     */
+    public void add(LogEntry entry) {
+        if (!asynchronous || !running || entry.getId() != null) {
+            writeDirectly(entry);
+            return;
+        }
+        if (!queue.offer(entry)) {
+            logger.debug("Process log queue is full, writing entry directly");
+            writeDirectly(entry);
+            return;
+        }
+        if (queue.size() >= BATCH_SIZE) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Write all waiting entries. When this method returns, all entries added before are stored in the database.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            List<LogEntry> batch = new ArrayList<>(BATCH_SIZE);
+            while (queue.drainTo(batch, BATCH_SIZE) > 0) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * @return number of entries waiting to be written
+     */
+    public int getWaitingEntries() {
+        return queue.size();
+    }
+
+    void close() {
+        running = false;
+        if (writer != null) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+            try {
+                writer.join(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    private void writeLoop() {
+        while (running) {
+            try {
+                synchronized (signal) {
+                    if (running && queue.size() < BATCH_SIZE) {
+                        signal.wait(flushInterval);
+                    }
+                }
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Error while writing the process log", e);
+            }
+        }
+    }
+
+    private void writeBatch(List<LogEntry> batch) {
+        try {
+            store(batch);
+        } catch (SQLException e) {
+            logger.warn("Could not write " + batch.size() + " process log entries as batch, writing them one by one", e);
+            for (LogEntry entry : batch) {
+                // ids from the rolled back batch are not valid
+                entry.setId(null);
+                writeDirectly(entry);
+            }
+        }
+    }
+
+    /**
+     * Insert the entries within one transaction
+     */
+    void store(List<LogEntry> batch) throws SQLException {
+        Connection connection = null;
+        boolean autoCommit = true;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            ProcessMysqlHelper.saveLogEntries(batch, connection);
+            connection.commit();
+        } catch (SQLException e) {
+            MySQLHelper.rollback(connection);
+            throw e;
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.setAutoCommit(autoCommit);
+                    MySQLHelper.closeConnection(connection);
+                } catch (SQLException e) {
+                    logger.error(e);
+                }
+            }
+        }
+    }
+
+    void writeDirectly(LogEntry entry) {
+        try {
+            ProcessMysqlHelper.saveLogEntry(entry);
+        } catch (SQLException e) {
+            logger.error("Cannot not update process log for process with id " + entry.getProcessId(), e);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.apache.commons.dbutils.ResultSetHandler;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.log4j.Logger;
 import org.goobi.beans.Batch;
@@ -31,9 +32,10 @@ import org.goobi.beans.DatabaseObject;
 import org.goobi.beans.LogEntry;
 import org.goobi.beans.Process;
 
+import de.sub.goobi.config.ConfigurationHelper;
 import de.sub.goobi.helper.exceptions.DAOException;
 
-public class ProcessManager implements IManager, Serializable {
+public class ProcessManager implements IFilterQueryManager, Serializable {
 
     private static final long serialVersionUID = 3898081063234221110L;
 
@@ -54,6 +56,47 @@ public class ProcessManager implements IManager, Serializable {
         return getProcesses(order, filter, start, count);
     }
 
+    @Override
+    public KeysetPage getPage(String order, String filter, Object[] seekKey, Integer start, Integer count) throws DAOException {
+        try {
+            return ProcessMysqlHelper.getProcessPage(order, filter, seekKey, start, count);
+        } catch (SQLException e) {
+            logger.error("error while getting process list", e);
+            throw new DAOException(e);
+        }
+    }
+
+    @Override
+    public int getHitSize(String order, FilterQuery filter) throws DAOException {
+        try {
+            return ProcessMysqlHelper.getProcessCount(order, filter);
+        } catch (SQLException e) {
+            logger.error(e);
+            return 0;
+        }
+    }
+
+    @Override
+    public List<? extends DatabaseObject> getList(String order, FilterQuery filter, Integer start, Integer count) {
+        List<Process> answer = new ArrayList<Process>();
+        try {
+            answer = ProcessMysqlHelper.getProcesses(order, filter, start, count);
+        } catch (SQLException e) {
+            logger.error("error while getting process list", e);
+        }
+        return answer;
+    }
+
+    @Override
+    public KeysetPage getPage(String order, FilterQuery filter, Object[] seekKey, Integer start, Integer count) throws DAOException {
+        try {
+            return ProcessMysqlHelper.getProcessPage(order, filter, seekKey, start, count);
+        } catch (SQLException e) {
+            logger.error("error while getting process list", e);
+            throw new DAOException(e);
+        }
+    }
+
     public static List<Process> getProcesses(String order, String filter, Integer start, Integer count) {
         List<Process> answer = new ArrayList<Process>();
         try {
@@ -233,6 +276,24 @@ public class ProcessManager implements IManager, Serializable {
         return new ArrayList();
     }
 
+    /**
+     * Execute a query and read the result with a forward-only cursor, see
+     * {@link ProcessMysqlHelper#runStreamingSQL(String, int, ResultSetHandler, Object...)}
+     * 
+     * @param sql the query to execute
+     * @param handler reads the result set
+     * @return the result of the handler
+     * @throws DAOException if the query or the handler failed
+     */
+    public static <T> T runStreamingSQL(String sql, ResultSetHandler<T> handler) throws DAOException {
+        try {
+            return ProcessMysqlHelper.runStreamingSQL(sql, ConfigurationHelper.getInstance().getDatabaseFetchSize(), handler);
+        } catch (SQLException e) {
+            logger.error(e);
+            throw new DAOException(e);
+        }
+    }
+
     public static int getNumberOfProcessesWithTitle(String title) {
         int answer = 0;
         try {
@@ -312,6 +373,27 @@ public class ProcessManager implements IManager, Serializable {
         return idList;
     }
 
+    @Override
+    public int[] getIdArray(FilterQuery filter) {
+        try {
+            return ProcessMysqlHelper.getIdArray(filter, ConfigurationHelper.getInstance().getDatabaseFetchSize());
+        } catch (SQLException e) {
+            logger.error("error while getting id list", e);
+        }
+        return new int[0];
+    }
+
+    public static List<LogEntry> getLogEntriesForProcess(int processId) {
+        // entries that are still waiting in the queue must be visible
+        ProcessLogWriter.getInstance().flush();
+        try {
+            return ProcessMysqlHelper.getLogEntriesForProcess(processId);
+        } catch (SQLException e) {
+            logger.error("Cannot not load process log for process with id " + processId, e);
+        }
+        return new LinkedList<>();
+    }
+
     public static void saveLogEntry(LogEntry entry) {
         try {
             ProcessMysqlHelper.saveLogEntry(entry);
@@ -320,4 +402,14 @@ public class ProcessManager implements IManager, Serializable {
         }
     }
 
+    /**
+     * Add a new entry to the process log. Unlike {@link #saveLogEntry(LogEntry)} the entry may be written later in a batch together with other
+     * entries, use this for messages written by scripts, plugins and automatic tasks.
+     * 
+     * @param entry the new log entry
+     */
+    public static void addLogEntry(LogEntry entry) {
+        ProcessLogWriter.getInstance().add(entry);
+    }
+
 }
@@ -20,25 +20,39 @@ package de.sub.goobi.persistence.managers;
  */
 import java.io.Serializable;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.goobi.beans.Batch;
+import org.goobi.beans.Docket;
+import org.goobi.beans.ErrorProperty;
 import org.goobi.beans.LogEntry;
 import org.goobi.beans.Masterpiece;
+import org.goobi.beans.Masterpieceproperty;
 import org.goobi.beans.Process;
 import org.goobi.beans.Processproperty;
+import org.goobi.beans.Ruleset;
 import org.goobi.beans.Step;
 import org.goobi.beans.Template;
+import org.goobi.beans.Templateproperty;
 import org.goobi.production.enums.LogType;
 import org.joda.time.LocalDate;
 
@@ -97,55 +111,181 @@ class ProcessMysqlHelper implements Serializable {
         }
     }
 
+    /**
+     * Saves the process together with its steps, properties, masterpieces, templates and log entries. The log entries are saved only if they were
+     * loaded. All rows are written within a single transaction on one connection, child rows are sent as jdbc batches. If anything fails, the
+     * transaction is rolled back and the ids generated during this call are removed from the objects again.
+     * 
+     * @param o process to save
+     * @param processOnly if true, the steps are not saved
+     * @throws DAOException
+     */
     public static void saveProcess(Process o, boolean processOnly) throws DAOException {
+        o.setSortHelperStatus(o.getFortschritt());
+
+        // resolve lazy loaded lists before the transaction starts, they use their own connections
+        List<Step> stepList = processOnly ? new ArrayList<Step>() : o.getSchritte();
+        List<Processproperty> properties = o.getEigenschaften();
+        List<Masterpiece> masterpieces = o.getWerkstuecke();
+        List<Template> templates = o.getVorlagen();
+        // the log entries are loaded lazily, if nobody used them, nothing was added or changed
+        List<LogEntry> logEntries = o.isProcessLogLoaded() ? o.getProcessLog() : null;
+
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            saveProcess(o, stepList, properties, masterpieces, templates, logEntries, connection);
+        } catch (SQLException e) {
+            //            logger.error("Error while saving process " + o.getTitel(), e);
+            throw new DAOException(e);
+        } finally {
+            if (connection != null) {
+                try {
+                    MySQLHelper.closeConnection(connection);
+                } catch (SQLException e) {
+                    logger.error(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the process and the given child objects within a single transaction on the given connection. The connection is not closed, its auto
+     * commit mode is restored afterwards.
+     */
+    static void saveProcess(Process o, List<Step> stepList, List<Processproperty> properties, List<Masterpiece> masterpieces,
+            List<Template> templates, List<LogEntry> logEntries, Connection connection) throws SQLException {
+        List<Runnable> resetNewIds = collectNewObjects(o, stepList, properties, masterpieces, templates, logEntries);
+
+        boolean autoCommit = connection.getAutoCommit();
         try {
-            o.setSortHelperStatus(o.getFortschritt());
+            connection.setAutoCommit(false);
 
             if (o.getBatch() != null) {
-                saveBatch(o.getBatch());
+                saveBatch(o.getBatch(), connection);
             }
 
             if (o.getId() == null) {
                 // new process
-                insertProcess(o);
+                insertProcess(o, connection);
 
             } else {
                 // process exists already in database
-                updateProcess(o);
+                updateProcess(o, connection);
             }
 
-            if (!processOnly) {
-                List<Step> stepList = o.getSchritte();
-                for (Step s : stepList) {
-                    StepMysqlHelper.saveStep(s);
-                }
+            if (stepList != null && !stepList.isEmpty()) {
+                StepMysqlHelper.saveSteps(stepList, connection);
+            }
+            if (properties != null && !properties.isEmpty()) {
+                PropertyMysqlHelper.saveProcessproperties(properties, connection);
+            }
+            if (masterpieces != null && !masterpieces.isEmpty()) {
+                MasterpieceMysqlHelper.saveMasterpieces(masterpieces, connection);
             }
-            List<Processproperty> properties = o.getEigenschaften();
-            for (Processproperty pe : properties) {
-                PropertyManager.saveProcessProperty(pe);
+            if (templates != null && !templates.isEmpty()) {
+                TemplateMysqlHelper.saveTemplates(templates, connection);
+            }
+            if (logEntries != null && !logEntries.isEmpty()) {
+                saveLogEntries(logEntries, connection);
+            }
+            if (StepPermissionManager.isMaintained()) {
+                // the steps or the project may have changed
+                StepPermissionMysqlHelper.refreshProcess(connection, o.getId());
             }
 
-            for (Masterpiece object : o.getWerkstuecke()) {
-                MasterpieceManager.saveMasterpiece(object);
+            connection.commit();
+        } catch (SQLException e) {
+            MySQLHelper.rollback(connection);
+            for (Runnable reset : resetNewIds) {
+                reset.run();
             }
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
 
-            List<Template> templates = o.getVorlagen();
+    /**
+     * Collects all objects without a database id. If the transaction gets rolled back, the generated ids must be removed again, otherwise the next
+     * save would update rows that do not exist.
+     */
+    private static List<Runnable> collectNewObjects(Process o, List<Step> stepList, List<Processproperty> properties,
+            List<Masterpiece> masterpieces, List<Template> templates, List<LogEntry> logEntries) {
+        List<Runnable> resetNewIds = new ArrayList<>();
+        if (o.getId() == null) {
+            resetNewIds.add(() -> o.setId(null));
+        }
+        if (o.getBatch() != null && o.getBatch().getBatchId() == null) {
+            Batch batch = o.getBatch();
+            resetNewIds.add(() -> batch.setBatchId(null));
+        }
+        if (stepList != null) {
+            for (Step step : stepList) {
+                if (step.getId() == null) {
+                    resetNewIds.add(() -> step.setId(null));
+                }
+                for (ErrorProperty property : step.getEigenschaften()) {
+                    if (property.getId() == null) {
+                        resetNewIds.add(() -> property.setId(null));
+                    }
+                }
+            }
+        }
+        if (properties != null) {
+            for (Processproperty property : properties) {
+                if (property.getId() == null) {
+                    resetNewIds.add(() -> property.setId(null));
+                }
+            }
+        }
+        if (masterpieces != null) {
+            for (Masterpiece masterpiece : masterpieces) {
+                if (masterpiece.getId() == null) {
+                    resetNewIds.add(() -> masterpiece.setId(null));
+                }
+                for (Masterpieceproperty property : masterpiece.getEigenschaften()) {
+                    if (property.getId() == null) {
+                        resetNewIds.add(() -> property.setId(null));
+                    }
+                }
+            }
+        }
+        if (templates != null) {
             for (Template template : templates) {
-                TemplateManager.saveTemplate(template);
+                if (template.getId() == null) {
+                    resetNewIds.add(() -> template.setId(null));
+                }
+                for (Templateproperty property : template.getEigenschaften()) {
+                    if (property.getId() == null) {
+                        resetNewIds.add(() -> property.setId(null));
+                    }
+                }
             }
-
-            for (LogEntry logEntry : o.getProcessLog()) {
-                saveLogEntry(logEntry);
+        }
+        if (logEntries != null) {
+            for (LogEntry entry : logEntries) {
+                if (entry.getId() == null) {
+                    resetNewIds.add(() -> entry.setId(null));
+                }
             }
-
-        } catch (SQLException e) {
-            //            logger.error("Error while saving process " + o.getTitel(), e);
-            throw new DAOException(e);
         }
+        return resetNewIds;
     }
 
     public static void saveBatch(Batch batch) throws SQLException {
         Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            saveBatch(batch, connection);
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    private static void saveBatch(Batch batch, Connection connection) throws SQLException {
         Timestamp start = null;
         Timestamp end = null;
 
@@ -160,37 +300,17 @@ class ProcessMysqlHelper implements Serializable {
             end = new Timestamp(localDate.toDateTimeAtStartOfDay().getMillis());
         }
 
+        QueryRunner run = new QueryRunner();
         if (batch.getBatchId() == null) {
-            StringBuilder sql = new StringBuilder();
-            sql.append("INSERT INTO batches (batchName, startDate, endDate) VALUES (?,?,?)");
-            try {
-                connection = MySQLHelper.getInstance().getConnection();
-                QueryRunner run = new QueryRunner();
-                Integer id = run.insert(connection, sql.toString(), MySQLHelper.resultSetToIntegerHandler, batch.getBatchName(), start, end);
-                if (id != null) {
-                    batch.setBatchId(id);
-                }
-            } finally {
-                if (connection != null) {
-                    MySQLHelper.closeConnection(connection);
-                }
+            String sql = "INSERT INTO batches (batchName, startDate, endDate) VALUES (?,?,?)";
+            Integer id = run.insert(connection, sql, MySQLHelper.resultSetToIntegerHandler, batch.getBatchName(), start, end);
+            if (id != null) {
+                batch.setBatchId(id);
             }
-
         } else {
-            StringBuilder sql = new StringBuilder();
-            sql.append("UPDATE batches set batchName = ?, startDate = ?, endDate= ? where id = ?");
-            try {
-                connection = MySQLHelper.getInstance().getConnection();
-                QueryRunner run = new QueryRunner();
-                run.update(connection, sql.toString(), batch.getBatchName(), start, end, batch.getBatchId());
-            } finally {
-                if (connection != null) {
-                    MySQLHelper.closeConnection(connection);
-                }
-            }
-
+            String sql = "UPDATE batches set batchName = ?, startDate = ?, endDate= ? where id = ?";
+            run.update(connection, sql, batch.getBatchName(), start, end, batch.getBatchId());
         }
-
     }
 
     public static void deleteBatch(Batch batch) throws SQLException {
@@ -255,24 +375,24 @@ class ProcessMysqlHelper implements Serializable {
     }
 
     public static int getProcessCount(String order, String filter) throws SQLException {
+        return getProcessCount(order, new FilterQuery(filter));
+    }
+
+    public static int getProcessCount(String order, FilterQuery filter) throws SQLException {
 
         Connection connection = null;
         StringBuilder sql = new StringBuilder();
         sql.append(
                 "SELECT COUNT(ProzesseID) FROM prozesse left join batches on prozesse.batchID = batches.id left join projekte on prozesse.ProjekteID = projekte.ProjekteID ");
-        if (filter != null && !filter.isEmpty()) {
-            sql.append(" WHERE " + filter);
+        if (!filter.isEmpty()) {
+            sql.append(" WHERE " + filter.getSql());
         }
         try {
             connection = MySQLHelper.getInstance().getConnection();
             if (logger.isTraceEnabled()) {
-                logger.trace(sql.toString());
+                logger.trace(sql.toString() + ", " + filter.getParameters());
             }
-            //            if (filter != null && !filter.isEmpty()) {
-            //                return new QueryRunner().query(connection, sql.toString(), MySQLHelper.resultSetToIntegerHandler);
-            //            } else {
-            return new QueryRunner().query(connection, sql.toString(), MySQLHelper.resultSetToIntegerHandler);
-            //            }
+            return new QueryRunner().query(connection, sql.toString(), MySQLHelper.resultSetToIntegerHandler, filter.getParameterArray());
         } finally {
             if (connection != null) {
                 MySQLHelper.closeConnection(connection);
@@ -281,12 +401,16 @@ class ProcessMysqlHelper implements Serializable {
     }
 
     public static List<Process> getProcesses(String order, String filter, Integer start, Integer count) throws SQLException {
+        return getProcesses(order, new FilterQuery(filter), start, count);
+    }
+
+    public static List<Process> getProcesses(String order, FilterQuery filter, Integer start, Integer count) throws SQLException {
         Connection connection = null;
         StringBuilder sql = new StringBuilder();
         sql.append(
                 "SELECT * FROM prozesse left join batches on prozesse.batchID = batches.id left join projekte on prozesse.ProjekteID = projekte.ProjekteID ");
-        if (filter != null && !filter.isEmpty()) {
-            sql.append(" WHERE " + filter);
+        if (!filter.isEmpty()) {
+            sql.append(" WHERE " + filter.getSql());
         }
         if (order != null && !order.isEmpty()) {
             sql.append(" ORDER BY " + order);
@@ -297,10 +421,10 @@ class ProcessMysqlHelper implements Serializable {
         try {
             connection = MySQLHelper.getInstance().getConnection();
             if (logger.isTraceEnabled()) {
-                logger.trace(sql.toString());
+                logger.trace(sql.toString() + ", " + filter.getParameters());
             }
             List<Process> ret = null;
-            ret = new QueryRunner().query(connection, sql.toString(), resultSetToProcessListHandler);
+            ret = new QueryRunner().query(connection, sql.toString(), resultSetToProcessListHandler, filter.getParameterArray());
             return ret;
         } finally {
             if (connection != null) {
@@ -309,6 +433,22 @@ class ProcessMysqlHelper implements Serializable {
         }
     }
 
+    public static KeysetPage getProcessPage(String order, String filter, Object[] seekKey, Integer start, Integer count) throws SQLException {
+        return getProcessPage(order, new FilterQuery(filter), seekKey, start, count);
+    }
+
+    public static KeysetPage getProcessPage(String order, FilterQuery filter, Object[] seekKey, Integer start, Integer count) throws SQLException {
+        KeysetQuery query = new KeysetQuery(order, "prozesse.ProzesseID");
+        List<Object[]> rows = query.getPageKeys(
+                "FROM prozesse left join batches on prozesse.batchID = batches.id left join projekte on prozesse.ProjekteID = projekte.ProjekteID WHERE 1 = 1",
+                filter, seekKey, start, count);
+        if (rows.isEmpty()) {
+            return new KeysetPage(new ArrayList<Process>(), null);
+        }
+        List<Process> processes = getProcesses(query.getOrder(), "prozesse.ProzesseID IN (" + KeysetQuery.getIds(rows) + ")", null, null);
+        return new KeysetPage(processes, KeysetQuery.getLastKey(rows));
+    }
+
     public static List<Integer> getProcessIdList(String order, String filter, Integer start, Integer count) throws SQLException {
         Connection connection = null;
         StringBuilder sql = new StringBuilder();
@@ -359,22 +499,21 @@ class ProcessMysqlHelper implements Serializable {
         @Override
         public List<Process> handle(ResultSet rs) throws SQLException {
             List<Process> answer = new ArrayList<>();
+            List<Integer> rulesetIds = new ArrayList<>();
+            List<Integer> batchIds = new ArrayList<>();
             try {
                 while (rs.next()) {
-                    try {
-                        Process o = convert(rs);
-                        if (o != null) {
-                            answer.add(o);
-                        }
-                    } catch (DAOException e) {
-                        logger.error(e);
-                    }
+                    answer.add(convert(rs));
+                    rulesetIds.add(rs.getInt("MetadatenKonfigurationID"));
+                    Integer batchId = rs.getInt("batchID");
+                    batchIds.add(rs.wasNull() ? null : batchId);
                 }
             } finally {
                 if (rs != null) {
                     rs.close();
                 }
             }
+            loadReferencedObjects(answer, rulesetIds, batchIds);
             return answer;
         }
     };
@@ -382,42 +521,24 @@ class ProcessMysqlHelper implements Serializable {
     public static ResultSetHandler<Process> resultSetToProcessHandler = new ResultSetHandler<Process>() {
         @Override
         public Process handle(ResultSet rs) throws SQLException {
-            try {
-                if (rs.next()) {
-                    try {
-                        Process o = convert(rs);
-                        return o;
-                    } catch (DAOException e) {
-                        logger.error(e);
-                    }
-                }
-            } finally {
-                if (rs != null) {
-                    rs.close();
-                }
+            List<Process> answer = resultSetToProcessListHandler.handle(rs);
+            if (answer.isEmpty()) {
+                return null;
             }
-            return null;
+            return answer.get(0);
         }
     };
 
-    private static void insertProcess(Process o) throws SQLException {
+    private static void insertProcess(Process o, Connection connection) throws SQLException {
         String sql = "INSERT INTO prozesse " + generateInsertQuery(false) + generateValueQuery(false);
         Object[] param = generateParameter(o, false, false);
-        Connection connection = null;
-        try {
-            connection = MySQLHelper.getInstance().getConnection();
-            QueryRunner run = new QueryRunner();
-            if (logger.isTraceEnabled()) {
-                logger.trace(sql.toString() + ", " + Arrays.toString(param));
-            }
-            Integer id = run.insert(connection, sql, MySQLHelper.resultSetToIntegerHandler, param);
-            if (id != null) {
-                o.setId(id);
-            }
-        } finally {
-            if (connection != null) {
-                MySQLHelper.closeConnection(connection);
-            }
+        QueryRunner run = new QueryRunner();
+        if (logger.isTraceEnabled()) {
+            logger.trace(sql.toString() + ", " + Arrays.toString(param));
+        }
+        Integer id = run.insert(connection, sql, MySQLHelper.resultSetToIntegerHandler, param);
+        if (id != null) {
+            o.setId(id);
         }
     }
 
@@ -470,7 +591,7 @@ class ProcessMysqlHelper implements Serializable {
         }
     }
 
-    private static void updateProcess(Process o) throws SQLException {
+    private static void updateProcess(Process o, Connection connection) throws SQLException {
         StringBuilder sql = new StringBuilder();
         sql.append("UPDATE prozesse SET ");
         sql.append(" Titel = ?,");
@@ -494,19 +615,15 @@ class ProcessMysqlHelper implements Serializable {
 
         Object[] param = generateParameter(o, false, false);
 
-        Connection connection = null;
-        try {
-            connection = MySQLHelper.getInstance().getConnection();
-            QueryRunner run = new QueryRunner();
-            run.update(connection, sql.toString(), param);
-        } finally {
-            if (connection != null) {
-                MySQLHelper.closeConnection(connection);
-            }
-        }
+        QueryRunner run = new QueryRunner();
+        run.update(connection, sql.toString(), param);
     }
 
-    private static Process convert(ResultSet rs) throws DAOException, SQLException {
+    /**
+     * Creates the process from the current row. Ruleset, batch and docket are not resolved here, this is done for all rows at once in
+     * loadReferencedObjects. The process log is loaded lazily.
+     */
+    private static Process convert(ResultSet rs) throws SQLException {
         Process p = new Process();
         p.setId(rs.getInt("ProzesseID"));
         p.setTitel(rs.getString("Titel"));
@@ -522,26 +639,93 @@ class ProcessMysqlHelper implements Serializable {
             p.setErstellungsdatum(new Date(time.getTime()));
         }
         p.setProjectId(rs.getInt("ProjekteID"));
-        p.setRegelsatz(RulesetManager.getRulesetById(rs.getInt("MetadatenKonfigurationID")));
         p.setSortHelperDocstructs(rs.getInt("sortHelperDocstructs"));
         p.setSortHelperMetadata(rs.getInt("sortHelperMetadata"));
         //        p.setWikifield(rs.getString("wikifield"));
-        Integer batchID = rs.getInt("batchID");
+        Integer docketId = rs.getInt("docketID");
         if (!rs.wasNull()) {
-            Batch batch = loadBatch(batchID);
-            p.setBatch(batch);
-
-        } else {
+            p.setDocketId(docketId);
         }
-        p.setDocket(DocketManager.getDocketById(rs.getInt("docketID")));
-
-        p.setProcessLog(getLogEntriesForProcess(p.getId()));
 
         p.setMediaFolderExists(rs.getBoolean("mediaFolderExists"));
 
         return p;
     }
 
+    /**
+     * Resolves rulesets, batches and dockets for all given processes. Each kind of object is loaded with a single query, independent of the number
+     * of processes.
+     * 
+     * @param processes processes to complete
+     * @param rulesetIds ruleset id for each process
+     * @param batchIds batch id or null for each process
+     * @throws SQLException
+     */
+    private static void loadReferencedObjects(List<Process> processes, List<Integer> rulesetIds, List<Integer> batchIds) throws SQLException {
+        if (processes.isEmpty()) {
+            return;
+        }
+        Set<Integer> docketIds = new HashSet<>();
+        for (Process p : processes) {
+            if (p.getDocketId() != null) {
+                docketIds.add(p.getDocketId());
+            }
+        }
+        Set<Integer> distinctBatchIds = new HashSet<>(batchIds);
+        distinctBatchIds.remove(null);
+
+        Map<Integer, Ruleset> rulesets;
+        Map<Integer, Docket> dockets;
+        try {
+            rulesets = RulesetManager.getRulesetsByIds(new HashSet<>(rulesetIds));
+            dockets = DocketManager.getDocketsByIds(docketIds);
+        } catch (DAOException e) {
+            throw new SQLException(e);
+        }
+        Map<Integer, Batch> batches = loadBatches(distinctBatchIds);
+
+        for (int i = 0; i < processes.size(); i++) {
+            Process p = processes.get(i);
+            p.setRegelsatz(rulesets.get(rulesetIds.get(i)));
+            if (batchIds.get(i) != null) {
+                p.setBatch(batches.get(batchIds.get(i)));
+            }
+            if (p.getDocketId() != null) {
+                p.setDocket(dockets.get(p.getDocketId()));
+            }
+        }
+    }
+
+    /**
+     * Loads all batches with the given ids in a single query
+     * 
+     * @param batchIds
+     * @return map of batch id and batch
+     * @throws SQLException
+     */
+    public static Map<Integer, Batch> loadBatches(Collection<Integer> batchIds) throws SQLException {
+        Map<Integer, Batch> answer = new HashMap<>();
+        if (batchIds.isEmpty()) {
+            return answer;
+        }
+        String sql = "SELECT * FROM batches WHERE id IN (" + StringUtils.join(batchIds, ", ") + ")";
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            if (logger.isTraceEnabled()) {
+                logger.trace(sql);
+            }
+            for (Batch batch : new QueryRunner().query(connection, sql, resultSetToBatchListHandler)) {
+                answer.put(batch.getBatchId(), batch);
+            }
+            return answer;
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
     public static Batch loadBatch(Integer batchID) throws SQLException {
         String sql = "SELECT * FROM batches WHERE id = ?";
         Connection connection = null;
@@ -560,20 +744,24 @@ class ProcessMysqlHelper implements Serializable {
     }
 
     public static List<Integer> getIDList(String filter) throws SQLException {
+        return getIDList(new FilterQuery(filter));
+    }
+
+    public static List<Integer> getIDList(FilterQuery filter) throws SQLException {
         Connection connection = null;
         StringBuilder sql = new StringBuilder();
         sql.append("SELECT prozesseID FROM prozesse left join batches on prozesse.batchId = batches.id");
-        if (filter != null && !filter.isEmpty()) {
-            sql.append(" WHERE " + filter);
+        if (!filter.isEmpty()) {
+            sql.append(" WHERE " + filter.getSql());
         }
 
         try {
             connection = MySQLHelper.getInstance().getConnection();
             if (logger.isTraceEnabled()) {
-                logger.trace(sql.toString());
+                logger.trace(sql.toString() + ", " + filter.getParameters());
             }
             List<Integer> ret = null;
-            ret = new QueryRunner().query(connection, sql.toString(), MySQLHelper.resultSetToIntegerListHandler);
+            ret = new QueryRunner().query(connection, sql.toString(), MySQLHelper.resultSetToIntegerListHandler, filter.getParameterArray());
 
             return ret;
         } finally {
@@ -584,6 +772,27 @@ class ProcessMysqlHelper implements Serializable {
 
     }
 
+    /**
+     * Loads the ids of all processes matching the filter. The rows are read with a forward-only cursor into an array, so no list of objects is
+     * created for large results.
+     * 
+     * @param filter the filter
+     * @param fetchSize number of rows to fetch at once
+     * @return the ids
+     * @throws SQLException
+     */
+    public static int[] getIdArray(FilterQuery filter, int fetchSize) throws SQLException {
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT prozesseID FROM prozesse left join batches on prozesse.batchId = batches.id");
+        if (!filter.isEmpty()) {
+            sql.append(" WHERE " + filter.getSql());
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace(sql.toString() + ", " + filter.getParameters());
+        }
+        return runStreamingSQL(sql.toString(), fetchSize, MySQLHelper.resultSetToIntArrayHandler, filter.getParameterArray());
+    }
+
     public static int countProcesses(String filter) throws SQLException {
         String sql = "select count(prozesseID) from prozesse ";
         if (filter != null && filter.length() > 0) {
@@ -643,6 +852,45 @@ class ProcessMysqlHelper implements Serializable {
         }
     }
 
+    /**
+     * Execute a query and pass the result to the handler while it is read. The rows are fetched with a forward-only cursor, so large results are
+     * never held in memory completely. MySQL Connector/J streams the rows one by one, other drivers fetch them in blocks of the given size.
+     * 
+     * @param sql the query to execute
+     * @param fetchSize number of rows to fetch at once
+     * @param handler reads the result set
+     * @param params values for the placeholders of the query
+     * @return the result of the handler
+     * @throws SQLException
+     */
+    public static <T> T runStreamingSQL(String sql, int fetchSize, ResultSetHandler<T> handler, Object... params) throws SQLException {
+        Connection connection = null;
+        PreparedStatement stmt = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (connection.getMetaData().getDriverName().startsWith("MySQL")) {
+                stmt.setFetchSize(Integer.MIN_VALUE);
+            } else {
+                stmt.setFetchSize(fetchSize);
+            }
+            new QueryRunner().fillStatement(stmt, params);
+            ResultSet rs = stmt.executeQuery();
+            try {
+                return handler.handle(rs);
+            } finally {
+                rs.close();
+            }
+        } finally {
+            if (stmt != null) {
+                stmt.close();
+            }
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
     public static void updateImages(Integer numberOfFiles, int processId) throws SQLException {
         Connection connection = null;
         try {
@@ -794,6 +1042,49 @@ class ProcessMysqlHelper implements Serializable {
         }
     }
 
+    /**
+     * Saves the given log entries on the given connection using jdbc batches, commit and rollback are left to the caller.
+     * 
+     * @param logEntries
+     * @param connection open connection
+     * @throws SQLException
+     */
+    static void saveLogEntries(List<LogEntry> logEntries, Connection connection) throws SQLException {
+        List<LogEntry> newEntries = new ArrayList<>();
+        List<LogEntry> changedEntries = new ArrayList<>();
+        List<Object[]> insertParams = new ArrayList<>();
+        List<Object[]> updateParams = new ArrayList<>();
+        for (LogEntry logEntry : logEntries) {
+            Object[] param = { logEntry.getProcessId(), logEntry.getCreationDate() == null ? null : new Timestamp(logEntry.getCreationDate().getTime()),
+                    logEntry.getUserName(), logEntry.getType().getTitle(), logEntry.getContent(), logEntry.getSecondContent(), logEntry
+                            .getThirdContent() };
+            if (logEntry.getId() == null) {
+                newEntries.add(logEntry);
+                insertParams.add(param);
+            } else {
+                changedEntries.add(logEntry);
+                updateParams.add(ArrayUtils.add(param, logEntry.getId()));
+            }
+        }
+        if (!newEntries.isEmpty()) {
+            String sql =
+                    "INSERT INTO processlog (processID, creationDate, userName, type , content, secondContent, thirdContent ) VALUES (?, ?,  ?, ?, ?, ?, ?)";
+            List<Integer> ids = MySQLHelper.insertBatch(connection, sql, insertParams.toArray(new Object[insertParams.size()][]));
+            for (int i = 0; i < newEntries.size(); i++) {
+                newEntries.get(i).setId(ids.get(i));
+            }
+        }
+        if (!updateParams.isEmpty()) {
+            String sql =
+                    "UPDATE processlog set processID =?, creationDate = ?, userName = ?, type = ? , content = ?, secondContent = ?, thirdContent = ? WHERE id = ?";
+            new QueryRunner().batch(connection, sql, updateParams.toArray(new Object[updateParams.size()][]));
+        }
+        if (SearchIndexManager.isMaintained()) {
+            SearchIndexMysqlHelper.replaceLogEntryTokens(connection, newEntries, false);
+            SearchIndexMysqlHelper.replaceLogEntryTokens(connection, changedEntries, true);
+        }
+    }
+
     private static void updateLogEntry(LogEntry logEntry) throws SQLException {
         String sql =
                 "UPDATE processlog set processID =?, creationDate = ?, userName = ?, type = ? , content = ?, secondContent = ?, thirdContent = ? WHERE id = ?";
@@ -805,6 +1096,9 @@ class ProcessMysqlHelper implements Serializable {
             run.update(connection, sql, logEntry.getProcessId(), logEntry.getCreationDate() == null ? null : new Timestamp(logEntry.getCreationDate()
                     .getTime()), logEntry.getUserName(), logEntry.getType().getTitle(), logEntry.getContent(), logEntry.getSecondContent(), logEntry
                     .getThirdContent(), logEntry.getId());
+            if (SearchIndexManager.isMaintained()) {
+                SearchIndexMysqlHelper.replaceLogEntryTokens(connection, Collections.singletonList(logEntry), true);
+            }
         } finally {
             if (connection != null) {
                 MySQLHelper.closeConnection(connection);
@@ -825,6 +1119,9 @@ class ProcessMysqlHelper implements Serializable {
 
                     );
             logEntry.setId(id);
+            if (SearchIndexManager.isMaintained()) {
+                SearchIndexMysqlHelper.replaceLogEntryTokens(connection, Collections.singletonList(logEntry), false);
+            }
             return logEntry;
         } finally {
             if (connection != null) {
@@ -841,6 +1138,9 @@ class ProcessMysqlHelper implements Serializable {
                 QueryRunner run = new QueryRunner();
                 String sql = "DELETE FROM processlog WHERE id = " + logEntry.getId();
                 run.update(connection, sql);
+                if (SearchIndexManager.isMaintained()) {
+                    SearchIndexMysqlHelper.deleteLogEntryTokens(connection, logEntry.getId());
+                }
             } finally {
                 if (connection != null) {
                     MySQLHelper.closeConnection(connection);
@@ -30,6 +30,7 @@ import java.util.List;
 
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.lang.ArrayUtils;
 import org.apache.log4j.Logger;
 import org.goobi.beans.Masterpieceproperty;
 import org.goobi.beans.Processproperty;
@@ -309,6 +310,126 @@ class PropertyMysqlHelper implements Serializable {
         }
     }
 
+    /**
+     * Saves the given process properties on the given connection. New properties are inserted and existing properties are updated within jdbc
+     * batches, commit and rollback are left to the caller.
+     * 
+     * @param properties
+     * @param connection open connection
+     * @throws SQLException
+     */
+    static void saveProcessproperties(List<Processproperty> properties, Connection connection) throws SQLException {
+        List<Processproperty> newProperties = new ArrayList<>();
+        List<Object[]> insertParams = new ArrayList<>();
+        List<Object[]> updateParams = new ArrayList<>();
+        for (Processproperty pe : properties) {
+            if (pe.getProcessId() == 0 && pe.getProzess() != null) {
+                pe.setProcessId(pe.getProzess().getId());
+            }
+            Object[] param =
+                    { pe.getTitel(), pe.getWert(), pe.isIstObligatorisch(), pe.getType().getId(), pe.getAuswahl(), pe.getProzess().getId(),
+                            pe.getCreationDate() == null ? null : new Timestamp(pe.getCreationDate().getTime()), pe.getContainer() };
+            if (pe.getId() == null) {
+                newProperties.add(pe);
+                insertParams.add(param);
+            } else {
+                updateParams.add(ArrayUtils.add(param, pe.getId()));
+            }
+        }
+        List<Integer> ids = executeBatches(connection,
+                "INSERT INTO prozesseeigenschaften (Titel, WERT, IstObligatorisch, DatentypenID, Auswahl, prozesseID, creationDate, container) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                insertParams,
+                "UPDATE prozesseeigenschaften set Titel = ?,  WERT = ?, IstObligatorisch = ?, DatentypenID = ?, Auswahl = ?, prozesseID = ?, creationDate = ?, container = ? WHERE prozesseeigenschaftenID = ?",
+                updateParams);
+        for (int i = 0; i < newProperties.size(); i++) {
+            newProperties.get(i).setId(ids.get(i));
+        }
+    }
+
+    /**
+     * Saves the given template properties on the given connection using jdbc batches, commit and rollback are left to the caller.
+     * 
+     * @param properties
+     * @param connection open connection
+     * @throws SQLException
+     */
+    static void saveTemplateproperties(List<Templateproperty> properties, Connection connection) throws SQLException {
+        List<Templateproperty> newProperties = new ArrayList<>();
+        List<Object[]> insertParams = new ArrayList<>();
+        List<Object[]> updateParams = new ArrayList<>();
+        for (Templateproperty property : properties) {
+            if (property.getTemplateId() == null && property.getVorlage() != null) {
+                property.setTemplateId(property.getVorlage().getId());
+            }
+            Object[] param =
+                    { property.getTitel(), property.getWert(), property.isIstObligatorisch(), property.getType().getId(), property.getAuswahl(),
+                            property.getVorlage().getId(),
+                            property.getCreationDate() == null ? null : new Timestamp(property.getCreationDate().getTime()), property.getContainer() };
+            if (property.getId() == null) {
+                newProperties.add(property);
+                insertParams.add(param);
+            } else {
+                updateParams.add(ArrayUtils.add(param, property.getId()));
+            }
+        }
+        List<Integer> ids = executeBatches(connection,
+                "INSERT INTO vorlageneigenschaften (Titel, WERT, IstObligatorisch, DatentypenID, Auswahl, vorlagenID, creationDate, container) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                insertParams,
+                "UPDATE vorlageneigenschaften set Titel = ?,  WERT = ?, IstObligatorisch = ?, DatentypenID = ?, Auswahl = ?, vorlagenID = ?, creationDate = ?, container = ? WHERE vorlageneigenschaftenID = ?",
+                updateParams);
+        for (int i = 0; i < newProperties.size(); i++) {
+            newProperties.get(i).setId(ids.get(i));
+        }
+    }
+
+    /**
+     * Saves the given masterpiece properties on the given connection using jdbc batches, commit and rollback are left to the caller.
+     * 
+     * @param properties
+     * @param connection open connection
+     * @throws SQLException
+     */
+    static void saveMasterpieceproperties(List<Masterpieceproperty> properties, Connection connection) throws SQLException {
+        List<Masterpieceproperty> newProperties = new ArrayList<>();
+        List<Object[]> insertParams = new ArrayList<>();
+        List<Object[]> updateParams = new ArrayList<>();
+        for (Masterpieceproperty property : properties) {
+            if (property.getMasterpieceId() == null && property.getWerkstueck() != null) {
+                property.setMasterpieceId(property.getWerkstueck().getId());
+            }
+            Object[] param =
+                    { property.getTitel(), property.getWert(), property.isIstObligatorisch(), property.getType().getId(), property.getAuswahl(),
+                            property.getWerkstueck().getId(),
+                            property.getCreationDate() == null ? null : new Timestamp(property.getCreationDate().getTime()), property.getContainer() };
+            if (property.getId() == null) {
+                newProperties.add(property);
+                insertParams.add(param);
+            } else {
+                updateParams.add(ArrayUtils.add(param, property.getId()));
+            }
+        }
+        List<Integer> ids = executeBatches(connection,
+                "INSERT INTO werkstueckeeigenschaften (Titel, WERT, IstObligatorisch, DatentypenID, Auswahl, werkstueckeID, creationDate, container) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                insertParams,
+                "UPDATE werkstueckeeigenschaften set Titel = ?,  WERT = ?, IstObligatorisch = ?, DatentypenID = ?, Auswahl = ?, werkstueckeID = ?, creationDate = ?, container = ? WHERE werkstueckeeigenschaftenID = ?",
+                updateParams);
+        for (int i = 0; i < newProperties.size(); i++) {
+            newProperties.get(i).setId(ids.get(i));
+        }
+    }
+
+    /**
+     * Runs the insert rows and the update rows as one batch each and returns the generated ids of the inserted rows
+     */
+    private static List<Integer> executeBatches(Connection connection, String insertSql, List<Object[]> insertParams, String updateSql,
+            List<Object[]> updateParams) throws SQLException {
+        List<Integer> ids = MySQLHelper.insertBatch(connection, insertSql, insertParams.toArray(new Object[insertParams.size()][]));
+        if (!updateParams.isEmpty()) {
+            new QueryRunner().batch(connection, updateSql, updateParams.toArray(new Object[updateParams.size()][]));
+        }
+        return ids;
+    }
+
     private static void insertProcessproperty(Processproperty pe) throws SQLException {
         String sql =
                 "INSERT INTO prozesseeigenschaften (Titel, WERT, IstObligatorisch, DatentypenID, Auswahl, prozesseID, creationDate, container) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
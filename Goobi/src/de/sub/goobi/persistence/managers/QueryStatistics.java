@@ -0,0 +1,371 @@
+package de.sub.goobi.persistence.managers;
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *     		- https://goobi.io
+ * 			- https://www.intranda.com
+ * 			- https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ * Linking this library statically or dynamically with other modules is making a combined work based on this library. Thus, the terms and conditions
+ * of the GNU General Public License cover the whole combination. As a special exception, the copyright holders of this library give you permission to
+ * link this library with independent modules to produce an executable, regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that you also meet, for each linked independent module, the terms and
+ * conditions of the license of that module. An independent module is a module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import de.sub.goobi.config.ConfigurationHelper;
+
+/**
+ * Execution times of all database statements, grouped by the fingerprint of the sql. The fingerprint replaces all literals with a placeholder, so
+ * the same query with different values is counted together. Statements that take longer than DatabaseSlowQueryThreshold are logged together with
+ * the manager that executed them.
+ *
+ * The execution times are only collected if the statistics are written to the log (DatabaseStatisticsLogInterval), otherwise only the slow
+ * statements get a fingerprint.
+ */
+public class QueryStatistics {
+
+    private static final Logger logger = Logger.getLogger(QueryStatistics.class);
+
+    // limits the memory used by queries built with inline values that the fingerprint does not catch
+    private static final int MAX_FINGERPRINTS = 1000;
+
+    private static final String OTHER_QUERIES = "<other>";
+
+    private static QueryStatistics instance = null;
+
+    private final long slowQueryThreshold;
+
+    private final boolean enabled;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // prepared statements are executed with the same sql again and again
+    private final Cache<String, String> fingerprints = CacheBuilder.newBuilder().maximumSize(MAX_FINGERPRINTS).build();
+
+    /**
+     * @param slowQueryThreshold statements that take at least this number of milliseconds are logged, 0 to log none
+     * @param enabled true to collect the execution times of all statements
+     */
+    QueryStatistics(long slowQueryThreshold, boolean enabled) {
+        this.slowQueryThreshold = slowQueryThreshold;
+        this.enabled = enabled;
+    }
+
+    public static synchronized QueryStatistics getInstance() {
+        if (instance == null) {
+            ConfigurationHelper config = ConfigurationHelper.getInstance();
+            instance = new QueryStatistics(config.getDatabaseSlowQueryThreshold(), config.getDatabaseStatisticsLogInterval() > 0);
+        }
+        return instance;
+    }
+
+    /**
+     * Replace all literals in the statement with a question mark and normalise the whitespace. A list of literals like in an IN clause is replaced
+     * with a single question mark. The statement is read once from left to right.
+     * 
+     * @param sql the statement
+     * @return fingerprint of the statement
+     */
+    public static String fingerprint(String sql) {
+        if (sql == null) {
+            return OTHER_QUERIES;
+        }
+        StringBuilder fingerprint = new StringBuilder(sql.length());
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (fingerprint.length() > 0) {
+                    fingerprint.append(' ');
+                }
+            } else if (c == '\'') {
+                int end = findStringEnd(sql, i);
+                if (end < 0) {
+                    // not terminated, keep the rest as it is
+                    fingerprint.append(sql, i, length);
+                    i = length;
+                } else {
+                    fingerprint.append('?');
+                    i = end + 1;
+                }
+            } else if (isNumberStart(sql, i)) {
+                int end = findNumberEnd(sql, c == '-' ? i + 1 : i);
+                if (end < length && isWordCharacter(sql.charAt(end))) {
+                    // part of a name like 2nd_table
+                    while (end < length && isWordCharacter(sql.charAt(end))) {
+                        end++;
+                    }
+                    fingerprint.append(sql, i, end);
+                } else {
+                    fingerprint.append('?');
+                }
+                i = end;
+            } else if (c == ')') {
+                collapseValueList(fingerprint);
+                i++;
+            } else {
+                fingerprint.append(c);
+                i++;
+            }
+        }
+        int end = fingerprint.length();
+        if (end > 0 && fingerprint.charAt(end - 1) == ' ') {
+            fingerprint.setLength(end - 1);
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * @return the position of the closing quote of the string literal starting at the given position, -1 if the literal is not terminated
+     */
+    private static int findStringEnd(String sql, int start) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '\'') {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                    // escaped quote
+                    i += 2;
+                } else {
+                    return i;
+                }
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A number starts with a digit or a minus sign followed by a digit, and is not part of a name or of another number
+     */
+    private static boolean isNumberStart(String sql, int i) {
+        char c = sql.charAt(i);
+        if (c == '-') {
+            if (i + 1 >= sql.length() || !isDigit(sql.charAt(i + 1))) {
+                return false;
+            }
+        } else if (!isDigit(c)) {
+            return false;
+        }
+        if (i == 0) {
+            return true;
+        }
+        char previous = sql.charAt(i - 1);
+        return !isWordCharacter(previous) && previous != '.';
+    }
+
+    private static int findNumberEnd(String sql, int start) {
+        int i = start;
+        while (i < sql.length() && isDigit(sql.charAt(i))) {
+            i++;
+        }
+        if (i + 1 < sql.length() && sql.charAt(i) == '.' && isDigit(sql.charAt(i + 1))) {
+            i++;
+            while (i < sql.length() && isDigit(sql.charAt(i))) {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Append a closing bracket. If the bracket closes a list of placeholders, the list is replaced with a single placeholder.
+     */
+    private static void collapseValueList(StringBuilder fingerprint) {
+        int i = fingerprint.length() - 1;
+        int placeholders = 0;
+        boolean expectPlaceholder = true;
+        while (i >= 0) {
+            char c = fingerprint.charAt(i);
+            if (c == '?' && expectPlaceholder) {
+                placeholders++;
+                expectPlaceholder = false;
+            } else if (c == ',' && !expectPlaceholder) {
+                expectPlaceholder = true;
+            } else if (c != ' ') {
+                break;
+            }
+            i--;
+        }
+        if (i >= 0 && fingerprint.charAt(i) == '(' && placeholders > 0 && !expectPlaceholder) {
+            fingerprint.setLength(i);
+            fingerprint.append("(?)");
+        } else {
+            fingerprint.append(')');
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWordCharacter(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+    }
+
+    private String getFingerprint(String sql) {
+        if (sql == null) {
+            return OTHER_QUERIES;
+        }
+        String fingerprint = fingerprints.getIfPresent(sql);
+        if (fingerprint == null) {
+            fingerprint = fingerprint(sql);
+            fingerprints.put(sql, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Record the execution of a statement
+     * 
+     * @param sql the executed statement
+     * @param duration execution time in milliseconds
+     */
+    void record(String sql, long duration) {
+        boolean slow = slowQueryThreshold > 0 && duration >= slowQueryThreshold;
+        if (!enabled) {
+            if (slow) {
+                logger.warn("Slow query (" + duration + " ms) from " + getCaller() + ": " + getFingerprint(sql));
+            }
+            return;
+        }
+        String fingerprint = getFingerprint(sql);
+        Entry entry = entries.get(fingerprint);
+        if (entry == null) {
+            if (entries.size() >= MAX_FINGERPRINTS) {
+                fingerprint = OTHER_QUERIES;
+            }
+            entries.putIfAbsent(fingerprint, new Entry(fingerprint));
+            entry = entries.get(fingerprint);
+        }
+        entry.add(duration, slow);
+        if (slow) {
+            logger.warn("Slow query (" + duration + " ms) from " + getCaller() + ": " + fingerprint);
+        }
+    }
+
+    /**
+     * Find the manager that executed the statement
+     */
+    private static String getCaller() {
+        String packageName = QueryStatistics.class.getPackage().getName();
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            String className = element.getClassName();
+            if (className.startsWith(packageName) && !className.startsWith(QueryStatistics.class.getName()) && !className.startsWith(
+                    MonitoredConnection.class.getName())) {
+                return className.substring(packageName.length() + 1) + "." + element.getMethodName();
+            }
+        }
+        return "unknown";
+    }
+
+    /**
+     * Get the statements sorted by their total execution time
+     * 
+     * @param max maximal number of entries
+     * @return list of statistic entries, the statement with the highest total time first
+     */
+    public List<Entry> getEntries(int max) {
+        List<Entry> list = new ArrayList<>(entries.values());
+        Collections.sort(list, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry o1, Entry o2) {
+                return Long.compare(o2.getTotalTime(), o1.getTotalTime());
+            }
+        });
+        return list.size() > max ? new ArrayList<>(list.subList(0, max)) : list;
+    }
+
+    public void reset() {
+        entries.clear();
+    }
+
+    public static class Entry {
+        private final String fingerprint;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong slowCount = new AtomicLong();
+        private final AtomicLong totalTime = new AtomicLong();
+        private final AtomicLong maxTime = new AtomicLong();
+
+        private Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        private void add(long duration, boolean slow) {
+            count.incrementAndGet();
+            totalTime.addAndGet(duration);
+            if (slow) {
+                slowCount.incrementAndGet();
+            }
+            long max = maxTime.get();
+            while (duration > max && !maxTime.compareAndSet(max, duration)) {
+                max = maxTime.get();
+            }
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getSlowCount() {
+            return slowCount.get();
+        }
+
+        public long getTotalTime() {
+            return totalTime.get();
+        }
+
+        public long getMaxTime() {
+            return maxTime.get();
+        }
+
+        public long getAverageTime() {
+            long c = count.get();
+            return c == 0 ? 0 : totalTime.get() / c;
+        }
+
+        @Override
+        public String toString() {
+            return getCount() + "x, " + getTotalTime() + " ms total, " + getAverageTime() + " ms average, " + getMaxTime() + " ms max, "
+                    + getSlowCount() + " slow: " + fingerprint;
+        }
+    }
+}
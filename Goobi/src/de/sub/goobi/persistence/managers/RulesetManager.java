@@ -21,7 +21,10 @@ import java.io.Serializable;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.dbutils.ResultSetHandler;
 import org.apache.log4j.Logger;
@@ -49,6 +52,26 @@ public class RulesetManager implements IManager, Serializable {
         return o;
     }
 
+    /**
+     * Loads all rulesets with the given ids in a single query
+     * 
+     * @param ids ruleset ids
+     * @return map of ruleset id and ruleset
+     * @throws DAOException
+     */
+    public static Map<Integer, Ruleset> getRulesetsByIds(Collection<Integer> ids) throws DAOException {
+        Map<Integer, Ruleset> answer = new HashMap<>();
+        try {
+            for (Ruleset ruleset : RulesetMysqlHelper.getRulesetsForIds(ids)) {
+                answer.put(ruleset.getId(), ruleset);
+            }
+        } catch (SQLException e) {
+            logger.error("error while getting rulesets with ids " + ids, e);
+            throw new DAOException(e);
+        }
+        return answer;
+    }
+
     public static void saveRuleset(Ruleset ruleset) throws DAOException {
         try {
             RulesetMysqlHelper.saveRuleset(ruleset);
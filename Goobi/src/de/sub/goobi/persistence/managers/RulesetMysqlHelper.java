@@ -21,10 +21,13 @@ package de.sub.goobi.persistence.managers;
 import java.io.Serializable;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.goobi.beans.Ruleset;
 
@@ -100,6 +103,26 @@ class RulesetMysqlHelper implements Serializable {
         }
     }
 
+    public static List<Ruleset> getRulesetsForIds(Collection<Integer> rulesetIds) throws SQLException {
+        if (rulesetIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Connection connection = null;
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT * FROM metadatenkonfigurationen WHERE MetadatenKonfigurationID IN (" + StringUtils.join(rulesetIds, ", ") + ")");
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            if (logger.isTraceEnabled()) {
+                logger.trace(sql.toString());
+            }
+            return new QueryRunner().query(connection, sql.toString(), RulesetManager.resultSetToRulesetListHandler);
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
     public static Ruleset getRulesetForId(int rulesetId) throws SQLException {
         Connection connection = null;
         StringBuilder sql = new StringBuilder();
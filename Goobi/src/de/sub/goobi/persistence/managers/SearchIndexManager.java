@@ -0,0 +1,187 @@
+package de.sub.goobi.persistence.managers;
+
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import de.sub.goobi.config.ConfigurationHelper;
+
+/**
+ * Inverted index of the words of all metadata values and process log entries, stored in the tables metadata_tokens and processlog_tokens. The
+ * filters meta: and processlog: use it to find processes with a range scan over the words instead of a substring search over all values.
+ * 
+ * The index is maintained while it is enabled with MetadataSearchIndex. It is used by the filter after it was built once completely, see
+ * {@link #rebuildIndex()}.
+ */
+public class SearchIndexManager implements Serializable {
+
+    private static final long serialVersionUID = 3185930462727015562L;
+
+    private static final Logger logger = Logger.getLogger(SearchIndexManager.class);
+
+    /**
+     * Name of the watermark that marks the index as complete
+     */
+    static final String WATERMARK = "searchIndex";
+
+    /**
+     * Longer words are truncated to this length
+     */
+    public static final int MAX_TOKEN_LENGTH = 100;
+
+    private static volatile boolean available = false;
+
+    private static volatile boolean rebuilding = false;
+
+    /**
+     * Split a text into words. Words are sequences of letters and digits, they are converted to lower case.
+     * 
+     * @param text the text to split, may be null
+     * @return the distinct words in the order of their first occurrence
+     */
+    public static List<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text != null) {
+            int start = -1;
+            for (int i = 0; i <= text.length(); i++) {
+                boolean wordCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+                if (wordCharacter && start < 0) {
+                    start = i;
+                } else if (!wordCharacter && start >= 0) {
+                    String token = text.substring(start, Math.min(i, start + MAX_TOKEN_LENGTH)).toLowerCase(Locale.ROOT);
+                    tokens.add(token);
+                    start = -1;
+                }
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    /**
+     * @return true, if the index is enabled in the configuration
+     */
+    public static boolean isEnabled() {
+        return ConfigurationHelper.getInstance().isMetadataSearchIndexEnabled();
+    }
+
+    /**
+     * @return true, if the index is enabled and was built completely, so it can be used for searching
+     */
+    public static boolean isAvailable() {
+        return available && isEnabled();
+    }
+
+    /**
+     * @return true, while {@link #rebuildIndex()} is running
+     */
+    public static boolean isRebuilding() {
+        return rebuilding;
+    }
+
+    /**
+     * Read the state of the index during startup. A disabled index is marked as outdated, because the changes made until it gets enabled again
+     * are missing.
+     * 
+     * @return true, if the index is enabled but needs to be built
+     */
+    public static boolean initialize() {
+        if (isEnabled()) {
+            available = HistoryManager.getWatermark(WATERMARK) != null;
+            return !available;
+        }
+        invalidate();
+        return false;
+    }
+
+    /**
+     * Called before data of the index is changed. If the index got disabled in the meantime, it is marked as outdated.
+     * 
+     * @return true, if the index has to be updated
+     */
+    static boolean isMaintained() {
+        if (isEnabled()) {
+            return true;
+        }
+        if (available) {
+            invalidate();
+        }
+        return false;
+    }
+
+    private static void invalidate() {
+        available = false;
+        HistoryManager.removeWatermark(WATERMARK);
+    }
+
+    /**
+     * Index the metadata and process log of all processes again. The filter starts to use the index when all processes are indexed.
+     */
+    public static void rebuildIndex() {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (SearchIndexManager.class) {
+            if (rebuilding) {
+                logger.info("The search index is already being rebuilt");
+                return;
+            }
+            rebuilding = true;
+        }
+        try {
+            Date start = new Date();
+            List<Integer> processIds = SearchIndexMysqlHelper.getAllProcessIds();
+            logger.info("Rebuilding the search index for " + processIds.size() + " processes");
+            boolean complete = true;
+            for (int i = 0; i < processIds.size(); i++) {
+                if (Thread.currentThread().isInterrupted() || !isEnabled()) {
+                    logger.info("Rebuilding the search index was stopped after " + i + " processes");
+                    return;
+                }
+                try {
+                    SearchIndexMysqlHelper.indexProcess(processIds.get(i));
+                } catch (SQLException e) {
+                    logger.error("Cannot index process with id " + processIds.get(i), e);
+                    complete = false;
+                }
+                if ((i + 1) % 1000 == 0) {
+                    logger.debug("Indexed " + (i + 1) + " of " + processIds.size() + " processes");
+                }
+            }
+            if (complete) {
+                HistoryManager.setWatermark(WATERMARK, start);
+                available = true;
+                logger.info("Search index is complete");
+            }
+        } catch (SQLException e) {
+            logger.error("Cannot rebuild the search index", e);
+        } finally {
+            rebuilding = false;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package de.sub.goobi.persistence.managers;
+
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.goobi.beans.LogEntry;
+
+/**
+ * Writes the words of metadata values and process log entries to the tables of the search index, see {@link SearchIndexManager}. The methods
+ * that get a connection are called within the transaction that changes the indexed data.
+ */
+class SearchIndexMysqlHelper {
+
+    /**
+     * Replace the indexed metadata words of a process
+     * 
+     * @param connection open connection
+     * @param processId id of the process
+     * @param rows the metadata rows, with the name at index 0 and the value at index 1
+     * @throws SQLException
+     */
+    static void replaceMetadataTokens(Connection connection, int processId, List<Object[]> rows) throws SQLException {
+        QueryRunner run = new QueryRunner();
+        run.update(connection, "DELETE FROM metadata_tokens WHERE processid = ?", processId);
+        Set<List<String>> tokens = new LinkedHashSet<>();
+        for (Object[] row : rows) {
+            for (String token : SearchIndexManager.tokenize((String) row[1])) {
+                tokens.add(Arrays.asList((String) row[0], token));
+            }
+        }
+        if (!tokens.isEmpty()) {
+            List<Object[]> params = new ArrayList<>(tokens.size());
+            for (List<String> token : tokens) {
+                params.add(new Object[] { processId, token.get(0), token.get(1) });
+            }
+            run.batch(connection, "INSERT INTO metadata_tokens (processid, name, token) VALUES (?, ?, ?)", params.toArray(new Object[params.size()][]));
+        }
+    }
+
+    static void deleteMetadataTokens(Connection connection, int processId) throws SQLException {
+        new QueryRunner().update(connection, "DELETE FROM metadata_tokens WHERE processid = ?", processId);
+    }
+
+    /**
+     * Replace the indexed words of the given process log entries. The entries must be stored already, so they have an id.
+     * 
+     * @param connection open connection
+     * @param logEntries the new or changed entries
+     * @param update true, if the entries may have been indexed before
+     * @throws SQLException
+     */
+    static void replaceLogEntryTokens(Connection connection, List<LogEntry> logEntries, boolean update) throws SQLException {
+        List<Object[]> rows = new ArrayList<>(logEntries.size());
+        for (LogEntry entry : logEntries) {
+            if (entry.getId() != null) {
+                rows.add(new Object[] { entry.getId(), entry.getProcessId(), entry.getContent() });
+            }
+        }
+        if (update) {
+            List<Object[]> params = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                params.add(new Object[] { row[0] });
+            }
+            if (!params.isEmpty()) {
+                new QueryRunner().batch(connection, "DELETE FROM processlog_tokens WHERE logid = ?", params.toArray(new Object[params.size()][]));
+            }
+        }
+        insertLogEntryTokens(connection, rows);
+    }
+
+    static void deleteLogEntryTokens(Connection connection, int logId) throws SQLException {
+        new QueryRunner().update(connection, "DELETE FROM processlog_tokens WHERE logid = ?", logId);
+    }
+
+    /**
+     * @param rows the log entries, with id, process id and content
+     */
+    private static void insertLogEntryTokens(Connection connection, List<Object[]> rows) throws SQLException {
+        List<Object[]> params = new ArrayList<>();
+        for (Object[] row : rows) {
+            for (String token : SearchIndexManager.tokenize((String) row[2])) {
+                params.add(new Object[] { row[0], row[1], token });
+            }
+        }
+        if (!params.isEmpty()) {
+            new QueryRunner().batch(connection, "INSERT INTO processlog_tokens (logid, processid, token) VALUES (?, ?, ?)", params.toArray(
+                    new Object[params.size()][]));
+        }
+    }
+
+    static List<Integer> getAllProcessIds() throws SQLException {
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            return new QueryRunner().query(connection, "SELECT ProzesseID FROM prozesse ORDER BY ProzesseID",
+                    MySQLHelper.resultSetToIntegerListHandler);
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    /**
+     * Index the stored metadata and process log of a process again, within one transaction. The metadata and log rows of the process are read with
+     * a lock, so a concurrent update of the metadata or the log waits for the index, or the index reads the updated rows. Otherwise the index
+     * could overwrite the tokens of an update with the tokens of the old values.
+     * 
+     * @param processId id of the process
+     * @throws SQLException
+     */
+    static void indexProcess(int processId) throws SQLException {
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            QueryRunner run = new QueryRunner();
+            connection.setAutoCommit(false);
+            try {
+                List<Object[]> metadata = run.query(connection, "SELECT name, value FROM metadata WHERE processid = ? FOR UPDATE", rowHandler,
+                        processId);
+                replaceMetadataTokens(connection, processId, metadata);
+                List<Object[]> logEntries = run.query(connection, "SELECT id, processID, content FROM processlog WHERE processID = ? FOR UPDATE",
+                        rowHandler, processId);
+                run.update(connection, "DELETE FROM processlog_tokens WHERE processid = ?", processId);
+                insertLogEntryTokens(connection, logEntries);
+                MySQLHelper.commit(connection);
+            } catch (SQLException e) {
+                MySQLHelper.rollback(connection);
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    private static ResultSetHandler<List<Object[]>> rowHandler = new ResultSetHandler<List<Object[]>>() {
+        @Override
+        public List<Object[]> handle(ResultSet rs) throws SQLException {
+            List<Object[]> answer = new ArrayList<>();
+            int columnCount = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                Object[] row = new Object[columnCount];
+                for (int i = 1; i <= columnCount; i++) {
+                    row[i - 1] = rs.getObject(i);
+                }
+                answer.add(row);
+            }
+            return answer;
+        }
+    };
+}
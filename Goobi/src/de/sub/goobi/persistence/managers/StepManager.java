@@ -30,7 +30,7 @@ import org.goobi.beans.Usergroup;
 
 import de.sub.goobi.helper.exceptions.DAOException;
 
-public class StepManager implements IManager, Serializable {
+public class StepManager implements IFilterQueryManager, Serializable {
 
     private static final long serialVersionUID = -8285339735960375871L;
     private static final Logger logger = Logger.getLogger(StepManager.class);
@@ -51,6 +51,47 @@ public class StepManager implements IManager, Serializable {
         return getSteps(order, filter, start, count);
     }
 
+    @Override
+    public KeysetPage getPage(String order, String filter, Object[] seekKey, Integer start, Integer count) throws DAOException {
+        try {
+            return StepMysqlHelper.getStepPage(order, filter, seekKey, start, count);
+        } catch (SQLException e) {
+            logger.error("error while getting step list", e);
+            throw new DAOException(e);
+        }
+    }
+
+    @Override
+    public int getHitSize(String order, FilterQuery filter) throws DAOException {
+        try {
+            return StepMysqlHelper.getStepCount(order, filter);
+        } catch (SQLException e) {
+            logger.error(e);
+        }
+        return 0;
+    }
+
+    @Override
+    public List<? extends DatabaseObject> getList(String order, FilterQuery filter, Integer start, Integer count) throws DAOException {
+        List<Step> answer = new ArrayList<Step>();
+        try {
+            answer = StepMysqlHelper.getSteps(order, filter, start, count);
+        } catch (SQLException e) {
+            logger.error("error while getting step list", e);
+        }
+        return answer;
+    }
+
+    @Override
+    public KeysetPage getPage(String order, FilterQuery filter, Object[] seekKey, Integer start, Integer count) throws DAOException {
+        try {
+            return StepMysqlHelper.getStepPage(order, filter, seekKey, start, count);
+        } catch (SQLException e) {
+            logger.error("error while getting step list", e);
+            throw new DAOException(e);
+        }
+    }
+
     public static List<Step> getSteps(String order, String filter, Integer start, Integer count) {
         List<Step> answer = new ArrayList<Step>();
         try {
@@ -249,4 +290,9 @@ public class StepManager implements IManager, Serializable {
         return null;
     }
 
+    @Override
+    public int[] getIdArray(FilterQuery filter) {
+        return null;
+    }
+
 }
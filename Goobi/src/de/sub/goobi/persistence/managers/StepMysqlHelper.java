@@ -25,11 +25,19 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.goobi.beans.ErrorProperty;
 import org.goobi.beans.Step;
@@ -67,20 +75,24 @@ class StepMysqlHelper implements Serializable {
     }
 
     public static int getStepCount(String order, String filter) throws SQLException {
+        return getStepCount(order, new FilterQuery(filter));
+    }
+
+    public static int getStepCount(String order, FilterQuery filter) throws SQLException {
 
         Connection connection = null;
         StringBuilder sql = new StringBuilder();
         sql.append(
                 "SELECT COUNT(SchritteID) FROM schritte, prozesse left join batches on prozesse.batchID = batches.id, projekte WHERE schritte.prozesseId = prozesse.ProzesseID and prozesse.ProjekteID = projekte.ProjekteID ");
-        if (filter != null && !filter.isEmpty()) {
-            sql.append(" AND " + filter);
+        if (!filter.isEmpty()) {
+            sql.append(" AND " + filter.getSql());
         }
         try {
             connection = MySQLHelper.getInstance().getConnection();
             if (logger.isTraceEnabled()) {
-                logger.trace(sql.toString());
+                logger.trace(sql.toString() + ", " + filter.getParameters());
             }
-            return new QueryRunner().query(connection, sql.toString(), MySQLHelper.resultSetToIntegerHandler);
+            return new QueryRunner().query(connection, sql.toString(), MySQLHelper.resultSetToIntegerHandler, filter.getParameterArray());
 
         } finally {
             if (connection != null) {
@@ -90,12 +102,16 @@ class StepMysqlHelper implements Serializable {
     }
 
     public static List<Step> getSteps(String order, String filter, Integer start, Integer count) throws SQLException {
+        return getSteps(order, new FilterQuery(filter), start, count);
+    }
+
+    public static List<Step> getSteps(String order, FilterQuery filter, Integer start, Integer count) throws SQLException {
         Connection connection = null;
         StringBuilder sql = new StringBuilder();
         sql.append(
                 "SELECT * FROM schritte, prozesse left join batches on prozesse.batchID = batches.id, projekte WHERE schritte.prozesseId = prozesse.ProzesseID and prozesse.ProjekteID = projekte.ProjekteID ");
-        if (filter != null && !filter.isEmpty()) {
-            sql.append(" AND " + filter);
+        if (!filter.isEmpty()) {
+            sql.append(" AND " + filter.getSql());
         }
 
         if (order != null && !order.isEmpty()) {
@@ -108,9 +124,9 @@ class StepMysqlHelper implements Serializable {
         try {
             connection = MySQLHelper.getInstance().getConnection();
             if (logger.isTraceEnabled()) {
-                logger.trace(sql.toString());
+                logger.trace(sql.toString() + ", " + filter.getParameters());
             }
-            List<Step> ret = new QueryRunner().query(connection, sql.toString(), resultSetToStepListHandler);
+            List<Step> ret = new QueryRunner().query(connection, sql.toString(), resultSetToStepListHandler, filter.getParameterArray());
             return ret;
         } finally {
             if (connection != null) {
@@ -119,6 +135,22 @@ class StepMysqlHelper implements Serializable {
         }
     }
 
+    public static KeysetPage getStepPage(String order, String filter, Object[] seekKey, Integer start, Integer count) throws SQLException {
+        return getStepPage(order, new FilterQuery(filter), seekKey, start, count);
+    }
+
+    public static KeysetPage getStepPage(String order, FilterQuery filter, Object[] seekKey, Integer start, Integer count) throws SQLException {
+        KeysetQuery query = new KeysetQuery(order, "schritte.SchritteID");
+        List<Object[]> rows = query.getPageKeys(
+                "FROM schritte, prozesse left join batches on prozesse.batchID = batches.id, projekte WHERE schritte.prozesseId = prozesse.ProzesseID and prozesse.ProjekteID = projekte.ProjekteID",
+                filter, seekKey, start, count);
+        if (rows.isEmpty()) {
+            return new KeysetPage(new ArrayList<Step>(), null);
+        }
+        List<Step> steps = getSteps(query.getOrder(), "schritte.SchritteID IN (" + KeysetQuery.getIds(rows) + ")", null, null);
+        return new KeysetPage(steps, KeysetQuery.getLastKey(rows));
+    }
+
     public static ResultSetHandler<List<Step>> resultSetToStepListHandler = new ResultSetHandler<List<Step>>() {
 
         @Override
@@ -345,6 +377,9 @@ class StepMysqlHelper implements Serializable {
                 run.update(connection, schritteberechtigtebenutzer, param);
                 run.update(connection, schritteberechtigtegruppen, param);
                 run.update(connection, schritte, param);
+                if (StepPermissionManager.isMaintained()) {
+                    StepPermissionMysqlHelper.deleteStep(connection, o.getId());
+                }
             } finally {
                 if (connection != null) {
                     MySQLHelper.closeConnection(connection);
@@ -373,77 +408,159 @@ class StepMysqlHelper implements Serializable {
     }
 
     public static void saveStep(Step o) throws SQLException {
-
-        if (o.getId() == null) {
-            // new process
-            insertStep(o);
-        } else {
-            // process exists already in database
-            updateStep(o);
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            saveSteps(Collections.singletonList(o), connection);
+            if (StepPermissionManager.isMaintained()) {
+                StepPermissionMysqlHelper.refreshSteps(connection, Collections.singletonList(o.getId()));
+            }
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
         }
+    }
 
-        if (o.getEigenschaftenSize() > 0) {
-            for (ErrorProperty property : o.getEigenschaften()) {
-                saveErrorProperty(property);
+    /**
+     * Saves the given steps including their error properties and user and usergroup assignments. All statements are executed as jdbc batches on
+     * the given connection, commit and rollback are left to the caller.
+     * 
+     * @param stepList steps to save
+     * @param connection open connection
+     * @throws SQLException
+     */
+    static void saveSteps(List<Step> stepList, Connection connection) throws SQLException {
+        List<Step> newSteps = new ArrayList<>();
+        List<Object[]> insertParams = new ArrayList<>();
+        List<Object[]> updateParams = new ArrayList<>();
+        for (Step o : stepList) {
+            if (o.getId() == null) {
+                newSteps.add(o);
+                insertParams.add(generateParameter(o, false));
+            } else {
+                updateParams.add(ArrayUtils.add(generateParameter(o, false), o.getId()));
             }
         }
 
-        if (o.getBenutzerSize() > 0) {
-            saveUserAssignment(o);
+        if (!newSteps.isEmpty()) {
+            String sql = "INSERT INTO schritte " + generateInsertQuery(false) + generateValueQuery(false);
+            List<Integer> ids = MySQLHelper.insertBatch(connection, sql, insertParams.toArray(new Object[insertParams.size()][]));
+            for (int i = 0; i < newSteps.size(); i++) {
+                newSteps.get(i).setId(ids.get(i));
+            }
         }
-        if (o.getBenutzergruppenSize() > 0) {
-            saveUserGroupAssignment(o);
+        if (!updateParams.isEmpty()) {
+            new QueryRunner().batch(connection, generateUpdateQuery(), updateParams.toArray(new Object[updateParams.size()][]));
         }
 
+        saveErrorProperties(stepList, connection);
+
+        Map<Integer, List<Integer>> userAssignments = new HashMap<>();
+        Map<Integer, List<Integer>> usergroupAssignments = new HashMap<>();
+        for (Step o : stepList) {
+            if (o.getBenutzerSize() > 0) {
+                List<Integer> userIds = new ArrayList<>();
+                for (User user : o.getBenutzer()) {
+                    userIds.add(user.getId());
+                }
+                userAssignments.put(o.getId(), userIds);
+            }
+            if (o.getBenutzergruppenSize() > 0) {
+                List<Integer> usergroupIds = new ArrayList<>();
+                for (Usergroup usergroup : o.getBenutzergruppen()) {
+                    usergroupIds.add(usergroup.getId());
+                }
+                usergroupAssignments.put(o.getId(), usergroupIds);
+            }
+        }
+        saveAssignments(connection, "schritteberechtigtebenutzer", "BenutzerID", userAssignments);
+        saveAssignments(connection, "schritteberechtigtegruppen", "BenutzerGruppenID", usergroupAssignments);
     }
 
-    private static void saveErrorProperty(ErrorProperty property) throws SQLException {
-        if (property.getId() == null) {
+    private static void saveErrorProperties(List<Step> stepList, Connection connection) throws SQLException {
+        List<ErrorProperty> newProperties = new ArrayList<>();
+        List<Object[]> insertParams = new ArrayList<>();
+        List<Object[]> updateParams = new ArrayList<>();
+        for (Step o : stepList) {
+            for (ErrorProperty property : o.getEigenschaften()) {
+                Object[] param = { property.getTitel(), property.getWert(), property.isIstObligatorisch(), property.getType().getId(), property
+                        .getAuswahl(), property.getSchritt().getId(),
+                        property.getCreationDate() == null ? null : new Timestamp(property.getCreationDate()
+                                .getTime()),
+                        property.getContainer() };
+                if (property.getId() == null) {
+                    newProperties.add(property);
+                    insertParams.add(param);
+                } else {
+                    updateParams.add(ArrayUtils.add(param, property.getId()));
+                }
+            }
+        }
+        if (!newProperties.isEmpty()) {
             String sql =
                     "INSERT INTO schritteeigenschaften (Titel, WERT, IstObligatorisch, DatentypenID, Auswahl, schritteID, creationDate, container) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-            Object[] param = { property.getTitel(), property.getWert(), property.isIstObligatorisch(), property.getType().getId(), property
-                    .getAuswahl(), property.getSchritt().getId(),
-                    property.getCreationDate() == null ? null : new Timestamp(property.getCreationDate()
-                            .getTime()),
-                    property.getContainer() };
-            Connection connection = null;
-            try {
-                connection = MySQLHelper.getInstance().getConnection();
-                QueryRunner run = new QueryRunner();
-                if (logger.isTraceEnabled()) {
-                    logger.trace(sql.toString() + ", " + Arrays.toString(param));
-                }
-                Integer id = run.insert(connection, sql.toString(), MySQLHelper.resultSetToIntegerHandler, param);
-                if (id != null) {
-                    property.setId(id);
-                }
-            } finally {
-                if (connection != null) {
-                    MySQLHelper.closeConnection(connection);
+            List<Integer> ids = MySQLHelper.insertBatch(connection, sql, insertParams.toArray(new Object[insertParams.size()][]));
+            for (int i = 0; i < newProperties.size(); i++) {
+                newProperties.get(i).setId(ids.get(i));
+            }
+        }
+        if (!updateParams.isEmpty()) {
+            String sql =
+                    "UPDATE schritteeigenschaften set Titel = ?,  WERT = ?, IstObligatorisch = ?, DatentypenID = ?, Auswahl = ?, schritteID = ?, creationDate = ?, container = ? WHERE schritteeigenschaftenID = ?";
+            new QueryRunner().batch(connection, sql, updateParams.toArray(new Object[updateParams.size()][]));
+        }
+    }
+
+    /**
+     * Inserts all missing assignments between steps and users or usergroups. Existing assignments are read with a single query.
+     * 
+     * @param connection open connection
+     * @param tablename assignment table
+     * @param columnname column of the assigned user or usergroup
+     * @param assignments assigned ids, mapped by step id
+     * @throws SQLException
+     */
+    private static void saveAssignments(Connection connection, String tablename, String columnname, Map<Integer, List<Integer>> assignments)
+            throws SQLException {
+        if (assignments.isEmpty()) {
+            return;
+        }
+        String sql = "SELECT schritteID, " + columnname + " FROM " + tablename + " WHERE schritteID IN (" + StringUtils.join(assignments.keySet(),
+                ", ") + ")";
+        Set<String> existing = new QueryRunner().query(connection, sql, resultSetToAssignmentHandler);
+
+        List<Object[]> params = new ArrayList<>();
+        for (Entry<Integer, List<Integer>> entry : assignments.entrySet()) {
+            for (Integer assignedId : entry.getValue()) {
+                if (existing.add(entry.getKey() + "_" + assignedId)) {
+                    Object[] param = { assignedId, entry.getKey() };
+                    params.add(param);
                 }
             }
+        }
+        if (!params.isEmpty()) {
+            String insert = "INSERT INTO " + tablename + " (" + columnname + ", schritteID) VALUES (?, ?)";
+            new QueryRunner().batch(connection, insert, params.toArray(new Object[params.size()][]));
+        }
+    }
 
-        } else {
-            String sql =
-                    "UPDATE schritteeigenschaften set Titel = ?,  WERT = ?, IstObligatorisch = ?, DatentypenID = ?, Auswahl = ?, schritteID = ?, creationDate = ?, container = ? WHERE schritteeigenschaftenID = "
-                            + property.getId();
-            Object[] param = { property.getTitel(), property.getWert(), property.isIstObligatorisch(), property.getType().getId(), property
-                    .getAuswahl(), property.getSchritt().getId(),
-                    property.getCreationDate() == null ? null : new Timestamp(property.getCreationDate()
-                            .getTime()),
-                    property.getContainer() };
-            Connection connection = null;
+    private static ResultSetHandler<Set<String>> resultSetToAssignmentHandler = new ResultSetHandler<Set<String>>() {
+        @Override
+        public Set<String> handle(ResultSet rs) throws SQLException {
+            Set<String> answer = new HashSet<>();
             try {
-                connection = MySQLHelper.getInstance().getConnection();
-                QueryRunner run = new QueryRunner();
-                run.update(connection, sql, param);
+                while (rs.next()) {
+                    answer.add(rs.getInt(1) + "_" + rs.getInt(2));
+                }
             } finally {
-                if (connection != null) {
-                    MySQLHelper.closeConnection(connection);
+                if (rs != null) {
+                    rs.close();
                 }
             }
+            return answer;
         }
-    }
+    };
 
     private static List<ErrorProperty> getErrorPropertiesForStep(int stepId) throws SQLException {
         String sql = "SELECT * FROM schritteeigenschaften WHERE schritteID = " + stepId;
@@ -473,27 +590,6 @@ class StepMysqlHelper implements Serializable {
         }
     }
 
-    private static void insertStep(Step o) throws SQLException {
-        String sql = "INSERT INTO schritte " + generateInsertQuery(false) + generateValueQuery(false);
-        Object[] param = generateParameter(o, false);
-        Connection connection = null;
-        try {
-            connection = MySQLHelper.getInstance().getConnection();
-            QueryRunner run = new QueryRunner();
-            if (logger.isTraceEnabled()) {
-                logger.trace(sql.toString() + ", " + Arrays.toString(param));
-            }
-            Integer id = run.insert(connection, sql.toString(), MySQLHelper.resultSetToIntegerHandler, param);
-            if (id != null) {
-                o.setId(id);
-            }
-        } finally {
-            if (connection != null) {
-                MySQLHelper.closeConnection(connection);
-            }
-        }
-    }
-
     private static Object[] generateParameter(Step o, boolean includeID) {
         if (o.getProcessId() == null && o.getProzess() != null) {
             o.setProcessId(o.getProzess().getId());
@@ -626,7 +722,7 @@ class StepMysqlHelper implements Serializable {
         return answer;
     }
 
-    private static void updateStep(Step o) throws SQLException {
+    private static String generateUpdateQuery() {
         StringBuilder sql = new StringBuilder();
         sql.append("UPDATE schritte SET ");
         sql.append(" Titel = ?,");
@@ -674,21 +770,8 @@ class StepMysqlHelper implements Serializable {
         sql.append(" httpUrl = ?, ");
         sql.append(" httpJsonBody = ?, ");
         sql.append(" httpCloseStep = ?");
-        sql.append(" WHERE SchritteID = " + o.getId());
-
-        Object[] param = generateParameter(o, false);
-
-        Connection connection = null;
-        try {
-            connection = MySQLHelper.getInstance().getConnection();
-            QueryRunner run = new QueryRunner();
-            run.update(connection, sql.toString(), param);
-        } finally {
-            if (connection != null) {
-                MySQLHelper.closeConnection(connection);
-            }
-        }
-
+        sql.append(" WHERE SchritteID = ?");
+        return sql.toString();
     }
 
     public static void updateBatchList(List<Step> stepList) throws SQLException {
@@ -766,6 +849,13 @@ class StepMysqlHelper implements Serializable {
             run.update(connection, joinQuery.toString());
             // delete temporary table
             run.update(connection, deleteTempTable);
+            if (StepPermissionManager.isMaintained()) {
+                List<Integer> stepIds = new ArrayList<>(stepList.size());
+                for (Step o : stepList) {
+                    stepIds.add(o.getId());
+                }
+                StepPermissionMysqlHelper.refreshSteps(connection, stepIds);
+            }
         } finally {
             if (connection != null) {
                 MySQLHelper.closeConnection(connection);
@@ -791,6 +881,20 @@ class StepMysqlHelper implements Serializable {
             connection = MySQLHelper.getInstance().getConnection();
             QueryRunner run = new QueryRunner();
             run.update(connection, values, paramArray);
+            if (StepPermissionManager.isMaintained()) {
+                // the new steps have no id yet, so all steps of their processes are calculated again
+                Set<Integer> processIds = new HashSet<>();
+                for (Step o : stepList) {
+                    if (o.getProcessId() != null) {
+                        processIds.add(o.getProcessId());
+                    } else if (o.getProzess() != null && o.getProzess().getId() != null) {
+                        processIds.add(o.getProzess().getId());
+                    }
+                }
+                for (Integer processId : processIds) {
+                    StepPermissionMysqlHelper.refreshProcess(connection, processId);
+                }
+            }
         } finally {
             if (connection != null) {
                 MySQLHelper.closeConnection(connection);
@@ -922,29 +1026,8 @@ class StepMysqlHelper implements Serializable {
                         new QueryRunner().update(connection, insert);
                     }
                 }
-            } finally {
-                if (connection != null) {
-                    MySQLHelper.closeConnection(connection);
-                }
-            }
-        }
-    }
-
-    private static void saveUserGroupAssignment(Step step) throws SQLException {
-        if (step.getId() != null) {
-            Connection connection = null;
-            try {
-                connection = MySQLHelper.getInstance().getConnection();
-                for (Usergroup userGroup : step.getBenutzergruppen()) {
-                    // check if assignment exists
-                    String sql = " SELECT * from schritteberechtigtegruppen WHERE BenutzerGruppenID =" + userGroup.getId() + " AND schritteID = "
-                            + step.getId();
-                    boolean exists = new QueryRunner().query(connection, sql.toString(), checkForResultHandler);
-                    if (!exists) {
-                        String insert = " INSERT INTO schritteberechtigtegruppen (BenutzerGruppenID , schritteID) VALUES (" + userGroup.getId() + ","
-                                + step.getId() + ")";
-                        new QueryRunner().update(connection, insert);
-                    }
+                if (StepPermissionManager.isMaintained()) {
+                    StepPermissionMysqlHelper.refreshSteps(connection, Collections.singletonList(step.getId()));
                 }
             } finally {
                 if (connection != null) {
@@ -952,7 +1035,6 @@ class StepMysqlHelper implements Serializable {
                 }
             }
         }
-
     }
 
     public static void removeUsergroupFromStep(Step step, Usergroup usergroup) throws SQLException {
@@ -964,6 +1046,9 @@ class StepMysqlHelper implements Serializable {
                         .getId();
 
                 new QueryRunner().update(connection, sql);
+                if (StepPermissionManager.isMaintained()) {
+                    StepPermissionMysqlHelper.refreshSteps(connection, Collections.singletonList(step.getId()));
+                }
             } finally {
                 if (connection != null) {
                     MySQLHelper.closeConnection(connection);
@@ -980,6 +1065,9 @@ class StepMysqlHelper implements Serializable {
                 String sql = "DELETE FROM schritteberechtigtebenutzer WHERE BenutzerID =" + user.getId() + " AND schritteID = " + step.getId();
 
                 new QueryRunner().update(connection, sql);
+                if (StepPermissionManager.isMaintained()) {
+                    StepPermissionMysqlHelper.refreshSteps(connection, Collections.singletonList(step.getId()));
+                }
             } finally {
                 if (connection != null) {
                     MySQLHelper.closeConnection(connection);
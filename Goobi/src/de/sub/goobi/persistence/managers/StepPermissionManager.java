@@ -0,0 +1,160 @@
+package de.sub.goobi.persistence.managers;
+
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.Date;
+
+import org.apache.log4j.Logger;
+
+import de.sub.goobi.config.ConfigurationHelper;
+
+/**
+ * Materialized permissions of the users for the open, in work and failed steps, stored in the table user_step_permissions. A row exists for each
+ * user who is member of the project of the process and to whom the step is assigned, directly or by one of the user groups. The task list and
+ * the task counters read the permissions of the current user from this table instead of evaluating the assignments for every step.
+ * 
+ * The table is maintained while it is enabled with StepPermissionTable. It is used by the filter after it was built once completely, see
+ * {@link #rebuildTable()}.
+ */
+public class StepPermissionManager implements Serializable {
+
+    private static final long serialVersionUID = -6318249583621850153L;
+
+    private static final Logger logger = Logger.getLogger(StepPermissionManager.class);
+
+    /**
+     * Name of the watermark that marks the table as complete
+     */
+    static final String WATERMARK = "stepPermissions";
+
+    /**
+     * Number of step ids calculated in one transaction during a rebuild
+     */
+    private static final int REBUILD_RANGE = 5000;
+
+    private static volatile boolean available = false;
+
+    private static volatile boolean rebuilding = false;
+
+    /**
+     * @return true, if the table is enabled in the configuration
+     */
+    public static boolean isEnabled() {
+        return ConfigurationHelper.getInstance().isStepPermissionTableEnabled();
+    }
+
+    /**
+     * @return true, if the table is enabled and was built completely, so it can be used for the task list
+     */
+    public static boolean isAvailable() {
+        return available && isEnabled();
+    }
+
+    /**
+     * @return true, while {@link #rebuildTable()} is running
+     */
+    public static boolean isRebuilding() {
+        return rebuilding;
+    }
+
+    /**
+     * Read the state of the table during startup. A disabled table is marked as outdated, because the changes made until it gets enabled again
+     * are missing.
+     * 
+     * @return true, if the table is enabled but needs to be built
+     */
+    public static boolean initialize() {
+        if (isEnabled()) {
+            available = HistoryManager.getWatermark(WATERMARK) != null;
+            return !available;
+        }
+        invalidate();
+        return false;
+    }
+
+    /**
+     * Called before steps or assignments are changed. If the table got disabled in the meantime, it is marked as outdated.
+     * 
+     * @return true, if the table has to be updated
+     */
+    static boolean isMaintained() {
+        if (isEnabled()) {
+            return true;
+        }
+        if (available) {
+            invalidate();
+        }
+        return false;
+    }
+
+    private static void invalidate() {
+        available = false;
+        HistoryManager.removeWatermark(WATERMARK);
+    }
+
+    /**
+     * Calculate the permissions of all steps again. The filter starts to use the table when all steps are calculated.
+     */
+    public static void rebuildTable() {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (StepPermissionManager.class) {
+            if (rebuilding) {
+                logger.info("The step permissions are already being rebuilt");
+                return;
+            }
+            rebuilding = true;
+        }
+        try {
+            Date start = new Date();
+            int maxId = StepPermissionMysqlHelper.getMaxStepId();
+            logger.info("Rebuilding the step permissions for step ids up to " + maxId);
+            boolean complete = true;
+            for (int firstId = 0; firstId <= maxId; firstId += REBUILD_RANGE) {
+                if (Thread.currentThread().isInterrupted() || !isEnabled()) {
+                    logger.info("Rebuilding the step permissions was stopped before step id " + firstId);
+                    return;
+                }
+                int lastId = firstId + REBUILD_RANGE - 1;
+                try {
+                    StepPermissionMysqlHelper.rebuildRange(firstId, lastId, lastId >= maxId);
+                } catch (SQLException e) {
+                    logger.error("Cannot calculate the permissions of the steps " + firstId + " to " + lastId, e);
+                    complete = false;
+                }
+                if ((firstId / REBUILD_RANGE + 1) % 20 == 0) {
+                    logger.debug("Calculated the permissions up to step id " + lastId + " of " + maxId);
+                }
+            }
+            if (complete) {
+                HistoryManager.setWatermark(WATERMARK, start);
+                available = true;
+                logger.info("Step permissions are complete");
+            }
+        } catch (SQLException e) {
+            logger.error("Cannot rebuild the step permissions", e);
+        } finally {
+            rebuilding = false;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package de.sub.goobi.persistence.managers;
+
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.dbutils.QueryRunner;
+
+/**
+ * Writes the rows of the table user_step_permissions, see {@link StepPermissionManager}. The methods that get a connection are called within the
+ * transaction that changes the steps or the assignments.
+ */
+class StepPermissionMysqlHelper {
+
+    /**
+     * Only steps with these states are stored: open, in work and error
+     */
+    static final String STORED_STATES = "1, 2, 4";
+
+    /**
+     * Selects the users who may work on a step: the user must be member of the project of the process and the step must be assigned to the user
+     * directly or to one of the groups of the user. The condition for the steps or users is appended.
+     */
+    private static final String INSERT_PERMISSIONS = "INSERT INTO user_step_permissions (userid, stepid, status) "
+            + "SELECT DISTINCT projektbenutzer.BenutzerID, schritte.SchritteID, schritte.Bearbeitungsstatus FROM schritte "
+            + "JOIN prozesse ON schritte.ProzesseID = prozesse.ProzesseID "
+            + "JOIN projektbenutzer ON projektbenutzer.ProjekteID = prozesse.ProjekteID "
+            + "WHERE schritte.Bearbeitungsstatus IN (" + STORED_STATES + ") "
+            + "AND (EXISTS (SELECT 1 FROM schritteberechtigtegruppen JOIN benutzergruppenmitgliedschaft "
+            + "ON schritteberechtigtegruppen.BenutzerGruppenID = benutzergruppenmitgliedschaft.BenutzerGruppenID "
+            + "WHERE schritteberechtigtegruppen.schritteID = schritte.SchritteID "
+            + "AND benutzergruppenmitgliedschaft.BenutzerID = projektbenutzer.BenutzerID) "
+            + "OR EXISTS (SELECT 1 FROM schritteberechtigtebenutzer WHERE schritteberechtigtebenutzer.schritteID = schritte.SchritteID "
+            + "AND schritteberechtigtebenutzer.BenutzerID = projektbenutzer.BenutzerID)) AND ";
+
+    /**
+     * Calculate the permissions of the given steps again
+     * 
+     * @param connection open connection
+     * @param stepIds ids of the steps, steps without id are ignored
+     * @throws SQLException
+     */
+    static void refreshSteps(Connection connection, Collection<Integer> stepIds) throws SQLException {
+        List<Integer> ids = new ArrayList<>(stepIds.size());
+        for (Integer id : stepIds) {
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        StringBuilder placeholders = new StringBuilder("?");
+        for (int i = 1; i < ids.size(); i++) {
+            placeholders.append(", ?");
+        }
+        Object[] params = ids.toArray();
+        QueryRunner run = new QueryRunner();
+        run.update(connection, "DELETE FROM user_step_permissions WHERE stepid IN (" + placeholders + ")", params);
+        run.update(connection, INSERT_PERMISSIONS + "schritte.SchritteID IN (" + placeholders + ")", params);
+    }
+
+    /**
+     * Calculate the permissions of all steps of a process again, used after the process was saved, as the project may have changed
+     * 
+     * @param connection open connection
+     * @param processId id of the process
+     * @throws SQLException
+     */
+    static void refreshProcess(Connection connection, int processId) throws SQLException {
+        QueryRunner run = new QueryRunner();
+        run.update(connection, "DELETE FROM user_step_permissions WHERE stepid IN (SELECT SchritteID FROM schritte WHERE ProzesseID = ?)",
+                processId);
+        run.update(connection, INSERT_PERMISSIONS + "schritte.ProzesseID = ?", processId);
+    }
+
+    /**
+     * Calculate the permissions of a user again, used after the group or project memberships of the user have changed
+     * 
+     * @param connection open connection
+     * @param userId id of the user
+     * @throws SQLException
+     */
+    static void refreshUser(Connection connection, int userId) throws SQLException {
+        QueryRunner run = new QueryRunner();
+        run.update(connection, "DELETE FROM user_step_permissions WHERE userid = ?", userId);
+        run.update(connection, INSERT_PERMISSIONS + "projektbenutzer.BenutzerID = ?", userId);
+    }
+
+    static void deleteStep(Connection connection, int stepId) throws SQLException {
+        new QueryRunner().update(connection, "DELETE FROM user_step_permissions WHERE stepid = ?", stepId);
+    }
+
+    static void deleteUser(Connection connection, int userId) throws SQLException {
+        new QueryRunner().update(connection, "DELETE FROM user_step_permissions WHERE userid = ?", userId);
+    }
+
+    static int getMaxStepId() throws SQLException {
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            Integer max = new QueryRunner().query(connection, "SELECT MAX(SchritteID) FROM schritte", MySQLHelper.resultSetToIntegerHandler);
+            return max == null ? 0 : max;
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    /**
+     * Calculate the permissions of all steps with an id in the given range again, within one transaction. If it is the last range, the steps with
+     * larger ids are calculated as well, they were created after the rebuild was started.
+     * 
+     * @param firstId first step id of the range
+     * @param lastId last step id of the range
+     * @param lastRange true, if there were no steps with larger ids when the rebuild was started
+     * @throws SQLException
+     */
+    static void rebuildRange(int firstId, int lastId, boolean lastRange) throws SQLException {
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            rebuildRange(connection, firstId, lastId, lastRange);
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    static void rebuildRange(Connection connection, int firstId, int lastId, boolean lastRange) throws SQLException {
+        QueryRunner run = new QueryRunner();
+        connection.setAutoCommit(false);
+        try {
+            if (lastRange) {
+                run.update(connection, "DELETE FROM user_step_permissions WHERE stepid >= ?", firstId);
+                run.update(connection, INSERT_PERMISSIONS + "schritte.SchritteID >= ?", firstId);
+            } else {
+                run.update(connection, "DELETE FROM user_step_permissions WHERE stepid BETWEEN ? AND ?", firstId, lastId);
+                run.update(connection, INSERT_PERMISSIONS + "schritte.SchritteID BETWEEN ? AND ?", firstId, lastId);
+            }
+            MySQLHelper.commit(connection);
+        } catch (SQLException e) {
+            MySQLHelper.rollback(connection);
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+}
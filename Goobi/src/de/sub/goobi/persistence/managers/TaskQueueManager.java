@@ -0,0 +1,115 @@
+package de.sub.goobi.persistence.managers;
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+import java.io.Serializable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.log4j.Logger;
+import org.goobi.beans.Process;
+
+import de.sub.goobi.helper.tasks.LongRunningTask;
+import de.sub.goobi.helper.tasks.LongRunningTaskStatus;
+
+/**
+ * Persistence of the queue of long running tasks. A task is stored with its class name and process, so it can be created again after a restart.
+ */
+public class TaskQueueManager implements Serializable {
+
+    private static final long serialVersionUID = -3529162410880426475L;
+
+    private static final Logger logger = Logger.getLogger(TaskQueueManager.class);
+
+    public static List<LongRunningTask> getAllTasks() {
+        try {
+            return TaskQueueMysqlHelper.getAllTasks();
+        } catch (SQLException e) {
+            logger.error("Cannot load the queue of long running tasks", e);
+        }
+        return new ArrayList<>();
+    }
+
+    public static void saveTask(LongRunningTask task) {
+        try {
+            TaskQueueMysqlHelper.saveTask(task);
+        } catch (SQLException e) {
+            logger.error("Cannot save long running task " + task.getTitle(), e);
+        }
+    }
+
+    public static void deleteTask(LongRunningTask task) {
+        try {
+            TaskQueueMysqlHelper.deleteTask(task);
+        } catch (SQLException e) {
+            logger.error("Cannot delete long running task " + task.getTitle(), e);
+        }
+    }
+
+    public static ResultSetHandler<List<LongRunningTask>> resultSetToTaskListHandler = new ResultSetHandler<List<LongRunningTask>>() {
+        @Override
+        public List<LongRunningTask> handle(ResultSet rs) throws SQLException {
+            List<LongRunningTask> answer = new ArrayList<>();
+            try {
+                while (rs.next()) {
+                    answer.add(convert(rs));
+                }
+            } finally {
+                if (rs != null) {
+                    rs.close();
+                }
+            }
+            return answer;
+        }
+    };
+
+    private static LongRunningTask convert(ResultSet rs) throws SQLException {
+        String taskType = rs.getString("taskType");
+        int processId = rs.getInt("processId");
+        Process process = rs.wasNull() ? null : ProcessManager.getProcessById(processId);
+        LongRunningTask task;
+        String message = rs.getString("statusMessage");
+        LongRunningTaskStatus status = LongRunningTaskStatus.getByName(rs.getString("status"));
+        try {
+            task = LongRunningTask.createInstance(taskType, process);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.error("Cannot restore long running task of type " + taskType, e);
+            // keep the entry visible, but it cannot be executed anymore
+            task = new LongRunningTask();
+            task.initialize(process);
+            task.setRecoverable(false);
+            if (!status.isFinished()) {
+                status = LongRunningTaskStatus.ERROR;
+                message = "Task of type " + taskType + " cannot be restored";
+            }
+        }
+        task.setTaskId(rs.getInt("id"));
+        task.setQueuePriority(rs.getInt("priority"));
+        task.setStatus(status);
+        task.restoreStatus(rs.getInt("progress"), message);
+        task.setAttempts(rs.getInt("attempts"));
+        task.setCreationDate(rs.getTimestamp("creationDate"));
+        task.setStartDate(rs.getTimestamp("startDate"));
+        task.setEndDate(rs.getTimestamp("endDate"));
+        return task;
+    }
+}
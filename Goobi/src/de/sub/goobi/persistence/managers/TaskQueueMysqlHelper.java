@@ -0,0 +1,94 @@
+package de.sub.goobi.persistence.managers;
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.lang.ArrayUtils;
+
+import de.sub.goobi.helper.tasks.LongRunningTask;
+
+class TaskQueueMysqlHelper implements Serializable {
+
+    private static final long serialVersionUID = 5408327614791542860L;
+
+    static List<LongRunningTask> getAllTasks() throws SQLException {
+        String sql = "SELECT * FROM longrunningtasks ORDER BY priority DESC, id";
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            return new QueryRunner().query(connection, sql, TaskQueueManager.resultSetToTaskListHandler);
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    static void saveTask(LongRunningTask task) throws SQLException {
+        Integer processId = task.getProzess() == null ? null : task.getProzess().getId();
+        Object[] param = { task.getClass().getName(), processId, task.getTitle(), task.getQueuePriority(), task.getStatus().name(), task
+                .getStatusProgress(), task.getStatusMessage(), task.getAttempts(), toTimestamp(task.getCreationDate()), toTimestamp(task
+                        .getStartDate()), toTimestamp(task.getEndDate()) };
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            QueryRunner run = new QueryRunner();
+            if (task.getTaskId() == null) {
+                String sql = "INSERT INTO longrunningtasks (taskType, processId, title, priority, status, progress, statusMessage, attempts, "
+                        + "creationDate, startDate, endDate) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                Integer id = run.insert(connection, sql, MySQLHelper.resultSetToIntegerHandler, param);
+                task.setTaskId(id);
+            } else {
+                String sql = "UPDATE longrunningtasks SET taskType = ?, processId = ?, title = ?, priority = ?, status = ?, progress = ?, "
+                        + "statusMessage = ?, attempts = ?, creationDate = ?, startDate = ?, endDate = ? WHERE id = ?";
+                run.update(connection, sql, ArrayUtils.add(param, task.getTaskId()));
+            }
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    static void deleteTask(LongRunningTask task) throws SQLException {
+        if (task.getTaskId() == null) {
+            return;
+        }
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            new QueryRunner().update(connection, "DELETE FROM longrunningtasks WHERE id = ?", task.getTaskId());
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    private static Timestamp toTimestamp(Date date) {
+        return date == null ? null : new Timestamp(date.getTime());
+    }
+}
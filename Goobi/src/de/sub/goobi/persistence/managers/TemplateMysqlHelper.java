@@ -166,6 +166,49 @@ class TemplateMysqlHelper implements Serializable {
         }
     }
 
+    /**
+     * Saves the given templates and their properties on the given connection. Inserts and updates are executed as jdbc batches, commit and rollback
+     * are left to the caller.
+     * 
+     * @param templates
+     * @param connection open connection
+     * @throws SQLException
+     */
+    static void saveTemplates(List<Template> templates, Connection connection) throws SQLException {
+        List<Template> newTemplates = new ArrayList<>();
+        List<Object[]> insertParams = new ArrayList<>();
+        List<Object[]> updateParams = new ArrayList<>();
+        for (Template template : templates) {
+            if (template.getId() == null) {
+                Object[] param = { template.getHerkunft(), template.getProzess().getId() };
+                newTemplates.add(template);
+                insertParams.add(param);
+            } else if (template.getProzess() != null) {
+                // process can be missing in embedded database, these rows are skipped as before
+                Object[] param = { template.getHerkunft(), template.getProzess().getId(), template.getId() };
+                updateParams.add(param);
+            }
+        }
+        if (!newTemplates.isEmpty()) {
+            List<Integer> ids = MySQLHelper.insertBatch(connection, "INSERT INTO vorlagen ( Herkunft, ProzesseID ) VALUES ( ?, ?)", insertParams.toArray(new Object[insertParams.size()][]));
+            for (int i = 0; i < newTemplates.size(); i++) {
+                newTemplates.get(i).setId(ids.get(i));
+            }
+        }
+        if (!updateParams.isEmpty()) {
+            new QueryRunner().batch(connection, "UPDATE vorlagen set Herkunft = ?, ProzesseID = ? WHERE VorlagenID = ?", updateParams.toArray(new Object[updateParams.size()][]));
+        }
+
+        List<Templateproperty> properties = new ArrayList<>();
+        for (Template template : templates) {
+            for (Templateproperty property : template.getEigenschaften()) {
+                property.setTemplateId(template.getId());
+                properties.add(property);
+            }
+        }
+        PropertyMysqlHelper.saveTemplateproperties(properties, connection);
+    }
+
     public static void deleteTemplate(Template template) throws SQLException {
         if (template.getId() != null) {
             for (Templateproperty property : template.getEigenschaften()) {
@@ -264,6 +264,9 @@ class UserMysqlHelper implements Serializable {
                     logger.trace(sql);
                 }
                 run.update(connection, sql);
+                if (StepPermissionManager.isMaintained()) {
+                    StepPermissionMysqlHelper.deleteUser(connection, ro.getId());
+                }
             } finally {
                 if (connection != null) {
                     MySQLHelper.closeConnection(connection);
@@ -367,6 +370,9 @@ class UserMysqlHelper implements Serializable {
                             + gruppenID + ")";
                     new QueryRunner().update(connection, insert);
                 }
+                if (StepPermissionManager.isMaintained()) {
+                    StepPermissionMysqlHelper.refreshUser(connection, user.getId());
+                }
             } finally {
                 if (connection != null) {
                     MySQLHelper.closeConnection(connection);
@@ -387,6 +393,9 @@ class UserMysqlHelper implements Serializable {
                     String insert = " INSERT INTO projektbenutzer (BenutzerID , ProjekteID) VALUES (" + user.getId() + "," + projektID + ")";
                     new QueryRunner().update(connection, insert);
                 }
+                if (StepPermissionManager.isMaintained()) {
+                    StepPermissionMysqlHelper.refreshUser(connection, user.getId());
+                }
             } finally {
                 if (connection != null) {
                     MySQLHelper.closeConnection(connection);
@@ -402,6 +411,9 @@ class UserMysqlHelper implements Serializable {
                 connection = MySQLHelper.getInstance().getConnection();
                 String sql = " DELETE FROM benutzergruppenmitgliedschaft WHERE BenutzerID =" + user.getId() + " AND BenutzerGruppenID = " + gruppenID;
                 new QueryRunner().update(connection, sql);
+                if (StepPermissionManager.isMaintained()) {
+                    StepPermissionMysqlHelper.refreshUser(connection, user.getId());
+                }
 
             } finally {
                 if (connection != null) {
@@ -419,6 +431,9 @@ class UserMysqlHelper implements Serializable {
                 String sql = "DELETE FROM projektbenutzer WHERE BenutzerID =" + user.getId() + " AND ProjekteID = " + projektID;
 
                 new QueryRunner().update(connection, sql);
+                if (StepPermissionManager.isMaintained()) {
+                    StepPermissionMysqlHelper.refreshUser(connection, user.getId());
+                }
             } finally {
                 if (connection != null) {
                     MySQLHelper.closeConnection(connection);
@@ -1,16 +1,24 @@
 package org.goobi.api.mq;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.lang.StringUtils;
 import org.goobi.production.enums.PluginReturnValue;
-import org.reflections.Reflections;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
@@ -18,102 +26,335 @@ import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.Consumer;
 import com.rabbitmq.client.DefaultConsumer;
 import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.ShutdownSignalException;
 
+import de.sub.goobi.config.ConfigurationHelper;
 import lombok.extern.log4j.Log4j;
 
+/**
+ * Consumer for the tickets of the default queue. The broker hands out a limited number of tickets (prefetch), which are executed in a pool of
+ * worker threads for each ticket type. A ticket is acknowledged after it was handled, so tickets of a stopped Goobi are delivered again.
+ *
+ * A failed ticket is retried with an exponentially growing delay. After the last retry, or if the ticket cannot be read or its type is unknown,
+ * it is moved to the dead letter queue. From there it can be sent again with {@link #requeueDeadLetters()}.
+ */
 @Log4j
 public class GoobiDefaultQueueListener implements MessageListener {
 
-    @Override
-    public String getQueueName() {
-        return "goobi-default-queue";
-    }
+    public static final String DEFAULT_QUEUE = "goobi-default-queue";
+
+    private static final long CONFIRM_TIMEOUT = 10000;
+
+    private final TicketHandlerRegistry registry;
+
+    private final int prefetchCount;
+
+    private final int threadsPerTicketType;
+
+    private final int maxRetries;
+
+    private final long retryDelay;
+
+    private final Map<String, ThreadPoolExecutor> workers = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService retryScheduler;
 
-    private static Map<String, TicketHandler<PluginReturnValue>> instances = new HashMap<>();
+    private Connection connection = null;
 
+    private Channel channel = null;
+
+    private Channel deadLetterChannel = null;
+
+    private String consumerTag = null;
+
+    private volatile boolean closing = false;
+
+    public GoobiDefaultQueueListener() {
+        this(TicketHandlerRegistry.getInstance(), ConfigurationHelper.getInstance().getMessageBrokerPrefetchCount(),
+                ConfigurationHelper.getInstance().getNumberOfParallelMessages(), ConfigurationHelper.getInstance().getMessageBrokerMaxRetries(),
+                ConfigurationHelper.getInstance().getMessageBrokerRetryDelay());
+    }
+
+    /**
+     * @param registry the handlers for the tickets
+     * @param prefetchCount number of unacknowledged tickets the broker hands out
+     * @param threadsPerTicketType number of tickets of the same type that are executed at the same time
+     * @param maxRetries number of retries before a failed ticket is moved to the dead letter queue
+     * @param retryDelay delay in milliseconds before the first retry, it is doubled for each further retry
+     */
+    public GoobiDefaultQueueListener(TicketHandlerRegistry registry, int prefetchCount, int threadsPerTicketType, int maxRetries, long retryDelay) {
+        this.registry = registry;
+        this.prefetchCount = Math.max(1, prefetchCount);
+        this.threadsPerTicketType = Math.max(1, threadsPerTicketType);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryDelay = Math.max(0, retryDelay);
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("ticket-retry"));
+    }
 
     @Override
-    public void register(String url, Integer port, String username, String password) {
-        ConnectionFactory factory = new ConnectionFactory();
-        factory.setHost(url);
-        factory.setPort(port);
-        if (StringUtils.isNotBlank(username) && StringUtils.isNotBlank(password)) {
-            factory.setUsername(username);
-            factory.setPassword(password);
-        }
+    public String getQueueName() {
+        return DEFAULT_QUEUE;
+    }
 
+    @Override
+    public synchronized void register(String url, Integer port, String username, String password) {
+        ConnectionFactory factory = MessagePublisher.createConnectionFactory(url, port, username, password);
         try {
-            Connection connection = factory.newConnection();
-            Channel channel = connection.createChannel();
-            channel.queueDeclare(getQueueName(), false, false, false, null);
-
-            Consumer consumer = receiveMessage(channel);
+            connection = factory.newConnection("goobi-consumer");
+            channel = connection.createChannel();
+            try {
+                declareQueues(channel);
+            } catch (IOException e) {
+                if (channel.isOpen()) {
+                    throw e;
+                }
+                // the broker closed the channel, e.g. because a queue of an older version was replaced
+                channel = connection.createChannel();
+                declareQueues(channel);
+            }
+            channel.basicQos(prefetchCount);
 
-            channel.basicConsume(getQueueName(), false, consumer);
+            deadLetterChannel = connection.createChannel();
+            deadLetterChannel.confirmSelect();
 
+            consumerTag = channel.basicConsume(getQueueName(), false, receiveMessage(channel));
         } catch (IOException | TimeoutException e) {
             log.error(e);
         }
     }
 
+    private void declareQueues(Channel channel) throws IOException {
+        MessagePublisher.declareQueue(channel, getQueueName());
+        MessagePublisher.declareQueue(channel, MessagePublisher.getDeadLetterQueueName(getQueueName()));
+    }
+
     @Override
-    public Consumer receiveMessage(Channel channel) {
-        Gson gson = new Gson();
-        Consumer consumer = new DefaultConsumer(channel) {
+    public Consumer receiveMessage(final Channel channel) {
+        final Gson gson = new Gson();
+        return new DefaultConsumer(channel) {
             @Override
             public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) throws IOException {
-                String message = new String(body, "UTF-8");
-                TaskTicket ticket = gson.fromJson(message, TaskTicket.class);
-
+                String message = new String(body, StandardCharsets.UTF_8);
+                TaskTicket ticket;
+                try {
+                    ticket = gson.fromJson(message, TaskTicket.class);
+                } catch (JsonSyntaxException e) {
+                    log.error("Cannot read ticket: " + message, e);
+                    deadLetter(envelope, body, "Cannot read ticket: " + e.getMessage(), 0);
+                    return;
+                }
+                if (ticket == null) {
+                    deadLetter(envelope, body, "Empty ticket", 0);
+                    return;
+                }
                 log.info("Received ticket for job " + ticket.getTaskType());
 
-                if (instances.isEmpty()) {
-                    getInstalledTicketHandler();
+                TicketHandler<PluginReturnValue> handler = registry.getHandler(ticket.getTaskType());
+                if (handler == null) {
+                    log.error("Ticket type unknown: " + ticket.getTaskType());
+                    deadLetter(envelope, body, "Ticket type unknown: " + ticket.getTaskType(), 0);
+                    return;
                 }
+                submit(new Delivery(envelope, body, ticket, handler));
+            }
+        };
+    }
 
-                TicketHandler<PluginReturnValue> runnable = null;
+    /**
+     * Send the tickets of the dead letter queue of the default queue again. Tickets that fail again are moved back to the dead letter queue.
+     *
+     * @return the number of tickets
+     * @throws IOException
+     */
+    public static int requeueDeadLetters() throws IOException {
+        return requeueDeadLetters(MessagePublisher.getInstance());
+    }
 
-                if (instances.containsKey(ticket.getTaskType())) {
-                    runnable= instances.get(ticket.getTaskType());
-                } else {
-                    getInstalledTicketHandler();
-                    if (instances.containsKey(ticket.getTaskType())) {
-                        runnable= instances.get(ticket.getTaskType());
-                    }
-                }
+    static int requeueDeadLetters(MessagePublisher publisher) throws IOException {
+        int count = publisher.moveMessages(MessagePublisher.getDeadLetterQueueName(DEFAULT_QUEUE), DEFAULT_QUEUE);
+        log.info("Sent " + count + " tickets from the dead letter queue again");
+        return count;
+    }
 
-                if (runnable != null) {
+    /**
+     * Stop consuming and close the connection. Tickets that are waiting or running are not acknowledged, the broker delivers them again.
+     */
+    public synchronized void close() {
+        closing = true;
+        if (channel != null && consumerTag != null && channel.isOpen()) {
+            try {
+                channel.basicCancel(consumerTag);
+            } catch (IOException | ShutdownSignalException e) {
+                log.debug(e);
+            }
+        }
+        retryScheduler.shutdownNow();
+        for (ThreadPoolExecutor pool : workers.values()) {
+            pool.shutdownNow();
+        }
+        if (connection != null && connection.isOpen()) {
+            try {
+                connection.close();
+            } catch (IOException | ShutdownSignalException e) {
+                log.error(e);
+            }
+        }
+        connection = null;
+    }
 
-                    PluginReturnValue returnValue = runnable.call(ticket);
+    private void submit(Delivery delivery) {
+        try {
+            getWorkers(delivery.ticket.getTaskType()).execute(delivery);
+        } catch (RejectedExecutionException e) {
+            // the listener is closing, the broker delivers the ticket again
+            log.debug("Ticket for job " + delivery.ticket.getTaskType() + " was rejected: " + e.getMessage());
+        }
+    }
 
-                    if (returnValue == PluginReturnValue.ERROR) {
-                        // TODO general error handling, maybe try to answer the sender
-                    }
-                } else {
-                    log.error("Ticket type unknown: " + ticket.getTaskType());
+    private ThreadPoolExecutor getWorkers(String ticketType) {
+        ThreadPoolExecutor pool = workers.get(ticketType);
+        if (pool == null) {
+            synchronized (workers) {
+                pool = workers.get(ticketType);
+                if (pool == null) {
+                    // the queue of the pool is bounded by the prefetch count
+                    pool = new ThreadPoolExecutor(threadsPerTicketType, threadsPerTicketType, 60, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), daemonThreads("ticket-" + ticketType));
+                    pool.allowCoreThreadTimeOut(true);
+                    workers.put(ticketType, pool);
                 }
+            }
+        }
+        return pool;
+    }
 
+    /**
+     * Get the delay before the given retry
+     *
+     * @param retry number of the retry, starting with 1
+     * @return the delay in milliseconds
+     */
+    long getRetryDelay(int retry) {
+        return retryDelay << Math.min(retry - 1, 20);
+    }
 
+    private void acknowledge(Envelope envelope) {
+        try {
+            synchronized (channel) {
                 channel.basicAck(envelope.getDeliveryTag(), false);
             }
-        };
-        return consumer;
+        } catch (IOException | ShutdownSignalException e) {
+            // the broker delivers the ticket again
+            log.error("Cannot acknowledge ticket " + envelope.getDeliveryTag(), e);
+        }
     }
 
-
-    @SuppressWarnings({ "rawtypes", "unchecked" })
-    public static void getInstalledTicketHandler() {
-        instances = new HashMap<>();
-        Set<Class<? extends TicketHandler>> ticketHandlers = new Reflections("org.goobi.api.mq.*").getSubTypesOf(TicketHandler.class);
-        for (Class<? extends TicketHandler> clazz : ticketHandlers) {
+    /**
+     * Move a ticket to the dead letter queue. The ticket is acknowledged only if the broker confirmed the dead letter, otherwise it is returned to
+     * the queue.
+     */
+    private void deadLetter(Envelope envelope, byte[] body, String reason, int attempts) {
+        String queueName = MessagePublisher.getDeadLetterQueueName(getQueueName());
+        Map<String, Object> headers = new HashMap<>();
+        headers.put("x-goobi-error", reason);
+        headers.put("x-goobi-attempts", attempts);
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder().contentType("application/json")
+                .contentEncoding("UTF-8")
+                .deliveryMode(2)
+                .headers(headers)
+                .build();
+        try {
+            synchronized (deadLetterChannel) {
+                deadLetterChannel.basicPublish("", queueName, properties, body);
+                deadLetterChannel.waitForConfirmsOrDie(CONFIRM_TIMEOUT);
+            }
+            log.warn("Moved ticket to " + queueName + ": " + reason);
+            acknowledge(envelope);
+        } catch (IOException | TimeoutException | ShutdownSignalException e) {
+            log.error("Cannot move ticket to " + queueName + ", returning it to the queue", e);
             try {
-                TicketHandler<PluginReturnValue> handler = clazz.newInstance();
-                instances.put(handler.getTicketHandlerName(), handler);
-            } catch (InstantiationException | IllegalAccessException e) {
-                log.error(e);
+                synchronized (channel) {
+                    channel.basicNack(envelope.getDeliveryTag(), false, true);
+                }
+            } catch (IOException | ShutdownSignalException e1) {
+                log.error(e1);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+    }
 
+    private static ThreadFactory daemonThreads(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * A received ticket, it is executed by the workers of its type until it succeeds or the retries are used up
+     */
+    private class Delivery implements Runnable {
+        private final Envelope envelope;
+        private final byte[] body;
+        private final TaskTicket ticket;
+        private final TicketHandler<PluginReturnValue> handler;
+        private int attempts = 0;
+
+        private Delivery(Envelope envelope, byte[] body, TaskTicket ticket, TicketHandler<PluginReturnValue> handler) {
+            this.envelope = envelope;
+            this.body = body;
+            this.ticket = ticket;
+            this.handler = handler;
+        }
 
+        @Override
+        public void run() {
+            attempts++;
+            String error;
+            try {
+                PluginReturnValue returnValue = handler.call(ticket);
+                if (closing) {
+                    // the handler may have been interrupted, the broker delivers the ticket again
+                    log.debug("Listener is closing, ticket for job " + ticket.getTaskType() + " is not acknowledged");
+                    return;
+                }
+                if (returnValue != PluginReturnValue.ERROR) {
+                    acknowledge(envelope);
+                    return;
+                }
+                error = "Handler returned " + returnValue;
+            } catch (RuntimeException e) {
+                log.error("Error while executing ticket for job " + ticket.getTaskType(), e);
+                error = e.getClass().getSimpleName() + ": " + e.getMessage();
+                if (closing) {
+                    return;
+                }
+            }
+            if (attempts > maxRetries) {
+                deadLetter(envelope, body, error, attempts);
+                return;
+            }
+            long delay = getRetryDelay(attempts);
+            log.warn("Ticket for job " + ticket.getTaskType() + " failed (" + error + "), retry " + attempts + " of " + maxRetries + " in " + delay
+                    + " ms");
+            try {
+                retryScheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        submit(Delivery.this);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // the listener is closing, the broker delivers the ticket again
+                log.debug(e);
+            }
+        }
     }
 }
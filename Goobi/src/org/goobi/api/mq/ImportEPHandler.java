@@ -34,9 +34,9 @@ import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 
 import de.sub.goobi.config.ConfigurationHelper;
+import de.sub.goobi.helper.AutomaticStepExecutor;
 import de.sub.goobi.helper.BeanHelper;
 import de.sub.goobi.helper.Helper;
-import de.sub.goobi.helper.ScriptThreadWithoutHibernate;
 import de.sub.goobi.helper.StorageProvider;
 import de.sub.goobi.helper.enums.PropertyType;
 import de.sub.goobi.helper.enums.StepEditType;
@@ -233,8 +233,7 @@ public class ImportEPHandler implements TicketHandler<PluginReturnValue> {
         List<Step> steps = StepManager.getStepsForProcess(process.getId());
         for (Step s : steps) {
             if (s.getBearbeitungsstatusEnum().equals(StepStatus.OPEN) && s.isTypAutomatisch()) {
-                ScriptThreadWithoutHibernate myThread = new ScriptThreadWithoutHibernate(s);
-                myThread.start();
+                AutomaticStepExecutor.getInstance().submit(s);
             }
         }
         return true;
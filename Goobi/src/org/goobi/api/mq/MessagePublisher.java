@@ -0,0 +1,295 @@
+package org.goobi.api.mq;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.GetResponse;
+import com.rabbitmq.client.Recoverable;
+import com.rabbitmq.client.ShutdownSignalException;
+
+import de.sub.goobi.config.ConfigurationHelper;
+import lombok.extern.log4j.Log4j;
+
+/**
+ * Long-lived publisher for the message broker. All messages are sent over a single connection, which is recovered automatically, if the broker
+ * connection gets lost. Each thread uses its own channel. The messages are persistent and every publish waits for the confirmation of the broker.
+ */
+@Log4j
+public class MessagePublisher {
+
+    private static final long CONFIRM_TIMEOUT = 10000;
+
+    private static final AMQP.BasicProperties PERSISTENT_JSON = new AMQP.BasicProperties.Builder().contentType("application/json")
+            .contentEncoding("UTF-8")
+            .deliveryMode(2)
+            .build();
+
+    private static MessagePublisher instance = null;
+
+    private final ConnectionFactory factory;
+
+    private Connection connection = null;
+
+    private final ThreadLocal<PublisherChannel> channels = new ThreadLocal<>();
+
+    MessagePublisher(ConnectionFactory factory) {
+        this.factory = factory;
+    }
+
+    public static synchronized MessagePublisher getInstance() {
+        if (instance == null) {
+            ConfigurationHelper config = ConfigurationHelper.getInstance();
+            instance = new MessagePublisher(createConnectionFactory(config.getMessageBrokerUrl(), config.getMessageBrokerPort(),
+                    config.getMessageBrokerUsername(), config.getMessageBrokerPassword()));
+        }
+        return instance;
+    }
+
+    /**
+     * Create a connection factory for the broker. Connections created by this factory are recovered automatically, including the declared
+     * queues and consumers.
+     */
+    public static ConnectionFactory createConnectionFactory(String url, Integer port, String username, String password) {
+        ConnectionFactory factory = new ConnectionFactory();
+        factory.setHost(url);
+        factory.setPort(port);
+        // the password may be empty, as in the former ticket generator
+        if (StringUtils.isNotBlank(username)) {
+            factory.setUsername(username);
+            factory.setPassword(password);
+        }
+        factory.setAutomaticRecoveryEnabled(true);
+        factory.setTopologyRecoveryEnabled(true);
+        factory.setNetworkRecoveryInterval(5000);
+        return factory;
+    }
+
+    /**
+     * Declare the queue used for tickets. All publishers and consumers must use this method, because the broker rejects a declaration with
+     * different arguments.
+     *
+     * Older versions declared the queues as not durable. If such a queue is found, the broker closes the channel. The queue is replaced by a
+     * durable one, if it is empty and not in use, and an exception is thrown, so the caller can declare it again on a new channel.
+     *
+     * @param channel the channel to use
+     * @param queueName the name of the queue
+     * @throws IOException
+     */
+    public static void declareQueue(Channel channel, String queueName) throws IOException {
+        try {
+            channel.queueDeclare(queueName, true, false, false, null);
+        } catch (IOException e) {
+            if (!isPreconditionFailed(e)) {
+                throw e;
+            }
+            replaceQueue(channel.getConnection(), queueName);
+            throw new IOException("Queue " + queueName + " was replaced by a durable queue, it must be declared again on a new channel", e);
+        }
+    }
+
+    /**
+     * Replace a queue that was declared with other arguments by a durable one. Only an empty queue without consumers is deleted, so no ticket
+     * gets lost.
+     */
+    private static void replaceQueue(Connection connection, String queueName) throws IOException {
+        Channel channel = connection.createChannel();
+        try {
+            channel.queueDelete(queueName, true, true);
+            channel.queueDeclare(queueName, true, false, false, null);
+            log.warn("Queue " + queueName + " was not durable, it was replaced by a durable queue");
+        } catch (IOException e) {
+            log.error("Queue " + queueName + " exists with other arguments, probably as not durable queue of an older version, and is not empty "
+                    + "or still in use. Stop all Goobi instances using the broker, delete the queue in the broker once it is empty and start Goobi "
+                    + "again, the queue is created as durable queue then.");
+            throw new IOException("Queue " + queueName + " cannot be declared as durable queue", e);
+        } finally {
+            if (channel.isOpen()) {
+                try {
+                    channel.close();
+                } catch (IOException | TimeoutException | ShutdownSignalException e) {
+                    log.debug(e);
+                }
+            }
+        }
+    }
+
+    private static boolean isPreconditionFailed(IOException e) {
+        if (e.getCause() instanceof ShutdownSignalException) {
+            Object reason = ((ShutdownSignalException) e.getCause()).getReason();
+            return reason instanceof AMQP.Channel.Close && ((AMQP.Channel.Close) reason).getReplyCode() == AMQP.PRECONDITION_FAILED;
+        }
+        return false;
+    }
+
+    /**
+     * Get the name of the queue that keeps the messages of the given queue which could not be handled
+     *
+     * @param queueName the name of the queue
+     * @return the name of the dead letter queue
+     */
+    public static String getDeadLetterQueueName(String queueName) {
+        return queueName + "-dlq";
+    }
+
+    /**
+     * Send a message to the given queue and wait until the broker confirmed it. If the channel of the current thread is broken, a new one is
+     * opened and the message is sent again once.
+     *
+     * @param queueName the name of the queue
+     * @param message the message, sent as UTF-8
+     * @throws IOException if the message could not be delivered to the broker
+     */
+    public void publish(String queueName, String message) throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        try {
+            publish(getChannel(), queueName, body);
+        } catch (IOException | ShutdownSignalException | TimeoutException e) {
+            log.warn("Publishing to queue " + queueName + " failed, retrying with a new channel: " + e.getMessage());
+            discardChannel();
+            try {
+                publish(getChannel(), queueName, body);
+            } catch (ShutdownSignalException | TimeoutException e1) {
+                discardChannel();
+                throw new IOException("Message to queue " + queueName + " was not confirmed by the broker", e1);
+            } catch (IOException e1) {
+                discardChannel();
+                throw e1;
+            }
+        }
+    }
+
+    /**
+     * Move the messages of one queue to another one, e.g. to send the messages of a dead letter queue again. Each message is removed from the
+     * source queue after the broker confirmed it in the target queue. Only the messages that are in the source queue when the method is called
+     * are moved, so messages that return to the source queue at once are not moved in a loop.
+     *
+     * @param sourceQueue the queue to empty
+     * @param targetQueue the queue to send the messages to
+     * @return the number of moved messages
+     * @throws IOException if a message could not be moved, the message stays in the source queue
+     */
+    public int moveMessages(String sourceQueue, String targetQueue) throws IOException {
+        int count = 0;
+        try {
+            PublisherChannel pc = getChannel();
+            if (!pc.declaredQueues.contains(sourceQueue)) {
+                declareQueue(pc.channel, sourceQueue);
+                pc.declaredQueues.add(sourceQueue);
+            }
+            int messageCount = pc.channel.queueDeclarePassive(sourceQueue).getMessageCount();
+            while (count < messageCount) {
+                GetResponse response = pc.channel.basicGet(sourceQueue, false);
+                if (response == null) {
+                    break;
+                }
+                publish(pc, targetQueue, response.getBody());
+                pc.channel.basicAck(response.getEnvelope().getDeliveryTag(), false);
+                count++;
+            }
+        } catch (ShutdownSignalException | TimeoutException e) {
+            discardChannel();
+            throw new IOException("Moving messages from queue " + sourceQueue + " was interrupted after " + count + " messages", e);
+        } catch (IOException e) {
+            discardChannel();
+            throw e;
+        }
+        return count;
+    }
+
+    private void publish(PublisherChannel pc, String queueName, byte[] body) throws IOException, TimeoutException {
+        if (!pc.declaredQueues.contains(queueName)) {
+            declareQueue(pc.channel, queueName);
+            pc.declaredQueues.add(queueName);
+        }
+        pc.channel.basicPublish("", queueName, PERSISTENT_JSON, body);
+        try {
+            pc.channel.waitForConfirmsOrDie(CONFIRM_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the confirmation of the broker", e);
+        }
+    }
+
+    private PublisherChannel getChannel() throws IOException {
+        PublisherChannel pc = channels.get();
+        if (pc == null || !pc.channel.isOpen()) {
+            Channel channel = getConnection().createChannel();
+            channel.confirmSelect();
+            pc = new PublisherChannel(channel);
+            channels.set(pc);
+        }
+        return pc;
+    }
+
+    private void discardChannel() {
+        PublisherChannel pc = channels.get();
+        channels.remove();
+        if (pc != null && pc.channel.isOpen()) {
+            try {
+                pc.channel.close();
+            } catch (IOException | TimeoutException | ShutdownSignalException e) {
+                log.debug(e);
+            }
+        }
+    }
+
+    private synchronized Connection getConnection() throws IOException {
+        // a connection that is recovering is still usable once the broker is back, only closed connections need to be replaced
+        if (connection == null || (!connection.isOpen() && !isRecovering(connection))) {
+            try {
+                connection = factory.newConnection("goobi-publisher");
+            } catch (TimeoutException e) {
+                throw new IOException("Connection to message broker timed out", e);
+            }
+        }
+        return connection;
+    }
+
+    private static boolean isRecovering(Connection connection) {
+        // a connection closed by the application is not recovered
+        return connection instanceof Recoverable && connection.getCloseReason() != null
+                && !connection.getCloseReason().isInitiatedByApplication();
+    }
+
+    /**
+     * Close the connection to the broker, all channels are closed as well
+     */
+    public synchronized void close() {
+        if (connection != null && connection.isOpen()) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                log.error(e);
+            }
+        }
+        connection = null;
+    }
+
+    /**
+     * Close the connection of the shared publisher, if it was used
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    private static class PublisherChannel {
+        private final Channel channel;
+        private final Set<String> declaredQueues = new HashSet<>();
+
+        private PublisherChannel(Channel channel) {
+            this.channel = channel;
+        }
+    }
+}
@@ -20,6 +20,8 @@ public class QpidBrokerListener implements ServletContextListener {
 
     private SystemLauncher systemLauncher = null;
 
+    private GoobiDefaultQueueListener listener = null;
+
     @Override
     public void contextInitialized(ServletContextEvent sce) {
         if (ConfigurationHelper.getInstance().isStartInternalMessageBroker()) {
@@ -32,23 +34,25 @@ public class QpidBrokerListener implements ServletContextListener {
                 log.error(e);
             }
         }
-        // register number of parallel message listener to configured broker
+        // register the listener to the configured broker, it executes the configured number of parallel messages for each ticket type
         if (ConfigurationHelper.getInstance().getNumberOfParallelMessages() > 0) {
             String server = ConfigurationHelper.getInstance().getMessageBrokerUrl();
             int port = ConfigurationHelper.getInstance().getMessageBrokerPort();
             String username = ConfigurationHelper.getInstance().getMessageBrokerUsername();
             String password = ConfigurationHelper.getInstance().getMessageBrokerPassword();
 
-            for (int i = 0; i < ConfigurationHelper.getInstance().getNumberOfParallelMessages(); i++) {
-                MessageListener listener = new GoobiDefaultQueueListener();
-                listener.register(server, port, username, password);
-            }
+            listener = new GoobiDefaultQueueListener();
+            listener.register(server, port, username, password);
         }
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
-        if (systemLauncher == null) {
+        if (listener != null) {
+            listener.close();
+        }
+        MessagePublisher.shutdown();
+        if (systemLauncher != null) {
             systemLauncher.shutdown();
         }
     }
@@ -1,16 +1,9 @@
 package org.goobi.api.mq;
 
 import java.io.IOException;
-import java.util.concurrent.TimeoutException;
-
-import org.apache.commons.lang.StringUtils;
 
 import com.google.gson.Gson;
-import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.Connection;
-import com.rabbitmq.client.ConnectionFactory;
 
-import de.sub.goobi.config.ConfigurationHelper;
 import lombok.extern.log4j.Log4j;
 
 @Log4j
@@ -22,41 +15,19 @@ public class TicketGenerator {
 
     }
 
+    /**
+     * Send the ticket to its queue. The message is persistent and confirmed by the broker.
+     * 
+     * @param ticket the ticket to send
+     */
     public static void registerTicket(TaskTicket ticket) {
-
-        ConnectionFactory factory = new ConnectionFactory();
-
-        factory.setHost(ConfigurationHelper.getInstance().getMessageBrokerUrl());
-        factory.setPort(ConfigurationHelper.getInstance().getMessageBrokerPort());
-
-        if (StringUtils.isNotBlank(ConfigurationHelper.getInstance().getMessageBrokerUsername())) {
-            factory.setUsername(ConfigurationHelper.getInstance().getMessageBrokerUsername());
-            factory.setPassword(ConfigurationHelper.getInstance().getMessageBrokerPassword());
-        }
-
-        Connection connection = null;
-        Channel channel = null;
+        Gson gson = new Gson();
+        String jsonString = gson.toJson(ticket);
         try {
-            connection = factory.newConnection();
-            channel = connection.createChannel();
-            channel.queueDeclare(ticket.getQueueName(), false, false, false, null);
-            Gson gson = new Gson();
-
-            String jsonString = gson.toJson(ticket);
-
-            channel.basicPublish("", ticket.getQueueName(), null, jsonString.getBytes());
-
-        } catch (IOException | TimeoutException e) {
-            log.error(e);
-        } finally {
-            try {
-                channel.close();
-                connection.close();
-            } catch (IOException | TimeoutException e) {
-                log.error(e);
-            }
+            MessagePublisher.getInstance().publish(ticket.getQueueName(), jsonString);
+        } catch (IOException e) {
+            log.error("Ticket " + ticket.getTaskType() + " could not be sent to queue " + ticket.getQueueName(), e);
         }
-
     }
 
 }
@@ -0,0 +1,73 @@
+package org.goobi.api.mq;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.goobi.production.enums.PluginReturnValue;
+import org.reflections.Reflections;
+
+import lombok.extern.log4j.Log4j;
+
+/**
+ * All known ticket handlers, by the name of the ticket type they handle. The classpath is searched once, when the registry is used for the first
+ * time.
+ */
+@Log4j
+public class TicketHandlerRegistry {
+
+    private static TicketHandlerRegistry instance = null;
+
+    private final Map<String, TicketHandler<PluginReturnValue>> handlers = new ConcurrentHashMap<>();
+
+    TicketHandlerRegistry() {
+    }
+
+    public static synchronized TicketHandlerRegistry getInstance() {
+        if (instance == null) {
+            TicketHandlerRegistry registry = new TicketHandlerRegistry();
+            registry.findInstalledTicketHandler();
+            instance = registry;
+        }
+        return instance;
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void findInstalledTicketHandler() {
+        Set<Class<? extends TicketHandler>> ticketHandlers = new Reflections("org.goobi.api.mq.*").getSubTypesOf(TicketHandler.class);
+        for (Class<? extends TicketHandler> clazz : ticketHandlers) {
+            try {
+                register(clazz.newInstance());
+            } catch (InstantiationException | IllegalAccessException e) {
+                log.error(e);
+            }
+        }
+        log.info("Found ticket handlers for " + getTicketTypes());
+    }
+
+    /**
+     * Add a handler, an existing handler for the same ticket type is replaced
+     *
+     * @param handler the handler to add
+     */
+    public void register(TicketHandler<PluginReturnValue> handler) {
+        handlers.put(handler.getTicketHandlerName(), handler);
+    }
+
+    /**
+     * @param ticketType the type of the ticket
+     * @return the handler for the ticket type or null, if the type is unknown
+     */
+    public TicketHandler<PluginReturnValue> getHandler(String ticketType) {
+        if (ticketType == null) {
+            return null;
+        }
+        return handlers.get(ticketType);
+    }
+
+    public Set<String> getTicketTypes() {
+        return Collections.unmodifiableSet(new TreeSet<>(handlers.keySet()));
+    }
+}
@@ -1,27 +1,36 @@
 package org.goobi.api.rest;
 
 import java.io.IOException;
+import java.util.Date;
 import java.util.List;
 import java.util.Map.Entry;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerResponseContext;
 import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.ext.Provider;
 
 import org.apache.commons.configuration.ConfigurationException;
 
+import de.sub.goobi.config.ConfigurationHelper;
 import lombok.extern.log4j.Log4j;
 
 @Provider
 @Log4j
 public class AddHeaderFilter implements ContainerResponseFilter {
 
+    @Context
+    private HttpServletRequest servletRequest;
+
     @Override
     public void filter(ContainerRequestContext req, ContainerResponseContext resp) throws IOException {
         if (resp.getStatus() >= 400) {
             return;
         }
+        addCacheHeaders(resp);
         String path = req.getUriInfo().getPath();
         if (!path.startsWith("/")) {
             path = "/" + path;
@@ -47,4 +56,24 @@ public class AddHeaderFilter implements ContainerResponseFilter {
         }
     }
 
+    /**
+     * Add the validators of a delivered image, so that the browser can ask if the image was changed
+     */
+    private void addCacheHeaders(ContainerResponseContext resp) {
+        if (servletRequest == null) {
+            return;
+        }
+        Object etag = servletRequest.getAttribute(GoobiImageResource.ETAG_ATTRIBUTE);
+        Object lastModified = servletRequest.getAttribute(GoobiImageResource.LAST_MODIFIED_ATTRIBUTE);
+        if (etag == null || resp.getHeaders().containsKey(HttpHeaders.ETAG)) {
+            return;
+        }
+        resp.getHeaders().putSingle(HttpHeaders.ETAG, etag);
+        if (lastModified != null) {
+            resp.getHeaders().putSingle(HttpHeaders.LAST_MODIFIED, new Date((Long) lastModified));
+        }
+        // images are only visible to logged in users
+        resp.getHeaders().putSingle(HttpHeaders.CACHE_CONTROL, "private, max-age=" + ConfigurationHelper.getInstance().getImageClientCacheMaxAge());
+    }
+
 }
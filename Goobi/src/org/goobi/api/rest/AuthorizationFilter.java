@@ -93,7 +93,11 @@ public class AuthorizationFilter implements ContainerRequestFilter {
 
     public static boolean hasJsfContext(HttpServletRequest request) {
         if (request != null) {
-            HttpSession session = request.getSession();
+            // do not create a session for anonymous requests
+            HttpSession session = request.getSession(false);
+            if (session == null) {
+                return false;
+            }
             LoginBean userBean = (LoginBean) session.getAttribute("LoginForm");
             return (userBean != null && userBean.getMyBenutzer() != null);
 
@@ -10,10 +10,9 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -25,21 +24,23 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 import org.apache.commons.io.FilenameUtils;
-import org.goobi.beans.Process;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.sub.goobi.config.ConfigurationHelper;
 import de.sub.goobi.helper.StorageProvider;
-import de.sub.goobi.helper.exceptions.DAOException;
-import de.sub.goobi.helper.exceptions.SwapException;
 import de.sub.goobi.metadaten.Image;
-import de.sub.goobi.persistence.managers.ProcessManager;
+import de.sub.goobi.metadaten.ThumbnailGenerator;
+import de.sub.goobi.metadaten.ThumbnailManifest;
 import de.unigoettingen.sub.commons.contentlib.exceptions.ContentLibException;
 import de.unigoettingen.sub.commons.contentlib.exceptions.ContentNotFoundException;
 import de.unigoettingen.sub.commons.contentlib.exceptions.IllegalRequestException;
@@ -62,55 +63,63 @@ import spark.utils.StringUtils;
 @ContentServerBinding
 public class GoobiImageResource extends ImageResource {
 
-	private static final String IIIF_IMAGE_SIZE_REGEX = "^(\\d{0,9}),(\\d{0,9})$";
-	private static final String IIIF_IMAGE_REGION_REGEX = "^(\\d{1,9}),(\\d{1,9}),(\\d{1,9}),(\\d{1,9})$";
-	private static final String THUMBNAIL_FOLDER_REGEX = "^.*_(\\d{1,9})$";
-	private static final String THUMBNAIL_SUFFIX = ".jpg";
-	private static final int IMAGE_SIZES_MAX_SIZE = 100;
-	private static final int IMAGE_SIZES_NUM_ENTRIES_TO_DELETE_ON_OVERFLOW = 10;
+	private static final Pattern IIIF_IMAGE_SIZE_PATTERN = Pattern.compile("^(\\d{0,9}),(\\d{0,9})$");
+	private static final Pattern IIIF_IMAGE_REGION_PATTERN = Pattern.compile("^(\\d{1,9}),(\\d{1,9}),(\\d{1,9}),(\\d{1,9})$");
+	private static final Pattern THUMBNAIL_FOLDER_PATTERN = Pattern.compile("^.*_(\\d{1,9})$");
+	private static final String THUMBNAIL_SUFFIX = ThumbnailGenerator.THUMBNAIL_SUFFIX;
 
-	private static final Logger logger = LoggerFactory.getLogger(GoobiImageResource.class);
+	/**
+	 * Name of the request attribute containing the ETag of the delivered image, written as response header by {@link AddHeaderFilter}
+	 */
+	public static final String ETAG_ATTRIBUTE = "goobi.image.etag";
+	/**
+	 * Name of the request attribute containing the modification date of the delivered image
+	 */
+	public static final String LAST_MODIFIED_ATTRIBUTE = "goobi.image.lastModified";
 
-	private static final Map<String, Integer> IMAGE_SIZES = new LinkedHashMap<>(IMAGE_SIZES_MAX_SIZE);
+	private static final Logger logger = LoggerFactory.getLogger(GoobiImageResource.class);
 
-	private final Process process;
+	private final ImageCache.ImageFolder imageFolder;
 
 	public GoobiImageResource(HttpServletRequest request, String directory, String filename) {
 		super(request, directory, filename);
-		this.process = null;
+		this.imageFolder = null;
 	}
 
 	public GoobiImageResource(@Context HttpServletRequest request, @PathParam("process") String processIdString,
 			@PathParam("folder") String folder, @PathParam("filename") String filename) throws ContentLibException {
 		super(request, folder, filename);
-		this.process = getGoobiProcess(processIdString);
+		this.imageFolder = getImageFolder(processIdString, folder);
 
-		createGoobiResourceURI(request, this.process, folder, filename);
-		createGoobiImageURI(request, this.process, folder, filename);
+		createGoobiResourceURI(request, this.imageFolder.getProcessId(), folder, filename);
+		createGoobiImageURI(request, this.imageFolder, filename);
+		evaluatePreconditions(request);
 	}
 
-	private void createGoobiImageURI(HttpServletRequest request, Process process, String folder, String filename)
+	private void createGoobiImageURI(HttpServletRequest request, ImageCache.ImageFolder imageFolder, String filename)
 			throws ContentLibException {
 		try {
-			java.nio.file.Path imageFolderPath = getImagesFolder(process, folder);
-			java.nio.file.Path imagePath = imageFolderPath.resolve(filename);
+			java.nio.file.Path imagePath = imageFolder.getPath().resolve(filename);
 			URI originalImageURI = Image.toURI(imagePath);
 			
-			if(StorageProvider.getInstance().isDirectory(Paths.get(process.getThumbsDirectory()))) {				
+			if (imageFolder.getManifest() == null) {
+				requestThumbnails(imageFolder);
+			}
+			if (imageFolder.isUseThumbnails()) {
 				Optional<Integer> requestedImageSize = getRequestedImageSize(request);
 				Optional<Dimension> requestedRegionSize = getRequestedRegionSize(request);
+				final int imageWidth = getImageSize(originalImageURI.toString());
 				//For requests covering only part of the image, calculate the size of the requested image if the entire image were requested
 				if(requestedImageSize.isPresent() && requestedRegionSize.isPresent()) {
 					float regionScale = requestedImageSize.get()/(float)requestedRegionSize.get().getWidth();
-					Integer imageSize = getImageSize(originalImageURI.toString());
-					requestedImageSize = Optional.of((int)(regionScale * imageSize));
+					requestedImageSize = Optional.of((int)(regionScale * imageWidth));
 				}
-				boolean alwaysUseThumbnail = getImageSize(originalImageURI.toString()) > ConfigurationHelper.getInstance().getMaximalImageSize();
+				boolean alwaysUseThumbnail = imageWidth > ConfigurationHelper.getInstance().getMaximalImageSize();
 				//set the path of the thumbnail/image to use
-				imagePath = getThumbnailPath(imagePath, requestedImageSize, process, alwaysUseThumbnail).orElse(imagePath);
+				imagePath = getThumbnailPath(imagePath, requestedImageSize, imageFolder, alwaysUseThumbnail).orElse(imagePath);
 				//add an attribute to the request on how to scale the requested region to its size on the original image
 				getThumbnailSize(imagePath.getParent().getFileName().toString())
-				.map(sizeString -> calcThumbnailScale( originalImageURI, sizeString))
+				.map(sizeString -> calcThumbnailScale(imageWidth, sizeString))
 				.ifPresent(scale -> setThumbnailScale(scale, request));
 				logger.trace("Using thumbnail {} for image width {} and region width {}", imagePath, requestedImageSize.map(Object::toString).orElse("max"), requestedRegionSize.map(Dimension::getWidth).map(Object::toString).orElse("full"));
 			}
@@ -118,20 +127,67 @@ public class GoobiImageResource extends ImageResource {
 			this.setImageURI(Image.toURI(imagePath));
 			
 			
-		} catch (NumberFormatException | NullPointerException e) {
-			throw new ContentNotFoundException("No process found with id " + process.getId(), e);
-		} catch (IOException | InterruptedException | SwapException | DAOException e) {
-			throw new ContentLibException(e);
+		} catch (NumberFormatException e) {
+			throw new ContentNotFoundException("Invalid image size requested", e);
 		}
 	}
 
 	/**
+	 * Answer conditional requests for images which were not changed since the client received them. The ETag and the modification date of
+	 * the delivered file are stored in the request to be added to the response.
+	 * 
 	 * @param request
+	 */
+	private void evaluatePreconditions(HttpServletRequest request) {
+		if (request == null || request.getRequestURI().endsWith("info.json")) {
+			// the image information also depends on the thumbnail folders
+			return;
+		}
+		java.nio.file.Path imagePath = Paths.get(getImageURI());
+		long lastModified;
+		try {
+			lastModified = StorageProvider.getInstance().getLastModifiedDate(imagePath);
+		} catch (IOException e) {
+			// let the image resource report the missing file
+			return;
+		}
+		EntityTag etag = createETag(imagePath, lastModified);
+		// HTTP dates have no milliseconds
+		lastModified = lastModified / 1000 * 1000;
+		String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+		boolean notModified;
+		if (ifNoneMatch != null) {
+			notModified = ifNoneMatch.contains("\"" + etag.getValue() + "\"") || ifNoneMatch.trim().equals("*");
+		} else {
+			long ifModifiedSince = getDateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+			notModified = ifModifiedSince >= lastModified;
+		}
+		if (notModified) {
+			throw new WebApplicationException(Response.notModified(etag).lastModified(new Date(lastModified)).build());
+		}
+		request.setAttribute(ETAG_ATTRIBUTE, etag);
+		request.setAttribute(LAST_MODIFIED_ATTRIBUTE, lastModified);
+	}
+
+	private static EntityTag createETag(java.nio.file.Path imagePath, long lastModified) {
+		// weak, because the same file may be delivered in different encodings
+		return new EntityTag(Long.toHexString(lastModified) + "-" + Integer.toHexString(imagePath.toString().hashCode()), true);
+	}
+
+	private static long getDateHeader(HttpServletRequest request, String name) {
+		try {
+			return request.getDateHeader(name);
+		} catch (IllegalArgumentException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @param imageWidth
 	 * @param sizeString
 	 */
-	private float calcThumbnailScale(URI imageURI, String sizeString) {
+	private float calcThumbnailScale(int imageWidth, String sizeString) {
 		int thumbnailWidth = Integer.parseInt(sizeString);
-		int imageWidth = getImageSize(imageURI.toString());
 		float thumbnailScale = thumbnailWidth / (float) imageWidth;
 		return thumbnailScale;
 	}
@@ -141,7 +197,7 @@ public class GoobiImageResource extends ImageResource {
 	}
 
 	private Optional<String> getThumbnailSize(String path) {
-		Matcher matcher = Pattern.compile(THUMBNAIL_FOLDER_REGEX).matcher(path);
+		Matcher matcher = THUMBNAIL_FOLDER_PATTERN.matcher(path);
 		if (matcher.find()) {
 			return Optional.of(matcher.group(1));
 		} else {
@@ -150,13 +206,19 @@ public class GoobiImageResource extends ImageResource {
 	}
 
 	/**
+	 * Get the folder of the process from the cache, the process is only loaded if the folder is not known yet
+	 * 
 	 * @param processIdString
+	 * @param folder
 	 * @return
+	 * @throws ContentLibException
 	 */
-	private org.goobi.beans.Process getGoobiProcess(String processIdString) {
-		int processId = Integer.parseInt(processIdString);
-		org.goobi.beans.Process process = ProcessManager.getProcessById(processId);
-		return process;
+	private ImageCache.ImageFolder getImageFolder(String processIdString, String folder) throws ContentLibException {
+		try {
+			return ImageCache.getImageFolder(Integer.parseInt(processIdString), folder);
+		} catch (NumberFormatException e) {
+			throw new ContentNotFoundException("No process found with id " + processIdString, e);
+		}
 	}
 
 	/**
@@ -164,28 +226,32 @@ public class GoobiImageResource extends ImageResource {
 	 * @param imagePath   The full filepath to the requested image
 	 * @param imageSize   The desired size of the requested image, determines which
 	 *                    thumbnail folder to use
-	 * @param process     the process in which the image is located
+	 * @param imageFolder the folder in which the image is located
 	 * @param useFallback if set to true, the largest thumbnail folder will be used
 	 *                    if the requested image is larger than all thumnails
 	 * @return An Optional containing the full filepath to the most suitable
 	 *         thumbnail image, or an empty Optional if no matching thumnail was
 	 *         found
-	 * @throws IOException
-	 * @throws InterruptedException
-	 * @throws SwapException
-	 * @throws DAOException
 	 */
 	private Optional<java.nio.file.Path> getThumbnailPath(java.nio.file.Path imagePath, Optional<Integer> imageSize,
-			org.goobi.beans.Process process, boolean useFallback)
-			throws IOException, InterruptedException, SwapException, DAOException {
+			ImageCache.ImageFolder imageFolder, boolean useFallback) {
 		if (imageSize.isPresent()) {
-			String thumbsDir = useFallback ? process.getThumbsDirectoryOrSmaller(imagePath.getParent().toString(), imageSize.get())
-					: process.getThumbsDirectory(imagePath.getParent().toString(), imageSize.get());
+			String thumbsDir = imageFolder.getThumbsDirectory(imageSize.get(), useFallback);
 			if (StringUtils.isNotBlank(thumbsDir)) {
 				java.nio.file.Path thumbsPath = Paths.get(thumbsDir);
 				java.nio.file.Path thumbnailPath = thumbsPath
 						.resolve(replaceSuffix(imagePath.getFileName().toString(), THUMBNAIL_SUFFIX));
-				if (StorageProvider.getInstance().isFileExists(thumbnailPath)) {
+				ThumbnailManifest manifest = imageFolder.getManifest();
+				if (manifest != null) {
+					// thumbnails created by Goobi, the manifest knows which thumbnails exist and from which version of the image they were created
+					String imageName = imagePath.getFileName().toString();
+					if (!isFresh(manifest, imagePath)) {
+						requestThumbnails(imageFolder);
+					} else if (getThumbnailSize(thumbsPath.getFileName().toString()).map(Integer::parseInt)
+							.map(size -> manifest.hasThumbnail(imageName, size)).orElse(false)) {
+						return Optional.of(thumbnailPath);
+					}
+				} else if (StorageProvider.getInstance().isFileExists(thumbnailPath)) {
 					if (isYounger(thumbnailPath, imagePath)) {
 						return Optional.of(thumbnailPath);
 					}
@@ -195,6 +261,20 @@ public class GoobiImageResource extends ImageResource {
 		return Optional.empty();
 	}
 
+	private boolean isFresh(ThumbnailManifest manifest, java.nio.file.Path imagePath) {
+		try {
+			return manifest.isFresh(imagePath.getFileName().toString(), StorageProvider.getInstance().getLastModifiedDate(imagePath));
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private void requestThumbnails(ImageCache.ImageFolder imageFolder) {
+		if (ConfigurationHelper.getInstance().isThumbnailsCreateOnDemand()) {
+			ThumbnailGenerator.requestThumbnails(imageFolder.getProcessId());
+		}
+	}
+
 	private boolean isYounger(java.nio.file.Path path, java.nio.file.Path referencePath) {
 		try {
 			long date = StorageProvider.getInstance().getLastModifiedDate(path);
@@ -218,7 +298,7 @@ public class GoobiImageResource extends ImageResource {
 			// image size is the 7th path parameter:
 			// api/image/[id]/[folder]/[imagename]/[region]/[size]/[rotation]/default.jpg
 			String sizeString = requestParts[6];
-			Matcher matcher = Pattern.compile(IIIF_IMAGE_SIZE_REGEX).matcher(sizeString);
+			Matcher matcher = IIIF_IMAGE_SIZE_PATTERN.matcher(sizeString);
 			if (matcher.find()) {
 				String xString = matcher.group(1);
 				String yString = matcher.group(2);
@@ -244,7 +324,7 @@ public class GoobiImageResource extends ImageResource {
 			// image size is the 7th path parameter:
 			// api/image/[id]/[folder]/[imagename]/[region]/[size]/[rotation]/default.jpg
 			String sizeString = requestParts[5];
-			Matcher matcher = Pattern.compile(IIIF_IMAGE_REGION_REGEX).matcher(sizeString);
+			Matcher matcher = IIIF_IMAGE_REGION_PATTERN.matcher(sizeString);
 			if (matcher.find()) {
 				String widthString = matcher.group(3);
 				String heightString = matcher.group(4);
@@ -255,24 +335,6 @@ public class GoobiImageResource extends ImageResource {
 		return Optional.empty();
 	}
 
-	private java.nio.file.Path getImagesFolder(Process process, String folder)
-			throws ContentNotFoundException, IOException, InterruptedException, SwapException, DAOException {
-		switch (folder.toLowerCase()) {
-		case "master":
-		case "orig":
-			return Paths.get(process.getImagesOrigDirectory(false));
-		case "media":
-		case "tif":
-			return Paths.get(process.getImagesTifDirectory(false));
-		case "thumbnails_large":
-			return Paths.get(process.getImagesDirectory(), "layoutWizzard-temp", "thumbnails_large");
-		case "thumbnails_small":
-			return Paths.get(process.getImagesDirectory(), "layoutWizzard-temp", "thumbnails_small");
-		default:
-			return Paths.get(process.getImagesDirectory(), folder);
-		}
-	}
-
 	private static String getDirectory(String process, String folder) throws ContentNotFoundException {
 		java.nio.file.Path path = null;
 		try {
@@ -304,7 +366,7 @@ public class GoobiImageResource extends ImageResource {
 		throw new ContentNotFoundException("Found no content in " + path);
 	}
 
-	public void createGoobiResourceURI(HttpServletRequest request, Process process, String folder, String filename)
+	public void createGoobiResourceURI(HttpServletRequest request, Integer processId, String folder, String filename)
 			throws IllegalRequestException {
 
 		if (request != null) {
@@ -325,12 +387,12 @@ public class GoobiImageResource extends ImageResource {
 
 				resourceURI = new URI(uriBase.toString()
 						.replace(URLEncoder.encode("{process}", "utf-8"),
-								URLEncoder.encode(process.getId().toString(), "utf-8"))
+								URLEncoder.encode(processId.toString(), "utf-8"))
 						.replace(URLEncoder.encode("{folder}", "utf-8"), URLEncoder.encode(folder, "utf-8"))
 						.replace(URLEncoder.encode("{filename}", "utf-8"), URLEncoder.encode(filename, "utf-8")));
 			} catch (URISyntaxException | UnsupportedEncodingException e) {
 				logger.error("Failed to create image request uri");
-				throw new IllegalRequestException("Unable to evaluate request to '" + process.getId() + "', '" + folder
+				throw new IllegalRequestException("Unable to evaluate request to '" + processId + "', '" + folder
 						+ "', '" + filename + "'");
 			}
 		} else {
@@ -369,18 +431,14 @@ public class GoobiImageResource extends ImageResource {
 		double heightToWidthRatio = info.getHeight() / (double) info.getWidth();
 		List<Dimension> sizes = new ArrayList<>();
 		
-		try {
-			if(StorageProvider.getInstance().isDirectory(Paths.get(process.getThumbsDirectory()))) {
-				List<Integer> suggestedWidths = getThumbnailSizes();
-				setImageSize(getImageURI().toString(), info.getWidth());
-				if (suggestedWidths.isEmpty()) {
-					suggestedWidths = ConfigurationHelper.getInstance().getMetsEditorImageSizes().stream()
-							.map(Integer::parseInt).collect(Collectors.toList());
-				}
-				sizes = getImageSizes(suggestedWidths, heightToWidthRatio);
+		if (imageFolder != null && imageFolder.isUseThumbnails()) {
+			List<Integer> suggestedWidths = new ArrayList<>(imageFolder.getThumbsDirectories().keySet());
+			ImageCache.putImageWidth(getImageURI().toString(), info.getWidth());
+			if (suggestedWidths.isEmpty()) {
+				suggestedWidths = ConfigurationHelper.getInstance().getMetsEditorImageSizes().stream()
+						.map(Integer::parseInt).collect(Collectors.toList());
 			}
-		} catch (IOException | InterruptedException | SwapException | DAOException e) {
-			logger.error("Error retrieving image sizes for thumbnail handling", e);
+			sizes = getImageSizes(suggestedWidths, heightToWidthRatio);
 		}
 		
 		if (!sizes.isEmpty()) {
@@ -398,50 +456,12 @@ public class GoobiImageResource extends ImageResource {
 		return info;
 	}
 
-	private void setImageSize(String uri, int width) {
-		synchronized (IMAGE_SIZES) {
-			if (!IMAGE_SIZES.containsKey(uri)) {
-				if (IMAGE_SIZES.size() >= IMAGE_SIZES_MAX_SIZE) {
-					List<String> keysToDelete = IMAGE_SIZES.keySet().stream().limit(IMAGE_SIZES_NUM_ENTRIES_TO_DELETE_ON_OVERFLOW).collect(Collectors.toList());
-					for (String key : keysToDelete) {
-						IMAGE_SIZES.remove(key);
-					}
-				}
-				IMAGE_SIZES.put(uri, width);
-			}
-		}
-
-	}
-
-	private int getImageSize(String uri) {
-		synchronized (IMAGE_SIZES) {
-			Integer width = IMAGE_SIZES.get(uri);
-			if (width == null) {
-				try {
-					ImageInformation info = new ImageInformation(URI.create(uri), URI.create(uri));
-					width = info.getWidth();
-					setImageSize(uri, width);
-				} catch (ContentLibException e) {
-					logger.error("Error retrieving image size of " + uri);
-				}
-			}
-			return width;
-		}
-	}
-
-	/**
-	 * @return
-	 */
-	private List<Integer> getThumbnailSizes() {
-		List<Integer> thumbnailSizes = new ArrayList<>();
-		if (this.process != null) {
-			try {
-				thumbnailSizes = this.process.getThumbsSizes(Paths.get(getImageURI()).getParent().toString());
-			} catch (IOException | InterruptedException | SwapException | DAOException e) {
-				logger.error("Error determining thumbnail sizes for " + getImageURI());
-			}
+	private int getImageSize(String uri) throws ContentNotFoundException {
+		Integer width = ImageCache.getImageWidth(uri);
+		if (width == null) {
+			throw new ContentNotFoundException("Unable to read image " + uri);
 		}
-		return thumbnailSizes;
+		return width;
 	}
 
 	private List<ImageTile> getImageTiles(List<String> tileSizes, List<String> tileScales) {
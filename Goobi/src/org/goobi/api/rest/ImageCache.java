@@ -0,0 +1,213 @@
+package org.goobi.api.rest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.goobi.beans.Process;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import de.sub.goobi.config.ConfigurationHelper;
+import de.sub.goobi.helper.StorageProvider;
+import de.sub.goobi.helper.exceptions.DAOException;
+import de.sub.goobi.helper.exceptions.SwapException;
+import de.sub.goobi.metadaten.ThumbnailGenerator;
+import de.sub.goobi.metadaten.ThumbnailManifest;
+import de.sub.goobi.persistence.managers.ProcessManager;
+import de.unigoettingen.sub.commons.contentlib.exceptions.ContentLibException;
+import de.unigoettingen.sub.commons.contentlib.exceptions.ContentNotFoundException;
+import de.unigoettingen.sub.commons.contentlib.servlet.model.iiif.ImageInformation;
+import lombok.extern.log4j.Log4j;
+
+/**
+ * Caches the information needed to answer an image request: the resolved image and thumbnail folders of a process and the width of the images.
+ * 
+ * The caches are bounded and can be used by many requests at the same time. If an entry is missing, only the first request for this key loads
+ * it, other requests for the same key wait for the result. The folders expire after ImageCacheExpiration seconds, so new thumbnail folders are
+ * found without a restart.
+ */
+@Log4j
+public class ImageCache {
+
+    private static final int IMAGE_WIDTHS_MAX_SIZE = 10000;
+
+    private static final Cache<String, ImageFolder> FOLDERS = CacheBuilder.newBuilder()
+            .maximumSize(ConfigurationHelper.getInstance().getImageCacheSize())
+            .expireAfterWrite(ConfigurationHelper.getInstance().getImageCacheExpiration(), TimeUnit.SECONDS)
+            .build();
+
+    private static final Cache<String, Integer> IMAGE_WIDTHS = CacheBuilder.newBuilder().maximumSize(IMAGE_WIDTHS_MAX_SIZE).expireAfterAccess(1,
+            TimeUnit.HOURS).build();
+
+    private ImageCache() {
+    }
+
+    /**
+     * Get the image folder of a process
+     * 
+     * @param processId id of the process
+     * @param folder name of the folder as used in the request, e.g. media or master
+     * @return the resolved folder
+     * @throws ContentNotFoundException if the process does not exist
+     * @throws ContentLibException if the folders cannot be read
+     */
+    public static ImageFolder getImageFolder(final int processId, final String folder) throws ContentLibException {
+        try {
+            return FOLDERS.get(processId + "/" + folder, new Callable<ImageFolder>() {
+                @Override
+                public ImageFolder call() throws Exception {
+                    return loadImageFolder(processId, folder);
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof ContentLibException) {
+                throw (ContentLibException) e.getCause();
+            }
+            throw new ContentLibException(e.getCause());
+        }
+    }
+
+    /**
+     * Remove the cached folders of a process, e.g. after new thumbnails were created
+     * 
+     * @param processId id of the process
+     */
+    public static void invalidateProcess(int processId) {
+        String prefix = processId + "/";
+        for (String key : FOLDERS.asMap().keySet()) {
+            if (key.startsWith(prefix)) {
+                FOLDERS.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * Get the width of an image. The image is only opened, if the width is not known yet.
+     * 
+     * @param uri uri of the image
+     * @return width in pixel or null, if the image cannot be read
+     */
+    public static Integer getImageWidth(final String uri) {
+        try {
+            return IMAGE_WIDTHS.get(uri, new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return new ImageInformation(URI.create(uri), URI.create(uri)).getWidth();
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            log.error("Error retrieving image size of " + uri, e.getCause());
+            return null;
+        }
+    }
+
+    public static void putImageWidth(String uri, int width) {
+        IMAGE_WIDTHS.put(uri, width);
+    }
+
+    private static ImageFolder loadImageFolder(int processId, String folder) throws ContentLibException, IOException, InterruptedException,
+    SwapException, DAOException {
+        Process process = ProcessManager.getProcessById(processId);
+        if (process == null) {
+            throw new ContentNotFoundException("No process found with id " + processId);
+        }
+        Path imageFolder = getImagesFolder(process, folder);
+        Path thumbsFolder = Paths.get(process.getThumbsDirectory());
+        Map<Integer, String> thumbsDirectories = Collections.emptyMap();
+        ThumbnailManifest manifest = null;
+        boolean useThumbnails = StorageProvider.getInstance().isDirectory(thumbsFolder);
+        if (useThumbnails) {
+            thumbsDirectories = new TreeMap<>(process.getThumbsDirectories(imageFolder.toString()));
+            manifest = ThumbnailManifest.read(ThumbnailGenerator.getManifestPath(thumbsFolder, imageFolder.getFileName().toString()));
+        }
+        return new ImageFolder(processId, imageFolder, useThumbnails, thumbsDirectories, manifest);
+    }
+
+    private static Path getImagesFolder(Process process, String folder) throws IOException, InterruptedException, SwapException, DAOException {
+        switch (folder.toLowerCase()) {
+            case "master":
+            case "orig":
+                return Paths.get(process.getImagesOrigDirectory(false));
+            case "media":
+            case "tif":
+                return Paths.get(process.getImagesTifDirectory(false));
+            case "thumbnails_large":
+                return Paths.get(process.getImagesDirectory(), "layoutWizzard-temp", "thumbnails_large");
+            case "thumbnails_small":
+                return Paths.get(process.getImagesDirectory(), "layoutWizzard-temp", "thumbnails_small");
+            default:
+                return Paths.get(process.getImagesDirectory(), folder);
+        }
+    }
+
+    /**
+     * Image folder of a process together with its thumbnail folders
+     */
+    public static class ImageFolder {
+        private final int processId;
+        private final Path path;
+        private final boolean useThumbnails;
+        // sorted by the size of the thumbnails
+        private final TreeMap<Integer, String> thumbsDirectories;
+        private final ThumbnailManifest manifest;
+
+        ImageFolder(int processId, Path path, boolean useThumbnails, Map<Integer, String> thumbsDirectories, ThumbnailManifest manifest) {
+            this.processId = processId;
+            this.path = path;
+            this.useThumbnails = useThumbnails;
+            this.thumbsDirectories = new TreeMap<>(thumbsDirectories);
+            this.manifest = manifest;
+        }
+
+        public int getProcessId() {
+            return processId;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * @return true, if the process has a thumbnail folder
+         */
+        public boolean isUseThumbnails() {
+            return useThumbnails;
+        }
+
+        /**
+         * @return the manifest of the thumbnails created by Goobi or null, if the thumbnails were created elsewhere
+         */
+        public ThumbnailManifest getManifest() {
+            return manifest;
+        }
+
+        public Map<Integer, String> getThumbsDirectories() {
+            return Collections.unmodifiableMap(thumbsDirectories);
+        }
+
+        /**
+         * Get the thumbnail folder with the smallest thumbnails that are at least as large as the given size
+         * 
+         * @param size requested size
+         * @param useLargest if true, the folder with the largest thumbnails is returned when all are smaller than the requested size
+         * @return the folder or null, if there is no matching folder
+         */
+        public String getThumbsDirectory(int size, boolean useLargest) {
+            Map.Entry<Integer, String> entry = thumbsDirectories.ceilingEntry(size);
+            if (entry == null && useLargest) {
+                entry = thumbsDirectories.lastEntry();
+            }
+            return entry == null ? null : entry.getValue();
+        }
+    }
+}
@@ -1,56 +1,111 @@
 package org.goobi.api.rest;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.Pattern;
 
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.SubnodeConfiguration;
 import org.apache.commons.configuration.XMLConfiguration;
-import org.apache.commons.configuration.reloading.FileChangedReloadingStrategy;
 import org.apache.commons.configuration.tree.xpath.XPathExpressionEngine;
 
 import de.sub.goobi.helper.Helper;
 import lombok.extern.log4j.Log4j;
 
+/**
+ * Reads the endpoint configuration from goobi_rest.xml. The endpoints are parsed and their path patterns are compiled once, they are read again
+ * only when the file was changed.
+ */
 @Log4j
 public class RestConfig {
 
-    private static XMLConfiguration config = null;
+    // check the modification date of the file at most once in this interval
+    private static final long RELOAD_CHECK_INTERVAL = 5000;
+
+    private static volatile List<CompiledEndpoint> endpoints = null;
+
+    private static long lastModified = 0;
+
+    private static volatile long lastCheck = 0;
 
     public static RestEndpointConfig getConfigForPath(String path) throws ConfigurationException {
-        RestEndpointConfig conf = null;
-        if (config == null) {
-            config = new XMLConfiguration(new Helper().getGoobiConfigDirectory() + "goobi_rest.xml");
-            config.setListDelimiter('&');
-            config.setReloadingStrategy(new FileChangedReloadingStrategy());
-            config.setExpressionEngine(new XPathExpressionEngine());
+        for (CompiledEndpoint endpoint : getEndpoints()) {
+            if (endpoint.pattern.matcher(path).matches()) {
+                return endpoint.config;
+            }
         }
+        return null;
+    }
 
-        SubnodeConfiguration endpoint = null;
-        List<?> endpoints = config.configurationsAt("//endpoint");
-        for (int i = 0; i < endpoints.size(); i++) {
-            SubnodeConfiguration possibleEp = (SubnodeConfiguration) endpoints.get(i);
-            String regex = possibleEp.getString("@path");
-            if (Pattern.matches(regex, path)) {
-                endpoint = possibleEp;
-                break;
+    private static List<CompiledEndpoint> getEndpoints() throws ConfigurationException {
+        List<CompiledEndpoint> current = endpoints;
+        long now = System.currentTimeMillis();
+        if (current != null && now - lastCheck < RELOAD_CHECK_INTERVAL) {
+            return current;
+        }
+        synchronized (RestConfig.class) {
+            if (endpoints != null && now - lastCheck < RELOAD_CHECK_INTERVAL) {
+                return endpoints;
             }
+            lastCheck = now;
+            Path configFile = Paths.get(new Helper().getGoobiConfigDirectory(), "goobi_rest.xml");
+            long modified = getLastModified(configFile);
+            if (endpoints == null || modified != lastModified) {
+                endpoints = readEndpoints(configFile);
+                lastModified = modified;
+            }
+            return endpoints;
+        }
+    }
+
+    private static long getLastModified(Path configFile) {
+        try {
+            return Files.getLastModifiedTime(configFile).toMillis();
+        } catch (IOException e) {
+            return 0;
         }
-        if (endpoint != null) {
-            conf = new RestEndpointConfig();
+    }
+
+    private static List<CompiledEndpoint> readEndpoints(Path configFile) throws ConfigurationException {
+        XMLConfiguration config = new XMLConfiguration(configFile.toString());
+        config.setListDelimiter('&');
+        config.setExpressionEngine(new XPathExpressionEngine());
+
+        List<CompiledEndpoint> compiled = new ArrayList<>();
+        List<?> xmlEndpoints = config.configurationsAt("//endpoint");
+        for (int i = 0; i < xmlEndpoints.size(); i++) {
+            SubnodeConfiguration endpoint = (SubnodeConfiguration) xmlEndpoints.get(i);
+            String regex = endpoint.getString("@path");
+            RestEndpointConfig conf = new RestEndpointConfig();
+            conf.setPath(regex);
             conf.setCorsMethods(Arrays.asList(endpoint.getStringArray("cors/method")));
             conf.setCorsOrigins(Arrays.asList(endpoint.getStringArray("cors/origin")));
             List<RestMethodConfig> restMethodConfigs = new ArrayList<>();
             List<?> xmlMethodConfigs = endpoint.configurationsAt("method");
-            for (int i = 0; i < xmlMethodConfigs.size(); i++) {
-                SubnodeConfiguration methodC = (SubnodeConfiguration) xmlMethodConfigs.get(i);
+            for (int j = 0; j < xmlMethodConfigs.size(); j++) {
+                SubnodeConfiguration methodC = (SubnodeConfiguration) xmlMethodConfigs.get(j);
                 restMethodConfigs.add(RestMethodConfig.fromSubnodeConfig(methodC));
             }
             conf.setMethodConfigs(restMethodConfigs);
+            compiled.add(new CompiledEndpoint(Pattern.compile(regex), conf));
         }
+        log.debug("Read " + compiled.size() + " endpoints from " + configFile);
+        return Collections.unmodifiableList(compiled);
+    }
 
-        return conf;
+    private static class CompiledEndpoint {
+        private final Pattern pattern;
+        private final RestEndpointConfig config;
+
+        private CompiledEndpoint(Pattern pattern, RestEndpointConfig config) {
+            this.pattern = pattern;
+            this.config = config;
+        }
     }
 }
@@ -1,5 +1,7 @@
 package org.goobi.api.rest.request;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -9,10 +11,15 @@ import org.goobi.api.db.RestDbHelper;
 import org.goobi.api.rest.model.RestProcess;
 import org.goobi.api.rest.utils.MetadataUtils;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import lombok.Data;
 
 @Data
 public class SearchRequest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     private List<SearchGroup> metadataFilters = new ArrayList<>();
     private boolean metadataConjunctive;
     private List<String> filterProjects;
@@ -51,6 +58,29 @@ public class SearchRequest {
         return processes;
     }
 
+    /**
+     * Search the processes and write them as JSON array to the stream. The metadata of each process is read just before it is written, so the
+     * results are not kept in memory.
+     *
+     * @param out the stream to write to, it is not closed
+     * @throws SQLException
+     * @throws IOException
+     */
+    public void search(OutputStream out) throws SQLException, IOException {
+        List<RestProcess> processes = RestDbHelper.searchProcesses(this);
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            for (RestProcess p : processes) {
+                MetadataUtils.addMetadataToRestProcess(p, this);
+                MAPPER.writeValue(generator, p);
+                // release the metadata of the written process
+                p.getMetadata().clear();
+            }
+            generator.writeEndArray();
+        }
+    }
+
     public String createSql() {
         //example sql: select * from metadata left join prozesse on metadata.processid = prozesse.ProzesseID where prozesse.ProzesseID IN 
         //(select processid from metadata where metadata.name="_dateDigitization" and metadata.value="2018");
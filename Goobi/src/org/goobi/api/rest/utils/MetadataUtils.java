@@ -5,111 +5,285 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.goobi.api.rest.model.RestMetadata;
 import org.goobi.api.rest.model.RestProcess;
 import org.goobi.api.rest.request.SearchRequest;
-import org.jdom2.Document;
-import org.jdom2.Element;
-import org.jdom2.JDOMException;
-import org.jdom2.Namespace;
-import org.jdom2.filter.Filters;
-import org.jdom2.input.SAXBuilder;
-import org.jdom2.xpath.XPathExpression;
-import org.jdom2.xpath.XPathFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import de.sub.goobi.config.ConfigurationHelper;
 import lombok.extern.log4j.Log4j;
 
+/**
+ * Adds the metadata of the mets files to the processes found by a {@link SearchRequest}. The files are read with a streaming parser, which stops
+ * after the descriptive metadata, and the labels of the rulesets are cached until the ruleset file changes.
+ */
 @Log4j
 public class MetadataUtils {
-    private static final Namespace goobiNamespace = Namespace.getNamespace("goobi", "http://meta.goobi.org/v1.5.1/");
-    private static final Namespace mets = Namespace.getNamespace("mets", "http://www.loc.gov/METS/");
-    private static final Namespace mods = Namespace.getNamespace("mods", "http://www.loc.gov/mods/v3");
-    private static final XPathFactory xFactory = XPathFactory.instance();
-    private static final XPathExpression<Element> authorityMetaXpath = xFactory.compile(
-            "//mets:xmlData/mods:mods/mods:extension/goobi:goobi/goobi:metadata",
-            Filters.element(), null, mods, mets, goobiNamespace);
-    private static final XPathExpression<Element> metadataTypeXpath = xFactory.compile("//MetadataType", Filters.element());
-    private static final SAXBuilder builder = new SAXBuilder();
+    private static final String METS_NAMESPACE = "http://www.loc.gov/METS/";
+    private static final String MODS_NAMESPACE = "http://www.loc.gov/mods/v3";
+    private static final String GOOBI_NAMESPACE = "http://meta.goobi.org/v1.5.1/";
+
+    private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+    static {
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    private static final Cache<String, LabelMap> LABEL_MAPS = CacheBuilder.newBuilder().maximumSize(100).build();
 
     public static void addMetadataToRestProcesses(List<RestProcess> processes, SearchRequest req) {
-        String metadataFolder = ConfigurationHelper.getInstance().getMetadataFolder();
-        Map<String, Map<String, Map<String, String>>> ruleset2labelMapsMap = new HashMap<>();
         for (RestProcess p : processes) {
-            Map<String, Map<String, String>> labelMap = ruleset2labelMapsMap.get(p.getRuleset());
-            if (labelMap == null) {
-                labelMap = readLabelMap(p.getRuleset());
-                ruleset2labelMapsMap.put(p.getRuleset(), labelMap);
-            }
-            addMetadataToRestProcess(p, metadataFolder, req, labelMap);
+            addMetadataToRestProcess(p, req);
+        }
+    }
+
+    /**
+     * Add the wanted metadata of meta.xml and meta_anchor.xml to a process
+     *
+     * @param p the process
+     * @param req the request with the wanted fields, all fields are added if they are not set
+     */
+    public static void addMetadataToRestProcess(RestProcess p, SearchRequest req) {
+        Set<String> wantedFields = req.getWantedFields();
+        if (wantedFields != null && wantedFields.isEmpty()) {
+            return;
         }
+        Map<String, Map<String, String>> labelMap = readLabelMap(p.getRuleset());
+        Path metsPath = Paths.get(ConfigurationHelper.getInstance().getMetadataFolder(), Integer.toString(p.getId()), "meta.xml");
+        Path anchorPath = metsPath.resolveSibling("meta_anchor.xml");
+
+        extractMetadataFromFile(metsPath, p, labelMap, wantedFields);
+        extractMetadataFromFile(anchorPath, p, labelMap, wantedFields);
     }
 
-    private static Map<String, Map<String, String>> readLabelMap(String ruleset) {
-        Map<String, Map<String, String>> metaName2LanguagesMap = new HashMap<>();
+    /**
+     * Get the labels of all metadata types of a ruleset
+     *
+     * @param ruleset file name of the ruleset
+     * @return the labels by metadata name and language, an empty map if the ruleset cannot be read
+     */
+    static Map<String, Map<String, String>> readLabelMap(String ruleset) {
+        if (ruleset == null) {
+            return new HashMap<>();
+        }
         Path rulesetPath = Paths.get(ConfigurationHelper.getInstance().getRulesetFolder(), ruleset);
-        Document doc;
-        try (InputStream in = Files.newInputStream(rulesetPath)) {
-            doc = builder.build(in);
-        } catch (JDOMException | IOException e) {
+        long lastModified;
+        try {
+            lastModified = Files.getLastModifiedTime(rulesetPath).toMillis();
+        } catch (IOException e) {
             log.error(e);
-            return null;
+            return new HashMap<>();
+        }
+        LabelMap cached = LABEL_MAPS.getIfPresent(ruleset);
+        if (cached != null && cached.lastModified == lastModified) {
+            return cached.labels;
         }
-        for (Element el : metadataTypeXpath.evaluate(doc)) {
-            String name = el.getChildText("Name");
-            Map<String, String> languages = new HashMap<>();
-            for (Element langEl : el.getChildren("language")) {
-                languages.put(langEl.getAttributeValue("name"), langEl.getText());
+        Map<String, Map<String, String>> labels = new HashMap<>();
+        try (InputStream in = Files.newInputStream(rulesetPath)) {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+            try {
+                readLabels(reader, labels);
+            } finally {
+                reader.close();
             }
-            metaName2LanguagesMap.put(name, languages);
+        } catch (IOException | XMLStreamException e) {
+            log.error(e);
+            return labels;
         }
-        return metaName2LanguagesMap;
+        LABEL_MAPS.put(ruleset, new LabelMap(lastModified, labels));
+        return labels;
     }
 
-    private static RestProcess addMetadataToRestProcess(RestProcess p, String metadataFolder, SearchRequest req,
-            Map<String, Map<String, String>> labelMap) {
-        Path metsPath = Paths.get(metadataFolder, Integer.toString(p.getId()), "meta.xml");
-        Path anchorPath = metsPath.resolveSibling("meta_anchor.xml");
-
-        extractMetadataFromFile(metsPath, p, labelMap, req);
-        extractMetadataFromFile(anchorPath, p, labelMap, req);
-        return p;
+    private static void readLabels(XMLStreamReader reader, Map<String, Map<String, String>> labels) throws XMLStreamException {
+        int depth = 0;
+        int typeDepth = -1;
+        String name = null;
+        Map<String, String> languages = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if (typeDepth == -1 && "MetadataType".equals(reader.getLocalName())) {
+                    typeDepth = depth;
+                    name = null;
+                    languages = new HashMap<>();
+                } else if (typeDepth != -1 && depth == typeDepth + 1) {
+                    if ("Name".equals(reader.getLocalName())) {
+                        name = reader.getElementText();
+                        depth--;
+                    } else if ("language".equals(reader.getLocalName())) {
+                        String language = reader.getAttributeValue(null, "name");
+                        languages.put(language, reader.getElementText());
+                        depth--;
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == typeDepth) {
+                    labels.put(name, languages);
+                    typeDepth = -1;
+                }
+                depth--;
+            }
+        }
     }
 
-    private static void extractMetadataFromFile(Path metsPath, RestProcess p, Map<String, Map<String, String>> labelMap, SearchRequest req) {
+    private static void extractMetadataFromFile(Path metsPath, RestProcess p, Map<String, Map<String, String>> labelMap, Set<String> wantedFields) {
         if (!Files.exists(metsPath)) {
             return;
         }
-        Document doc;
         try (InputStream in = Files.newInputStream(metsPath)) {
-            doc = builder.build(in);
-        } catch (JDOMException | IOException e) {
-            log.error(e);
-            return;
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+            try {
+                readMetadata(reader, p, labelMap, wantedFields);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            log.error("Cannot read metadata from " + metsPath, e);
         }
+    }
 
-        for (Element el : authorityMetaXpath.evaluate(doc)) {
-            RestMetadata meta = new RestMetadata();
-            String name = el.getAttributeValue("name");
+    /**
+     * Read the metadata elements of all goobi extensions of the mets file. The file sections and structure maps are not read.
+     */
+    static void readMetadata(XMLStreamReader reader, RestProcess p, Map<String, Map<String, String>> labelMap, Set<String> wantedFields)
+            throws XMLStreamException {
+        // namespace and name of the open elements outside of the goobi extension
+        Deque<String> path = new ArrayDeque<>();
+        int depth = 0;
+        int goobiDepth = -1;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if (goobiDepth != -1) {
+                    if (depth == goobiDepth + 1 && is(reader, GOOBI_NAMESPACE, "metadata")) {
+                        readMetadataElement(reader, p, labelMap, wantedFields);
+                        depth--;
+                    }
+                    continue;
+                }
+                if (is(reader, METS_NAMESPACE, "fileSec") || is(reader, METS_NAMESPACE, "structMap")) {
+                    return;
+                }
+                if (is(reader, GOOBI_NAMESPACE, "goobi") && isGoobiExtension(path)) {
+                    goobiDepth = depth;
+                } else {
+                    path.addLast(reader.getNamespaceURI() + "|" + reader.getLocalName());
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == goobiDepth) {
+                    goobiDepth = -1;
+                } else if (goobiDepth == -1) {
+                    path.removeLast();
+                }
+                depth--;
+            }
+        }
+    }
+
+    private static boolean isGoobiExtension(Deque<String> path) {
+        Iterator<String> parents = path.descendingIterator();
+        return parents.hasNext() && (MODS_NAMESPACE + "|extension").equals(parents.next()) && parents.hasNext()
+                && (MODS_NAMESPACE + "|mods").equals(parents.next()) && parents.hasNext() && (METS_NAMESPACE + "|xmlData").equals(parents.next());
+    }
 
-            if (req.getWantedFields() != null && !req.getWantedFields().contains(name)) {
-                continue;
+    /**
+     * Read a metadata element, the reader is positioned on its end element afterwards
+     */
+    private static void readMetadataElement(XMLStreamReader reader, RestProcess p, Map<String, Map<String, String>> labelMap,
+            Set<String> wantedFields) throws XMLStreamException {
+        String name = reader.getAttributeValue(null, "name");
+        String type = reader.getAttributeValue(null, "type");
+        boolean wanted = wantedFields == null || wantedFields.contains(name);
+        StringBuilder text = new StringBuilder();
+        Map<String, String> children = new HashMap<>();
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if (wanted && depth == 1 && GOOBI_NAMESPACE.equals(reader.getNamespaceURI()) && !children.containsKey(reader.getLocalName())) {
+                    children.put(reader.getLocalName(), readDirectText(reader));
+                    depth--;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+            } else if (wanted && depth == 0 && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE)) {
+                text.append(reader.getText());
             }
-            String type = el.getAttributeValue("type");
-            if ("person".equals(type)) {
-                meta.setValue(el.getChildText("displayName", goobiNamespace));
-            } else {
-                meta.setValue(el.getText());
+        }
+        if (!wanted) {
+            return;
+        }
+        RestMetadata meta = new RestMetadata();
+        if ("person".equals(type)) {
+            meta.setValue(children.get("displayName"));
+        } else {
+            meta.setValue(text.toString());
+        }
+        meta.setAuthorityID(children.get("authorityID"));
+        meta.setAuthorityURI(children.get("authorityURI"));
+        meta.setAuthorityValue(children.get("authorityValue"));
+        meta.setLabels(labelMap.get(name));
+        p.addMetadata(name, meta);
+    }
+
+    /**
+     * Get the text of the current element without the text of its child elements, the reader is positioned on its end element afterwards
+     */
+    private static String readDirectText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+            } else if (depth == 0 && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE)) {
+                text.append(reader.getText());
             }
-            meta.setAuthorityID(el.getChildText("authorityID", goobiNamespace));
-            meta.setAuthorityURI(el.getChildText("authorityURI", goobiNamespace));
-            meta.setAuthorityValue(el.getChildText("authorityValue", goobiNamespace));
-            meta.setLabels(labelMap.get(name));
-            p.addMetadata(name, meta);
+        }
+        return text.toString();
+    }
+
+    private static boolean is(XMLStreamReader reader, String namespace, String localName) {
+        return namespace.equals(reader.getNamespaceURI()) && localName.equals(reader.getLocalName());
+    }
+
+    private static class LabelMap {
+        private final long lastModified;
+        private final Map<String, Map<String, String>> labels;
+
+        private LabelMap(long lastModified, Map<String, Map<String, String>> labels) {
+            this.lastModified = lastModified;
+            this.labels = labels;
         }
     }
 }
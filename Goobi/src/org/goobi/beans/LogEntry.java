@@ -38,6 +38,19 @@ public class LogEntry {
 
     
     
+    /**
+     * Create a new entry with the current date
+     */
+    public static LogEntry build(Integer processId, LogType type, String content, String userName) {
+        LogEntry entry = new LogEntry();
+        entry.setProcessId(processId);
+        entry.setCreationDate(new Date());
+        entry.setType(type);
+        entry.setContent(content);
+        entry.setUserName(userName);
+        return entry;
+    }
+
     public String getFormattedCreationDate() {
         return Helper.getDateAsFormattedString(creationDate);
     }
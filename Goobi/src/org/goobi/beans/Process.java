@@ -64,6 +64,7 @@ import de.sub.goobi.helper.FacesContextHelper;
 import de.sub.goobi.helper.FilesystemHelper;
 import de.sub.goobi.helper.Helper;
 import de.sub.goobi.helper.NIOFileUtils;
+import de.sub.goobi.helper.ProcessWriteLock;
 import de.sub.goobi.helper.StorageProvider;
 import de.sub.goobi.helper.VariableReplacer;
 import de.sub.goobi.helper.enums.StepEditType;
@@ -123,7 +124,7 @@ public class Process implements Serializable, DatabaseObject, Comparable<Process
     private String imagesTiffDirectory = null;
     private String imagesOrigDirectory = null;
 
-    private List<LogEntry> processLog = new LinkedList<>();
+    private List<LogEntry> processLog;
 
     private BeanHelper bhelp = new BeanHelper();
 
@@ -156,8 +157,6 @@ public class Process implements Serializable, DatabaseObject, Comparable<Process
     private List<StringPair> metadataList = new ArrayList<>();
     private String representativeImage = null;
 
-    private static final Object xmlWriteLock = new Object();
-
     public Process() {
         this.swappedOut = false;
         this.titel = "";
@@ -1147,29 +1146,34 @@ public class Process implements Serializable, DatabaseObject, Comparable<Process
         return result;
     }
 
-    public synchronized void writeMetadataFile(Fileformat gdzfile) throws IOException, InterruptedException, SwapException, DAOException,
+    public void writeMetadataFile(Fileformat gdzfile) throws IOException, InterruptedException, SwapException, DAOException,
     WriteException, PreferencesException {
 
         Fileformat ff;
         String metadataFileName;
-        createBackupFile();
+        // writes to the same process are serialized, different processes can be written in parallel
+        ProcessWriteLock.lock(id);
+        try {
+            createBackupFile();
 
-        ff = MetadatenHelper.getFileformatByName(getProjekt().getFileFormatInternal(), this.regelsatz);
+            ff = MetadatenHelper.getFileformatByName(getProjekt().getFileFormatInternal(), this.regelsatz);
 
-        metadataFileName = getMetadataFilePath();
+            metadataFileName = getMetadataFilePath();
 
-        synchronized (xmlWriteLock) {
             ff.setDigitalDocument(gdzfile.getDigitalDocument());
 
             ff.write(metadataFileName);
-        }
-        Map<String, List<String>> metadata = MetadatenHelper.getMetadataOfFileformat(gdzfile, false);
 
-        MetadataManager.updateMetadata(id, metadata);
+            Map<String, List<String>> metadata = MetadatenHelper.getMetadataOfFileformat(gdzfile, false);
 
-        Map<String, List<String>> jsonMetadata = MetadatenHelper.getMetadataOfFileformat(gdzfile, true);
+            MetadataManager.updateMetadata(id, metadata);
 
-        MetadataManager.updateJSONMetadata(id, jsonMetadata);
+            Map<String, List<String>> jsonMetadata = MetadatenHelper.getMetadataOfFileformat(gdzfile, true);
+
+            MetadataManager.updateJSONMetadata(id, jsonMetadata);
+        } finally {
+            ProcessWriteLock.unlock(id);
+        }
     }
 
     public void saveTemporaryMetsFile(Fileformat gdzfile) throws SwapException, DAOException, IOException, InterruptedException, PreferencesException,
@@ -1514,7 +1518,21 @@ public class Process implements Serializable, DatabaseObject, Comparable<Process
         this.processLog = processLog;
     }
 
+    /**
+     * @return true, if the log entries were loaded or set, otherwise they were not used and need not be saved
+     */
+    public boolean isProcessLogLoaded() {
+        return processLog != null;
+    }
+
     public List<LogEntry> getProcessLog() {
+        if (processLog == null) {
+            if (id == null) {
+                processLog = new LinkedList<>();
+            } else {
+                processLog = ProcessManager.getLogEntriesForProcess(id);
+            }
+        }
         return processLog;
     }
 
@@ -1535,7 +1553,7 @@ public class Process implements Serializable, DatabaseObject, Comparable<Process
 
         entry.setThirdContent(thirdContent);
         thirdContent = "";
-        processLog.add(entry);
+        getProcessLog().add(entry);
 
         ProcessManager.saveLogEntry(entry);
     }
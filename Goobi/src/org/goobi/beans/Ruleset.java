@@ -25,7 +25,12 @@ package org.goobi.beans;
  * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
  * exception statement from your version.
  */
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
 import org.goobi.beans.DatabaseObject;
@@ -43,7 +48,9 @@ public class Ruleset implements Serializable, DatabaseObject {
     private Boolean orderMetadataByRuleset = false;
     private static final Logger logger = Logger.getLogger(Ruleset.class);
 
-    //    private static Map<Integer, Prefs> loadedPrefs = new HashMap<Integer, Prefs>();
+    // parsed rulesets, shared by all instances and threads, mapped by file name. Goobi only reads them: it looks up types and creates new lists
+    // from them, but never adds, removes or changes types. Plugins must do the same.
+    private static final Map<String, CachedPrefs> loadedPrefs = new ConcurrentHashMap<>();
 
     public void lazyLoad() {
         // nothing to load lazy here
@@ -73,35 +80,71 @@ public class Ruleset implements Serializable, DatabaseObject {
         this.titel = titel;
     }
 
+    /**
+     * Returns the parsed ruleset. The instance is cached and shared between all threads until the file changes, so it must be treated as read-only.
+     * 
+     * @return the preferences of the ruleset
+     */
     public Prefs getPreferences() {
-        //        if (loadedPrefs.containsKey(id)) {
-        //            mypreferences = loadedPrefs.get(id);
-        //            validateRuleset();
-        //            return mypreferences;
-        //        }
-        this.mypreferences = new Prefs();
+        this.mypreferences = getPreferences(ConfigurationHelper.getInstance().getRulesetFolder() + this.datei);
+        return this.mypreferences;
+    }
+
+    static Prefs getPreferences(String fileName) {
+        long lastModified = getLastModified(fileName);
+        CachedPrefs cached = loadedPrefs.get(fileName);
+        if (cached == null || !cached.isValid(lastModified)) {
+            // only one thread parses the same file, other rulesets can be loaded in parallel
+            cached = loadedPrefs.compute(fileName, (key, current) -> current != null && current.isValid(lastModified) ? current : loadPreferences(
+                    key, lastModified));
+        }
+        return cached.prefs;
+    }
+
+    private static CachedPrefs loadPreferences(String fileName, long lastModified) {
+        Prefs prefs = new Prefs();
+        boolean loaded = true;
         try {
-            this.mypreferences.loadPrefs(ConfigurationHelper.getInstance().getRulesetFolder() + this.datei);
+            prefs.loadPrefs(fileName);
         } catch (PreferencesException e) {
             logger.error(e);
+            loaded = false;
         }
-        //        loadedPrefs.put(id, mypreferences);
-        return this.mypreferences;
+        return new CachedPrefs(prefs, loaded ? lastModified : -1);
     }
 
-    //    private void validateRuleset() {
-    //        try {
-    //            new MetsMods(mypreferences);
-    //        } catch (Exception e) {
-    //            try {
-    //                this.mypreferences = new Prefs();
-    //                mypreferences.loadPrefs(ConfigurationHelper.getInstance().getRulesetFolder() + this.datei);
-    //                loadedPrefs.put(id, mypreferences);
-    //            } catch (PreferencesException e1) {
-    //                logger.error(e1);
-    //            }
-    //        }
-    //    }
+    private static long getLastModified(String fileName) {
+        try {
+            return Files.getLastModifiedTime(Paths.get(fileName)).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Removes a ruleset file from the cache, the file gets parsed again on the next call of {@link #getPreferences()}.
+     * 
+     * @param datei the file name of the ruleset
+     */
+    public static void invalidatePreferences(String datei) {
+        if (datei != null) {
+            loadedPrefs.remove(ConfigurationHelper.getInstance().getRulesetFolder() + datei);
+        }
+    }
+
+    private static class CachedPrefs {
+        private final Prefs prefs;
+        private final long lastModified;
+
+        private CachedPrefs(Prefs prefs, long lastModified) {
+            this.prefs = prefs;
+            this.lastModified = lastModified;
+        }
+
+        private boolean isValid(long currentLastModified) {
+            return lastModified != -1 && lastModified == currentLastModified;
+        }
+    }
 
     public boolean isOrderMetadataByRuleset() {
         return orderMetadataByRuleset;
@@ -443,19 +443,11 @@ public class Step implements Serializable, DatabaseObject, Comparable<Step> {
     }
 
     public void setBearbeitungsstatusUp() {
-        if (getBearbeitungsstatusEnum() == StepStatus.ERROR) {
-            this.bearbeitungsstatus = StepStatus.DONE.getValue();
-        } else if (getBearbeitungsstatusEnum() != StepStatus.DONE) {
-            this.bearbeitungsstatus = Integer.valueOf(this.bearbeitungsstatus.intValue() + 1);
-        }
+        this.bearbeitungsstatus = getBearbeitungsstatusEnum().getNextStatus().getValue();
     }
 
     public void setBearbeitungsstatusDown() {
-        if (getBearbeitungsstatusEnum() == StepStatus.ERROR) {
-            this.bearbeitungsstatus = StepStatus.OPEN.getValue();
-        } else if (getBearbeitungsstatusEnum() != StepStatus.LOCKED) {
-            this.bearbeitungsstatus = Integer.valueOf(this.bearbeitungsstatus.intValue() - 1);
-        }
+        this.bearbeitungsstatus = getBearbeitungsstatusEnum().getPreviousStatus().getValue();
     }
 
     public short getHomeverzeichnisNutzen() {
@@ -1,20 +1,20 @@
 package org.goobi.goobiScript;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
 import org.goobi.managedbeans.LoginBean;
 
-import de.sub.goobi.forms.SessionForm;
 import de.sub.goobi.helper.Helper;
 
 public abstract class AbstractIGoobiScript implements IGoobiScript{
 	protected List<Integer> processes;
 	protected HashMap<String, String> parameters;
-	protected List<GoobiScriptResult> resultList;
+	protected List<GoobiScriptResult> resultList = new ArrayList<>();
 	protected String command;
+	protected Integer userId;
 	protected String username;
-	protected GoobiScriptManager gsm;
 	
     public AbstractIGoobiScript() {
         super();
@@ -25,16 +25,16 @@ public abstract class AbstractIGoobiScript implements IGoobiScript{
 		this.processes = processes;
 		this.parameters = parameters;
 		this.command = command;
-		SessionForm sf = (SessionForm) Helper.getManagedBeanValue("#{SessionForm}");
-		gsm = sf.getGsm();
-		resultList = sf.getGsm().getGoobiScriptResults();
 		LoginBean login = (LoginBean) Helper.getManagedBeanValue("#{LoginForm}");
+		userId = login.getMyBenutzer().getId();
 		username = login.getMyBenutzer().getNachVorname();
 		return true;
 	}
 	
 	@Override
 	public void execute() {
+		GoobiScriptEngine.getInstance().startWork(this, resultList);
+		resultList = new ArrayList<>();
 	}
 
 }
@@ -1,6 +1,5 @@
 package org.goobi.goobiScript;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -34,7 +33,7 @@ public class GoobiScriptAddPluginToStep extends AbstractIGoobiScript implements
         
 		// add all valid commands to list
 		for (Integer i : processes) {
-			GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+			GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
 			resultList.add(gsr);
 		}
 		
@@ -42,46 +41,33 @@ public class GoobiScriptAddPluginToStep extends AbstractIGoobiScript implements
 	}
 
 	@Override
-	public void execute() {
-		AddPluginThread et = new AddPluginThread();
-		et.start();
-	}
+	public void execute(GoobiScriptResult gsr) {
+		Process p = ProcessManager.getProcessById(gsr.getProcessId());
+		gsr.setProcessTitle(p.getTitel());
+		gsr.setResultType(GoobiScriptResultType.RUNNING);
+		gsr.updateTimestamp();
 
-	class AddPluginThread extends Thread {
-		public void run() {
-			// execute all jobs that are still in waiting state
-			ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-				if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-					Process p = ProcessManager.getProcessById(gsr.getProcessId());
-					gsr.setProcessTitle(p.getTitel());
-					gsr.setResultType(GoobiScriptResultType.RUNNING);
-					gsr.updateTimestamp();
-					
-					if (p.getSchritte() != null) {
-		                for (Iterator<Step> iterator = p.getSchritte().iterator(); iterator.hasNext();) {
-		                    Step s = iterator.next();
-		                    if (s.getTitel().equals(parameters.get("steptitle"))) {
-		                        s.setStepPlugin(parameters.get("plugin"));
-		                        try {
-		                            ProcessManager.saveProcess(p);
-		                            Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Added plugin '" + s.getStepPlugin() + " to step '" + s.getTitel() + "' using GoobiScript.", username);
-		                            logger.info("Added plugin '" + s.getStepPlugin() + " to step '" + s.getTitel() + "' using GoobiScript for process with ID " + p.getId());
-		                            gsr.setResultMessage("Added plugin '" + s.getStepPlugin() + " to step '" + s.getTitel() + "'.");
-		        					gsr.setResultType(GoobiScriptResultType.OK);
-		                        } catch (DAOException e) {
-		                            logger.error("goobiScriptfield" + "Error while saving process: " + p.getTitel(), e);
-		                            gsr.setResultMessage("An error occurred while adding the plugin '" + s.getStepPlugin() + " to step '" + s.getTitel() + "': " + e.getMessage());
-		        					gsr.setResultType(GoobiScriptResultType.ERROR);
-		                        }
-		                        break;
-		                    }
-		                }
-		            }
-					gsr.updateTimestamp();
+		if (p.getSchritte() != null) {
+			for (Iterator<Step> iterator = p.getSchritte().iterator(); iterator.hasNext();) {
+				Step s = iterator.next();
+				if (s.getTitel().equals(parameters.get("steptitle"))) {
+					s.setStepPlugin(parameters.get("plugin"));
+					try {
+						ProcessManager.saveProcess(p);
+						Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Added plugin '" + s.getStepPlugin() + " to step '" + s.getTitel() + "' using GoobiScript.", username);
+						logger.info("Added plugin '" + s.getStepPlugin() + " to step '" + s.getTitel() + "' using GoobiScript for process with ID " + p.getId());
+						gsr.setResultMessage("Added plugin '" + s.getStepPlugin() + " to step '" + s.getTitel() + "'.");
+						gsr.setResultType(GoobiScriptResultType.OK);
+					} catch (DAOException e) {
+						logger.error("goobiScriptfield" + "Error while saving process: " + p.getTitel(), e);
+						gsr.setResultMessage("An error occurred while adding the plugin '" + s.getStepPlugin() + " to step '" + s.getTitel() + "': " + e.getMessage());
+						gsr.setResultType(GoobiScriptResultType.ERROR);
+					}
+					break;
 				}
 			}
 		}
+		gsr.updateTimestamp();
 	}
 
 }
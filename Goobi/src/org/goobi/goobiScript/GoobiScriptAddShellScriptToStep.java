@@ -1,6 +1,5 @@
 package org.goobi.goobiScript;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -39,7 +38,7 @@ public class GoobiScriptAddShellScriptToStep extends AbstractIGoobiScript implem
         
 		// add all valid commands to list
 		for (Integer i : processes) {
-			GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+			GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
 			resultList.add(gsr);
 		}
 		
@@ -47,49 +46,36 @@ public class GoobiScriptAddShellScriptToStep extends AbstractIGoobiScript implem
 	}
 
 	@Override
-	public void execute() {
-		AddShellScriptThread et = new AddShellScriptThread();
-		et.start();
-	}
+	public void execute(GoobiScriptResult gsr) {
+		Process p = ProcessManager.getProcessById(gsr.getProcessId());
+		gsr.setProcessTitle(p.getTitel());
+		gsr.setResultType(GoobiScriptResultType.RUNNING);
+		gsr.updateTimestamp();
 
-	class AddShellScriptThread extends Thread {
-		public void run() {
-			// execute all jobs that are still in waiting state
-			ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-				if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-					Process p = ProcessManager.getProcessById(gsr.getProcessId());
-					gsr.setProcessTitle(p.getTitel());
-					gsr.setResultType(GoobiScriptResultType.RUNNING);
-					gsr.updateTimestamp();
-					
-					if (p.getSchritte() != null) {
-		                for (Iterator<Step> iterator = p.getSchritte().iterator(); iterator.hasNext();) {
-		                    Step s = iterator.next();
-		                    if (s.getTitel().equals(parameters.get("steptitle"))) {
-		                        s.setTypAutomatischScriptpfad(parameters.get("script"));
-		                        s.setScriptname1(parameters.get("label"));
-		                        s.setTypScriptStep(true);
-		                        try {
-		                            ProcessManager.saveProcess(p);
-		                            Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Added script to step '" + s.getTitel() + "' with label '" + s.getScriptname1() + "' and value '" +  s.getTypAutomatischScriptpfad() + "' using GoobiScript.", username);
-		                            logger.info("Added script to step '" + s.getTitel() + "' with label '" + s.getScriptname1() + "' and value '" +  s.getTypAutomatischScriptpfad() + "' using GoobiScript for process with ID " + p.getId());
-		                            gsr.setResultMessage("Added script to step '" + s.getTitel() + "' with label '" + s.getScriptname1() + "' and value '" +  s.getTypAutomatischScriptpfad() + "'.");
-		        					gsr.setResultType(GoobiScriptResultType.OK);
-		                        } catch (DAOException e) {
-		                            Helper.setFehlerMeldung("goobiScriptfield", "Error while saving process: " + p.getTitel(), e);
-		                            logger.error("goobiScriptfield" + "Error while saving process: " + p.getTitel(), e);
-		                            gsr.setResultMessage("Error while adding script to step '" + s.getTitel() + "' with label '" + s.getScriptname1() + "' and value '" +  s.getTypAutomatischScriptpfad() + "': " + e.getMessage());
-		        					gsr.setResultType(GoobiScriptResultType.ERROR);
-		                        }
-		                        break;
-		                    }
-		                }
-		            }
-					gsr.updateTimestamp();
+		if (p.getSchritte() != null) {
+			for (Iterator<Step> iterator = p.getSchritte().iterator(); iterator.hasNext();) {
+				Step s = iterator.next();
+				if (s.getTitel().equals(parameters.get("steptitle"))) {
+					s.setTypAutomatischScriptpfad(parameters.get("script"));
+					s.setScriptname1(parameters.get("label"));
+					s.setTypScriptStep(true);
+					try {
+						ProcessManager.saveProcess(p);
+						Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Added script to step '" + s.getTitel() + "' with label '" + s.getScriptname1() + "' and value '" +  s.getTypAutomatischScriptpfad() + "' using GoobiScript.", username);
+						logger.info("Added script to step '" + s.getTitel() + "' with label '" + s.getScriptname1() + "' and value '" +  s.getTypAutomatischScriptpfad() + "' using GoobiScript for process with ID " + p.getId());
+						gsr.setResultMessage("Added script to step '" + s.getTitel() + "' with label '" + s.getScriptname1() + "' and value '" +  s.getTypAutomatischScriptpfad() + "'.");
+						gsr.setResultType(GoobiScriptResultType.OK);
+					} catch (DAOException e) {
+						Helper.setFehlerMeldung("goobiScriptfield", "Error while saving process: " + p.getTitel(), e);
+						logger.error("goobiScriptfield" + "Error while saving process: " + p.getTitel(), e);
+						gsr.setResultMessage("Error while adding script to step '" + s.getTitel() + "' with label '" + s.getScriptname1() + "' and value '" +  s.getTypAutomatischScriptpfad() + "': " + e.getMessage());
+						gsr.setResultType(GoobiScriptResultType.ERROR);
+					}
+					break;
 				}
 			}
 		}
+		gsr.updateTimestamp();
 	}
 
 }
@@ -38,7 +38,7 @@ public class GoobiScriptAddStep extends AbstractIGoobiScript implements IGoobiSc
         
 		// add all valid commands to list
 		for (Integer i : processes) {
-			GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+			GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
 			resultList.add(gsr);
 		}
 		
@@ -46,44 +46,31 @@ public class GoobiScriptAddStep extends AbstractIGoobiScript implements IGoobiSc
 	}
 
 	@Override
-	public void execute() {
-		AddStepThread et = new AddStepThread();
-		et.start();
-	}
-
-	class AddStepThread extends Thread {
-		public void run() {
-			// execute all jobs that are still in waiting state
-			ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-				if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-					Process p = ProcessManager.getProcessById(gsr.getProcessId());
-					gsr.setProcessTitle(p.getTitel());
-					gsr.setResultType(GoobiScriptResultType.RUNNING);
-					gsr.updateTimestamp();
-					Step s = new Step();
-		            s.setTitel(parameters.get("steptitle"));
-		            s.setReihenfolge(Integer.parseInt(parameters.get("number")));
-		            s.setProzess(p);
-		            if (p.getSchritte() == null) {
-		                p.setSchritte(new ArrayList<Step>());
-		            }
-		            p.getSchritte().add(s);
-		            try {
-		                ProcessManager.saveProcess(p);
-		                Helper.addMessageToProcessLog(p.getId(),LogType.DEBUG,"Added workflow step '" + s.getTitel() + "' at position '" + s.getReihenfolge() + "' to process using GoobiScript.", username);
-		                logger.info("Added workflow step '" + s.getTitel() + "' at position '" + s.getReihenfolge() + "' to process using GoobiScript for process with ID " + p.getId());
-		                gsr.setResultMessage("Added workflow step '" + s.getTitel() + "' at position '" + s.getReihenfolge() + "'.");
-						gsr.setResultType(GoobiScriptResultType.OK);
-		            } catch (DAOException e) {
-		                logger.error("goobiScriptfield" + "Error while saving process: " + p.getTitel(), e);
-		                gsr.setResultMessage("A problem occurred while adding a workflow step '" + s.getTitel() + "' at position '" + s.getReihenfolge() + "': " + e.getMessage());
-						gsr.setResultType(GoobiScriptResultType.ERROR);
-		            }
-		            gsr.updateTimestamp();
-				}
-			}
+	public void execute(GoobiScriptResult gsr) {
+		Process p = ProcessManager.getProcessById(gsr.getProcessId());
+		gsr.setProcessTitle(p.getTitel());
+		gsr.setResultType(GoobiScriptResultType.RUNNING);
+		gsr.updateTimestamp();
+		Step s = new Step();
+		s.setTitel(parameters.get("steptitle"));
+		s.setReihenfolge(Integer.parseInt(parameters.get("number")));
+		s.setProzess(p);
+		if (p.getSchritte() == null) {
+			p.setSchritte(new ArrayList<Step>());
+		}
+		p.getSchritte().add(s);
+		try {
+			ProcessManager.saveProcess(p);
+			Helper.addMessageToProcessLog(p.getId(),LogType.DEBUG,"Added workflow step '" + s.getTitel() + "' at position '" + s.getReihenfolge() + "' to process using GoobiScript.", username);
+			logger.info("Added workflow step '" + s.getTitel() + "' at position '" + s.getReihenfolge() + "' to process using GoobiScript for process with ID " + p.getId());
+			gsr.setResultMessage("Added workflow step '" + s.getTitel() + "' at position '" + s.getReihenfolge() + "'.");
+			gsr.setResultType(GoobiScriptResultType.OK);
+		} catch (DAOException e) {
+			logger.error("goobiScriptfield" + "Error while saving process: " + p.getTitel(), e);
+			gsr.setResultMessage("A problem occurred while adding a workflow step '" + s.getTitel() + "' at position '" + s.getReihenfolge() + "': " + e.getMessage());
+			gsr.setResultType(GoobiScriptResultType.ERROR);
 		}
+		gsr.updateTimestamp();
 	}
 
 }
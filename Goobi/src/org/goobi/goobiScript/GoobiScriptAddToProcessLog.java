@@ -1,6 +1,5 @@
 package org.goobi.goobiScript;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -39,7 +38,7 @@ public class GoobiScriptAddToProcessLog extends AbstractIGoobiScript implements
 		
 		// add all valid commands to list
 		for (Integer i : processes) {
-			GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+			GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
 			resultList.add(gsr);
 		}
 		
@@ -47,38 +46,25 @@ public class GoobiScriptAddToProcessLog extends AbstractIGoobiScript implements
 	}
 
 	@Override
-	public void execute() {
-		AddToProcessLogThread et = new AddToProcessLogThread();
-		et.start();
-	}
+	public void execute(GoobiScriptResult gsr) {
+		Process p = ProcessManager.getProcessById(gsr.getProcessId());
+		gsr.setProcessTitle(p.getTitel());
+		gsr.setResultType(GoobiScriptResultType.RUNNING);
+		gsr.updateTimestamp();
 
-	class AddToProcessLogThread extends Thread {
-		public void run() {
-			// execute all jobs that are still in waiting state
-			ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-				if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-					Process p = ProcessManager.getProcessById(gsr.getProcessId());
-					gsr.setProcessTitle(p.getTitel());
-					gsr.setResultType(GoobiScriptResultType.RUNNING);
-					gsr.updateTimestamp();
-					
-					LogEntry logEntry = new LogEntry();
-	                logEntry.setContent(parameters.get("message"));
-	                logEntry.setCreationDate(new Date());
-	                logEntry.setProcessId(p.getId());
-	                logEntry.setType(LogType.getByTitle(parameters.get("type")));
-	                logEntry.setUserName(username);
+		LogEntry logEntry = new LogEntry();
+		logEntry.setContent(parameters.get("message"));
+		logEntry.setCreationDate(new Date());
+		logEntry.setProcessId(p.getId());
+		logEntry.setType(LogType.getByTitle(parameters.get("type")));
+		logEntry.setUserName(username);
 
-	                ProcessManager.saveLogEntry(logEntry);
-	                logger.info("Process log updated for process with ID " + p.getId());
-	
-					gsr.setResultMessage("Process log updated.");
-					gsr.setResultType(GoobiScriptResultType.OK);
-					gsr.updateTimestamp();
-				}
-			}
-		}
+		ProcessManager.saveLogEntry(logEntry);
+		logger.info("Process log updated for process with ID " + p.getId());
+
+		gsr.setResultMessage("Process log updated.");
+		gsr.setResultType(GoobiScriptResultType.OK);
+		gsr.updateTimestamp();
 	}
 
 }
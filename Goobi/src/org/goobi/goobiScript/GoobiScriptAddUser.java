@@ -52,7 +52,7 @@ public class GoobiScriptAddUser extends AbstractIGoobiScript implements IGoobiSc
         
 		// add all valid commands to list
 		for (Integer i : processes) {
-			GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+			GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
 			resultList.add(gsr);
 		}
 		
@@ -60,50 +60,37 @@ public class GoobiScriptAddUser extends AbstractIGoobiScript implements IGoobiSc
 	}
 
 	@Override
-	public void execute() {
-		AddUserThread et = new AddUserThread();
-		et.start();
-	}
+	public void execute(GoobiScriptResult gsr) {
+		Process p = ProcessManager.getProcessById(gsr.getProcessId());
+		gsr.setProcessTitle(p.getTitel());
+		gsr.setResultType(GoobiScriptResultType.RUNNING);
+		gsr.updateTimestamp();
 
-	class AddUserThread extends Thread {
-		public void run() {
-			// execute all jobs that are still in waiting state
-			ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-				if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-					Process p = ProcessManager.getProcessById(gsr.getProcessId());
-					gsr.setProcessTitle(p.getTitel());
-					gsr.setResultType(GoobiScriptResultType.RUNNING);
-					gsr.updateTimestamp();
-					
-					for (Iterator<Step> iterator = p.getSchritteList().iterator(); iterator.hasNext();) {
-		                Step s = iterator.next();
-		                if (s.getTitel().equals(parameters.get("steptitle"))) {
-		                    List<User> myBenutzer = s.getBenutzer();
-		                    if (myBenutzer == null) {
-		                        myBenutzer = new ArrayList<User>();
-		                        s.setBenutzer(myBenutzer);
-		                    }
-		                    if (!myBenutzer.contains(myUser)) {
-		                        myBenutzer.add(myUser);
-		                        try {
-		                            StepManager.saveStep(s);
-		                            Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Added user '" + myUser.getNachVorname() + "' to step '" + s.getTitel() + "' using GoobiScript.", username);
-		                            logger.info("Added user '" + myUser.getNachVorname() + "' to step '" + s.getTitel() + "' using GoobiScript for process with ID " + p.getId());
-		                            gsr.setResultMessage("Added user '" + myUser.getNachVorname() + "' to step '" + s.getTitel() + "' successfully.");
-		        					gsr.setResultType(GoobiScriptResultType.OK);
-		                        } catch (DAOException e) {
-		                        	logger.error("goobiScriptfield" + "Error while saving - " + p.getTitel(), e);
-		                        	gsr.setResultMessage("Problem while adding user '" + myUser.getNachVorname() + "' to step '" + s.getTitel() + "': " + e.getMessage());
-		        					gsr.setResultType(GoobiScriptResultType.ERROR);
-		                        }
-		                    }
-		                }
-		            }
-					gsr.updateTimestamp();
+		for (Iterator<Step> iterator = p.getSchritteList().iterator(); iterator.hasNext();) {
+			Step s = iterator.next();
+			if (s.getTitel().equals(parameters.get("steptitle"))) {
+				List<User> myBenutzer = s.getBenutzer();
+				if (myBenutzer == null) {
+					myBenutzer = new ArrayList<User>();
+					s.setBenutzer(myBenutzer);
+				}
+				if (!myBenutzer.contains(myUser)) {
+					myBenutzer.add(myUser);
+					try {
+						StepManager.saveStep(s);
+						Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Added user '" + myUser.getNachVorname() + "' to step '" + s.getTitel() + "' using GoobiScript.", username);
+						logger.info("Added user '" + myUser.getNachVorname() + "' to step '" + s.getTitel() + "' using GoobiScript for process with ID " + p.getId());
+						gsr.setResultMessage("Added user '" + myUser.getNachVorname() + "' to step '" + s.getTitel() + "' successfully.");
+						gsr.setResultType(GoobiScriptResultType.OK);
+					} catch (DAOException e) {
+						logger.error("goobiScriptfield" + "Error while saving - " + p.getTitel(), e);
+						gsr.setResultMessage("Problem while adding user '" + myUser.getNachVorname() + "' to step '" + s.getTitel() + "': " + e.getMessage());
+						gsr.setResultType(GoobiScriptResultType.ERROR);
+					}
 				}
 			}
 		}
+		gsr.updateTimestamp();
 	}
 
 }
@@ -50,7 +50,7 @@ public class GoobiScriptAddUserGroup extends AbstractIGoobiScript implements IGo
 	        
 		// add all valid commands to list
 		for (Integer i : processes) {
-			GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+			GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
 			resultList.add(gsr);
 		}
 		
@@ -58,50 +58,37 @@ public class GoobiScriptAddUserGroup extends AbstractIGoobiScript implements IGo
 	}
 
 	@Override
-	public void execute() {
-		AddUserGroupThread et = new AddUserGroupThread();
-		et.start();
-	}
+	public void execute(GoobiScriptResult gsr) {
+		Process p = ProcessManager.getProcessById(gsr.getProcessId());
+		gsr.setProcessTitle(p.getTitel());
+		gsr.setResultType(GoobiScriptResultType.RUNNING);
+		gsr.updateTimestamp();
 
-	class AddUserGroupThread extends Thread {
-		public void run() {
-			// execute all jobs that are still in waiting state
-			ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-				if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-					Process p = ProcessManager.getProcessById(gsr.getProcessId());
-					gsr.setProcessTitle(p.getTitel());
-					gsr.setResultType(GoobiScriptResultType.RUNNING);
-					gsr.updateTimestamp();
-					
-					for (Iterator<Step> iterator = p.getSchritteList().iterator(); iterator.hasNext();) {
-		                Step s = iterator.next();
-		                if (s.getTitel().equals(parameters.get("steptitle"))) {
-		                    List<Usergroup> myBenutzergruppe = s.getBenutzergruppen();
-		                    if (myBenutzergruppe == null) {
-		                        myBenutzergruppe = new ArrayList<Usergroup>();
-		                        s.setBenutzergruppen(myBenutzergruppe);
-		                    }
-		                    if (!myBenutzergruppe.contains(myGroup)) {
-		                        myBenutzergruppe.add(myGroup);
-		                        try {
-		                            StepManager.saveStep(s);
-		                            Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Added usergroup '" + myGroup.getTitel() + "' to step '" + s.getTitel() + "' using GoobiScript.", username);
-		                            logger.info("Added usergroup '" + myGroup.getTitel() + "' to step '" + s.getTitel() + "' using GoobiScript for process with ID " + p.getId());
-		                            gsr.setResultMessage("Added usergroup '" + myGroup.getTitel() + "' to step '" + s.getTitel() + "' successfully.");
-		        					gsr.setResultType(GoobiScriptResultType.OK);
-		                        } catch (DAOException e) {
-		                            Helper.setFehlerMeldung("goobiScriptfield", "Error while saving - " + p.getTitel(), e);
-		                            gsr.setResultMessage("Problem while adding usergroup '" + myGroup.getTitel() + "' to step '" + s.getTitel() + "': " + e.getMessage());
-		        					gsr.setResultType(GoobiScriptResultType.ERROR);
-		        				}
-		                    }
-		                }
-		            }
-					gsr.updateTimestamp();
+		for (Iterator<Step> iterator = p.getSchritteList().iterator(); iterator.hasNext();) {
+			Step s = iterator.next();
+			if (s.getTitel().equals(parameters.get("steptitle"))) {
+				List<Usergroup> myBenutzergruppe = s.getBenutzergruppen();
+				if (myBenutzergruppe == null) {
+					myBenutzergruppe = new ArrayList<Usergroup>();
+					s.setBenutzergruppen(myBenutzergruppe);
+				}
+				if (!myBenutzergruppe.contains(myGroup)) {
+					myBenutzergruppe.add(myGroup);
+					try {
+						StepManager.saveStep(s);
+						Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Added usergroup '" + myGroup.getTitel() + "' to step '" + s.getTitel() + "' using GoobiScript.", username);
+						logger.info("Added usergroup '" + myGroup.getTitel() + "' to step '" + s.getTitel() + "' using GoobiScript for process with ID " + p.getId());
+						gsr.setResultMessage("Added usergroup '" + myGroup.getTitel() + "' to step '" + s.getTitel() + "' successfully.");
+						gsr.setResultType(GoobiScriptResultType.OK);
+					} catch (DAOException e) {
+						Helper.setFehlerMeldung("goobiScriptfield", "Error while saving - " + p.getTitel(), e);
+						gsr.setResultMessage("Problem while adding usergroup '" + myGroup.getTitel() + "' to step '" + s.getTitel() + "': " + e.getMessage());
+						gsr.setResultType(GoobiScriptResultType.ERROR);
+					}
 				}
 			}
 		}
+		gsr.updateTimestamp();
 	}
 
 }
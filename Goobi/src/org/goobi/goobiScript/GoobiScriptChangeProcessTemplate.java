@@ -1,6 +1,5 @@
 package org.goobi.goobiScript;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -37,7 +36,7 @@ public class GoobiScriptChangeProcessTemplate extends AbstractIGoobiScript imple
 
         // add all valid commands to list
         for (Integer i : processes) {
-            GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+            GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
             resultList.add(gsr);
         }
 
@@ -46,37 +45,21 @@ public class GoobiScriptChangeProcessTemplate extends AbstractIGoobiScript imple
     }
 
     @Override
-    public void execute() {
-        ChangeProcessTemplateThread thread = new ChangeProcessTemplateThread();
-        thread.run();
-
-    }
-
-    class ChangeProcessTemplateThread extends Thread {
-        @Override
-        public void run() {
-            ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-                if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-                    Process p = ProcessManager.getProcessById(gsr.getProcessId());
-                    gsr.setProcessTitle(p.getTitel());
-                    gsr.setResultType(GoobiScriptResultType.RUNNING);
-                    gsr.updateTimestamp();
-
-                    if (helper.changeProcessTemplate(p, processTemplate)) {
-                        gsr.setResultMessage("Changed template for process " + p.getTitel());
-                        gsr.setResultType(GoobiScriptResultType.OK);
-                    } else {
-                        Helper.setFehlerMeldung("goobiScriptfield", "Error while saving - " + p.getTitel());
-                        gsr.setResultMessage("Problem while changing template for process " + p.getTitel());
-                        gsr.setResultType(GoobiScriptResultType.ERROR);
-                    }
-
-                }
-                gsr.updateTimestamp();
-
-            }
+    public void execute(GoobiScriptResult gsr) {
+        Process p = ProcessManager.getProcessById(gsr.getProcessId());
+        gsr.setProcessTitle(p.getTitel());
+        gsr.setResultType(GoobiScriptResultType.RUNNING);
+        gsr.updateTimestamp();
+
+        if (helper.changeProcessTemplate(p, processTemplate)) {
+            gsr.setResultMessage("Changed template for process " + p.getTitel());
+            gsr.setResultType(GoobiScriptResultType.OK);
+        } else {
+            Helper.setFehlerMeldung("goobiScriptfield", "Error while saving - " + p.getTitel());
+            gsr.setResultMessage("Problem while changing template for process " + p.getTitel());
+            gsr.setResultType(GoobiScriptResultType.ERROR);
         }
-
+        gsr.updateTimestamp();
     }
+
 }
@@ -1,6 +1,5 @@
 package org.goobi.goobiScript;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -23,45 +22,30 @@ public class GoobiScriptCountImages extends AbstractIGoobiScript implements IGoo
 
         // add all valid commands to list
         for (Integer i : processes) {
-            GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+            GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
             resultList.add(gsr);
         }
         return true;
     }
 
     @Override
-    public void execute() {
-        CountImagesThread et = new CountImagesThread();
-        et.start();
-    }
-
-    class CountImagesThread extends Thread {
-
-        @Override
-        public void run() {
-            // execute all jobs that are still in waiting state
-            ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-                if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-                    Process p = ProcessManager.getProcessById(gsr.getProcessId());
-                    gsr.setProcessTitle(p.getTitel());
-                    gsr.setResultType(GoobiScriptResultType.RUNNING);
-                    gsr.updateTimestamp();
-
-                    if (p.getSortHelperImages() == 0) {
-                        int value = HistoryManager.getNumberOfImages(p.getId());
-                        if (value > 0) {
-                            ProcessManager.updateImages(value, p.getId());
-                            Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Image numbers counted using GoobiScript.", username);
-                            logger.info("Image numbers counted using GoobiScript for process with ID " + p.getId());
-                        }
-                    }
-                    gsr.setResultMessage("Images counted successfully.");
-                    gsr.setResultType(GoobiScriptResultType.OK);
-                    gsr.updateTimestamp();
-                }
+    public void execute(GoobiScriptResult gsr) {
+        Process p = ProcessManager.getProcessById(gsr.getProcessId());
+        gsr.setProcessTitle(p.getTitel());
+        gsr.setResultType(GoobiScriptResultType.RUNNING);
+        gsr.updateTimestamp();
+
+        if (p.getSortHelperImages() == 0) {
+            int value = HistoryManager.getNumberOfImages(p.getId());
+            if (value > 0) {
+                ProcessManager.updateImages(value, p.getId());
+                Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Image numbers counted using GoobiScript.", username);
+                logger.info("Image numbers counted using GoobiScript for process with ID " + p.getId());
             }
         }
+        gsr.setResultMessage("Images counted successfully.");
+        gsr.setResultType(GoobiScriptResultType.OK);
+        gsr.updateTimestamp();
     }
 
 }
@@ -1,6 +1,5 @@
 package org.goobi.goobiScript;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -25,7 +24,7 @@ public class GoobiScriptCountMetadata extends AbstractIGoobiScript implements IG
 
         // add all valid commands to list
         for (Integer i : processes) {
-            GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+            GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
             resultList.add(gsr);
         }
 
@@ -33,44 +32,29 @@ public class GoobiScriptCountMetadata extends AbstractIGoobiScript implements IG
     }
 
     @Override
-    public void execute() {
-        CountMetadataThread et = new CountMetadataThread();
-        et.start();
-    }
-
-    class CountMetadataThread extends Thread {
-
-        @Override
-        public void run() {
-            XmlArtikelZaehlen zaehlen = new XmlArtikelZaehlen();
-
-            // execute all jobs that are still in waiting state
-            ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-                if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-                    Process p = ProcessManager.getProcessById(gsr.getProcessId());
-                    gsr.setProcessTitle(p.getTitel());
-                    gsr.setResultType(GoobiScriptResultType.RUNNING);
-                    gsr.updateTimestamp();
-
-                    try {
-                        DocStruct logical = p.readMetadataFile().getDigitalDocument().getLogicalDocStruct();
-                        p.setSortHelperDocstructs(zaehlen.getNumberOfUghElements(logical, CountType.DOCSTRUCT));
-                        p.setSortHelperMetadata(zaehlen.getNumberOfUghElements(logical, CountType.METADATA));
-                        ProcessManager.saveProcess(p);
-                        Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Metadata fields counted using GoobiScript.", username);
-                        logger.info("Metadata fields counted using GoobiScript for process with ID " + p.getId());
-                        gsr.setResultMessage("Metadata fields counted successfully.");
-                        gsr.setResultType(GoobiScriptResultType.OK);
-                    } catch (Exception e) {
-                        logger.error(e);
-                        gsr.setResultMessage("Error while counting the metadata: " + e.getMessage());
-                        gsr.setResultType(GoobiScriptResultType.ERROR);
-                    }
-                    gsr.updateTimestamp();
-                }
-            }
+    public void execute(GoobiScriptResult gsr) {
+        XmlArtikelZaehlen zaehlen = new XmlArtikelZaehlen();
+
+        Process p = ProcessManager.getProcessById(gsr.getProcessId());
+        gsr.setProcessTitle(p.getTitel());
+        gsr.setResultType(GoobiScriptResultType.RUNNING);
+        gsr.updateTimestamp();
+
+        try {
+            DocStruct logical = p.readMetadataFile().getDigitalDocument().getLogicalDocStruct();
+            p.setSortHelperDocstructs(zaehlen.getNumberOfUghElements(logical, CountType.DOCSTRUCT));
+            p.setSortHelperMetadata(zaehlen.getNumberOfUghElements(logical, CountType.METADATA));
+            ProcessManager.saveProcess(p);
+            Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Metadata fields counted using GoobiScript.", username);
+            logger.info("Metadata fields counted using GoobiScript for process with ID " + p.getId());
+            gsr.setResultMessage("Metadata fields counted successfully.");
+            gsr.setResultType(GoobiScriptResultType.OK);
+        } catch (Exception e) {
+            logger.error(e);
+            gsr.setResultMessage("Error while counting the metadata: " + e.getMessage());
+            gsr.setResultType(GoobiScriptResultType.ERROR);
         }
+        gsr.updateTimestamp();
     }
 
 }
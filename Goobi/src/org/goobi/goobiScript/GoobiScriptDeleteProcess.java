@@ -2,7 +2,6 @@ package org.goobi.goobiScript;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -35,7 +34,7 @@ public class GoobiScriptDeleteProcess extends AbstractIGoobiScript implements IG
 
         // add all valid commands to list
         for (Integer i : processes) {
-            GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+            GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
             resultList.add(gsr);
         }
 
@@ -43,71 +42,56 @@ public class GoobiScriptDeleteProcess extends AbstractIGoobiScript implements IG
     }
 
     @Override
-    public void execute() {
-        TEMPLATEThread et = new TEMPLATEThread();
-        et.start();
-    }
-
-    class TEMPLATEThread extends Thread {
-        @Override
-        public void run() {
-
-            boolean contentOnly = Boolean.parseBoolean(parameters.get("contentOnly"));
+    public void execute(GoobiScriptResult gsr) {
+        boolean contentOnly = Boolean.parseBoolean(parameters.get("contentOnly"));
 
-            // execute all jobs that are still in waiting state
-            ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-                if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-                    Process p = ProcessManager.getProcessById(gsr.getProcessId());
-                    gsr.setProcessTitle(p.getTitel());
-                    gsr.setResultType(GoobiScriptResultType.RUNNING);
-                    gsr.updateTimestamp();
-                    if (contentOnly) {
-                        try {
-                            Path ocr = Paths.get(p.getOcrDirectory());
-                            if (StorageProvider.getInstance().isFileExists(ocr)) {
-                                StorageProvider.getInstance().deleteDir(ocr);
-                            }
-                            Path images = Paths.get(p.getImagesDirectory());
-                            if (StorageProvider.getInstance().isFileExists(images)) {
-                                StorageProvider.getInstance().deleteDir(images);
-                            }
-                            Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG,
-                                    "Content deleted using GoobiScript.", username);
-                            logger.info("Content deleted using GoobiScript for process with ID " + gsr.getProcessId());
-                            gsr.setResultMessage("Content for process deleted successfully.");
-                            gsr.setResultType(GoobiScriptResultType.OK);
-                        } catch (Exception e) {
-                            Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG,
-                                    "Problem occured while trying to delete content using GoobiScript.", username);
-                            logger.error("Content for process cannot be deleted using GoobiScript for process with ID "
-                                    + gsr.getProcessId());
-                            gsr.setResultMessage("Content for process cannot be deleted: " + e.getMessage());
-                            gsr.setResultType(GoobiScriptResultType.ERROR);
-                        }
-                    } else {
-                        try {
-                            StorageProvider.getInstance().deleteDir(Paths.get(p.getProcessDataDirectory()));
-                            Path ocr = Paths.get(p.getOcrDirectory());
-                            if (StorageProvider.getInstance().isFileExists(ocr)) {
-                                StorageProvider.getInstance().deleteDir(ocr);
-                            }
-                            ProcessManager.deleteProcess(p);
-                            logger.info("Process deleted using GoobiScript for process with ID " + gsr.getProcessId());
-                            gsr.setResultMessage("Process deleted successfully.");
-                            gsr.setResultType(GoobiScriptResultType.OK);
-                        } catch (Exception e) {
-                            Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG,
-                                    "Problem occured while trying to delete process using GoobiScript.", username);
-                            logger.error("Process cannot be deleted using GoobiScript for process with ID " + gsr.getProcessId());
-                            gsr.setResultMessage("Process cannot be deleted: " + e.getMessage());
-                            gsr.setResultType(GoobiScriptResultType.ERROR);
-                        }
-                    }
-                    gsr.updateTimestamp();
+        Process p = ProcessManager.getProcessById(gsr.getProcessId());
+        gsr.setProcessTitle(p.getTitel());
+        gsr.setResultType(GoobiScriptResultType.RUNNING);
+        gsr.updateTimestamp();
+        if (contentOnly) {
+            try {
+                Path ocr = Paths.get(p.getOcrDirectory());
+                if (StorageProvider.getInstance().isFileExists(ocr)) {
+                    StorageProvider.getInstance().deleteDir(ocr);
+                }
+                Path images = Paths.get(p.getImagesDirectory());
+                if (StorageProvider.getInstance().isFileExists(images)) {
+                    StorageProvider.getInstance().deleteDir(images);
+                }
+                Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG,
+                        "Content deleted using GoobiScript.", username);
+                logger.info("Content deleted using GoobiScript for process with ID " + gsr.getProcessId());
+                gsr.setResultMessage("Content for process deleted successfully.");
+                gsr.setResultType(GoobiScriptResultType.OK);
+            } catch (Exception e) {
+                Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG,
+                        "Problem occured while trying to delete content using GoobiScript.", username);
+                logger.error("Content for process cannot be deleted using GoobiScript for process with ID "
+                        + gsr.getProcessId());
+                gsr.setResultMessage("Content for process cannot be deleted: " + e.getMessage());
+                gsr.setResultType(GoobiScriptResultType.ERROR);
+            }
+        } else {
+            try {
+                StorageProvider.getInstance().deleteDir(Paths.get(p.getProcessDataDirectory()));
+                Path ocr = Paths.get(p.getOcrDirectory());
+                if (StorageProvider.getInstance().isFileExists(ocr)) {
+                    StorageProvider.getInstance().deleteDir(ocr);
                 }
+                ProcessManager.deleteProcess(p);
+                logger.info("Process deleted using GoobiScript for process with ID " + gsr.getProcessId());
+                gsr.setResultMessage("Process deleted successfully.");
+                gsr.setResultType(GoobiScriptResultType.OK);
+            } catch (Exception e) {
+                Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG,
+                        "Problem occured while trying to delete process using GoobiScript.", username);
+                logger.error("Process cannot be deleted using GoobiScript for process with ID " + gsr.getProcessId());
+                gsr.setResultMessage("Process cannot be deleted: " + e.getMessage());
+                gsr.setResultType(GoobiScriptResultType.ERROR);
             }
         }
+        gsr.updateTimestamp();
     }
 
 }
@@ -1,6 +1,5 @@
 package org.goobi.goobiScript;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -29,7 +28,7 @@ public class GoobiScriptDeleteStep extends AbstractIGoobiScript implements IGoob
 		 
 		// add all valid commands to list
 		for (Integer i : processes) {
-			GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+			GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
 			resultList.add(gsr);
 		}
 		
@@ -37,41 +36,28 @@ public class GoobiScriptDeleteStep extends AbstractIGoobiScript implements IGoob
 	}
 
 	@Override
-	public void execute() {
-		DeleteStepThread et = new DeleteStepThread();
-		et.start();
-	}
-
-	class DeleteStepThread extends Thread {
-		public void run() {
-			// execute all jobs that are still in waiting state
-			ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-				if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-					Process p = ProcessManager.getProcessById(gsr.getProcessId());
-					gsr.setProcessTitle(p.getTitel());
-					gsr.setResultType(GoobiScriptResultType.RUNNING);
-					gsr.updateTimestamp();
-					
-					if (p.getSchritte() != null) {
-		                for (Iterator<Step> iterator = p.getSchritte().iterator(); iterator.hasNext();) {
-		                    Step s = iterator.next();
-		                    if (s.getTitel().equals(parameters.get("steptitle"))) {
-		                        p.getSchritte().remove(s);
-
-		                        StepManager.deleteStep(s);
-		                        Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Deleted step '" + parameters.get("steptitle") + "' from process using GoobiScript.", username);
-		                        logger.info("Deleted step '" + parameters.get("steptitle") + "' from process using GoobiScript for process with ID " + p.getId());
-		                        gsr.setResultMessage("Deleted step '" + parameters.get("steptitle") + "' from process.");
-		    					gsr.setResultType(GoobiScriptResultType.OK);
-		    					break;
-		                    }
-		                }
-		            }
-					gsr.updateTimestamp();
+	public void execute(GoobiScriptResult gsr) {
+		Process p = ProcessManager.getProcessById(gsr.getProcessId());
+		gsr.setProcessTitle(p.getTitel());
+		gsr.setResultType(GoobiScriptResultType.RUNNING);
+		gsr.updateTimestamp();
+
+		if (p.getSchritte() != null) {
+			for (Iterator<Step> iterator = p.getSchritte().iterator(); iterator.hasNext();) {
+				Step s = iterator.next();
+				if (s.getTitel().equals(parameters.get("steptitle"))) {
+					p.getSchritte().remove(s);
+
+					StepManager.deleteStep(s);
+					Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Deleted step '" + parameters.get("steptitle") + "' from process using GoobiScript.", username);
+					logger.info("Deleted step '" + parameters.get("steptitle") + "' from process using GoobiScript for process with ID " + p.getId());
+					gsr.setResultMessage("Deleted step '" + parameters.get("steptitle") + "' from process.");
+					gsr.setResultType(GoobiScriptResultType.OK);
+					break;
 				}
 			}
 		}
+		gsr.updateTimestamp();
 	}
 
 }
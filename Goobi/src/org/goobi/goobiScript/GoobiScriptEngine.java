@@ -0,0 +1,326 @@
+package org.goobi.goobiScript;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.goobi.production.enums.GoobiScriptResultType;
+
+import de.sub.goobi.config.ConfigurationHelper;
+
+/**
+ * Server wide execution of GoobiScripts. All results are kept here, independent from the session of the user who started the script. If there are
+ * more results than configured, the oldest finished results are removed.
+ *
+ * The entries are executed in a shared pool of worker threads. Users take turns, so a large script of one user does not block the scripts of
+ * others. Two entries for the same process are never executed at the same time, an entry whose process is in use waits until the process is
+ * released.
+ * Entries are locked by their lock key, which is the id of the process unless the script sets another one.
+ */
+public class GoobiScriptEngine {
+
+    private static final Logger logger = Logger.getLogger(GoobiScriptEngine.class);
+
+    private static GoobiScriptEngine instance = null;
+
+    // all results in the order they were added
+    private final List<GoobiScriptResult> results = new LinkedList<>();
+
+    // waiting entries for each user id, the users are served in turn
+    private final Map<Integer, UserQueue> queues = new LinkedHashMap<>();
+
+    // waiting entries whose lock key was in use, by lock key
+    private final Map<String, Deque<WorkItem>> blockedItems = new HashMap<>();
+
+    private final Set<String> lockedKeys = new HashSet<>();
+
+    private final ThreadPoolExecutor executor;
+
+    private final int numberOfThreads;
+
+    private final int maxResults;
+
+    private int runningItems = 0;
+
+    private int waitingItems = 0;
+
+    private Integer lastUser = null;
+
+    private GoobiScriptEngine() {
+        numberOfThreads = Math.max(1, ConfigurationHelper.getInstance().getGoobiScriptThreads());
+        maxResults = ConfigurationHelper.getInstance().getGoobiScriptMaxResults();
+        executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger counter = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "goobiscript-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized GoobiScriptEngine getInstance() {
+        if (instance == null) {
+            instance = new GoobiScriptEngine();
+        }
+        return instance;
+    }
+
+    /**
+     * Add the prepared entries of a script to the result list and start to execute them
+     *
+     * @param script the script that executes the entries
+     * @param entries the entries created during {@link IGoobiScript#prepare(List, String, java.util.HashMap)}
+     */
+    public synchronized void startWork(IGoobiScript script, List<GoobiScriptResult> entries) {
+        for (GoobiScriptResult gsr : entries) {
+            results.add(gsr);
+            UserQueue queue = queues.get(gsr.getUserId());
+            if (queue == null) {
+                queue = new UserQueue();
+                queues.put(gsr.getUserId(), queue);
+            }
+            queue.ready.add(new WorkItem(script, gsr));
+            waitingItems++;
+        }
+        removeOldResults();
+        dispatch();
+    }
+
+    /**
+     * Get a copy of the results of a user
+     *
+     * @param userId id of the user who started the scripts
+     * @return list of results
+     */
+    public synchronized List<GoobiScriptResult> getResults(Integer userId) {
+        List<GoobiScriptResult> userResults = new ArrayList<>();
+        for (GoobiScriptResult gsr : results) {
+            if (Objects.equals(gsr.getUserId(), userId)) {
+                userResults.add(gsr);
+            }
+        }
+        return userResults;
+    }
+
+    /**
+     * Cancel all waiting entries of a user. Entries which are already running are finished.
+     *
+     * @param userId id of the user who started the scripts
+     * @return number of cancelled entries
+     */
+    public synchronized int cancelWaiting(Integer userId) {
+        UserQueue queue = queues.remove(userId);
+        if (queue == null) {
+            return 0;
+        }
+        List<WorkItem> cancelled = new ArrayList<>(queue.ready);
+        if (queue.blocked > 0) {
+            for (Iterator<Deque<WorkItem>> blocked = blockedItems.values().iterator(); blocked.hasNext();) {
+                Deque<WorkItem> items = blocked.next();
+                for (Iterator<WorkItem> iterator = items.iterator(); iterator.hasNext();) {
+                    WorkItem item = iterator.next();
+                    if (Objects.equals(item.userId, userId)) {
+                        iterator.remove();
+                        cancelled.add(item);
+                    }
+                }
+                if (items.isEmpty()) {
+                    blocked.remove();
+                }
+            }
+        }
+        for (WorkItem item : cancelled) {
+            item.gsr.setResultType(GoobiScriptResultType.CANCELLED);
+            item.gsr.setResultMessage("Cancelled by user.");
+            item.gsr.updateTimestamp();
+        }
+        waitingItems -= cancelled.size();
+        return cancelled.size();
+    }
+
+    /**
+     * Cancel the waiting entries of a user and remove all finished entries of this user from the result list
+     *
+     * @param userId id of the user who started the scripts
+     */
+    public synchronized void reset(Integer userId) {
+        cancelWaiting(userId);
+        for (Iterator<GoobiScriptResult> iterator = results.iterator(); iterator.hasNext();) {
+            GoobiScriptResult gsr = iterator.next();
+            if (Objects.equals(gsr.getUserId(), userId) && gsr.getResultType() != GoobiScriptResultType.RUNNING) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized boolean isWaiting(String command) {
+        for (UserQueue queue : queues.values()) {
+            for (WorkItem item : queue.ready) {
+                if (item.gsr.getCommand().equals(command)) {
+                    return true;
+                }
+            }
+        }
+        for (Deque<WorkItem> items : blockedItems.values()) {
+            for (WorkItem item : items) {
+                if (item.gsr.getCommand().equals(command)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public synchronized int getNumberOfRunningEntries() {
+        return runningItems;
+    }
+
+    public synchronized int getNumberOfWaitingEntries() {
+        return waitingItems;
+    }
+
+    /**
+     * Remove the oldest finished results, until there are not more than the configured number of results. Waiting and running entries are kept.
+     */
+    private void removeOldResults() {
+        if (maxResults <= 0) {
+            return;
+        }
+        int toRemove = results.size() - maxResults;
+        for (Iterator<GoobiScriptResult> iterator = results.iterator(); toRemove > 0 && iterator.hasNext();) {
+            GoobiScriptResultType type = iterator.next().getResultType();
+            if (type != GoobiScriptResultType.WAITING && type != GoobiScriptResultType.RUNNING) {
+                iterator.remove();
+                toRemove--;
+            }
+        }
+    }
+
+    /**
+     * Hand out waiting entries to the pool as long as threads are free
+     */
+    private void dispatch() {
+        while (runningItems < numberOfThreads) {
+            WorkItem item = nextItem();
+            if (item == null) {
+                return;
+            }
+            lockedKeys.add(item.lockKey);
+            waitingItems--;
+            runningItems++;
+            executor.execute(item);
+        }
+    }
+
+    /**
+     * Find the next entry to execute. Starts with the user after the one who got the last entry. Entries whose lock key is in use are moved aside
+     * until the key is released, so each entry is checked only once per release of its key.
+     */
+    private WorkItem nextItem() {
+        List<Integer> users = new ArrayList<>(queues.keySet());
+        if (users.isEmpty()) {
+            return null;
+        }
+        int start = lastUser == null ? 0 : users.indexOf(lastUser) + 1;
+        if (start < 0) {
+            start = 0;
+        }
+        for (int i = 0; i < users.size(); i++) {
+            Integer user = users.get((start + i) % users.size());
+            UserQueue queue = queues.get(user);
+            WorkItem item;
+            while ((item = queue.ready.poll()) != null) {
+                if (lockedKeys.contains(item.lockKey)) {
+                    Deque<WorkItem> blocked = blockedItems.get(item.lockKey);
+                    if (blocked == null) {
+                        blocked = new ArrayDeque<>();
+                        blockedItems.put(item.lockKey, blocked);
+                    }
+                    blocked.add(item);
+                    queue.blocked++;
+                } else {
+                    break;
+                }
+            }
+            if (queue.ready.isEmpty() && queue.blocked == 0) {
+                queues.remove(user);
+            }
+            if (item != null) {
+                lastUser = user;
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void finished(WorkItem item) {
+        lockedKeys.remove(item.lockKey);
+        runningItems--;
+        // give the entries which waited for this key back to their users, in their original order
+        Deque<WorkItem> blocked = blockedItems.remove(item.lockKey);
+        if (blocked != null) {
+            for (Iterator<WorkItem> iterator = blocked.descendingIterator(); iterator.hasNext();) {
+                WorkItem waiting = iterator.next();
+                UserQueue queue = queues.get(waiting.userId);
+                queue.blocked--;
+                queue.ready.addFirst(waiting);
+            }
+        }
+        dispatch();
+    }
+
+    private static class UserQueue {
+        private final Deque<WorkItem> ready = new ArrayDeque<>();
+        // number of entries of this user in blockedItems
+        private int blocked = 0;
+    }
+
+    private class WorkItem implements Runnable {
+        private final IGoobiScript script;
+        private final GoobiScriptResult gsr;
+        private final Integer userId;
+        // the script may change the result, so keep the key that got locked
+        private final String lockKey;
+
+        private WorkItem(IGoobiScript script, GoobiScriptResult gsr) {
+            this.script = script;
+            this.gsr = gsr;
+            this.userId = gsr.getUserId();
+            this.lockKey = gsr.getLockKey();
+        }
+
+        @Override
+        public void run() {
+            try {
+                script.execute(gsr);
+            } catch (RuntimeException e) {
+                logger.error("Error while executing GoobiScript for process with ID " + gsr.getProcessId(), e);
+                gsr.setResultMessage("Error: " + e.getMessage());
+                gsr.setResultType(GoobiScriptResultType.ERROR);
+                gsr.updateTimestamp();
+            } finally {
+                finished(this);
+            }
+        }
+    }
+}
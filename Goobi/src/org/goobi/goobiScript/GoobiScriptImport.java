@@ -55,8 +55,10 @@ public class GoobiScriptImport extends AbstractIGoobiScript implements IGoobiScr
 
         String[] identifiers = parameters.get("identifiers").split(",");
         for (String id : identifiers) {
-            GoobiScriptResult gsr = new GoobiScriptResult(Integer.parseInt(parameters.get("template")), command, username);
+            GoobiScriptResult gsr = new GoobiScriptResult(Integer.parseInt(parameters.get("template")), command, userId, username);
             gsr.setProcessTitle(id);
+            // the entries create new processes, only imports of the same identifier must not run at the same time
+            gsr.setLockKey("import:" + id);
             resultList.add(gsr);
         }
 
@@ -68,95 +70,80 @@ public class GoobiScriptImport extends AbstractIGoobiScript implements IGoobiScr
     }
 
     @Override
-    public void execute() {
-        ImportThread et = new ImportThread();
-        et.start();
-    }
+    public void execute(GoobiScriptResult gsr) {
+        String pluginName = parameters.get("plugin");
+        Process template = ProcessManager.getProcessById(Integer.parseInt(parameters.get("template")));
+
+        // set the overridden project if present
+        if (parameters.get("projectId") != null && !parameters.get("projectId").equals("")) {
+            int projectid = Integer.parseInt(parameters.get("projectId"));
+            template.setProjectId(projectid);
+        }
+
+        gsr.updateTimestamp();
+        gsr.setResultType(GoobiScriptResultType.RUNNING);
+        IImportPlugin plugin = (IImportPlugin) PluginLoader.getPluginByTitle(PluginType.Import, pluginName);
+        Process proc = ProcessManager.getProcessById(gsr.getProcessId());
+        plugin.setPrefs(proc.getRegelsatz().getPreferences());
+        plugin.setForm(mi);
 
-    class ImportThread extends Thread {
+        List<ImportObject> answer = new ArrayList<>();
 
-        @Override
-        public void run() {
-            String pluginName = parameters.get("plugin");
-            Process template = ProcessManager.getProcessById(Integer.parseInt(parameters.get("template")));
+        String tempfolder = ConfigurationHelper.getInstance().getTemporaryFolder();
+        plugin.setImportFolder(tempfolder);
 
-            // set the overridden project if present
-            if (parameters.get("projectId") != null && !parameters.get("projectId").equals("")) {
-                int projectid = Integer.parseInt(parameters.get("projectId"));
-                template.setProjectId(projectid);
+        List<Record> recordList = new ArrayList<>();
+        Record r = null;
+
+        // there are records already so lets find the right one
+        if (records != null) {
+            for (Record record : records) {
+                if (record.getId().equals(gsr.getProcessTitle())) {
+                    r = record;
+                    break;
+                }
             }
+        }
 
-            // execute all jobs that are still in waiting state
-            ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-                if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-                    gsr.updateTimestamp();
-                    gsr.setResultType(GoobiScriptResultType.RUNNING);
-                    IImportPlugin plugin = (IImportPlugin) PluginLoader.getPluginByTitle(PluginType.Import, pluginName);
-                    Process proc = ProcessManager.getProcessById(gsr.getProcessId());
-                    plugin.setPrefs(proc.getRegelsatz().getPreferences());
-                    plugin.setForm(mi);
-
-                    List<ImportObject> answer = new ArrayList<>();
-
-                    String tempfolder = ConfigurationHelper.getInstance().getTemporaryFolder();
-                    plugin.setImportFolder(tempfolder);
-
-                    List<Record> recordList = new ArrayList<>();
-                    Record r = null;
-
-                    // there are records already so lets find the right one
-                    if (records != null) {
-                        for (Record record : records) {
-                            if (record.getId().equals(gsr.getProcessTitle())) {
-                                r = record;
-                                break;
-                            }
-                        }
-                    }
-
-                    //Record not found so we create a new one here
-                    if (r == null) {
-                        r = new Record();
-                        r.setData(gsr.getProcessTitle());
-                        r.setId(gsr.getProcessTitle());
-                        r.setCollections(mi.getDigitalCollections());
-                    }
-
-                    recordList.add(r);
-
-                    answer = plugin.generateFiles(recordList);
-
-                    for (ImportObject io : answer) {
-                        if (batch != null) {
-                            io.setBatch(batch);
-                        }
-                        if (io.getImportReturnValue().equals(ImportReturnValue.ExportFinished)) {
-                            Process p = JobCreation.generateProcess(io, template);
-                            if (p == null) {
-                                gsr.setResultMessage("Import failed for id '" + gsr.getProcessTitle() + "'. Process cannot be created.");
-                                gsr.setResultType(GoobiScriptResultType.ERROR);
-                            } else {
-                                gsr.setProcessId(p.getId());
-                                gsr.setProcessTitle(p.getTitel());
-                                gsr.setResultMessage("Import successfully finished for id '" + gsr.getProcessTitle() + "'. Processname is " + io
-                                        .getProcessTitle() + ".");
-                                gsr.setResultType(GoobiScriptResultType.OK);
-                            }
-                        } else {
-                            String[] parameter = { gsr.getProcessTitle(), io.getErrorMessage() };
-                            gsr.setResultMessage(Helper.getTranslation("importFailedError", parameter));
-                            gsr.setResultType(GoobiScriptResultType.ERROR);
-                        }
-                    }
-                    // finally set result
-                    if ( gsr.getResultType() == GoobiScriptResultType.RUNNING) {
-                        gsr.setResultType(GoobiScriptResultType.OK);
-                    }
-                    gsr.updateTimestamp();
+        //Record not found so we create a new one here
+        if (r == null) {
+            r = new Record();
+            r.setData(gsr.getProcessTitle());
+            r.setId(gsr.getProcessTitle());
+            r.setCollections(mi.getDigitalCollections());
+        }
+
+        recordList.add(r);
+
+        answer = plugin.generateFiles(recordList);
+
+        for (ImportObject io : answer) {
+            if (batch != null) {
+                io.setBatch(batch);
+            }
+            if (io.getImportReturnValue().equals(ImportReturnValue.ExportFinished)) {
+                Process p = JobCreation.generateProcess(io, template);
+                if (p == null) {
+                    gsr.setResultMessage("Import failed for id '" + gsr.getProcessTitle() + "'. Process cannot be created.");
+                    gsr.setResultType(GoobiScriptResultType.ERROR);
+                } else {
+                    gsr.setProcessId(p.getId());
+                    gsr.setProcessTitle(p.getTitel());
+                    gsr.setResultMessage("Import successfully finished for id '" + gsr.getProcessTitle() + "'. Processname is " + io
+                            .getProcessTitle() + ".");
+                    gsr.setResultType(GoobiScriptResultType.OK);
                 }
+            } else {
+                String[] parameter = { gsr.getProcessTitle(), io.getErrorMessage() };
+                gsr.setResultMessage(Helper.getTranslation("importFailedError", parameter));
+                gsr.setResultType(GoobiScriptResultType.ERROR);
             }
         }
+        // finally set result
+        if ( gsr.getResultType() == GoobiScriptResultType.RUNNING) {
+            gsr.setResultType(GoobiScriptResultType.OK);
+        }
+        gsr.updateTimestamp();
     }
 
 }
@@ -1,7 +1,6 @@
 package org.goobi.goobiScript;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -11,19 +10,19 @@ import javax.servlet.ServletContext;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.goobi.managedbeans.LoginBean;
 import org.goobi.production.enums.GoobiScriptResultType;
 
 import de.sub.goobi.helper.FacesContextHelper;
+import de.sub.goobi.helper.Helper;
 import lombok.Getter;
 import lombok.Setter;
 
 public class GoobiScriptManager {
 
-	@Getter
-	private List<GoobiScriptResult> goobiScriptResults = new ArrayList<>();
 	@Getter @Setter
 	private int showMax = 100;
 	
@@ -31,18 +30,40 @@ public class GoobiScriptManager {
 	private String sort = "";
 
 	/**
-	 * reset the list of all GoobiScriptResults
+	 * get all GoobiScriptResults of the current user, sorted by the current sort value
+	 */
+	public List<GoobiScriptResult> getGoobiScriptResults() {
+		List<GoobiScriptResult> goobiScriptResults = GoobiScriptEngine.getInstance().getResults(getCurrentUserId());
+		sortResults(goobiScriptResults);
+		return goobiScriptResults;
+	}
+
+	/**
+	 * reset the list of all GoobiScriptResults of the current user, waiting scripts are cancelled
 	 */
 	public void goobiScriptResultsReset() {
-		goobiScriptResults = new ArrayList<>();
+		GoobiScriptEngine.getInstance().reset(getCurrentUserId());
 		sort = "";
 		showMax = 100;
 	}
 
+	/**
+	 * cancel all waiting GoobiScripts of the current user
+	 */
+	public void goobiScriptCancel() {
+		GoobiScriptEngine.getInstance().cancelWaiting(getCurrentUserId());
+	}
+
+	private Integer getCurrentUserId() {
+		LoginBean login = (LoginBean) Helper.getManagedBeanValue("#{LoginForm}");
+		return login.getMyBenutzer().getId();
+	}
+
 	/**
 	 * get just a limited number of results
 	 */
 	public List<GoobiScriptResult> getShortGoobiScriptResults(){
+		List<GoobiScriptResult> goobiScriptResults = getGoobiScriptResults();
 		if (showMax>goobiScriptResults.size()){
 			return goobiScriptResults;
 		} else {
@@ -61,7 +82,7 @@ public class GoobiScriptManager {
 	 */
 	public int getNumberOfFinishedScripts() {
 		int count = 0;
-		for (GoobiScriptResult gsr : goobiScriptResults) {
+		for (GoobiScriptResult gsr : GoobiScriptEngine.getInstance().getResults(getCurrentUserId())) {
 			if (gsr.getResultType() != GoobiScriptResultType.WAITING) {
 				count++;
 			}
@@ -78,7 +99,7 @@ public class GoobiScriptManager {
 	 * @return boolean if elements with this status exist
 	 */
 	public boolean goobiScriptHasResults(String status) {
-		for (GoobiScriptResult gsr : goobiScriptResults) {
+		for (GoobiScriptResult gsr : GoobiScriptEngine.getInstance().getResults(getCurrentUserId())) {
 			if (gsr.getResultType().toString().equals(status)) {
 				return true;
 			}
@@ -100,10 +121,11 @@ public class GoobiScriptManager {
 				response.setHeader("Content-Disposition", "attachment;filename=\"goobiScript.xlsx\"");
 				ServletOutputStream out = response.getOutputStream();
 
-				XSSFWorkbook workbook = new XSSFWorkbook();
-				XSSFSheet sheet = workbook.createSheet("GoobiScript");
+				// only a window of rows is kept in memory, the others are flushed to a temporary file
+				SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+				Sheet sheet = workbook.createSheet("GoobiScript");
 
-				XSSFRow rowhead = sheet.createRow((short) 0);
+				Row rowhead = sheet.createRow(0);
 				rowhead.createCell(0).setCellValue("Process ID");
 				rowhead.createCell(1).setCellValue("Process title");
 				rowhead.createCell(2).setCellValue("Command");
@@ -111,8 +133,8 @@ public class GoobiScriptManager {
 				rowhead.createCell(4).setCellValue("Description");
 
 				int count = 1;
-				for (GoobiScriptResult gsr : goobiScriptResults) {
-					XSSFRow row = sheet.createRow((short) count++);
+				for (GoobiScriptResult gsr : getGoobiScriptResults()) {
+					Row row = sheet.createRow(count++);
 					row.createCell(0).setCellValue(gsr.getProcessId());
 					row.createCell(1).setCellValue(gsr.getProcessTitle());
 					row.createCell(2).setCellValue(gsr.getCommand());
@@ -120,20 +142,20 @@ public class GoobiScriptManager {
 					row.createCell(4).setCellValue(gsr.getResultMessage());
 				}
 
-				workbook.write(out);
+				try {
+					workbook.write(out);
+				} finally {
+					workbook.dispose();
+				}
 				out.flush();
 				facesContext.responseComplete();
-				workbook.close();
 			} catch (IOException e) {
 
 			}
 		}
 	}
 
-	/**
-	 * sort the list by specific value
-	 */
-	public void goobiScriptSort() {
+	private void sortResults(List<GoobiScriptResult> goobiScriptResults) {
 		if (sort.equals("id")) {
 			Collections.sort(goobiScriptResults, new SortByID(false));
 		} else if (sort.equals("id desc")) {
@@ -283,14 +305,7 @@ public class GoobiScriptManager {
 	}
 
     public boolean getAreScriptsWaiting(String command) {
-        boolean keepRunning = false;
-        for (GoobiScriptResult gsr : goobiScriptResults) {
-            if (gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-                keepRunning = true;
-                break;
-            }
-        }
-        return keepRunning;
+        return GoobiScriptEngine.getInstance().isWaiting(command);
     }
 	
 	
@@ -1,7 +1,6 @@
 package org.goobi.goobiScript;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.prefs.Preferences;
@@ -51,79 +50,64 @@ public class GoobiScriptMetadataAdd extends AbstractIGoobiScript implements IGoo
 		
 		// add all valid commands to list
 		for (Integer i : processes) {
-			GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+			GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
 			resultList.add(gsr);
 		}
 		return true;
 	}
 
 	@Override
-	public void execute() {
-		UpdateMetadataThread et = new UpdateMetadataThread();
-		et.start();
-	}
+	public void execute(GoobiScriptResult gsr) {
+		Process p = ProcessManager.getProcessById(gsr.getProcessId());
+		gsr.setProcessTitle(p.getTitel());
+		gsr.setResultType(GoobiScriptResultType.RUNNING);
+		gsr.updateTimestamp();
+		try {
+			Fileformat ff = p.readMetadataFile();
+			// first get the top element
+			DocStruct ds = ff.getDigitalDocument().getLogicalDocStruct();
 
-	class UpdateMetadataThread extends Thread {
-		public void run() {
-			// execute all jobs that are still in waiting state
-			ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-				if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING) {
-					Process p = ProcessManager.getProcessById(gsr.getProcessId());
-					gsr.setProcessTitle(p.getTitel());
-					gsr.setResultType(GoobiScriptResultType.RUNNING);
-					gsr.updateTimestamp();
-					try {
-						Fileformat ff = p.readMetadataFile();
-						// first get the top element
-						DocStruct ds = ff.getDigitalDocument().getLogicalDocStruct();
-						
-						// if child element shall be updated get this
-						String position = parameters.get("position");
-						if (position.equals("child")){
-							if (ds.getType().isAnchor()) {
-								ds = ff.getDigitalDocument().getLogicalDocStruct().getAllChildren().get(0);
-							} else{
-								gsr.setResultMessage("Error while adding metadata to child, as topstruct is no anchor");
-								gsr.setResultType(GoobiScriptResultType.ERROR);
-								continue;
-							}
-						}
-						
-						// now add the new metadata and save the file
-						addMetadata(ds, parameters.get("field"), parameters.get("value"), p.getRegelsatz().getPreferences());
-						p.writeMetadataFile(ff);
-						Thread.sleep(2000);
-						Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Metadata added using GoobiScript: " + parameters.get("field") + " - " + parameters.get("value"), username);
-		                logger.info("Metadata added using GoobiScript for process with ID " + p.getId());
-						gsr.setResultMessage("Metadata added successfully.");
-						gsr.setResultType(GoobiScriptResultType.OK);
-		            } catch (SwapException | DAOException | IOException | InterruptedException | MetadataTypeNotAllowedException | ReadException | PreferencesException | WriteException e1) {
-		                logger.error("Problem while adding the metadata using GoobiScript for process with id: " + p.getId(), e1);
-		                gsr.setResultMessage("Error while adding metadata: " + e1.getMessage());
-						gsr.setResultType(GoobiScriptResultType.ERROR);
-		            }
-					gsr.updateTimestamp();
+			// if child element shall be updated get this
+			String position = parameters.get("position");
+			if (position.equals("child")){
+				if (ds.getType().isAnchor()) {
+					ds = ff.getDigitalDocument().getLogicalDocStruct().getAllChildren().get(0);
+				} else{
+					gsr.setResultMessage("Error while adding metadata to child, as topstruct is no anchor");
+					gsr.setResultType(GoobiScriptResultType.ERROR);
+					return;
 				}
 			}
+
+			// now add the new metadata and save the file
+			addMetadata(ds, parameters.get("field"), parameters.get("value"), p.getRegelsatz().getPreferences());
+			p.writeMetadataFile(ff);
+			Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Metadata added using GoobiScript: " + parameters.get("field") + " - " + parameters.get("value"), username);
+			logger.info("Metadata added using GoobiScript for process with ID " + p.getId());
+			gsr.setResultMessage("Metadata added successfully.");
+			gsr.setResultType(GoobiScriptResultType.OK);
+		} catch (SwapException | DAOException | IOException | InterruptedException | MetadataTypeNotAllowedException | ReadException | PreferencesException | WriteException e1) {
+			logger.error("Problem while adding the metadata using GoobiScript for process with id: " + p.getId(), e1);
+			gsr.setResultMessage("Error while adding metadata: " + e1.getMessage());
+			gsr.setResultType(GoobiScriptResultType.ERROR);
 		}
-		
-		/**
-		 * Method to add a specific metadata to a given structural element
-		 * 
-		 * @param ds structural element to use
-		 * @param field the metadata field to create
-		 * @param prefs the {@link Preferences} to use
-		 * @param value the information the shall be stored as metadata in the given field
-		 * 
-		 * @throws MetadataTypeNotAllowedException
-		 */
-		private void addMetadata(DocStruct ds, String field, String value, Prefs prefs) throws MetadataTypeNotAllowedException{
-			Metadata mdColl = new Metadata(prefs.getMetadataTypeByName(field));
-			mdColl.setValue(value);
-			ds.addMetadata(mdColl);
-		}
-		
+		gsr.updateTimestamp();
+	}
+
+	/**
+	 * Method to add a specific metadata to a given structural element
+	 *
+	 * @param ds structural element to use
+	 * @param field the metadata field to create
+	 * @param prefs the {@link Preferences} to use
+	 * @param value the information the shall be stored as metadata in the given field
+	 *
+	 * @throws MetadataTypeNotAllowedException
+	 */
+	private void addMetadata(DocStruct ds, String field, String value, Prefs prefs) throws MetadataTypeNotAllowedException{
+		Metadata mdColl = new Metadata(prefs.getMetadataTypeByName(field));
+		mdColl.setValue(value);
+		ds.addMetadata(mdColl);
 	}
 
 }
@@ -1,7 +1,6 @@
 package org.goobi.goobiScript;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.prefs.Preferences;
@@ -51,90 +50,75 @@ public class GoobiScriptMetadataDelete extends AbstractIGoobiScript implements I
 		
 		// add all valid commands to list
 		for (Integer i : processes) {
-			GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+			GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
 			resultList.add(gsr);
 		}
 		return true;
 	}
 
 	@Override
-	public void execute() {
-		UpdateMetadataThread et = new UpdateMetadataThread();
-		et.start();
-	}
+	public void execute(GoobiScriptResult gsr) {
+		Process p = ProcessManager.getProcessById(gsr.getProcessId());
+		gsr.setProcessTitle(p.getTitel());
+		gsr.setResultType(GoobiScriptResultType.RUNNING);
+		gsr.updateTimestamp();
+		try {
+			Fileformat ff = p.readMetadataFile();
+			DocStruct ds = ff.getDigitalDocument().getLogicalDocStruct();
 
-	class UpdateMetadataThread extends Thread {
-		public void run() {
-			// execute all jobs that are still in waiting state
-			ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-				if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING) {
-					Process p = ProcessManager.getProcessById(gsr.getProcessId());
-					gsr.setProcessTitle(p.getTitel());
-					gsr.setResultType(GoobiScriptResultType.RUNNING);
-					gsr.updateTimestamp();
-					try {
-						Fileformat ff = p.readMetadataFile();
-						DocStruct ds = ff.getDigitalDocument().getLogicalDocStruct();
-						
-						// if child element shall be updated get this
-						String position = parameters.get("position");
-						if (position.equals("child")){
-							if (ds.getType().isAnchor()) {
-								ds = ff.getDigitalDocument().getLogicalDocStruct().getAllChildren().get(0);
-							} else{
-								gsr.setResultMessage("Error while adding metadata to child, as topstruct is no anchor");
-								gsr.setResultType(GoobiScriptResultType.ERROR);
-								continue;
-							}
-						}
-						
-						boolean ignoreValue = false;
-						String ignoreValueString = parameters.get("ignoreValue");
-						if (ignoreValueString != null && ignoreValueString.equals("true")){
-							ignoreValue = true;
-						}
-						
-						// now find the metadata field to delete
-						deleteMetadata(ds, parameters.get("field"), parameters.get("value"), ignoreValue, p.getRegelsatz().getPreferences());
-						p.writeMetadataFile(ff);
-						Thread.sleep(2000);
-		                Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Metadata deleted using GoobiScript: " +  parameters.get("field") + " - " + parameters.get("value"), username);
-		                logger.info("Metadata deleted using GoobiScript for process with ID " + p.getId());
-						gsr.setResultMessage("Metadata deleted successfully.");
-						gsr.setResultType(GoobiScriptResultType.OK);
-		            } catch (SwapException | DAOException | IOException | InterruptedException | MetadataTypeNotAllowedException | ReadException | PreferencesException | WriteException e1) {
-		                logger.error("Problem while deleting the metadata using GoobiScript for process with id: " + p.getId(), e1);
-		                gsr.setResultMessage("Error while deleting metadata: " + e1.getMessage());
-						gsr.setResultType(GoobiScriptResultType.ERROR);
-		            }
-					gsr.updateTimestamp();
+			// if child element shall be updated get this
+			String position = parameters.get("position");
+			if (position.equals("child")){
+				if (ds.getType().isAnchor()) {
+					ds = ff.getDigitalDocument().getLogicalDocStruct().getAllChildren().get(0);
+				} else{
+					gsr.setResultMessage("Error while adding metadata to child, as topstruct is no anchor");
+					gsr.setResultType(GoobiScriptResultType.ERROR);
+					return;
 				}
 			}
+
+			boolean ignoreValue = false;
+			String ignoreValueString = parameters.get("ignoreValue");
+			if (ignoreValueString != null && ignoreValueString.equals("true")){
+				ignoreValue = true;
+			}
+
+			// now find the metadata field to delete
+			deleteMetadata(ds, parameters.get("field"), parameters.get("value"), ignoreValue, p.getRegelsatz().getPreferences());
+			p.writeMetadataFile(ff);
+			Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Metadata deleted using GoobiScript: " +  parameters.get("field") + " - " + parameters.get("value"), username);
+			logger.info("Metadata deleted using GoobiScript for process with ID " + p.getId());
+			gsr.setResultMessage("Metadata deleted successfully.");
+			gsr.setResultType(GoobiScriptResultType.OK);
+		} catch (SwapException | DAOException | IOException | InterruptedException | MetadataTypeNotAllowedException | ReadException | PreferencesException | WriteException e1) {
+			logger.error("Problem while deleting the metadata using GoobiScript for process with id: " + p.getId(), e1);
+			gsr.setResultMessage("Error while deleting metadata: " + e1.getMessage());
+			gsr.setResultType(GoobiScriptResultType.ERROR);
 		}
-		
-		/**
-		 * Method to delete a given metadata from a {@link DocStruct}
-		 * 
-		 * @param ds the structural element to use
-		 * @param field the metadata field that is used
-		 * @param value the metadata value to be deleted
-		 * @param ignoreValue a boolean that defines if the value of the metadata shall not be checked before deletion
-		 * @param prefs the {@link Preferences} to use
-		 * 
-		 * @throws MetadataTypeNotAllowedException
-		 */
-		private void deleteMetadata(DocStruct ds, String field, String value, boolean ignoreValue, Prefs prefs) throws MetadataTypeNotAllowedException{
-			List<? extends Metadata> mdlist = ds.getAllMetadataByType(prefs.getMetadataTypeByName(field));
-			if (mdlist != null && mdlist.size()>0){
-				for (Metadata md : mdlist) {
-					if (ignoreValue || md.getValue().equals(value)){
-						ds.getAllMetadata().remove(md);
-					}
+		gsr.updateTimestamp();
+	}
+
+	/**
+	 * Method to delete a given metadata from a {@link DocStruct}
+	 *
+	 * @param ds the structural element to use
+	 * @param field the metadata field that is used
+	 * @param value the metadata value to be deleted
+	 * @param ignoreValue a boolean that defines if the value of the metadata shall not be checked before deletion
+	 * @param prefs the {@link Preferences} to use
+	 *
+	 * @throws MetadataTypeNotAllowedException
+	 */
+	private void deleteMetadata(DocStruct ds, String field, String value, boolean ignoreValue, Prefs prefs) throws MetadataTypeNotAllowedException{
+		List<? extends Metadata> mdlist = ds.getAllMetadataByType(prefs.getMetadataTypeByName(field));
+		if (mdlist != null && mdlist.size()>0){
+			for (Metadata md : mdlist) {
+				if (ignoreValue || md.getValue().equals(value)){
+					ds.getAllMetadata().remove(md);
 				}
 			}
 		}
-		
 	}
 
 }
@@ -1,7 +1,6 @@
 package org.goobi.goobiScript;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.prefs.Preferences;
@@ -56,92 +55,75 @@ public class GoobiScriptMetadataReplace extends AbstractIGoobiScript implements
 		
 		// add all valid commands to list
 		for (Integer i : processes) {
-			GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+			GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
 			resultList.add(gsr);
 		}
 		return true;
 	}
 
 	@Override
-	public void execute() {
-		UpdateMetadataThread et = new UpdateMetadataThread();
-		et.start();
-	}
+	public void execute(GoobiScriptResult gsr) {
+		Process p = ProcessManager.getProcessById(gsr.getProcessId());
+		gsr.setProcessTitle(p.getTitel());
+		gsr.setResultType(GoobiScriptResultType.RUNNING);
+		gsr.updateTimestamp();
+		try {
+			Fileformat ff = p.readMetadataFile();
+			// first get the top element
+			DocStruct ds = ff.getDigitalDocument().getLogicalDocStruct();
 
-	class UpdateMetadataThread extends Thread {
-		public void run() {
-			// execute all jobs that are still in waiting state
-			ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-				if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING) {
-					Process p = ProcessManager.getProcessById(gsr.getProcessId());
-					gsr.setProcessTitle(p.getTitel());
-					gsr.setResultType(GoobiScriptResultType.RUNNING);
-					gsr.updateTimestamp();
-					try {
-						Fileformat ff = p.readMetadataFile();
-						// first get the top element
-						DocStruct ds = ff.getDigitalDocument().getLogicalDocStruct();
-						
-						// if child element shall be updated get this
-						String position = parameters.get("position");
-						if (position.equals("child")){
-							if (ds.getType().isAnchor()) {
-								ds = ff.getDigitalDocument().getLogicalDocStruct().getAllChildren().get(0);
-							} else{
-								gsr.setResultMessage("Error while adding metadata to child, as topstruct is no anchor");
-								gsr.setResultType(GoobiScriptResultType.ERROR);
-								continue;
-							}
-						}
-						
-						String replace = parameters.get("replace");
-						if (replace==null){
-							replace = "";
-						}
-						
-						// now change the searched metadata and save the file
-						replaceMetadata(ds, parameters.get("field"), parameters.get("search"), replace, p.getRegelsatz().getPreferences());
-						p.writeMetadataFile(ff);
-						Thread.sleep(2000);
-		                Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Metadata deleted using GoobiScript: " + parameters.get("field") + " - " + parameters.get("value"), username);
-		                logger.info("Metadata changed using GoobiScript for process with ID " + p.getId());
-						gsr.setResultMessage("Metadata changed successfully.");
-						gsr.setResultType(GoobiScriptResultType.OK);
-		            } catch (SwapException | DAOException | IOException | InterruptedException | ReadException | MetadataTypeNotAllowedException | PreferencesException | WriteException e1) {
-		                logger.error("Problem while changing the metadata using GoobiScript for process with id: " + p.getId(), e1);
-		                gsr.setResultMessage("Error while changing metadata: " + e1.getMessage());
-						gsr.setResultType(GoobiScriptResultType.ERROR);
-		            }
-					gsr.updateTimestamp();
+			// if child element shall be updated get this
+			String position = parameters.get("position");
+			if (position.equals("child")){
+				if (ds.getType().isAnchor()) {
+					ds = ff.getDigitalDocument().getLogicalDocStruct().getAllChildren().get(0);
+				} else{
+					gsr.setResultMessage("Error while adding metadata to child, as topstruct is no anchor");
+					gsr.setResultType(GoobiScriptResultType.ERROR);
+					return;
 				}
 			}
+
+			String replace = parameters.get("replace");
+			if (replace==null){
+				replace = "";
+			}
+
+			// now change the searched metadata and save the file
+			replaceMetadata(ds, parameters.get("field"), parameters.get("search"), replace, p.getRegelsatz().getPreferences());
+			p.writeMetadataFile(ff);
+			Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Metadata deleted using GoobiScript: " + parameters.get("field") + " - " + parameters.get("value"), username);
+			logger.info("Metadata changed using GoobiScript for process with ID " + p.getId());
+			gsr.setResultMessage("Metadata changed successfully.");
+			gsr.setResultType(GoobiScriptResultType.OK);
+		} catch (SwapException | DAOException | IOException | InterruptedException | ReadException | MetadataTypeNotAllowedException | PreferencesException | WriteException e1) {
+			logger.error("Problem while changing the metadata using GoobiScript for process with id: " + p.getId(), e1);
+			gsr.setResultMessage("Error while changing metadata: " + e1.getMessage());
+			gsr.setResultType(GoobiScriptResultType.ERROR);
 		}
-		
-		/**
-		 * Method to replace a string in a given metadata from a {@link DocStruct}
-		 * 
-		 * @param ds the structural element to use
-		 * @param field the metadata field that is used
-		 * @param search a partial string to be replaced
-		 * @param replace the replacement to be used
-		 * @param prefs the {@link Preferences} to use
-		 * 
-		 * @throws MetadataTypeNotAllowedException
-		 */
-		private void replaceMetadata(DocStruct ds, String field, String search, String replace, Prefs prefs) throws MetadataTypeNotAllowedException{
-			List<? extends Metadata> mdlist = ds.getAllMetadataByType(prefs.getMetadataTypeByName(field));
-			if (mdlist != null && mdlist.size()>0){
-				for (Metadata md : mdlist) {
-					if (md.getValue().contains(search)){
-						md.setValue(md.getValue().replaceAll(search, replace));
-					}
+		gsr.updateTimestamp();
+	}
+
+	/**
+	 * Method to replace a string in a given metadata from a {@link DocStruct}
+	 *
+	 * @param ds the structural element to use
+	 * @param field the metadata field that is used
+	 * @param search a partial string to be replaced
+	 * @param replace the replacement to be used
+	 * @param prefs the {@link Preferences} to use
+	 *
+	 * @throws MetadataTypeNotAllowedException
+	 */
+	private void replaceMetadata(DocStruct ds, String field, String search, String replace, Prefs prefs) throws MetadataTypeNotAllowedException{
+		List<? extends Metadata> mdlist = ds.getAllMetadataByType(prefs.getMetadataTypeByName(field));
+		if (mdlist != null && mdlist.size()>0){
+			for (Metadata md : mdlist) {
+				if (md.getValue().contains(search)){
+					md.setValue(md.getValue().replaceAll(search, replace));
 				}
 			}
 		}
-		
-		
-		
 	}
 
 }
@@ -1,6 +1,5 @@
 package org.goobi.goobiScript;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -26,7 +25,7 @@ public class GoobiScriptPropertyDelete extends AbstractIGoobiScript implements I
 
         // add all valid commands to list
         for (Integer i : processes) {
-            GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+            GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
             resultList.add(gsr);
         }
 
@@ -34,38 +33,23 @@ public class GoobiScriptPropertyDelete extends AbstractIGoobiScript implements I
     }
 
     @Override
-    public void execute() {
-        TEMPLATEThread et = new TEMPLATEThread();
-        et.start();
-    }
-
-    class TEMPLATEThread extends Thread {
-        @Override
-        public void run() {
-
-            String propertyName = parameters.get("name");
-
-            // execute all jobs that are still in waiting state
-            ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-                if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-                    Process p = ProcessManager.getProcessById(gsr.getProcessId());
-                    gsr.setProcessTitle(p.getTitel());
-                    gsr.setResultType(GoobiScriptResultType.RUNNING);
-                    gsr.updateTimestamp();
-
-                    for (Processproperty pp : p.getEigenschaften()) {
-                        if (pp.getTitel().equals(propertyName)) {
-                            PropertyManager.deleteProcessProperty(pp);
-                            gsr.setResultMessage("Property deleted.");
-                            gsr.setResultType(GoobiScriptResultType.OK);
-                            break;
-                        }
-                    }
-                    gsr.updateTimestamp();
-                }
+    public void execute(GoobiScriptResult gsr) {
+        String propertyName = parameters.get("name");
+
+        Process p = ProcessManager.getProcessById(gsr.getProcessId());
+        gsr.setProcessTitle(p.getTitel());
+        gsr.setResultType(GoobiScriptResultType.RUNNING);
+        gsr.updateTimestamp();
+
+        for (Processproperty pp : p.getEigenschaften()) {
+            if (pp.getTitel().equals(propertyName)) {
+                PropertyManager.deleteProcessProperty(pp);
+                gsr.setResultMessage("Property deleted.");
+                gsr.setResultType(GoobiScriptResultType.OK);
+                break;
             }
         }
+        gsr.updateTimestamp();
     }
 
 }
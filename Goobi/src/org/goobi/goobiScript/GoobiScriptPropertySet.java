@@ -1,6 +1,5 @@
 package org.goobi.goobiScript;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -30,7 +29,7 @@ public class GoobiScriptPropertySet extends AbstractIGoobiScript implements IGoo
         }
         // add all valid commands to list
         for (Integer i : processes) {
-            GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+            GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
             resultList.add(gsr);
         }
 
@@ -38,51 +37,36 @@ public class GoobiScriptPropertySet extends AbstractIGoobiScript implements IGoo
     }
 
     @Override
-    public void execute() {
-        TEMPLATEThread et = new TEMPLATEThread();
-        et.start();
-    }
-
-    class TEMPLATEThread extends Thread {
-        @Override
-        public void run() {
-
-            String propertyName = parameters.get("name");
-            String value = parameters.get("value");
+    public void execute(GoobiScriptResult gsr) {
+        String propertyName = parameters.get("name");
+        String value = parameters.get("value");
 
-            // execute all jobs that are still in waiting state
-            ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-                if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-                    Process p = ProcessManager.getProcessById(gsr.getProcessId());
-                    gsr.setProcessTitle(p.getTitel());
-                    gsr.setResultType(GoobiScriptResultType.RUNNING);
-                    gsr.updateTimestamp();
-                    boolean matched = false;
-                    for (Processproperty pp : p.getEigenschaften()) {
-                        if (pp.getTitel().equals(propertyName)) {
-                            pp.setWert(value);
-                            PropertyManager.saveProcessProperty(pp);
-                            gsr.setResultMessage("Property updated.");
-                            gsr.setResultType(GoobiScriptResultType.OK);
-                            matched = true;
-                            break;
-                        }
-                    }
-                    if (!matched) {
-                        Processproperty pp = new Processproperty();
-                        pp.setTitel(propertyName);
-                        pp.setWert(value);
-                        pp.setProzess(p);
-                        PropertyManager.saveProcessProperty(pp);
-                        gsr.setResultMessage("Property created.");
-                        gsr.setResultType(GoobiScriptResultType.OK);
-                    }
-
-                    gsr.updateTimestamp();
-                }
+        Process p = ProcessManager.getProcessById(gsr.getProcessId());
+        gsr.setProcessTitle(p.getTitel());
+        gsr.setResultType(GoobiScriptResultType.RUNNING);
+        gsr.updateTimestamp();
+        boolean matched = false;
+        for (Processproperty pp : p.getEigenschaften()) {
+            if (pp.getTitel().equals(propertyName)) {
+                pp.setWert(value);
+                PropertyManager.saveProcessProperty(pp);
+                gsr.setResultMessage("Property updated.");
+                gsr.setResultType(GoobiScriptResultType.OK);
+                matched = true;
+                break;
             }
         }
+        if (!matched) {
+            Processproperty pp = new Processproperty();
+            pp.setTitel(propertyName);
+            pp.setWert(value);
+            pp.setProzess(p);
+            PropertyManager.saveProcessProperty(pp);
+            gsr.setResultMessage("Property created.");
+            gsr.setResultType(GoobiScriptResultType.OK);
+        }
+
+        gsr.updateTimestamp();
     }
 
 }
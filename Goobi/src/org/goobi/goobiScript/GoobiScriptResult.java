@@ -10,17 +10,24 @@ import lombok.Data;
 @Data
 public class GoobiScriptResult {
 	
-	private Integer processId;
-	private String processTitle;
-	private String command;
-	private GoobiScriptResultType resultType;
-	private String resultMessage;
-	private Date timestamp;
-	private String username;
+	private final String command;
+	// the user who started the script, the results are owned by this user
+	private final Integer userId;
+	private final String username;
+	// entries with the same key are never executed at the same time, by default the id of the process
+	private String lockKey;
+	// updated by the worker threads of the GoobiScriptEngine
+	private volatile Integer processId;
+	private volatile String processTitle;
+	private volatile GoobiScriptResultType resultType;
+	private volatile String resultMessage;
+	private volatile Date timestamp;
 	
-	public GoobiScriptResult(Integer id, String command, String username){
+	public GoobiScriptResult(Integer id, String command, Integer userId, String username){
 		this.processId = id;
 		this.command = command;
+		this.userId = userId;
+		this.lockKey = "process:" + id;
 		this.processTitle = "";
 		this.resultMessage = "";
 		this.timestamp = new Date();
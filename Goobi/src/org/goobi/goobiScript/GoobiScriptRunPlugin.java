@@ -1,6 +1,5 @@
 package org.goobi.goobiScript;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -32,65 +31,51 @@ public class GoobiScriptRunPlugin extends AbstractIGoobiScript implements IGoobi
 
 		// add all valid commands to list
 		for (Integer i : processes) {
-			GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+			GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
 			resultList.add(gsr);
 		}
 		return true;
 	}
 
 	@Override
-	public void execute() {
-		SetStepStatusThread et = new SetStepStatusThread();
-		et.start();
-	}
-
-	class SetStepStatusThread extends Thread {
-
-		public void run() {
-			String steptitle = parameters.get("steptitle");
-
-			// execute all jobs that are still in waiting state
-			ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-				if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-					Process p = ProcessManager.getProcessById(gsr.getProcessId());
-					gsr.setProcessTitle(p.getTitel());
-					gsr.setResultType(GoobiScriptResultType.RUNNING);
-					gsr.updateTimestamp();
-					for (Step step : p.getSchritteList()) {
-						if (step.getTitel().equalsIgnoreCase(steptitle)) {
-							Step so = StepManager.getStepById(step.getId());
-
-							if (so.getStepPlugin() != null && !so.getStepPlugin().isEmpty()) {
-								IStepPlugin myPlugin = (IStepPlugin) PluginLoader.getPluginByTitle(PluginType.Step,
-										so.getStepPlugin());
-
-								if (myPlugin != null) {
-									myPlugin.initialize(so, "");
-
-									if (myPlugin.getPluginGuiType() == PluginGuiType.NONE) {
-										myPlugin.execute();
-										myPlugin.finish();
-
-										Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Plugin for step '" + steptitle + "' executed using GoobiScript.", username);
-										logger.info("Plugin for step '" + steptitle + "' executed using GoobiScript for process with ID " + p.getId());
-										gsr.setResultMessage("Plugin for step '" + steptitle + "' executed successfully.");
-										gsr.setResultType(GoobiScriptResultType.OK);
-									}else{
-				                        gsr.setResultMessage("Plugin for step '" + steptitle + "' cannot be executed as it has a GUI.");
-				                        gsr.setResultType(GoobiScriptResultType.ERROR);
-									}
-								}
-							} else {
-		                        gsr.setResultMessage("Plugin for step '" + steptitle + "' cannot be executed as it is not Plugin workflow step.");
-		                        gsr.setResultType(GoobiScriptResultType.ERROR);
-							}
+	public void execute(GoobiScriptResult gsr) {
+		String steptitle = parameters.get("steptitle");
+
+		Process p = ProcessManager.getProcessById(gsr.getProcessId());
+		gsr.setProcessTitle(p.getTitel());
+		gsr.setResultType(GoobiScriptResultType.RUNNING);
+		gsr.updateTimestamp();
+		for (Step step : p.getSchritteList()) {
+			if (step.getTitel().equalsIgnoreCase(steptitle)) {
+				Step so = StepManager.getStepById(step.getId());
+
+				if (so.getStepPlugin() != null && !so.getStepPlugin().isEmpty()) {
+					IStepPlugin myPlugin = (IStepPlugin) PluginLoader.getPluginByTitle(PluginType.Step,
+							so.getStepPlugin());
+
+					if (myPlugin != null) {
+						myPlugin.initialize(so, "");
+
+						if (myPlugin.getPluginGuiType() == PluginGuiType.NONE) {
+							myPlugin.execute();
+							myPlugin.finish();
+
+							Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Plugin for step '" + steptitle + "' executed using GoobiScript.", username);
+							logger.info("Plugin for step '" + steptitle + "' executed using GoobiScript for process with ID " + p.getId());
+							gsr.setResultMessage("Plugin for step '" + steptitle + "' executed successfully.");
+							gsr.setResultType(GoobiScriptResultType.OK);
+						}else{
+							gsr.setResultMessage("Plugin for step '" + steptitle + "' cannot be executed as it has a GUI.");
+							gsr.setResultType(GoobiScriptResultType.ERROR);
 						}
 					}
-					gsr.updateTimestamp();
+				} else {
+					gsr.setResultMessage("Plugin for step '" + steptitle + "' cannot be executed as it is not Plugin workflow step.");
+					gsr.setResultType(GoobiScriptResultType.ERROR);
 				}
 			}
 		}
+		gsr.updateTimestamp();
 	}
 
 }
@@ -1,6 +1,5 @@
 package org.goobi.goobiScript;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -29,7 +28,7 @@ public class GoobiScriptRunScript extends AbstractIGoobiScript implements IGoobi
 
         // add all valid commands to list
         for (Integer i : processes) {
-            GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+            GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
             resultList.add(gsr);
         }
 
@@ -37,70 +36,55 @@ public class GoobiScriptRunScript extends AbstractIGoobiScript implements IGoobi
     }
 
     @Override
-    public void execute() {
-        RunScriptThread et = new RunScriptThread();
-        et.start();
-    }
-
-    class RunScriptThread extends Thread {
+    public void execute(GoobiScriptResult gsr) {
+        HelperSchritte hs = new HelperSchritte();
+        String steptitle = parameters.get("steptitle");
+        String scriptname = parameters.get("script");
 
-        @Override
-        public void run() {
-            HelperSchritte hs = new HelperSchritte();
-            String steptitle = parameters.get("steptitle");
-            String scriptname = parameters.get("script");
+        Process p = ProcessManager.getProcessById(gsr.getProcessId());
+        gsr.setProcessTitle(p.getTitel());
+        gsr.setResultType(GoobiScriptResultType.RUNNING);
+        gsr.updateTimestamp();
 
-            // execute all jobs that are still in waiting state
-            ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-                if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-                    Process p = ProcessManager.getProcessById(gsr.getProcessId());
-                    gsr.setProcessTitle(p.getTitel());
-                    gsr.setResultType(GoobiScriptResultType.RUNNING);
-                    gsr.updateTimestamp();
-
-                    for (Step step : p.getSchritteList()) {
-                        if (step.getTitel().equalsIgnoreCase(steptitle)) {
-                            Step so = StepManager.getStepById(step.getId());
-                            if (scriptname != null) {
-                                if (step.getAllScripts().containsKey(scriptname)) {
-                                    String path = step.getAllScripts().get(scriptname);
-                                    int returncode = hs.executeScriptForStepObject(so, path, false);
-                                    Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Script '" + scriptname + "' for step '" + steptitle
-                                            + "' executed using GoobiScript.", username);
-                                    logger.info("Script '" + scriptname + "' for step '" + steptitle
-                                            + "' executed using GoobiScript for process with ID " + p.getId());
-                                    if (returncode == 0 || returncode == 98 || returncode == 99) {
-                                        gsr.setResultMessage("Script '" + scriptname + "' for step '" + steptitle + "' executed successfully.");
-                                        gsr.setResultType(GoobiScriptResultType.OK);
-                                    } else {
-                                        gsr.setResultMessage("A problem occured while executing script '" + scriptname + "' for step '" + steptitle
-                                                + "': " + returncode);
-                                        gsr.setResultType(GoobiScriptResultType.ERROR);
-                                    }
-                                } else {
-                                    gsr.setResultMessage("Cant find script '" + scriptname + "' for step '" + steptitle + "'.");
-                                    gsr.setResultType(GoobiScriptResultType.ERROR);
-                                }
-                            } else {
-                                int returncode = hs.executeAllScriptsForStep(so, false);
-                                Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "All scripts for step '" + steptitle
-                                        + "' executed using GoobiScript.", username);
-                                logger.info("All scripts for step '" + steptitle + "' executed using GoobiScript for process with ID " + p.getId());
-                                if (returncode == 0 || returncode == 98 || returncode == 99) {
-                                    gsr.setResultMessage("All scripts for step '" + steptitle + "' executed successfully.");
-                                    gsr.setResultType(GoobiScriptResultType.OK);
-                                } else {
-                                    gsr.setResultMessage("A problem occured while executing all scripts for step '" + steptitle + "': " + returncode);
-                                    gsr.setResultType(GoobiScriptResultType.ERROR);
-                                }
-                            }
+        for (Step step : p.getSchritteList()) {
+            if (step.getTitel().equalsIgnoreCase(steptitle)) {
+                Step so = StepManager.getStepById(step.getId());
+                if (scriptname != null) {
+                    if (step.getAllScripts().containsKey(scriptname)) {
+                        String path = step.getAllScripts().get(scriptname);
+                        int returncode = hs.executeScriptForStepObject(so, path, false);
+                        Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Script '" + scriptname + "' for step '" + steptitle
+                                + "' executed using GoobiScript.", username);
+                        logger.info("Script '" + scriptname + "' for step '" + steptitle
+                                + "' executed using GoobiScript for process with ID " + p.getId());
+                        if (returncode == 0 || returncode == 98 || returncode == 99) {
+                            gsr.setResultMessage("Script '" + scriptname + "' for step '" + steptitle + "' executed successfully.");
+                            gsr.setResultType(GoobiScriptResultType.OK);
+                        } else {
+                            gsr.setResultMessage("A problem occured while executing script '" + scriptname + "' for step '" + steptitle
+                                    + "': " + returncode);
+                            gsr.setResultType(GoobiScriptResultType.ERROR);
                         }
+                    } else {
+                        gsr.setResultMessage("Cant find script '" + scriptname + "' for step '" + steptitle + "'.");
+                        gsr.setResultType(GoobiScriptResultType.ERROR);
+                    }
+                } else {
+                    int returncode = hs.executeAllScriptsForStep(so, false);
+                    Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "All scripts for step '" + steptitle
+                            + "' executed using GoobiScript.", username);
+                    logger.info("All scripts for step '" + steptitle + "' executed using GoobiScript for process with ID " + p.getId());
+                    if (returncode == 0 || returncode == 98 || returncode == 99) {
+                        gsr.setResultMessage("All scripts for step '" + steptitle + "' executed successfully.");
+                        gsr.setResultType(GoobiScriptResultType.OK);
+                    } else {
+                        gsr.setResultMessage("A problem occured while executing all scripts for step '" + steptitle + "': " + returncode);
+                        gsr.setResultType(GoobiScriptResultType.ERROR);
                     }
-                    gsr.updateTimestamp();
                 }
             }
         }
+        gsr.updateTimestamp();
     }
 
 }
@@ -1,6 +1,5 @@
 package org.goobi.goobiScript;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -45,7 +44,7 @@ public class GoobiScriptSetProject extends AbstractIGoobiScript implements IGoob
         
 		// add all valid commands to list
 		for (Integer i : processes) {
-			GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+			GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
 			resultList.add(gsr);
 		}
 		
@@ -53,38 +52,24 @@ public class GoobiScriptSetProject extends AbstractIGoobiScript implements IGoob
 	}
 
 	@Override
-	public void execute() {
-		SetProjectThread et = new SetProjectThread();
-		et.start();
-	}
-
-	class SetProjectThread extends Thread {
-		public void run() {
-			
-			// execute all jobs that are still in waiting state
-			ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-				if (gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-					Process p = ProcessManager.getProcessById(gsr.getProcessId());
-					gsr.setProcessTitle(p.getTitel());
-					gsr.setResultType(GoobiScriptResultType.RUNNING);
-					gsr.updateTimestamp();
-	                p.setProjekt(project);
-	                p.setProjectId(project.getId());
-	                try {
-						ProcessManager.saveProcess(p);
-						Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Project '" + project + "' assigned using GoobiScript.", username);
-	                    logger.info("Project '" + project + "' assigned using GoobiScript for process with ID " + p.getId());
-	                    gsr.setResultMessage("Project  '" + project + "' assigned successfully.");
-						gsr.setResultType(GoobiScriptResultType.OK);
-					} catch (DAOException e) {
-						gsr.setResultMessage("Problem assigning new project: " + e.getMessage());
-						gsr.setResultType(GoobiScriptResultType.OK);
-					}
-	                gsr.updateTimestamp();
-				}
-			}
+	public void execute(GoobiScriptResult gsr) {
+		Process p = ProcessManager.getProcessById(gsr.getProcessId());
+		gsr.setProcessTitle(p.getTitel());
+		gsr.setResultType(GoobiScriptResultType.RUNNING);
+		gsr.updateTimestamp();
+		p.setProjekt(project);
+		p.setProjectId(project.getId());
+		try {
+			ProcessManager.saveProcess(p);
+			Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Project '" + project + "' assigned using GoobiScript.", username);
+			logger.info("Project '" + project + "' assigned using GoobiScript for process with ID " + p.getId());
+			gsr.setResultMessage("Project  '" + project + "' assigned successfully.");
+			gsr.setResultType(GoobiScriptResultType.OK);
+		} catch (DAOException e) {
+			gsr.setResultMessage("Problem assigning new project: " + e.getMessage());
+			gsr.setResultType(GoobiScriptResultType.OK);
 		}
+		gsr.updateTimestamp();
 	}
 
 }
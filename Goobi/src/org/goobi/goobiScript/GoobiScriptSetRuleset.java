@@ -1,6 +1,5 @@
 package org.goobi.goobiScript;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -43,7 +42,7 @@ public class GoobiScriptSetRuleset extends AbstractIGoobiScript implements IGoob
         
 		// add all valid commands to list
 		for (Integer i : processes) {
-			GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+			GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
 			resultList.add(gsr);
 		}
 		
@@ -51,37 +50,23 @@ public class GoobiScriptSetRuleset extends AbstractIGoobiScript implements IGoob
 	}
 
 	@Override
-	public void execute() {
-		SetRulesetThread et = new SetRulesetThread();
-		et.start();
-	}
-
-	class SetRulesetThread extends Thread {
-		public void run() {
-			
-			// execute all jobs that are still in waiting state
-			ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-				if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-					Process p = ProcessManager.getProcessById(gsr.getProcessId());
-					gsr.setProcessTitle(p.getTitel());
-					gsr.setResultType(GoobiScriptResultType.RUNNING);
-					gsr.updateTimestamp();
-	                p.setRegelsatz(regelsatz);
-	                try {
-						ProcessManager.saveProcess(p);
-						Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Ruleset '" + regelsatz + "' assigned using GoobiScript.", username);
-	                    logger.info("Ruleset '" + regelsatz + "' assigned using GoobiScript for process with ID " + p.getId());
-	                    gsr.setResultMessage("Ruleset  '" + regelsatz + "' assigned successfully.");
-						gsr.setResultType(GoobiScriptResultType.OK);
-					} catch (DAOException e) {
-						gsr.setResultMessage("Problem assigning new ruleset: " + e.getMessage());
-						gsr.setResultType(GoobiScriptResultType.OK);
-					}
-	                gsr.updateTimestamp();
-				}
-			}
+	public void execute(GoobiScriptResult gsr) {
+		Process p = ProcessManager.getProcessById(gsr.getProcessId());
+		gsr.setProcessTitle(p.getTitel());
+		gsr.setResultType(GoobiScriptResultType.RUNNING);
+		gsr.updateTimestamp();
+		p.setRegelsatz(regelsatz);
+		try {
+			ProcessManager.saveProcess(p);
+			Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Ruleset '" + regelsatz + "' assigned using GoobiScript.", username);
+			logger.info("Ruleset '" + regelsatz + "' assigned using GoobiScript for process with ID " + p.getId());
+			gsr.setResultMessage("Ruleset  '" + regelsatz + "' assigned successfully.");
+			gsr.setResultType(GoobiScriptResultType.OK);
+		} catch (DAOException e) {
+			gsr.setResultMessage("Problem assigning new ruleset: " + e.getMessage());
+			gsr.setResultType(GoobiScriptResultType.OK);
 		}
+		gsr.updateTimestamp();
 	}
 
 }
@@ -1,6 +1,5 @@
 package org.goobi.goobiScript;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -41,7 +40,7 @@ public class GoobiScriptSetStepNumber extends AbstractIGoobiScript implements IG
         
 		// add all valid commands to list
 		for (Integer i : processes) {
-			GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+			GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
 			resultList.add(gsr);
 		}
 		
@@ -49,44 +48,31 @@ public class GoobiScriptSetStepNumber extends AbstractIGoobiScript implements IG
 	}
 
 	@Override
-	public void execute() {
-		TEMPLATEThread et = new TEMPLATEThread();
-		et.start();
-	}
+	public void execute(GoobiScriptResult gsr) {
+		Process p = ProcessManager.getProcessById(gsr.getProcessId());
+		gsr.setProcessTitle(p.getTitel());
+		gsr.setResultType(GoobiScriptResultType.RUNNING);
+		gsr.updateTimestamp();
 
-	class TEMPLATEThread extends Thread {
-		public void run() {
-			// execute all jobs that are still in waiting state
-			ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-				if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-					Process p = ProcessManager.getProcessById(gsr.getProcessId());
-					gsr.setProcessTitle(p.getTitel());
-					gsr.setResultType(GoobiScriptResultType.RUNNING);
-					gsr.updateTimestamp();
-					
-					for (Iterator<Step> iterator = p.getSchritteList().iterator(); iterator.hasNext();) {
-		                Step s = iterator.next();
-		                if (s.getTitel().equals(parameters.get("steptitle"))) {
-		                    s.setReihenfolge(Integer.parseInt(parameters.get("number")));
-		                    try {
-		                        StepManager.saveStep(s);
-		                        Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Changed order number of step '" + s.getTitel() + "' to '" + s.getReihenfolge() + "' using GoobiScript.", username);
-		                        logger.info("Changed order number of step '" + s.getTitel() + "' to '" + s.getReihenfolge() + "' using GoobiScript for process with ID " + p.getId());
-								gsr.setResultMessage("Changed order number of step '" + s.getTitel() + "' to '" + s.getReihenfolge() + "' successfully.");
-								gsr.setResultType(GoobiScriptResultType.OK);
-		                    } catch (DAOException e) {
-		                        logger.error("goobiScriptfield" + "Error while saving process: " + p.getTitel(), e);
-		                        gsr.setResultMessage("Error while changing the order number of step '" + s.getTitel() + "' to '" + s.getReihenfolge() + "'.");
-								gsr.setResultType(GoobiScriptResultType.ERROR);
-		                    }
-		                    break;
-		                }
-		            }
-					gsr.updateTimestamp();
+		for (Iterator<Step> iterator = p.getSchritteList().iterator(); iterator.hasNext();) {
+			Step s = iterator.next();
+			if (s.getTitel().equals(parameters.get("steptitle"))) {
+				s.setReihenfolge(Integer.parseInt(parameters.get("number")));
+				try {
+					StepManager.saveStep(s);
+					Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "Changed order number of step '" + s.getTitel() + "' to '" + s.getReihenfolge() + "' using GoobiScript.", username);
+					logger.info("Changed order number of step '" + s.getTitel() + "' to '" + s.getReihenfolge() + "' using GoobiScript for process with ID " + p.getId());
+					gsr.setResultMessage("Changed order number of step '" + s.getTitel() + "' to '" + s.getReihenfolge() + "' successfully.");
+					gsr.setResultType(GoobiScriptResultType.OK);
+				} catch (DAOException e) {
+					logger.error("goobiScriptfield" + "Error while saving process: " + p.getTitel(), e);
+					gsr.setResultMessage("Error while changing the order number of step '" + s.getTitel() + "' to '" + s.getReihenfolge() + "'.");
+					gsr.setResultType(GoobiScriptResultType.ERROR);
 				}
+				break;
 			}
 		}
+		gsr.updateTimestamp();
 	}
 
 }
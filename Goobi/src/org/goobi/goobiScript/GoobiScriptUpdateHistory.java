@@ -1,6 +1,5 @@
 package org.goobi.goobiScript;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -23,7 +22,7 @@ public class GoobiScriptUpdateHistory extends AbstractIGoobiScript implements IG
 
         // add all valid commands to list
         for (Integer i : processes) {
-            GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+            GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
             resultList.add(gsr);
         }
 
@@ -31,43 +30,29 @@ public class GoobiScriptUpdateHistory extends AbstractIGoobiScript implements IG
     }
 
     @Override
-    public void execute() {
-        UpdateHistoryThread et = new UpdateHistoryThread();
-        et.start();
-    }
-
-    class UpdateHistoryThread extends Thread {
-        @Override
-        public void run() {
-            // execute all jobs that are still in waiting state
-            ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-                if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-                    Process p = ProcessManager.getProcessById(gsr.getProcessId());
-                    gsr.setProcessTitle(p.getTitel());
-                    gsr.setResultType(GoobiScriptResultType.RUNNING);
-                    gsr.updateTimestamp();
-                    try {
-                        boolean result = HistoryAnalyserJob.updateHistoryForProzess(p);
-                        if (result) {
-                            Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "History updated using GoobiScript.", username);
-                            logger.info("History updated using GoobiScript for process with ID " + p.getId());
-                            gsr.setResultMessage("History updated successfully.");
-                            gsr.setResultType(GoobiScriptResultType.OK);
-                        } else {
-                            Helper.addMessageToProcessLog(p.getId(), LogType.ERROR, "History not successfully updated using GoobiScript.", username);
-                            logger.info("History could not be updated using GoobiScript for process with ID " + p.getId());
-                            gsr.setResultMessage("History update was not successful.");
-                            gsr.setResultType(GoobiScriptResultType.ERROR);
-                        }
-                    } catch (Exception e) {
-                        gsr.setResultMessage("History cannot be updated: " + e.getMessage());
-                        gsr.setResultType(GoobiScriptResultType.ERROR);
-                    }
-                    gsr.updateTimestamp();
-                }
+    public void execute(GoobiScriptResult gsr) {
+        Process p = ProcessManager.getProcessById(gsr.getProcessId());
+        gsr.setProcessTitle(p.getTitel());
+        gsr.setResultType(GoobiScriptResultType.RUNNING);
+        gsr.updateTimestamp();
+        try {
+            boolean result = HistoryAnalyserJob.updateHistoryForProzess(p);
+            if (result) {
+                Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "History updated using GoobiScript.", username);
+                logger.info("History updated using GoobiScript for process with ID " + p.getId());
+                gsr.setResultMessage("History updated successfully.");
+                gsr.setResultType(GoobiScriptResultType.OK);
+            } else {
+                Helper.addMessageToProcessLog(p.getId(), LogType.ERROR, "History not successfully updated using GoobiScript.", username);
+                logger.info("History could not be updated using GoobiScript for process with ID " + p.getId());
+                gsr.setResultMessage("History update was not successful.");
+                gsr.setResultType(GoobiScriptResultType.ERROR);
             }
+        } catch (Exception e) {
+            gsr.setResultMessage("History cannot be updated: " + e.getMessage());
+            gsr.setResultType(GoobiScriptResultType.ERROR);
         }
+        gsr.updateTimestamp();
     }
 
 }
@@ -1,6 +1,5 @@
 package org.goobi.goobiScript;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -27,7 +26,7 @@ public class GoobiScriptUpdateImagePath extends AbstractIGoobiScript implements
 
 		// add all valid commands to list
 		for (Integer i : processes) {
-			GoobiScriptResult gsr = new GoobiScriptResult(i, command, username);
+			GoobiScriptResult gsr = new GoobiScriptResult(i, command, userId, username);
 			resultList.add(gsr);
 		}
 
@@ -35,52 +34,39 @@ public class GoobiScriptUpdateImagePath extends AbstractIGoobiScript implements
 	}
 
 	@Override
-	public void execute() {
-		UpdateImagePathThread et = new UpdateImagePathThread();
-		et.start();
-	}
-
-	class UpdateImagePathThread extends Thread {
-		public void run() {
-			// execute all jobs that are still in waiting state
-			ArrayList<GoobiScriptResult> templist = new ArrayList<>(resultList);
-            for (GoobiScriptResult gsr : templist) {
-				if (gsm.getAreScriptsWaiting(command) && gsr.getResultType() == GoobiScriptResultType.WAITING && gsr.getCommand().equals(command)) {
-					Process p = ProcessManager.getProcessById(gsr.getProcessId());
-					gsr.setProcessTitle(p.getTitel());
-					gsr.setResultType(GoobiScriptResultType.RUNNING);
-					gsr.updateTimestamp();
-					try {
-						Fileformat myRdf = p.readMetadataFile();
-						UghHelper ughhelp = new UghHelper();
-						MetadataType mdt = ughhelp.getMetadataType(p, "pathimagefiles");
-						List<? extends ugh.dl.Metadata> alleImagepfade = myRdf.getDigitalDocument()
-								.getPhysicalDocStruct().getAllMetadataByType(mdt);
-						if (alleImagepfade.size() > 0) {
-							for (Metadata md : alleImagepfade) {
-								myRdf.getDigitalDocument().getPhysicalDocStruct().getAllMetadata().remove(md);
-							}
-						}
-						Metadata newmd = new Metadata(mdt);
-						if (SystemUtils.IS_OS_WINDOWS) {
-							newmd.setValue("file:/" + p.getImagesDirectory() + p.getTitel() + DIRECTORY_SUFFIX);
-						} else {
-							newmd.setValue("file://" + p.getImagesDirectory() + p.getTitel() + DIRECTORY_SUFFIX);
-						}
-						myRdf.getDigitalDocument().getPhysicalDocStruct().addMetadata(newmd);
-						p.writeMetadataFile(myRdf);
-						Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "ImagePath updated using GoobiScript.",username);
-						logger.info("ImagePath updated using GoobiScript for process with ID " + p.getId());
-						gsr.setResultMessage("ImagePath updated successfully.");
-						gsr.setResultType(GoobiScriptResultType.OK);
-					} catch (Exception e) {
-						gsr.setResultMessage("ImagePath cannot be updated: " + e.getMessage());
-						gsr.setResultType(GoobiScriptResultType.ERROR);
-					}
-					gsr.updateTimestamp();
+	public void execute(GoobiScriptResult gsr) {
+		Process p = ProcessManager.getProcessById(gsr.getProcessId());
+		gsr.setProcessTitle(p.getTitel());
+		gsr.setResultType(GoobiScriptResultType.RUNNING);
+		gsr.updateTimestamp();
+		try {
+			Fileformat myRdf = p.readMetadataFile();
+			UghHelper ughhelp = new UghHelper();
+			MetadataType mdt = ughhelp.getMetadataType(p, "pathimagefiles");
+			List<? extends ugh.dl.Metadata> alleImagepfade = myRdf.getDigitalDocument()
+					.getPhysicalDocStruct().getAllMetadataByType(mdt);
+			if (alleImagepfade.size() > 0) {
+				for (Metadata md : alleImagepfade) {
+					myRdf.getDigitalDocument().getPhysicalDocStruct().getAllMetadata().remove(md);
 				}
 			}
+			Metadata newmd = new Metadata(mdt);
+			if (SystemUtils.IS_OS_WINDOWS) {
+				newmd.setValue("file:/" + p.getImagesDirectory() + p.getTitel() + DIRECTORY_SUFFIX);
+			} else {
+				newmd.setValue("file://" + p.getImagesDirectory() + p.getTitel() + DIRECTORY_SUFFIX);
+			}
+			myRdf.getDigitalDocument().getPhysicalDocStruct().addMetadata(newmd);
+			p.writeMetadataFile(myRdf);
+			Helper.addMessageToProcessLog(p.getId(), LogType.DEBUG, "ImagePath updated using GoobiScript.",username);
+			logger.info("ImagePath updated using GoobiScript for process with ID " + p.getId());
+			gsr.setResultMessage("ImagePath updated successfully.");
+			gsr.setResultType(GoobiScriptResultType.OK);
+		} catch (Exception e) {
+			gsr.setResultMessage("ImagePath cannot be updated: " + e.getMessage());
+			gsr.setResultType(GoobiScriptResultType.ERROR);
 		}
+		gsr.updateTimestamp();
 	}
 
 }
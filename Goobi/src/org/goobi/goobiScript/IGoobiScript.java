@@ -7,6 +7,16 @@ public interface IGoobiScript {
 	
 	public abstract boolean prepare(List<Integer> processes, String command, HashMap<String, String> parameters);
     
+	/**
+	 * hand over all prepared entries to the {@link GoobiScriptEngine}
+	 */
 	public abstract void execute();
 
+	/**
+	 * execute the script for a single entry, called by the worker threads of the {@link GoobiScriptEngine}
+	 * 
+	 * @param gsr the entry to process
+	 */
+	public abstract void execute(GoobiScriptResult gsr);
+
 }
\ No newline at end of file
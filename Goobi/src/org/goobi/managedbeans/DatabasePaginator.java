@@ -27,14 +27,22 @@ package org.goobi.managedbeans;
  */
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.goobi.beans.DatabaseObject;
 
+import com.google.common.primitives.Ints;
+
 import de.sub.goobi.helper.Helper;
 import de.sub.goobi.helper.exceptions.DAOException;
+import de.sub.goobi.persistence.managers.FilterQuery;
+import de.sub.goobi.persistence.managers.IFilterQueryManager;
+import de.sub.goobi.persistence.managers.IKeysetManager;
 import de.sub.goobi.persistence.managers.IManager;
+import de.sub.goobi.persistence.managers.KeysetPage;
 
 public class DatabasePaginator implements Serializable {
     private static final long serialVersionUID = 1571881092118205104L;
@@ -45,11 +53,28 @@ public class DatabasePaginator implements Serializable {
     private int totalResults = 0;
     private String order = "";
     private String filter = new String();
+    // filter with bind parameters, used if the manager supports it
+    private FilterQuery filterQuery;
     private IManager manager;
     private String returnPage;
-    private List<Integer> idList;
+    // sort key of the last row of the loaded page, used to load the next page with keyset pagination. It is replaced on every load, so a key
+    // is never used after the data was loaded again
+    private Map<Integer, Object[]> seekKeys = new HashMap<>();
 
     public DatabasePaginator(String order, String filter, IManager manager, String returnPage) {
+        this(order, filter, null, manager, returnPage);
+    }
+
+    /**
+     * Creates a paginator for a filter with bind parameters. If the manager can not run it as prepared statement, the values are written into the
+     * statement.
+     */
+    public DatabasePaginator(String order, FilterQuery filter, IManager manager, String returnPage) {
+        this(order, manager instanceof IFilterQueryManager ? null : filter.toInlineSql(), manager instanceof IFilterQueryManager ? filter : null,
+                manager, returnPage);
+    }
+
+    private DatabasePaginator(String order, String filter, FilterQuery filterQuery, IManager manager, String returnPage) {
         this.page = 0;
         LoginBean login = (LoginBean) Helper.getManagedBeanValue("#{LoginForm}");
         if (login == null || login.getMyBenutzer() == null) {
@@ -59,10 +84,14 @@ public class DatabasePaginator implements Serializable {
         }
         this.order = order;
         this.filter = filter;
+        this.filterQuery = filterQuery;
         this.manager = manager;
         try {
-            totalResults = manager.getHitSize(order, filter);
-            idList = manager.getIdList(filter);
+            if (filterQuery != null) {
+                totalResults = ((IFilterQueryManager) manager).getHitSize(order, filterQuery);
+            } else {
+                totalResults = manager.getHitSize(order, filter);
+            }
             load();
         } catch (DAOException e) {
             logger.error("Failed to count results", e);
@@ -114,7 +143,23 @@ public class DatabasePaginator implements Serializable {
 
     public void load() {
         try {
-            results = manager.getList(order, filter, this.page * this.pageSize, pageSize);
+            if (manager instanceof IKeysetManager) {
+                // continue after the last row of the previous page, if it is known, otherwise fall back to the offset
+                Object[] seekKey = seekKeys.get(this.page);
+                seekKeys.clear();
+                KeysetPage keysetPage;
+                if (filterQuery != null) {
+                    keysetPage = ((IFilterQueryManager) manager).getPage(order, filterQuery, seekKey, this.page * this.pageSize, pageSize);
+                } else {
+                    keysetPage = ((IKeysetManager) manager).getPage(order, filter, seekKey, this.page * this.pageSize, pageSize);
+                }
+                results = keysetPage.getResults();
+                if (keysetPage.getLastKey() != null) {
+                    seekKeys.put(this.page + 1, keysetPage.getLastKey());
+                }
+            } else {
+                results = manager.getList(order, filter, this.page * this.pageSize, pageSize);
+            }
             for (DatabaseObject d : results) {
                 d.lazyLoad();
             }
@@ -197,6 +242,9 @@ public class DatabasePaginator implements Serializable {
 
     public List<? extends DatabaseObject> getCompleteList() {
         try {
+            if (filterQuery != null) {
+                return ((IFilterQueryManager) manager).getList(order, filterQuery, 0, Integer.MAX_VALUE);
+            }
             return manager.getList(order, filter, 0, Integer.MAX_VALUE);
         } catch (DAOException e) {
             logger.error("Failed to load paginated results", e);
@@ -209,8 +257,18 @@ public class DatabasePaginator implements Serializable {
         return returnPage;
     }
 
-    public List<Integer> getIdList() {
-        return idList;
+    /**
+     * Loads the ids of all hits. The ids are not kept in the paginator, as they can get very large, and are read into an array to avoid an object
+     * for each id.
+     * 
+     * @return ids of all hits
+     */
+    public int[] getIdArray() {
+        if (filterQuery != null) {
+            return ((IFilterQueryManager) manager).getIdArray(filterQuery);
+        }
+        List<Integer> ids = manager.getIdList(filter);
+        return ids == null ? new int[0] : Ints.toArray(ids);
     }
 
 }
@@ -27,6 +27,9 @@ package org.goobi.managedbeans;
  * exception statement from your version.
  */
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.DecimalFormat;
@@ -36,7 +39,6 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -56,12 +58,7 @@ import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.SystemUtils;
 import org.apache.log4j.Logger;
-import org.apache.poi.hssf.usermodel.HSSFCell;
-import org.apache.poi.hssf.usermodel.HSSFRow;
-import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.goobi.beans.Docket;
 import org.goobi.beans.Masterpiece;
@@ -97,7 +94,9 @@ import org.goobi.production.properties.Type;
 import org.jdom2.transform.XSLTransformException;
 import org.jfree.chart.plot.PlotOrientation;
 
+import com.google.common.primitives.Ints;
 import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
 import com.lowagie.text.PageSize;
 import com.lowagie.text.Rectangle;
 import com.lowagie.text.pdf.PdfPTable;
@@ -128,6 +127,7 @@ import de.sub.goobi.helper.exceptions.ExportFileException;
 import de.sub.goobi.helper.exceptions.SwapException;
 import de.sub.goobi.helper.exceptions.UghHelperException;
 import de.sub.goobi.persistence.managers.DocketManager;
+import de.sub.goobi.persistence.managers.FilterQuery;
 import de.sub.goobi.persistence.managers.HistoryManager;
 import de.sub.goobi.persistence.managers.MasterpieceManager;
 import de.sub.goobi.persistence.managers.MetadataManager;
@@ -498,29 +498,17 @@ public class ProcessBean extends BasicBean {
         this.statisticsManager = null;
         this.myAnzahlList = null;
         ProcessManager m = new ProcessManager();
-        String sql = FilterHelper.criteriaBuilder(filter, false, null, null, null, true, false);
+        FilterQuery sql = FilterHelper.compileFilter(filter, false, null, null, null, true, false);
         if (this.modusAnzeige.equals("vorlagen")) {
-            if (!sql.isEmpty()) {
-                sql = sql + " AND ";
-            }
-            sql = sql + " prozesse.istTemplate = true ";
+            sql = sql.and(" prozesse.istTemplate = true ");
         } else {
-            if (!sql.isEmpty()) {
-                sql = sql + " AND ";
-            }
-            sql = sql + " prozesse.istTemplate = false ";
+            sql = sql.and(" prozesse.istTemplate = false ");
         }
         if (!this.showClosedProcesses && !this.modusAnzeige.equals("vorlagen")) {
-            if (!sql.isEmpty()) {
-                sql = sql + " AND ";
-            }
-            sql = sql + " prozesse.sortHelperStatus <> '100000000' ";
+            sql = sql.and(" prozesse.sortHelperStatus <> '100000000' ");
         }
         if (!this.showArchivedProjects) {
-            if (!sql.isEmpty()) {
-                sql = sql + " AND ";
-            }
-            sql = sql + " prozesse.ProjekteID not in (select ProjekteID from projekte where projectIsArchived = true) ";
+            sql = sql.and(" prozesse.ProjekteID not in (select ProjekteID from projekte where projectIsArchived = true) ");
         }
 
         paginator = new DatabasePaginator(sortList(), sql, m, "process_all");
@@ -559,19 +547,13 @@ public class ProcessBean extends BasicBean {
         //            return "";
         //        }
 
-        String sql = FilterHelper.criteriaBuilder(filter, true, null, null, null, true, false);
+        FilterQuery sql = FilterHelper.compileFilter(filter, true, null, null, null, true, false);
 
         if (!this.showClosedProcesses && !this.modusAnzeige.equals("vorlagen")) {
-            if (!sql.isEmpty()) {
-                sql = sql + " AND ";
-            }
-            sql = sql + " prozesse.sortHelperStatus <> '100000000' ";
+            sql = sql.and(" prozesse.sortHelperStatus <> '100000000' ");
         }
         if (!this.showArchivedProjects) {
-            if (!sql.isEmpty()) {
-                sql = sql + " AND ";
-            }
-            sql = sql + " prozesse.ProjekteID not in (select ProjekteID from projekte where projectIsArchived = true) ";
+            sql = sql.and(" prozesse.ProjekteID not in (select ProjekteID from projekte where projectIsArchived = true) ");
         }
         ProcessManager m = new ProcessManager();
         paginator = new DatabasePaginator(sortList(), sql, m, "process_all");
@@ -598,29 +580,17 @@ public class ProcessBean extends BasicBean {
         this.statisticsManager = null;
         this.myAnzahlList = null;
 
-        String sql = FilterHelper.criteriaBuilder(filter, null, null, null, null, true, false);
+        FilterQuery sql = FilterHelper.compileFilter(filter, null, null, null, null, true, false);
         if (this.modusAnzeige.equals("vorlagen")) {
-            if (!sql.isEmpty()) {
-                sql = sql + " AND ";
-            }
-            sql = sql + " prozesse.istTemplate = true ";
+            sql = sql.and(" prozesse.istTemplate = true ");
         } else {
-            if (!sql.isEmpty()) {
-                sql = sql + " AND ";
-            }
-            sql = sql + " prozesse.istTemplate = false ";
+            sql = sql.and(" prozesse.istTemplate = false ");
         }
         if (!this.showClosedProcesses && !this.modusAnzeige.equals("vorlagen")) {
-            if (!sql.isEmpty()) {
-                sql = sql + " AND ";
-            }
-            sql = sql + " prozesse.sortHelperStatus <> '100000000' ";
+            sql = sql.and(" prozesse.sortHelperStatus <> '100000000' ");
         }
         if (!this.showArchivedProjects) {
-            if (!sql.isEmpty()) {
-                sql = sql + " AND ";
-            }
-            sql = sql + " prozesse.ProjekteID not in (select ProjekteID from projekte where projectIsArchived = true) ";
+            sql = sql.and(" prozesse.ProjekteID not in (select ProjekteID from projekte where projectIsArchived = true) ");
         }
 
         ProcessManager m = new ProcessManager();
@@ -1188,7 +1158,7 @@ public class ProcessBean extends BasicBean {
 
         for (Step so : stepList) {
             if (!(so.getBearbeitungsstatusEnum().equals(StepStatus.DONE) || so.getBearbeitungsstatusEnum().equals(StepStatus.DEACTIVATED))) {
-                so.setBearbeitungsstatusEnum(StepStatus.getStatusFromValue(so.getBearbeitungsstatusEnum().getValue() + 1));
+                so.setBearbeitungsstatusUp();
                 so.setEditTypeEnum(StepEditType.ADMIN);
                 if (so.getBearbeitungsstatusEnum().equals(StepStatus.DONE)) {
                     new HelperSchritte().CloseStepObjectAutomatic(so);
@@ -1728,7 +1698,7 @@ public class ProcessBean extends BasicBean {
         } else {
             calcSecurityNumber();
             GoobiScript gs = new GoobiScript();
-            return gs.execute(this.paginator.getIdList(), this.goobiScript);
+            return gs.execute(Ints.asList(this.paginator.getIdArray()), this.goobiScript);
 
         }
     }
@@ -2186,44 +2156,40 @@ public class ProcessBean extends BasicBean {
                 response.setHeader("Content-Disposition", "attachment;filename=\"search.pdf\"");
                 ServletOutputStream out = response.getOutputStream();
                 SearchResultHelper sch = new SearchResultHelper();
-                HSSFWorkbook wb = sch.getResult(prepareSearchColumnData(), this.filter, sortList(), this.showClosedProcesses,
-                        this.showArchivedProjects);
-
-                List<List<HSSFCell>> rowList = new ArrayList<>();
-                HSSFSheet mySheet = wb.getSheetAt(0);
-                Iterator<Row> rowIter = mySheet.rowIterator();
-                while (rowIter.hasNext()) {
-                    HSSFRow myRow = (HSSFRow) rowIter.next();
-                    Iterator<Cell> cellIter = myRow.cellIterator();
-                    List<HSSFCell> row = new ArrayList<>();
-                    while (cellIter.hasNext()) {
-                        HSSFCell myCell = (HSSFCell) cellIter.next();
-                        row.add(myCell);
-                    }
-                    rowList.add(row);
-                }
+                List<SearchColumn> columnList = SearchResultHelper.sortColumns(prepareSearchColumnData());
                 Document document = new Document();
                 Rectangle a4quer = new Rectangle(PageSize.A4.getHeight(), PageSize.A4.getWidth());
                 PdfWriter.getInstance(document, out);
                 document.setPageSize(a4quer);
                 document.open();
-                if (rowList.size() > 0) {
-                    //                    Paragraph p = new Paragraph(rowList.get(0).get(0).toString());
-                    //                    document.add(p);
-                    PdfPTable table = new PdfPTable(rowList.get(0).size());
+                if (!columnList.isEmpty()) {
+                    // the table is written to the document in parts, so only the rows of the current part are kept in memory
+                    final PdfPTable table = new PdfPTable(columnList.size());
                     table.setSpacingBefore(20);
-
-                    for (int i = 0; i < rowList.size(); i++) {
-
-                        List<HSSFCell> row = rowList.get(i);
-                        table.completeRow();
-                        for (int j = 0; j < row.size(); j++) {
-                            HSSFCell myCell = row.get(j);
-                            String stringCellValue = myCell.toString();
-                            table.addCell(stringCellValue);
-                        }
-
+                    table.setComplete(false);
+                    for (SearchColumn sc : columnList) {
+                        table.addCell(Helper.getTranslation(sc.getValue()));
                     }
+                    final Document pdf = document;
+                    sch.writeResult(columnList, this.filter, sortList(), this.showClosedProcesses, this.showArchivedProjects,
+                            new SearchResultHelper.ResultRowWriter() {
+                                private int rowNumber = 0;
+
+                                @Override
+                                public void writeRow(String[] values) throws IOException {
+                                    for (String value : values) {
+                                        table.addCell(value == null ? "" : value);
+                                    }
+                                    if (++rowNumber % SearchResultHelper.METADATA_BLOCK_SIZE == 0) {
+                                        try {
+                                            pdf.add(table);
+                                        } catch (DocumentException e) {
+                                            throw new IOException(e);
+                                        }
+                                    }
+                                }
+                            });
+                    table.setComplete(true);
                     document.add(table);
                 }
 
@@ -2246,20 +2212,38 @@ public class ProcessBean extends BasicBean {
             HttpServletResponse response = (HttpServletResponse) facesContext.getExternalContext().getResponse();
             try {
                 ServletContext servletContext = (ServletContext) facesContext.getExternalContext().getContext();
-                String contentType = servletContext.getMimeType("search.xls");
+                String contentType = servletContext.getMimeType("search.xlsx");
                 response.setContentType(contentType);
-                response.setHeader("Content-Disposition", "attachment;filename=\"search.xls\"");
+                response.setHeader("Content-Disposition", "attachment;filename=\"search.xlsx\"");
                 ServletOutputStream out = response.getOutputStream();
                 SearchResultHelper sch = new SearchResultHelper();
-                HSSFWorkbook wb = sch.getResult(prepareSearchColumnData(), this.filter, sortList(), this.showClosedProcesses,
-                        this.showArchivedProjects);
-
-                wb.write(out);
+                sch.writeResultAsExcel(prepareSearchColumnData(), this.filter, sortList(), this.showClosedProcesses, this.showArchivedProjects,
+                        out);
                 out.flush();
                 facesContext.responseComplete();
 
             } catch (IOException e) {
+                logger.error(e);
+            }
+        }
+    }
 
+    public void generateResultCsv() {
+        FacesContext facesContext = FacesContextHelper.getCurrentFacesContext();
+        if (!facesContext.getResponseComplete()) {
+            HttpServletResponse response = (HttpServletResponse) facesContext.getExternalContext().getResponse();
+            try {
+                response.setContentType("text/csv");
+                response.setCharacterEncoding("UTF-8");
+                response.setHeader("Content-Disposition", "attachment;filename=\"search.csv\"");
+                Writer out = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+                SearchResultHelper sch = new SearchResultHelper();
+                sch.writeResultAsCsv(prepareSearchColumnData(), this.filter, sortList(), this.showClosedProcesses, this.showArchivedProjects, out);
+                out.flush();
+                facesContext.responseComplete();
+
+            } catch (IOException e) {
+                logger.error(e);
             }
         }
     }
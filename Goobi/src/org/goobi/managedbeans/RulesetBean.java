@@ -56,6 +56,7 @@ public class RulesetBean extends BasicBean {
 		try {
 			if (hasValidRulesetFilePath(myRegelsatz, ConfigurationHelper.getInstance().getRulesetFolder())) {
 				RulesetManager.saveRuleset(myRegelsatz);
+				Ruleset.invalidatePreferences(myRegelsatz.getDatei());
 				paginator.load();
 				return FilterKein();
 			} else {
@@ -97,7 +97,7 @@ public class StatisticsBean {
      */
     public Long getAnzahlProzesse() {
         try {
-            return (long) new ProcessManager().getHitSize(null, null);
+            return (long) new ProcessManager().getHitSize(null, "");
         } catch (DAOException e) {
             Helper.setFehlerMeldung("fehlerBeimEinlesen", e.getMessage());
             return null;
@@ -68,11 +68,11 @@ import org.goobi.production.properties.PropertyParser;
 import de.sub.goobi.config.ConfigurationHelper;
 import de.sub.goobi.export.dms.ExportDms;
 import de.sub.goobi.export.download.TiffHeader;
+import de.sub.goobi.helper.AutomaticStepExecutor;
 import de.sub.goobi.helper.BatchStepHelper;
 import de.sub.goobi.helper.Helper;
 import de.sub.goobi.helper.HelperSchritte;
 import de.sub.goobi.helper.PropertyListObject;
-import de.sub.goobi.helper.ScriptThreadWithoutHibernate;
 import de.sub.goobi.helper.StorageProvider;
 import de.sub.goobi.helper.WebDav;
 import de.sub.goobi.helper.enums.HistoryEventType;
@@ -83,6 +83,7 @@ import de.sub.goobi.helper.exceptions.DAOException;
 import de.sub.goobi.metadaten.MetadatenImagesHelper;
 import de.sub.goobi.metadaten.MetadatenSperrung;
 import de.sub.goobi.metadaten.MetadatenVerifizierung;
+import de.sub.goobi.persistence.managers.FilterQuery;
 import de.sub.goobi.persistence.managers.HistoryManager;
 import de.sub.goobi.persistence.managers.MetadataManager;
 import de.sub.goobi.persistence.managers.ProcessManager;
@@ -183,17 +184,14 @@ public class StepBean extends BasicBean {
     public String FilterAlleStart() {
 
         StepManager m = new StepManager();
-        String sql = FilterHelper.criteriaBuilder(filter, false, nurOffeneSchritte, nurEigeneSchritte, hideStepsFromOtherUsers, false, true);
+        FilterQuery sql = FilterHelper.compileFilter(filter, false, nurOffeneSchritte, nurEigeneSchritte, hideStepsFromOtherUsers, false, true);
         if (!showAutomaticTasks) {
-            sql = "typAutomatisch = false AND " + sql;
+            sql = new FilterQuery("typAutomatisch = false").and(sql);
         }
         if (hideCorrectionTasks) {
-            sql = sql + " AND Prioritaet != 10 ";
+            sql = sql.and(" Prioritaet != 10 ");
         }
-        if (!sql.isEmpty()) {
-            sql = sql + " AND ";
-        }
-        sql = sql + " prozesse.ProjekteID not in (select ProjekteID from projekte where projectIsArchived = true) ";
+        sql = sql.and(" prozesse.ProjekteID not in (select ProjekteID from projekte where projectIsArchived = true) ");
         paginator = new DatabasePaginator(sortList(), sql, m, "task_all");
 
         return "task_all";
@@ -668,8 +666,7 @@ public class StepBean extends BasicBean {
                 StepManager.saveStep(step);
             }
             if (temp.isTypAutomatisch()) {
-                ScriptThreadWithoutHibernate myThread = new ScriptThreadWithoutHibernate(temp);
-                myThread.start();
+                AutomaticStepExecutor.getInstance().submit(temp);
             }
 
             StepManager.saveStep(mySchritt);
@@ -782,8 +779,7 @@ public class StepBean extends BasicBean {
             ProcessManager.saveProcessInformation(this.mySchritt.getProzess());
 
             if (temp.isTypAutomatisch()) {
-                ScriptThreadWithoutHibernate myThread = new ScriptThreadWithoutHibernate(temp);
-                myThread.start();
+                AutomaticStepExecutor.getInstance().submit(temp);
             }
         } catch (DAOException e) {
         }
@@ -0,0 +1,44 @@
+package org.goobi.production;
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *          - https://goobi.io
+ *          - https://www.intranda.com 
+ *          - https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import de.sub.goobi.persistence.managers.MySQLHelper;
+import de.sub.goobi.persistence.managers.ProcessLogWriter;
+
+/**
+ * Writes the waiting process log entries when the application stops. This listener is registered before all others, so it is called after
+ * them and gets the messages they write during shutdown as well. Afterwards the database connection pool is closed.
+ */
+public class ProcessLogWriterListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        // the writer is started on first use
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        ProcessLogWriter.shutdown();
+        MySQLHelper.shutdown();
+    }
+
+}
@@ -20,5 +20,6 @@ public enum GoobiScriptResultType {
     WAITING,
     RUNNING,
     ERROR,
-    OK;
+    OK,
+    CANCELLED;
 }
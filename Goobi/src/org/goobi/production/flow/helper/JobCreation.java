@@ -38,8 +38,8 @@ import org.goobi.production.cli.helper.CopyProcess;
 import org.goobi.production.importer.ImportObject;
 
 import de.sub.goobi.config.ConfigurationHelper;
+import de.sub.goobi.helper.AutomaticStepExecutor;
 import de.sub.goobi.helper.Helper;
-import de.sub.goobi.helper.ScriptThreadWithoutHibernate;
 import de.sub.goobi.helper.StorageProvider;
 import de.sub.goobi.helper.enums.StepStatus;
 import de.sub.goobi.helper.exceptions.DAOException;
@@ -103,8 +103,7 @@ public class JobCreation {
                     List<Step> steps = StepManager.getStepsForProcess(p.getId());
                     for (Step s : steps) {
                         if (s.getBearbeitungsstatusEnum().equals(StepStatus.OPEN) && s.isTypAutomatisch()) {
-                            ScriptThreadWithoutHibernate myThread = new ScriptThreadWithoutHibernate(s);
-                            myThread.start();
+                            AutomaticStepExecutor.getInstance().submit(s);
                         }
                     }
                     StorageProvider.getInstance().deleteDir(Paths.get(io.getMetsFilename()));
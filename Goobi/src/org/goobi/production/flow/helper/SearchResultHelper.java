@@ -19,21 +19,28 @@ package org.goobi.production.flow.helper;
  * 
  */
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Writer;
 import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import javax.faces.model.SelectItem;
 
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.dbutils.ResultSetHandler;
 import org.apache.commons.lang.StringUtils;
-import org.apache.poi.hssf.usermodel.HSSFCell;
-import org.apache.poi.hssf.usermodel.HSSFCellStyle;
-import org.apache.poi.hssf.usermodel.HSSFFont;
-import org.apache.poi.hssf.usermodel.HSSFRow;
-import org.apache.poi.hssf.usermodel.HSSFSheet;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.log4j.Logger;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.apache.poi.xwpf.usermodel.XWPFTable;
 import org.apache.poi.xwpf.usermodel.XWPFTableCell;
@@ -51,12 +58,26 @@ import com.lowagie.text.rtf.RtfWriter2;
 
 import de.sub.goobi.config.ConfigurationHelper;
 import de.sub.goobi.helper.Helper;
+import de.sub.goobi.helper.exceptions.DAOException;
 import de.sub.goobi.persistence.managers.MetadataManager;
 import de.sub.goobi.persistence.managers.ProcessManager;
 import de.sub.goobi.persistence.managers.PropertyManager;
 
 public class SearchResultHelper {
 
+    private static final Logger logger = Logger.getLogger(SearchResultHelper.class);
+
+    // number of rows of an xlsx export that are kept in memory
+    private static final int ROW_ACCESS_WINDOW = 100;
+
+    /**
+     * Number of processes whose metadata is loaded with a single query. Writers of the search result should flush their output after the same
+     * number of rows.
+     */
+    public static final int METADATA_BLOCK_SIZE = 500;
+
+    private static final int MAX_COLUMN_WIDTH = 15000;
+
     private List<SelectItem> possibleColumns = new ArrayList<>();
 
     public List<SelectItem> getPossibleColumns() {
@@ -173,8 +194,8 @@ public class SearchResultHelper {
 
     public XWPFDocument getResultAsWord(List<SearchColumn> columnList, String filter, String order, boolean showClosedProcesses,
             boolean showArchivedProjects) {
-        @SuppressWarnings("rawtypes")
-        List list = search(columnList, filter, order, showClosedProcesses, showArchivedProjects);
+        columnList = sortColumns(columnList);
+        List<String[]> list = search(columnList, filter, order, showClosedProcesses, showArchivedProjects);
 
         XWPFDocument doc = new XWPFDocument();
 
@@ -195,13 +216,12 @@ public class SearchResultHelper {
             cell.setText(Helper.getTranslation(sc.getValue()));
         }
 
-        for (Object obj : list) {
+        for (String[] objArr : list) {
             currentCol = 0;
-            Object[] objArr = (Object[]) obj;
             XWPFTableRow row = table.getRow(currentRow++);
-            for (Object entry : objArr) {
+            for (String entry : objArr) {
                 XWPFTableCell cell = row.getCell(currentCol++);
-                cell.setText((String) entry);
+                cell.setText(entry);
             }
         }
 
@@ -214,8 +234,8 @@ public class SearchResultHelper {
 
         RtfWriter2.getInstance(document, out);
 
-        @SuppressWarnings("rawtypes")
-        List list = search(columnList, filter, order, showClosedProcesses, showArchivedProjects);
+        columnList = sortColumns(columnList);
+        List<String[]> list = search(columnList, filter, order, showClosedProcesses, showArchivedProjects);
 
         document.open();
 
@@ -233,10 +253,9 @@ public class SearchResultHelper {
         }
         table.endHeaders();
 
-        for (Object obj : list) {
-            Object[] objArr = (Object[]) obj;
-            for (Object entry : objArr) {
-                Cell cell = new Cell((String) entry);
+        for (String[] objArr : list) {
+            for (String entry : objArr) {
+                Cell cell = new Cell(entry);
                 table.addCell(cell);
             }
 
@@ -251,66 +270,230 @@ public class SearchResultHelper {
         return;
     }
 
-    @SuppressWarnings("deprecation")
-    public HSSFWorkbook getResult(List<SearchColumn> columnList, String filter, String order, boolean showClosedProcesses,
-            boolean showArchivedProjects) {
-        List<SearchColumn> sortedList = new ArrayList<>(columnList.size());
-        for (SearchColumn sc : columnList) {
-            if (!sc.getTableName().startsWith("metadata")) {
-                sortedList.add(sc);
+    /**
+     * Write the search result as xlsx file. The rows are read from the database while the file is written and only a small window of rows is kept
+     * in memory, the others are flushed to a temporary file. This way exports with many processes don't need to fit into the heap.
+     * 
+     * @param columnList the columns to export
+     * @param filter the process filter
+     * @param order the sort order
+     * @param showClosedProcesses include closed processes
+     * @param showArchivedProjects include processes of archived projects
+     * @param out the stream to write the file to, it is not closed
+     * @throws IOException if the result could not be read or written
+     */
+    public void writeResultAsExcel(List<SearchColumn> columnList, String filter, String order, boolean showClosedProcesses,
+            boolean showArchivedProjects, OutputStream out) throws IOException {
+        columnList = sortColumns(columnList);
+
+        SXSSFWorkbook wb = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+        wb.setCompressTempFiles(true);
+        try {
+            final Sheet sheet = wb.createSheet("Search results");
+            Font cellFont = wb.createFont();
+            cellFont.setBold(true);
+            CellStyle cellStyle = wb.createCellStyle();
+            cellStyle.setFont(cellFont);
+
+            // create title row, autoSizeColumn does not work on flushed rows, so the width is calculated from the length of the values
+            final int[] columnWidths = new int[columnList.size()];
+            Row title = sheet.createRow(0);
+            for (int i = 0; i < columnList.size(); i++) {
+                org.apache.poi.ss.usermodel.Cell titleCell = title.createCell(i);
+                String label = Helper.getTranslation(columnList.get(i).getValue());
+                titleCell.setCellValue(label);
+                titleCell.setCellStyle(cellStyle);
+                columnWidths[i] = label == null ? 0 : label.length();
             }
-        }
-        for (SearchColumn sc : columnList) {
-            if (sc.getTableName().startsWith("metadata")) {
-                sortedList.add(sc);
+            sheet.createFreezePane(0, 1);
+
+            writeResult(columnList, filter, order, showClosedProcesses, showArchivedProjects, new ResultRowWriter() {
+                private int rowNumber = 1;
+
+                @Override
+                public void writeRow(String[] values) {
+                    Row row = sheet.createRow(rowNumber++);
+                    for (int i = 0; i < values.length; i++) {
+                        if (values[i] != null) {
+                            row.createCell(i).setCellValue(values[i]);
+                            columnWidths[i] = Math.max(columnWidths[i], values[i].length());
+                        }
+                    }
+                }
+            });
+
+            for (int i = 0; i < columnWidths.length; i++) {
+                sheet.setColumnWidth(i, Math.min(MAX_COLUMN_WIDTH, (columnWidths[i] + 2) * 256));
             }
+            wb.write(out);
+        } finally {
+            // remove the temporary files
+            wb.dispose();
         }
-        columnList = sortedList;
+    }
 
-        @SuppressWarnings("rawtypes")
-        List list = search(columnList, filter, order, showClosedProcesses, showArchivedProjects);
+    /**
+     * Write the search result as comma separated values. The rows are read from the database while they are written.
+     * 
+     * @param columnList the columns to export
+     * @param filter the process filter
+     * @param order the sort order
+     * @param showClosedProcesses include closed processes
+     * @param showArchivedProjects include processes of archived projects
+     * @param out the writer to use, it is flushed but not closed
+     * @throws IOException if the result could not be read or written
+     */
+    public void writeResultAsCsv(List<SearchColumn> columnList, String filter, String order, boolean showClosedProcesses,
+            boolean showArchivedProjects, Writer out) throws IOException {
+        columnList = sortColumns(columnList);
+        final CSVPrinter printer = new CSVPrinter(out, CSVFormat.DEFAULT);
+        for (SearchColumn sc : columnList) {
+            printer.print(Helper.getTranslation(sc.getValue()));
+        }
+        printer.println();
+        writeResult(columnList, filter, order, showClosedProcesses, showArchivedProjects, new ResultRowWriter() {
+            @Override
+            public void writeRow(String[] values) throws IOException {
+                printer.printRecord((Object[]) values);
+            }
+        });
+        printer.flush();
+    }
 
-        HSSFWorkbook wb = new HSSFWorkbook();
-        HSSFSheet sheet = wb.createSheet("Search results");
+    /**
+     * Receives the rows of a search result
+     */
+    public interface ResultRowWriter {
+        /**
+         * @param values the values of the row, in the order of the columns
+         * @throws IOException if the row could not be written, this stops the search
+         */
+        public void writeRow(String[] values) throws IOException;
+    }
 
-        // create title row
-        int titleColumnNumber = 0;
-        HSSFRow title = sheet.createRow(0);
-        int columnNumber = 0;
+    /**
+     * Run the search and pass each row to the writer as soon as it is read from the database. The values of the metadata columns are loaded for
+     * blocks of processes, so they are filled in after the other columns. The values are in the order of {@link #sortColumns(List)}.
+     * 
+     * @param columnList the columns to export
+     * @param filter the process filter
+     * @param order the sort order
+     * @param showClosedProcesses include closed processes
+     * @param showArchivedProjects include processes of archived projects
+     * @param writer receives the rows
+     * @throws IOException if the database could not be read or the writer failed
+     */
+    public void writeResult(List<SearchColumn> columnList, String filter, String order, boolean showClosedProcesses, boolean showArchivedProjects,
+            final ResultRowWriter writer) throws IOException {
+        columnList = sortColumns(columnList);
+        final int numberOfColumns = columnList.size();
+        final List<String> metadataNames = new ArrayList<>();
         for (SearchColumn sc : columnList) {
-            HSSFCell titleCell = title.createCell(titleColumnNumber++);
-            titleCell.setCellValue(Helper.getTranslation(sc.getValue()));
-            HSSFCellStyle cellStyle = wb.createCellStyle();
-            HSSFFont cellFont = wb.createFont();
-            cellFont.setBoldweight(HSSFFont.BOLDWEIGHT_BOLD);
-            cellStyle.setFont(cellFont);
-            titleCell.setCellStyle(cellStyle);
+            if (sc.getTableName().startsWith("metadata")) {
+                metadataNames.add(sc.getValue().substring("metadata.".length()));
+            }
         }
+        // the first column is the process id, followed by the order column
+        final int firstValueColumn = StringUtils.isNotBlank(order) ? 3 : 2;
+        final int firstMetadataColumn = numberOfColumns - metadataNames.size();
 
-        int rowNumber = 1;
-        for (Object obj : list) {
-            Object[] objArr = (Object[]) obj;
-            HSSFRow row = sheet.createRow(rowNumber++);
-            columnNumber = 0;
-            for (Object entry : objArr) {
-                HSSFCell cell = row.createCell(columnNumber++);
-                cell.setCellValue((String) entry);
+        String sql = buildQuery(columnList, filter, order, showClosedProcesses, showArchivedProjects);
+        try {
+            ProcessManager.runStreamingSQL(sql, new ResultSetHandler<Void>() {
+                @Override
+                public Void handle(ResultSet rs) throws SQLException {
+                    List<Integer> processIds = new ArrayList<>(METADATA_BLOCK_SIZE);
+                    List<String[]> rows = new ArrayList<>(METADATA_BLOCK_SIZE);
+                    try {
+                        while (rs.next()) {
+                            String[] row = new String[numberOfColumns];
+                            for (int i = 0; i < firstMetadataColumn; i++) {
+                                row[i] = rs.getString(firstValueColumn + i);
+                            }
+                            if (metadataNames.isEmpty()) {
+                                writer.writeRow(row);
+                            } else {
+                                processIds.add(rs.getInt(1));
+                                rows.add(row);
+                                if (rows.size() == METADATA_BLOCK_SIZE) {
+                                    writeBlock(processIds, rows, metadataNames, firstMetadataColumn, writer);
+                                }
+                            }
+                        }
+                        writeBlock(processIds, rows, metadataNames, firstMetadataColumn, writer);
+                    } catch (IOException e) {
+                        throw new SQLException(e);
+                    }
+                    return null;
+                }
+            });
+        } catch (DAOException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException && cause.getCause() instanceof IOException) {
+                throw (IOException) cause.getCause();
             }
+            throw new IOException(e);
         }
+    }
 
-        sheet.createFreezePane(0, 1);
-        for (int i = 0; i < columnList.size(); i++) {
-            sheet.autoSizeColumn(i);
-            if (sheet.getColumnWidth(i) > 15000) {
-                sheet.setColumnWidth(i, 15000);
+    private static void writeBlock(List<Integer> processIds, List<String[]> rows, List<String> metadataNames, int firstMetadataColumn,
+            ResultRowWriter writer) throws IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Map<Integer, Map<String, String>> metadata = MetadataManager.getMetadataValues(processIds, metadataNames);
+        for (int i = 0; i < rows.size(); i++) {
+            String[] row = rows.get(i);
+            Map<String, String> values = metadata.get(processIds.get(i));
+            for (int j = 0; j < metadataNames.size(); j++) {
+                String value = values == null ? null : values.get(metadataNames.get(j));
+                row[firstMetadataColumn + j] = value == null ? "" : value;
             }
+            writer.writeRow(row);
         }
+        processIds.clear();
+        rows.clear();
+    }
 
-        return wb;
+    private List<String[]> search(List<SearchColumn> columnList, String filter, String order, boolean showClosedProcesses,
+            boolean showArchivedProjects) {
+        final List<String[]> list = new ArrayList<>();
+        try {
+            writeResult(columnList, filter, order, showClosedProcesses, showArchivedProjects, new ResultRowWriter() {
+                @Override
+                public void writeRow(String[] values) {
+                    list.add(values);
+                }
+            });
+        } catch (IOException e) {
+            logger.error(e);
+        }
+        return list;
+    }
+
+    /**
+     * Order the columns like they appear in the result, the metadata columns are always at the end
+     * 
+     * @param columnList the selected columns
+     * @return a new list with the columns in the order of the result
+     */
+    public static List<SearchColumn> sortColumns(List<SearchColumn> columnList) {
+        List<SearchColumn> sortedList = new ArrayList<>(columnList.size());
+        for (SearchColumn sc : columnList) {
+            if (!sc.getTableName().startsWith("metadata")) {
+                sortedList.add(sc);
+            }
+        }
+        for (SearchColumn sc : columnList) {
+            if (sc.getTableName().startsWith("metadata")) {
+                sortedList.add(sc);
+            }
+        }
+        return sortedList;
     }
 
-    @SuppressWarnings({ "rawtypes", "unchecked" })
-    private List search(List<SearchColumn> columnList, String filter, String order, boolean showClosedProcesses, boolean showArchivedProjects) {
+    private String buildQuery(List<SearchColumn> columnList, String filter, String order, boolean showClosedProcesses,
+            boolean showArchivedProjects) {
         StringBuilder sb = new StringBuilder();
         sb.append("SELECT distinct prozesse.ProzesseID, ");
 
@@ -382,44 +565,6 @@ public class SearchResultHelper {
             sb.append(" ORDER BY " + order);
         }
 
-        List list = ProcessManager.runSQL(sb.toString());
-
-        for (int i = 0; i < list.size(); i++) {
-            // get metadata for each id
-            Object[] o = (Object[]) list.get(i);
-            String s = (String) o[0];
-
-            String metadataQuery = "select name, print from metadata where processid = " + s;
-            List<Object[]> metadataList = ProcessManager.runSQL(metadataQuery);
-
-            List<String> additionalColumns = new ArrayList<>();
-            for (SearchColumn sc : columnList) {
-                if (sc.getTableName().startsWith("metadata")) {
-                    String value = "";
-                    for (Object[] metadataRow : metadataList) {
-                        String metadataName = (String) metadataRow[0];
-                        String metadataValue = (String) metadataRow[1];
-                        if (sc.getValue().equalsIgnoreCase("metadata." + metadataName)) {
-
-                            value = metadataValue;
-                            break;
-                        }
-                    }
-                    additionalColumns.add(value);
-                }
-            }
-
-            Object[] currentEntry = (Object[]) list.get(i);
-            List<Object> values = Arrays.asList(currentEntry);
-            List newList = new ArrayList<>();
-            newList.addAll(values);
-            newList.addAll(additionalColumns);
-            newList.remove(0);
-            if (StringUtils.isNotBlank(order)) {
-                newList.remove(0);
-            }
-            list.set(i, newList.toArray());
-        }
-        return list;
+        return sb.toString();
     }
 }
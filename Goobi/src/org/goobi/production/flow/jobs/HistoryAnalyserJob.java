@@ -28,17 +28,28 @@ package org.goobi.production.flow.jobs;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.StringUtils;
 
 import org.goobi.beans.HistoryEvent;
 import org.goobi.beans.Process;
 import org.goobi.beans.Step;
 
+import de.sub.goobi.config.ConfigurationHelper;
 import de.sub.goobi.helper.Helper;
 import de.sub.goobi.helper.StorageProvider;
+import de.sub.goobi.helper.StorageProviderInterface;
 import de.sub.goobi.helper.enums.HistoryEventType;
 import de.sub.goobi.helper.exceptions.DAOException;
 import de.sub.goobi.helper.exceptions.SwapException;
@@ -49,6 +60,10 @@ import lombok.extern.log4j.Log4j;
 /**
  * HistoryJob proofs History of {@link Prozess} and creates missing {@link HistoryEvent}s
  * 
+ * Only the processes that were changed since the last complete run are analysed. A process counts as changed, if it was created or one of its
+ * tasks was edited, or if the modification date of its metadata or image folders is newer than the last run. The processes are analysed in
+ * parallel by a small pool of threads.
+ * 
  * @author Steffen Hankiewicz
  * @author Igor Toker
  * @version 15.06.2009
@@ -72,7 +87,7 @@ public class HistoryAnalyserJob extends AbstractGoobiJob {
      */
     @Override
     public void execute() {
-        updateHistoryForAllProcesses();
+        updateHistoryForChangedProcesses();
     }
 
     /**
@@ -93,41 +108,49 @@ public class HistoryAnalyserJob extends AbstractGoobiJob {
      * @throws IOException
      */
     public static Boolean updateHistory(Process inProcess) throws IOException, InterruptedException, SwapException, DAOException {
+        HistoryUpdate history = new HistoryUpdate(inProcess);
+        boolean updated = updateHistory(inProcess, history);
+        history.save();
+        return updated;
+    }
+
+    private static boolean updateHistory(Process inProcess, HistoryUpdate history) throws IOException, InterruptedException, SwapException,
+    DAOException {
         boolean updated = false;
         /* storage */
-        if (updateHistoryEvent(inProcess, HistoryEventType.storageDifference, getCurrentStorageSize(Paths.get(inProcess
+        if (history.updateHistoryEvent(HistoryEventType.storageDifference, getCurrentStorageSize(Paths.get(inProcess
                 .getProcessDataDirectory())))) {
             updated = true;
         }
 
-        if (updateHistoryEvent(inProcess, HistoryEventType.storageWorkDifference, getCurrentStorageSize(Paths.get(inProcess.getImagesTifDirectory(
+        if (history.updateHistoryEvent(HistoryEventType.storageWorkDifference, getCurrentStorageSize(Paths.get(inProcess.getImagesTifDirectory(
                 true))))) {
             updated = true;
         }
-        if (updateHistoryEvent(inProcess, HistoryEventType.storageMasterDifference, getCurrentStorageSize(Paths.get(inProcess.getImagesOrigDirectory(
+        if (history.updateHistoryEvent(HistoryEventType.storageMasterDifference, getCurrentStorageSize(Paths.get(inProcess.getImagesOrigDirectory(
                 true))))) {
             updated = true;
         }
 
         /* imagesWork */
         Integer numberWork = StorageProvider.getInstance().getNumberOfFiles(Paths.get(inProcess.getImagesTifDirectory(true)), ".tif");
-        if (updateHistoryEvent(inProcess, HistoryEventType.imagesWorkDiff, numberWork.longValue())) {
+        if (history.updateHistoryEvent(HistoryEventType.imagesWorkDiff, numberWork.longValue())) {
             updated = true;
         }
 
         /* imagesMaster */
         Integer numberMaster = StorageProvider.getInstance().getNumberOfFiles(Paths.get(inProcess.getImagesOrigDirectory(true)), ".tif");
-        if (updateHistoryEvent(inProcess, HistoryEventType.imagesMasterDiff, numberMaster.longValue())) {
+        if (history.updateHistoryEvent(HistoryEventType.imagesMasterDiff, numberMaster.longValue())) {
             updated = true;
         }
 
         /* metadata */
-        if (updateHistoryEvent(inProcess, HistoryEventType.metadataDiff, inProcess.getSortHelperMetadata().longValue())) {
+        if (history.updateHistoryEvent(HistoryEventType.metadataDiff, inProcess.getSortHelperMetadata().longValue())) {
             updated = true;
         }
 
         /* docstruct */
-        if (updateHistoryEvent(inProcess, HistoryEventType.docstructDiff, inProcess.getSortHelperDocstructs().longValue())) {
+        if (history.updateHistoryEvent(HistoryEventType.docstructDiff, inProcess.getSortHelperDocstructs().longValue())) {
             updated = true;
         }
 
@@ -141,7 +164,7 @@ public class HistoryAnalyserJob extends AbstractGoobiJob {
      * @return true, if changes are made and have to be saved to database
      */
     @SuppressWarnings("incomplete-switch")
-    private static Boolean updateHistoryForSteps(Process inProcess) {
+    private static boolean updateHistoryForSteps(Process inProcess, HistoryUpdate history) {
         Boolean isDirty = false;
         HistoryEvent he = null;
 
@@ -192,7 +215,7 @@ public class HistoryAnalyserJob extends AbstractGoobiJob {
 
                     // attempts to add a history event,
                     // exists method returns null if event already exists
-                    he = addHistoryEvent(step.getBearbeitungsende(), step.getReihenfolge(), step.getTitel(), HistoryEventType.stepDone, inProcess);
+                    he = history.addHistoryEvent(step.getBearbeitungsende(), step.getReihenfolge(), step.getTitel(), HistoryEventType.stepDone);
 
                     if (he != null) {
                         isDirty = true;
@@ -200,8 +223,8 @@ public class HistoryAnalyserJob extends AbstractGoobiJob {
 
                     // for each step done we need to create a step open event on
                     // that step based on the latest timestamp for the previous step
-                    he = addHistoryEvent(getTimestampFromPreviousStep(inProcess, step), step.getReihenfolge(), step.getTitel(),
-                            HistoryEventType.stepOpen, inProcess);
+                    he = history.addHistoryEvent(getTimestampFromPreviousStep(inProcess, step), step.getReihenfolge(), step.getTitel(),
+                            HistoryEventType.stepOpen);
 
                     if (he != null) {
                         isDirty = true;
@@ -233,8 +256,7 @@ public class HistoryAnalyserJob extends AbstractGoobiJob {
                         isDirty = true;
                     }
 
-                    he = addHistoryEvent(step.getBearbeitungsbeginn(), step.getReihenfolge(), step.getTitel(), HistoryEventType.stepInWork,
-                            inProcess);
+                    he = history.addHistoryEvent(step.getBearbeitungsbeginn(), step.getReihenfolge(), step.getTitel(), HistoryEventType.stepInWork);
 
                     if (he != null) {
                         isDirty = true;
@@ -244,8 +266,8 @@ public class HistoryAnalyserJob extends AbstractGoobiJob {
                     // for each step inwork we need to create a step open event on
                     // that step based on the latest timestamp from the previous
                     // step
-                    he = addHistoryEvent(getTimestampFromPreviousStep(inProcess, step), step.getReihenfolge(), step.getTitel(),
-                            HistoryEventType.stepOpen, inProcess);
+                    he = history.addHistoryEvent(getTimestampFromPreviousStep(inProcess, step), step.getReihenfolge(), step.getTitel(),
+                            HistoryEventType.stepOpen);
 
                     if (he != null) {
                         isDirty = true;
@@ -273,8 +295,7 @@ public class HistoryAnalyserJob extends AbstractGoobiJob {
                         isDirty = true;
                     }
 
-                    he = addHistoryEvent(step.getBearbeitungszeitpunkt(), step.getReihenfolge(), step.getTitel(), HistoryEventType.stepOpen,
-                            inProcess);
+                    he = history.addHistoryEvent(step.getBearbeitungszeitpunkt(), step.getReihenfolge(), step.getTitel(), HistoryEventType.stepOpen);
 
                     if (he != null) {
                         isDirty = true;
@@ -289,7 +310,7 @@ public class HistoryAnalyserJob extends AbstractGoobiJob {
 
             // adds for each step a step locked on the basis of the process
             // creation timestamp (new in 1.6)
-            he = addHistoryEvent(inProcess.getErstellungsdatum(), step.getReihenfolge(), step.getTitel(), HistoryEventType.stepLocked, inProcess);
+            he = history.addHistoryEvent(inProcess.getErstellungsdatum(), step.getReihenfolge(), step.getTitel(), HistoryEventType.stepLocked);
 
             if (he != null) {
                 isDirty = true;
@@ -298,7 +319,7 @@ public class HistoryAnalyserJob extends AbstractGoobiJob {
 
         // this method removes duplicate items from the history list, which
         // already happened to be there, isDirty will be automatically be set
-        if (getHistoryEventDuplicated(inProcess)) {
+        if (history.removeDuplicates()) {
             isDirty = true;
         }
 
@@ -306,126 +327,192 @@ public class HistoryAnalyserJob extends AbstractGoobiJob {
     }
 
     /**
+     * Size of Storage in Bytes per {@link Prozess}
      * 
-     * @param timeStamp
-     * @param stepOrder
-     * @param stepName
-     * @param type
-     * @param inProcess
-     * @return History event if event needs to be added, null if event(same kind, same time, same process ) already exists
+     * @return size in bytes, or 0 if error.
+     * @throws DAOException
+     * @throws SwapException
+     * @throws InterruptedException
+     * @throws IOException
      */
-    private static HistoryEvent addHistoryEvent(Date timeStamp, Integer stepOrder, String stepName, HistoryEventType type, Process inProcess) {
-        HistoryEvent he = new HistoryEvent(timeStamp, stepOrder, stepName, type, inProcess);
-
-        if (!getHistoryContainsEventAlready(he, inProcess)) {
-            HistoryManager.addHistoryEvent(he);
-            return he;
+    private static long getCurrentStorageSize(Path directory) throws IOException {
+        if (!StorageProvider.getInstance().isFileExists(directory)) {
+            return 0;
+        }
+        if (StorageProvider.getInstance().isDirectory(directory)) {
+            return StorageProvider.getInstance().getDirectorySize(directory);
         } else {
-            return null;
+            return StorageProvider.getInstance().getFileSize(directory);
         }
     }
 
     /**
-     * check if history already contains given event
-     * 
-     * @param inEvent given {@link HistoryEvent}
-     * @param inProcess given {@link Prozess}
-     * @return true, if {@link HistoryEvent} already exists
+     * updateHistoryForAllProcesses
      */
-    private static Boolean getHistoryContainsEventAlready(HistoryEvent inEvent, Process inProcess) {
-        List<HistoryEvent> list = HistoryManager.getHistoryEvents(inProcess.getId());
-        for (HistoryEvent historyItem : list) {
-            if (inEvent.getId() == null || !inEvent.getId().equals(historyItem.getId())) {
-                // this is required, in case items from the same list are
-                // compared
-                if (historyItem.equals(inEvent)) {
-                    return true;
-                }
-            }
+    public void updateHistoryForAllProcesses() {
+        log.info("start history updating for all processes");
+        Date runStart = new Date();
+        if (updateHistory(ProcessManager.getIDList(null))) {
+            HistoryManager.setWatermark(getJobName(), runStart);
         }
-        return false;
+        log.info("end history updating for all processes");
     }
 
     /**
-     * get stored value (all diffs as sum) from history
-     * 
-     * @return stored value as Long
+     * Update the history of all processes that were changed since the last complete run. If the job never finished before, all processes are
+     * analysed.
      */
-    private static Long getStoredValue(Process inProcess, HistoryEventType inType) {
-        long storedValue = 0;
-        List<HistoryEvent> list = HistoryManager.getHistoryEvents(inProcess.getId());
-        for (HistoryEvent historyItem : list) {
-            if (historyItem.getHistoryType() == inType) {
-                storedValue += historyItem.getNumericValue().longValue();
-            }
+    public void updateHistoryForChangedProcesses() {
+        Date runStart = new Date();
+        Date lastRun = HistoryManager.getWatermark(getJobName());
+        if (lastRun == null) {
+            updateHistoryForAllProcesses();
+            return;
+        }
+        log.info("start history updating for processes changed since " + lastRun);
+        Set<Integer> processIds = new LinkedHashSet<>(HistoryManager.getProcessIdsChangedSince(lastRun));
+        if (!ConfigurationHelper.getInstance().useS3()) {
+            // S3 has no folders with a modification date, here only the database changes are detected
+            processIds.addAll(getProcessIdsWithChangedFolders(lastRun));
         }
-        return storedValue;
+        if (updateHistory(processIds)) {
+            HistoryManager.setWatermark(getJobName(), runStart);
+        }
+        log.info("end history updating, " + processIds.size() + " processes analysed");
     }
 
     /**
-     * update history, if current value is different to stored value
-     * 
-     * @return true if value is different and history got updated, else false
+     * Find the process folders whose metadata or image folders were modified after the given date. The modification date of a folder changes
+     * when files are added, removed or replaced, so this finds new images and each new version of the metadata file.
      */
-    private static Boolean updateHistoryEvent(Process inProcess, HistoryEventType inType, Long inCurrentValue) {
-        long storedValue = getStoredValue(inProcess, inType);
-        long diff = inCurrentValue - storedValue;
-
-        // if storedValue is different to current value - update history
-        if (diff != 0) {
-            HistoryManager.addHistory(new Date(), diff, null, inType.getValue(), inProcess.getId());
-            return true;
-        } else {
-            return false;
+    private static Set<Integer> getProcessIdsWithChangedFolders(Date lastRun) {
+        Set<Integer> processIds = new LinkedHashSet<>();
+        StorageProviderInterface storage = StorageProvider.getInstance();
+        String metadataFolder = ConfigurationHelper.getInstance().getMetadataFolder();
+        for (String folderName : storage.listDirNames(metadataFolder)) {
+            if (!StringUtils.isNumeric(folderName)) {
+                continue;
+            }
+            Path processFolder = Paths.get(metadataFolder, folderName);
+            try {
+                if (isModifiedAfter(processFolder, lastRun)) {
+                    processIds.add(Integer.valueOf(folderName));
+                    continue;
+                }
+                Path imagesFolder = processFolder.resolve("images");
+                if (storage.isFileExists(imagesFolder)) {
+                    if (isModifiedAfter(imagesFolder, lastRun)) {
+                        processIds.add(Integer.valueOf(folderName));
+                        continue;
+                    }
+                    for (String imageFolderName : storage.listDirNames(imagesFolder.toString())) {
+                        if (isModifiedAfter(imagesFolder.resolve(imageFolderName), lastRun)) {
+                            processIds.add(Integer.valueOf(folderName));
+                            break;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // analyse the process, if the folder cannot be checked
+                log.warn("Cannot read modification date of " + processFolder, e);
+                processIds.add(Integer.valueOf(folderName));
+            }
         }
+        return processIds;
+    }
+
+    private static boolean isModifiedAfter(Path path, Date date) throws IOException {
+        return StorageProvider.getInstance().getLastModifiedDate(path) >= date.getTime();
     }
 
     /**
-     * Size of Storage in Bytes per {@link Prozess}
+     * Analyse the given processes with the configured number of threads
      * 
-     * @return size in bytes, or 0 if error.
-     * @throws DAOException
-     * @throws SwapException
-     * @throws InterruptedException
-     * @throws IOException
+     * @param processIds ids of the processes to analyse
+     * @return true, if all processes were analysed, false if the job was interrupted or a process failed. The watermark must not be moved then,
+     *         so the next run analyses the processes again.
      */
-    private static long getCurrentStorageSize(Path directory) throws IOException {
-        if (!StorageProvider.getInstance().isFileExists(directory)) {
-            return 0;
+    private static boolean updateHistory(Collection<Integer> processIds) {
+        ConfigurationHelper config = ConfigurationHelper.getInstance();
+        int numberOfThreads = Math.max(1, config.getHistoryAnalyserThreads());
+        final long delay = config.getHistoryAnalyserDelay();
+        final AtomicInteger failures = new AtomicInteger();
+        // a short queue with caller runs policy keeps the job from loading all processes at once
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(numberOfThreads * 2), new ThreadFactory() {
+                    private final AtomicInteger counter = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "history-analyser-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            for (final Integer processId : processIds) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!updateHistoryForProcess(processId)) {
+                            failures.incrementAndGet();
+                        }
+                        if (delay > 0) {
+                            try {
+                                Thread.sleep(delay);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
         }
-        if (StorageProvider.getInstance().isDirectory(directory)) {
-            return StorageProvider.getInstance().getDirectorySize(directory);
-        } else {
-            return StorageProvider.getInstance().getFileSize(directory);
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.debug("waiting for history analysis, " + executor.getQueue().size() + " processes left");
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            return false;
         }
+        if (failures.get() > 0) {
+            log.warn("History of " + failures.get() + " processes could not be updated, they are analysed again in the next run");
+            return false;
+        }
+        return true;
     }
 
     /**
-     * updateHistoryForAllProcesses
+     * @return false, if the history could not be updated
      */
-    public void updateHistoryForAllProcesses() {
-        log.info("start history updating for all processes");
+    private static boolean updateHistoryForProcess(Integer processId) {
         try {
-            List<Process> processList = ProcessManager.getAllProcesses();
-            for (Process proc : processList) {
-                log.debug("updating history entries for " + proc.getTitel());
-                try {
-                    if (!proc.isSwappedOutGui()) {
-                        if (true == updateHistory(proc) | updateHistoryForSteps(proc)) {
-                            ProcessManager.saveProcess(proc);
-                            log.debug("history updated for process " + proc.getId());
-                        }
-                    }
-                } catch (Exception e) {
-                    Helper.setFehlerMeldung("An error occured while scheduled storage calculation", e);
-                    log.error("ServletException occured while scheduled storage calculation", e);
-                }
+            Process proc = ProcessManager.getProcessById(processId);
+            if (proc == null || proc.isSwappedOutGui()) {
+                return true;
             }
+            log.debug("updating history entries for " + proc.getTitel());
+            HistoryUpdate history = new HistoryUpdate(proc);
+            updateHistory(proc, history);
+            boolean stepsChanged = updateHistoryForSteps(proc, history);
+            history.save();
+            if (stepsChanged) {
+                ProcessManager.saveProcess(proc);
+            }
+            log.debug("history updated for process " + proc.getId());
+            return true;
         } catch (Exception e) {
-            Helper.setFehlerMeldung("Another Exception occured while scheduled storage calculation", e);
-            log.error("Another Exception occured while scheduled storage calculation", e);
+            Helper.setFehlerMeldung("An error occured while scheduled storage calculation", e);
+            log.error("Exception occured while scheduled storage calculation for process " + processId, e);
+            return false;
         }
-        log.info("end history updating for all processes");
     }
 
     /**
@@ -477,30 +564,13 @@ public class HistoryAnalyserJob extends AbstractGoobiJob {
         return eventTimestamp;
     }
 
-    /**
-     * method iterates through the event list and checks if there are duplicate entries, if so it will remove the entry and return a true
-     * 
-     * @param inProcess
-     * @return
-     */
-    private static Boolean getHistoryEventDuplicated(Process inProcess) {
-        Boolean duplicateEventRemoved = false;
-        List<HistoryEvent> list = HistoryManager.getHistoryEvents(inProcess.getId());
-        for (HistoryEvent he : list) {
-            if (getHistoryContainsEventAlready(he, inProcess)) {
-                HistoryManager.deleteHistoryEvent(he);
-
-                duplicateEventRemoved = true;
-            }
-        }
-        return duplicateEventRemoved;
-    }
-
     public static Boolean updateHistoryForProzess(Process inProc) {
         Boolean updated = true;
         try {
-            updateHistory(inProc);
-            updateHistoryForSteps(inProc);
+            HistoryUpdate history = new HistoryUpdate(inProc);
+            updateHistory(inProc, history);
+            updateHistoryForSteps(inProc, history);
+            history.save();
         } catch (Exception ex) {
             log.warn("Updating history failed.", ex);
             updated = false;
@@ -0,0 +1,169 @@
+package org.goobi.production.flow.jobs;
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information. 
+ *     		- https://goobi.io
+ * 			- https://www.intranda.com
+ * 			- https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ * Linking this library statically or dynamically with other modules is making a combined work based on this library. Thus, the terms and conditions
+ * of the GNU General Public License cover the whole combination. As a special exception, the copyright holders of this library give you permission to
+ * link this library with independent modules to produce an executable, regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that you also meet, for each linked independent module, the terms and
+ * conditions of the license of that module. An independent module is a module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.goobi.beans.HistoryEvent;
+import org.goobi.beans.Process;
+
+import de.sub.goobi.helper.enums.HistoryEventType;
+import de.sub.goobi.persistence.managers.HistoryManager;
+
+/**
+ * Collects the changes on the history of a single process. The stored events are loaded once, all comparisons are done in memory and the
+ * changes are written in one batch by {@link #save()}.
+ */
+class HistoryUpdate {
+
+    private final Process process;
+
+    // stored events which are not deleted and the new events
+    private final List<HistoryEvent> events;
+
+    private final List<HistoryEvent> addedEvents = new ArrayList<>();
+
+    private final List<HistoryEvent> deletedEvents = new ArrayList<>();
+
+    HistoryUpdate(Process process) {
+        this(process, HistoryManager.getHistoryEvents(process.getId()));
+    }
+
+    HistoryUpdate(Process process, List<HistoryEvent> storedEvents) {
+        this.process = process;
+        this.events = new ArrayList<>(storedEvents);
+    }
+
+    /**
+     * 
+     * @param timeStamp
+     * @param stepOrder
+     * @param stepName
+     * @param type
+     * @return History event if event needs to be added, null if event(same kind, same time, same process ) already exists
+     */
+    HistoryEvent addHistoryEvent(Date timeStamp, Integer stepOrder, String stepName, HistoryEventType type) {
+        HistoryEvent he = new HistoryEvent(timeStamp, stepOrder, stepName, type, process);
+        if (events.contains(he)) {
+            return null;
+        }
+        events.add(he);
+        addedEvents.add(he);
+        return he;
+    }
+
+    /**
+     * get stored value (all diffs as sum) from history
+     * 
+     * @return stored value as Long
+     */
+    long getStoredValue(HistoryEventType inType) {
+        long storedValue = 0;
+        for (HistoryEvent historyItem : events) {
+            if (historyItem.getHistoryType() == inType && historyItem.getNumericValue() != null) {
+                storedValue += historyItem.getNumericValue().longValue();
+            }
+        }
+        return storedValue;
+    }
+
+    /**
+     * update history, if current value is different to stored value
+     * 
+     * @return true if value is different and history got updated, else false
+     */
+    boolean updateHistoryEvent(HistoryEventType inType, long inCurrentValue) {
+        long diff = inCurrentValue - getStoredValue(inType);
+        if (diff == 0) {
+            return false;
+        }
+        HistoryEvent he = new HistoryEvent(new Date(), diff, null, inType, process);
+        events.add(he);
+        addedEvents.add(he);
+        return true;
+    }
+
+    /**
+     * Remove events which are contained more than once, one of the equal events is kept
+     * 
+     * @return true, if any event was removed
+     */
+    boolean removeDuplicates() {
+        boolean removed = false;
+        List<HistoryEvent> kept = new ArrayList<>();
+        for (Iterator<HistoryEvent> iterator = events.iterator(); iterator.hasNext();) {
+            HistoryEvent he = iterator.next();
+            if (kept.contains(he)) {
+                iterator.remove();
+                if (!removeInstance(addedEvents, he)) {
+                    deletedEvents.add(he);
+                }
+                removed = true;
+            } else {
+                kept.add(he);
+            }
+        }
+        return removed;
+    }
+
+    // events are equal regardless of their id, so compare the instances
+    private static boolean removeInstance(List<HistoryEvent> list, HistoryEvent he) {
+        for (Iterator<HistoryEvent> iterator = list.iterator(); iterator.hasNext();) {
+            if (iterator.next() == he) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean hasChanges() {
+        return !addedEvents.isEmpty() || !deletedEvents.isEmpty();
+    }
+
+    List<HistoryEvent> getAddedEvents() {
+        return addedEvents;
+    }
+
+    List<HistoryEvent> getDeletedEvents() {
+        return deletedEvents;
+    }
+
+    /**
+     * Write the collected changes to the database
+     */
+    void save() {
+        if (hasChanges()) {
+            HistoryManager.saveHistoryEvents(addedEvents, deletedEvents);
+            addedEvents.clear();
+            deletedEvents.clear();
+        }
+    }
+}
@@ -39,6 +39,8 @@ import org.quartz.Trigger;
 import org.quartz.TriggerUtils;
 
 import de.sub.goobi.config.ConfigurationHelper;
+import de.sub.goobi.persistence.managers.SearchIndexManager;
+import de.sub.goobi.persistence.managers.StepPermissionManager;
 import lombok.extern.log4j.Log4j;
 
 /**
@@ -82,6 +84,9 @@ public class JobManager implements ServletContextListener {
         sched.start();
 
         initializeJob(new HistoryAnalyserJob(), "dailyHistoryAnalyser", sched);
+        initializeJob(new HistoryRebuildJob(), "dailyHistoryRebuild", sched);
+        initializeJob(new SearchIndexRebuildJob(), "dailySearchIndexRebuild", sched);
+        initializeJob(new StepPermissionRebuildJob(), "dailyStepPermissionRebuild", sched);
         // initializeJobNonConfigured(new DelayJob(), 1, sched);
         initializeJob(new DelayJob(), "dailyDelayJob", sched);
 
@@ -152,6 +157,28 @@ public class JobManager implements ServletContextListener {
         } catch (SchedulerException e) {
             log.error("daily JobManager could not be started", e);
         }
+        if (SearchIndexManager.initialize()) {
+            log.info("Search index is enabled but not complete, starting to build it");
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    new SearchIndexRebuildJob().execute();
+                }
+            }, "search-index-rebuild");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        if (StepPermissionManager.initialize()) {
+            log.info("Step permission table is enabled but not complete, starting to build it");
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    new StepPermissionRebuildJob().execute();
+                }
+            }, "step-permission-rebuild");
+            thread.setDaemon(true);
+            thread.start();
+        }
     }
 
     /**
@@ -29,7 +29,6 @@ package org.goobi.production.flow.statistics.hibernate;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.text.StrTokenizer;
 import org.apache.log4j.Logger;
@@ -37,11 +36,15 @@ import org.goobi.beans.User;
 import org.goobi.managedbeans.LoginBean;
 import org.goobi.production.enums.UserRole;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import de.sub.goobi.config.ConfigurationHelper;
 import de.sub.goobi.helper.Helper;
 import de.sub.goobi.helper.enums.StepStatus;
-import de.sub.goobi.persistence.managers.MySQLHelper;
-import net.sf.ehcache.search.expression.Criteria;
+import de.sub.goobi.persistence.managers.FilterQuery;
+import de.sub.goobi.persistence.managers.SearchIndexManager;
+import de.sub.goobi.persistence.managers.StepPermissionManager;
 
 /**
  * class provides methods used by implementations of IEvaluableFilter
@@ -54,6 +57,12 @@ public class FilterHelper {
     private static final Logger logger = Logger.getLogger(FilterHelper.class);
     private static String leftTruncationCharacter = "%";
     private static String rightTruncationCharacter = "%";
+
+    private static final int COMPILED_FILTERS_SIZE = 500;
+
+    // compiled filter expressions, mapped by the normalized terms of the filter
+    private static final Cache<List<String>, FilterQuery> COMPILED_FILTERS = CacheBuilder.newBuilder().maximumSize(COMPILED_FILTERS_SIZE).build();
+
     static {
         leftTruncationCharacter = ConfigurationHelper.getInstance().getDatabaseLeftTruncationCharacter();
         rightTruncationCharacter = ConfigurationHelper.getInstance().getDatabaseRightTruncationCharacter();
@@ -63,7 +72,7 @@ public class FilterHelper {
      * limit query to project (formerly part of ProzessverwaltungForm)
      * 
      */
-    protected static String limitToUserAccessRights() {
+    protected static String limitToUserAccessRights(List<Object> parameters) {
         /* restriction to specific projects if not with admin rights */
         String answer = "";
         LoginBean loginForm = (LoginBean) Helper.getManagedBeanValue("#{LoginForm}");
@@ -74,44 +83,63 @@ public class FilterHelper {
 
         if (aktuellerNutzer != null) {
             if (!loginForm.hasRole(UserRole.Workflow_General_Show_All_Projects.name())) {
-                answer = "prozesse.ProjekteID in (select ProjekteID from projektbenutzer where projektbenutzer.BenutzerID = " + aktuellerNutzer
-                        .getId() + ")";
-
+                answer = "prozesse.ProjekteID in (select ProjekteID from projektbenutzer where projektbenutzer.BenutzerID = ?)";
+                parameters.add(aktuellerNutzer.getId());
             }
         }
         return answer;
     }
 
     public static String limitToUserAssignedSteps(Boolean stepOpenOnly, Boolean userAssignedStepsOnly, Boolean hideStepsFromOtherUsers) {
+        List<Object> parameters = new ArrayList<>();
+        String answer = limitToUserAssignedSteps(stepOpenOnly, userAssignedStepsOnly, hideStepsFromOtherUsers, parameters);
+        return new FilterQuery(answer, parameters).toInlineSql();
+    }
+
+    protected static String limitToUserAssignedSteps(Boolean stepOpenOnly, Boolean userAssignedStepsOnly, Boolean hideStepsFromOtherUsers,
+            List<Object> parameters) {
         /* show only open Steps or those in use by current user */
         /* identify current user */
         LoginBean login = (LoginBean) Helper.getManagedBeanValue("#{LoginForm}");
         if (login == null || login.getMyBenutzer() == null) {
             return "";
         }
-        int userId = login.getMyBenutzer().getId();
+        Integer userId = login.getMyBenutzer().getId();
         StringBuilder answer = new StringBuilder();
 
         /*
          * -------------------------------- hits by user groups --------------------------------
          */
+        // states as stored in user_step_permissions
+        String states;
         if (stepOpenOnly) {
             answer.append(" (Bearbeitungsstatus = 1 OR Bearbeitungsstatus = 4) ");
+            states = "1, 4";
         } else if (userAssignedStepsOnly) {
-            answer.append(" BearbeitungsBenutzerID = " + userId + " AND  Bearbeitungsstatus = 2 ");
+            answer.append(" BearbeitungsBenutzerID = ? AND  Bearbeitungsstatus = 2 ");
+            parameters.add(userId);
+            states = "2";
         } else if (hideStepsFromOtherUsers) {
-            answer.append(" ((BearbeitungsBenutzerID = " + userId
-                    + " AND  Bearbeitungsstatus = 2) OR (Bearbeitungsstatus = 1 OR  Bearbeitungsstatus = 4)) ");
+            answer.append(" ((BearbeitungsBenutzerID = ? AND  Bearbeitungsstatus = 2) OR (Bearbeitungsstatus = 1 OR  Bearbeitungsstatus = 4)) ");
+            parameters.add(userId);
+            states = "1, 2, 4";
         } else {
             answer.append(" (Bearbeitungsstatus = 1 OR  Bearbeitungsstatus = 2 OR  Bearbeitungsstatus = 4) ");
+            states = "1, 2, 4";
+        }
 
+        if (StepPermissionManager.isAvailable()) {
+            /* assigned projects, user groups and users are stored in user_step_permissions */
+            answer.append(" AND schritte.SchritteID in (select stepid from user_step_permissions where userid = ? AND status in (" + states + "))");
+            parameters.add(userId);
+            return answer.toString();
         }
 
         /* only assigned projects */
 
         answer.append(
-                " AND schritte.ProzesseID in (select ProzesseID from prozesse where prozesse.ProjekteID in (select ProjekteID from projektbenutzer where projektbenutzer.BenutzerID = "
-                        + userId + "))");
+                " AND schritte.ProzesseID in (select ProzesseID from prozesse where prozesse.ProjekteID in (select ProjekteID from projektbenutzer where projektbenutzer.BenutzerID = ?))");
+        parameters.add(userId);
 
         /*
          * only steps assigned to the user groups the current user is member of
@@ -119,9 +147,10 @@ public class FilterHelper {
 
         answer.append(" AND ( schritte.SchritteID in (select distinct schritteberechtigtegruppen.schritteID from schritteberechtigtegruppen "
                 + "where schritteberechtigtegruppen.BenutzerGruppenID in (select benutzergruppenmitgliedschaft.BenutzerGruppenID from benutzergruppenmitgliedschaft "
-                + "where benutzergruppenmitgliedschaft.BenutzerID = " + userId
-                + ")) OR schritte.SchritteID in (select distinct schritteberechtigtebenutzer.schritteID "
-                + "from schritteberechtigtebenutzer where schritteberechtigtebenutzer.BenutzerID = " + userId + "))");
+                + "where benutzergruppenmitgliedschaft.BenutzerID = ?)) OR schritte.SchritteID in (select distinct schritteberechtigtebenutzer.schritteID "
+                + "from schritteberechtigtebenutzer where schritteberechtigtebenutzer.BenutzerID = ?))");
+        parameters.add(userId);
+        parameters.add(userId);
 
         return answer.toString();
 
@@ -196,21 +225,30 @@ public class FilterHelper {
         unknown
     }
 
+    /**
+     * @return the value with the configured truncation characters, used as parameter for a like condition
+     */
+    private static String like(String value) {
+        return leftTruncationCharacter + value + rightTruncationCharacter;
+    }
+
     /**
      * Filter processes for done steps range
      * 
      * @param tok part of filter string to use
      * @param inStatus {@link StepStatus} of searched step
      ****************************************************************************/
-    protected static String filterStepRange(String parameters, StepStatus inStatus, boolean negate) {
+    protected static String filterStepRange(String parameters, StepStatus inStatus, boolean negate, List<Object> values) {
+        Integer start = FilterHelper.getStepStart(parameters);
+        Integer end = FilterHelper.getStepEnd(parameters);
+        values.add(start);
+        values.add(end);
         if (!negate) {
-            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritte.Reihenfolge > " + FilterHelper.getStepStart(parameters)
-            + " AND schritte.Reihenfolge < + " + FilterHelper.getStepEnd(parameters) + " AND schritte.Bearbeitungsstatus = " + inStatus
-            .getValue().intValue() + ")";
+            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritte.Reihenfolge > ? AND schritte.Reihenfolge < ? AND schritte.Bearbeitungsstatus = "
+                    + inStatus.getValue().intValue() + ")";
         } else {
-            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritteID not in (select schritteId from schritte where schritte.Reihenfolge > "
-                    + FilterHelper.getStepStart(parameters) + " AND schritte.Reihenfolge < + " + FilterHelper.getStepEnd(parameters)
-                    + " AND schritte.Bearbeitungsstatus = " + inStatus.getValue().intValue() + "))";
+            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritteID not in (select schritteId from schritte where schritte.Reihenfolge > ? AND schritte.Reihenfolge < ? AND schritte.Bearbeitungsstatus = "
+                    + inStatus.getValue().intValue() + "))";
         }
     }
 
@@ -220,23 +258,21 @@ public class FilterHelper {
      * @param inStatus {@link StepStatus} of searched step
      * @param parameters part of filter string to use
      ****************************************************************************/
-    protected static String filterStepName(String parameters, StepStatus inStatus, boolean negate) {
-
+    protected static String filterStepName(String parameters, StepStatus inStatus, boolean negate, List<Object> values) {
+        values.add(like(parameters));
         if (!negate) {
-            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritte.Titel like '" + leftTruncationCharacter
-                    + StringEscapeUtils.escapeSql(parameters) + rightTruncationCharacter + "' AND schritte.Bearbeitungsstatus = " + inStatus
+            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritte.Titel like ? AND schritte.Bearbeitungsstatus = " + inStatus
                     .getValue().intValue() + ")";
 
         } else {
-            return " prozesse.ProzesseID not in (select ProzesseID from schritte where schritte.Titel like '" + leftTruncationCharacter
-                    + StringEscapeUtils.escapeSql(parameters) + rightTruncationCharacter + "' AND schritte.Bearbeitungsstatus = " + inStatus
-                    .getValue().intValue() + ")";
+            return " prozesse.ProzesseID not in (select ProzesseID from schritte where schritte.Titel like ? AND schritte.Bearbeitungsstatus = "
+                    + inStatus.getValue().intValue() + ")";
 
         }
     }
 
-    protected static String filterAutomaticSteps(String tok, boolean flagSteps) {
-        if (tok.substring(tok.indexOf(":") + 1).equalsIgnoreCase("true")) {
+    protected static String filterAutomaticSteps(String value) {
+        if (value.equalsIgnoreCase("true")) {
             return " prozesse.ProzesseID in (select ProzesseID from schritte where schritte.typAutomatisch = true )";
         } else {
             return " prozesse.ProzesseID in (select ProzesseID from schritte where schritte.typAutomatisch = false )";
@@ -249,13 +285,14 @@ public class FilterHelper {
      * @param parameters part of filter string to use
      * @param inStatus {@link StepStatus} of searched step
      ****************************************************************************/
-    protected static String filterStepMin(String parameters, StepStatus inStatus, boolean negate) {
+    protected static String filterStepMin(String parameters, StepStatus inStatus, boolean negate, List<Object> values) {
+        values.add(FilterHelper.getStepStart(parameters));
         if (!negate) {
-            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritte.Reihenfolge >= " + FilterHelper.getStepStart(parameters)
-            + " AND schritte.Bearbeitungsstatus = " + inStatus.getValue().intValue() + ")";
+            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritte.Reihenfolge >= ? AND schritte.Bearbeitungsstatus = "
+                    + inStatus.getValue().intValue() + ")";
         } else {
-            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritteID not in (select schritteId from schritte where schritte.Reihenfolge >= "
-                    + FilterHelper.getStepStart(parameters) + " AND schritte.Bearbeitungsstatus = " + inStatus.getValue().intValue() + "))";
+            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritteID not in (select schritteId from schritte where schritte.Reihenfolge >= ? AND schritte.Bearbeitungsstatus = "
+                    + inStatus.getValue().intValue() + "))";
         }
     }
 
@@ -265,13 +302,14 @@ public class FilterHelper {
      * @param parameters part of filter string to use
      * @param inStatus {@link StepStatus} of searched step
      ****************************************************************************/
-    protected static String filterStepMax(String parameters, StepStatus inStatus, boolean negate) {
+    protected static String filterStepMax(String parameters, StepStatus inStatus, boolean negate, List<Object> values) {
+        values.add(FilterHelper.getStepEnd(parameters));
         if (!negate) {
-            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritte.Reihenfolge <= " + FilterHelper.getStepEnd(parameters)
-            + " AND schritte.Bearbeitungsstatus = " + inStatus.getValue().intValue() + ")";
+            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritte.Reihenfolge <= ? AND schritte.Bearbeitungsstatus = "
+                    + inStatus.getValue().intValue() + ")";
         } else {
-            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritteID not in (select schritteId from schritte whereschritte.Reihenfolge <= "
-                    + FilterHelper.getStepEnd(parameters) + " AND schritte.Bearbeitungsstatus = " + inStatus.getValue().intValue() + "))";
+            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritteID not in (select schritteId from schritte where schritte.Reihenfolge <= ? AND schritte.Bearbeitungsstatus = "
+                    + inStatus.getValue().intValue() + "))";
         }
     }
 
@@ -281,180 +319,178 @@ public class FilterHelper {
      * @param parameters part of filter string to use
      * @param inStatus {@link StepStatus} of searched step
      ****************************************************************************/
-    protected static String filterStepExact(String parameters, StepStatus inStatus, boolean negate) {
+    protected static String filterStepExact(String parameters, StepStatus inStatus, boolean negate, List<Object> values) {
+        values.add(FilterHelper.getStepStart(parameters));
         if (!negate) {
-            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritte.Reihenfolge = " + FilterHelper.getStepStart(parameters)
-            + " AND schritte.Bearbeitungsstatus = " + inStatus.getValue().intValue() + ")";
+            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritte.Reihenfolge = ? AND schritte.Bearbeitungsstatus = "
+                    + inStatus.getValue().intValue() + ")";
         } else {
-            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritte.Reihenfolge <> " + FilterHelper.getStepStart(parameters)
-            + " AND schritte.Bearbeitungsstatus = " + inStatus.getValue().intValue() + ")";
+            return " prozesse.ProzesseID in (select ProzesseID from schritte where schritte.Reihenfolge <> ? AND schritte.Bearbeitungsstatus = "
+                    + inStatus.getValue().intValue() + ")";
         }
     }
 
     /**
      * Filter processes for done steps by user
      * 
-     * @param tok part of filter string to use
+     * @param value login of the user
      ****************************************************************************/
-    protected static String filterStepDoneUser(String tok) {
+    protected static String filterStepDoneUser(String value, List<Object> values) {
         /*
          * filtering by a certain done step, which the current user finished
          */
-
-        String login = tok.substring(tok.indexOf(":") + 1).replace("\\_", "_");
-
-        return " prozesse.ProzesseID in (select ProzesseID from schritte where schritte.BearbeitungsBenutzerID = (select BenutzerID from benutzer where benutzer.login = '"
-        + login + "'))";
+        values.add(value.replace("\\_", "_"));
+        return " prozesse.ProzesseID in (select ProzesseID from schritte where schritte.BearbeitungsBenutzerID = (select BenutzerID from benutzer where benutzer.login = ?))";
     }
 
     /**
      * Filter processes by project
      * 
-     * @param tok part of filter string to use
+     * @param value part of filter string to use
      ****************************************************************************/
-    protected static String filterProject(String tok, boolean negate) {
+    protected static String filterProject(String value, boolean negate, List<Object> values) {
         /* filter according to linked project */
+        values.add(like(value));
         if (!negate) {
-            return " prozesse.ProjekteID in (select ProjekteID from projekte where titel like '" + leftTruncationCharacter + StringEscapeUtils
-                    .escapeSql(tok.substring(tok.indexOf(":") + 1)) + rightTruncationCharacter + "')";
+            return " prozesse.ProjekteID in (select ProjekteID from projekte where titel like ?)";
         } else {
-            return " prozesse.ProjekteID in (select ProjekteID from projekte where titel not like '" + leftTruncationCharacter + StringEscapeUtils
-                    .escapeSql(tok.substring(tok.indexOf(":") + 1)) + rightTruncationCharacter + "')";
+            return " prozesse.ProjekteID in (select ProjekteID from projekte where titel not like ?)";
         }
     }
 
     /**
      * Filter processes by scan template
      * 
-     * @param tok part of filter string to use
+     * @param value part of filter string to use
      ****************************************************************************/
-    protected static String filterScanTemplate(String tok, boolean negate) {
+    protected static String filterScanTemplate(String value, boolean negate, List<Object> values) {
         /* Filtering by signature */
-        String[] ts = tok.substring(tok.indexOf(":") + 1).split(":");
-        if (!negate) {
-            if (ts.length > 1) {
-                return " prozesse.prozesseID in (select prozesseID from vorlagen where vorlagenID in (select vorlagenID from vorlageneigenschaften where vorlageneigenschaften.WERT like '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[1]) + rightTruncationCharacter
-                        + "' AND vorlageneigenschaften.Titel LIKE '" + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[0])
-                        + rightTruncationCharacter + "'))";
-
-            } else {
-                return " prozesse.prozesseID in (select prozesseID from vorlagen where vorlagenID in (select vorlagenID from vorlageneigenschaften where vorlageneigenschaften.WERT like '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[0]) + rightTruncationCharacter + "'))";
-
-            }
+        String[] ts = value.split(":");
+        String condition;
+        if (ts.length > 1) {
+            condition = "vorlageneigenschaften.WERT like ? AND vorlageneigenschaften.Titel LIKE ?";
+            values.add(like(ts[1]));
+            values.add(like(ts[0]));
         } else {
-            if (ts.length > 1) {
-                return " prozesse.prozesseID not in (select prozesseID from vorlagen where vorlagenID in (select vorlagenID from vorlageneigenschaften where vorlageneigenschaften.WERT like '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[1]) + rightTruncationCharacter
-                        + "' AND vorlageneigenschaften.Titel LIKE '" + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[0])
-                        + rightTruncationCharacter + "'))";
-
-            } else {
-                return " prozesse.prozesseID not in (select prozesseID from vorlagen where vorlagenID in (select vorlagenID from vorlageneigenschaften where vorlageneigenschaften.WERT like '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[0]) + rightTruncationCharacter + "'))";
-
-            }
+            condition = "vorlageneigenschaften.WERT like ?";
+            values.add(like(ts[0]));
         }
+        return " prozesse.prozesseID " + (negate ? "not in" : "in")
+                + " (select prozesseID from vorlagen where vorlagenID in (select vorlagenID from vorlageneigenschaften where " + condition + "))";
     }
 
-    protected static String filterStepProperty(String tok, boolean negate) {
+    protected static String filterStepProperty(String value, boolean negate, List<Object> values) {
         /* Filtering by signature */
-        String[] ts = tok.substring(tok.indexOf(":") + 1).split(":");
-        if (!negate) {
-            if (ts.length > 1) {
-                return " prozesse.prozesseID in (select distinct ProzesseID from schritte where schritte.schritteID in (select schritteID from schritteeigenschaften where Wert like ''"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[1]) + rightTruncationCharacter + "' " + " AND Titel like '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[0]) + rightTruncationCharacter + "' ))";
-
-            } else {
-                return " prozesse.prozesseID in (select distinct ProzesseID from schritte where schritte.schritteID in (select schritteID from schritteeigenschaften where Wert like '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[0]) + rightTruncationCharacter + "'))";
-            }
+        String[] ts = value.split(":");
+        String condition;
+        if (ts.length > 1) {
+            condition = "Wert like ? AND Titel like ?";
+            values.add(like(ts[1]));
+            values.add(like(ts[0]));
         } else {
-            if (ts.length > 1) {
-                return " prozesse.prozesseID in (select distinct ProzesseID from schritte where schritte.schritteID not in (select schritteID from schritteeigenschaften where Wert like '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[1]) + rightTruncationCharacter + "' " + " AND Titel like '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[0]) + rightTruncationCharacter + "' ))";
-
-            } else {
-                return " prozesse.prozesseID in (select distinct ProzesseID from schritte where schritte.schritteID not in (select schritteID from schritteeigenschaften where Wert like '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[0]) + rightTruncationCharacter + "'))";
-            }
+            condition = "Wert like ?";
+            values.add(like(ts[0]));
         }
+        return " prozesse.prozesseID in (select distinct ProzesseID from schritte where schritte.schritteID " + (negate ? "not in" : "in")
+                + " (select schritteID from schritteeigenschaften where " + condition + "))";
     }
 
-    protected static String filterProcessProperty(String tok, boolean negate) {
+    protected static String filterProcessProperty(String value, boolean negate, List<Object> values) {
         /* Filtering by signature */
-        /* Filtering by signature */
-        String[] ts = tok.substring(tok.indexOf(":") + 1).split(":");
-        if (!negate) {
-            if (ts.length > 1) {
-                return "prozesse.ProzesseID in (select prozesseID from prozesseeigenschaften where prozesseeigenschaften.Titel like '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[0]) + rightTruncationCharacter
-                        + "' AND prozesseeigenschaften.Wert like '" + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[1])
-                        + rightTruncationCharacter + "' )";
+        String[] ts = value.split(":");
+        String condition;
+        if (ts.length > 1) {
+            condition = "prozesseeigenschaften.Titel like ? AND prozesseeigenschaften.Wert like ?";
+            values.add(like(ts[0]));
+            values.add(like(ts[1]));
+        } else {
+            condition = "prozesseeigenschaften.Wert like ?";
+            values.add(like(ts[0]));
+        }
+        return "prozesse.ProzesseID " + (negate ? "not in" : "in") + " (select prozesseID from prozesseeigenschaften where " + condition + ")";
+    }
 
-            } else {
-                return "prozesse.ProzesseID in (select prozesseID from prozesseeigenschaften where prozesseeigenschaften.Wert like '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[0]) + rightTruncationCharacter + "' )";
+    /**
+     * Create a subquery that selects the ids of the processes using the search index, see {@link SearchIndexManager}. All words must be found
+     * within the same field or log entry. The words of the field have to start with the given words, if a right truncation character is
+     * configured, otherwise they have to be equal.
+     * 
+     * @param table the table of the index
+     * @param sameColumns the columns that must be equal for all words
+     * @param condition an additional condition for the first word, may be null
+     * @param tokens the words to search for
+     * @param values list of parameters, the values of the words are added
+     * @return the subquery
+     */
+    private static String searchIndexQuery(String table, String[] sameColumns, String condition, List<String> tokens, List<Object> values) {
+        StringBuilder from = new StringBuilder(" from " + table + " t0");
+        StringBuilder where = new StringBuilder(" where ");
+        if (condition != null) {
+            where.append(condition).append(" AND ");
+        }
+        for (int i = 0; i < tokens.size(); i++) {
+            String alias = "t" + i;
+            if (i > 0) {
+                from.append(" join " + table + " " + alias + " on ");
+                for (int j = 0; j < sameColumns.length; j++) {
+                    if (j > 0) {
+                        from.append(" AND ");
+                    }
+                    from.append(alias + "." + sameColumns[j] + " = t0." + sameColumns[j]);
+                }
+                where.append(" AND ");
             }
-        } else {
-            if (ts.length > 1) {
-                return "prozesse.ProzesseID not in (select prozesseID from prozesseeigenschaften where prozesseeigenschaften.Titel like  '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[0]) + rightTruncationCharacter
-                        + "' AND prozesseeigenschaften.Wert like '" + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[1])
-                        + rightTruncationCharacter + "' )";
+            if (rightTruncationCharacter.isEmpty()) {
+                where.append(alias + ".token = ?");
+                values.add(tokens.get(i));
             } else {
-                return "prozesse.ProzesseID not in (select prozesseID from prozesseeigenschaften where prozesseeigenschaften.Wert like '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[0]) + rightTruncationCharacter + "' )";
+                where.append(alias + ".token like ?");
+                values.add(tokens.get(i) + rightTruncationCharacter);
             }
         }
+        return "select t0.processid" + from + where;
     }
 
-    protected static String filterMetadataValue(String tok, boolean negate) {
-
-        String[] ts = tok.substring(tok.indexOf(":") + 1).split(":");
-        if (!negate) {
-
-            return "prozesse.ProzesseID in (select distinct processid from metadata where metadata.name like  '" + leftTruncationCharacter
-                    + StringEscapeUtils.escapeSql(ts[0]) + rightTruncationCharacter + "' AND metadata.value like '" + leftTruncationCharacter
-                    + StringEscapeUtils.escapeSql(ts[1]) + rightTruncationCharacter + "' )";
-
-        } else {
-
-            return "prozesse.ProzesseID not in (select distinct processid from metadata where metadata.name like  '" + leftTruncationCharacter
-                    + StringEscapeUtils.escapeSql(ts[0]) + rightTruncationCharacter + "' AND metadata.value like '" + leftTruncationCharacter
-                    + StringEscapeUtils.escapeSql(ts[1]) + rightTruncationCharacter + "' )";
+    protected static String filterMetadataValue(String value, boolean negate, List<Object> values) {
 
+        String[] ts = value.split(":");
+        if (SearchIndexManager.isAvailable()) {
+            List<String> tokens = SearchIndexManager.tokenize(ts[1]);
+            if (!tokens.isEmpty()) {
+                values.add(like(ts[0]));
+                return "prozesse.ProzesseID " + (negate ? "not in" : "in") + " (" + searchIndexQuery("metadata_tokens", new String[] { "processid",
+                        "name" }, "t0.name like ?", tokens, values) + ")";
+            }
         }
+        values.add(like(ts[0]));
+        values.add(like(ts[1]));
+        return "prozesse.ProzesseID " + (negate ? "not in" : "in")
+                + " (select distinct processid from metadata where metadata.name like ? AND metadata.value like ? )";
     }
 
-    protected static String filterProcessLog(String tok, boolean negate) {
-        String query = "";
-        if (!negate) {
-            query = "prozesse.ProzesseID in (select distinct processId from processlog where processlog.content like '" + leftTruncationCharacter
-                    + StringEscapeUtils.escapeSql(tok.substring(tok.indexOf(":") + 1)) + rightTruncationCharacter + "')";
-        } else {
-            query = "prozesse.ProzesseID not in (select distinct processId from processlog where processlog.content like '" + leftTruncationCharacter
-                    + StringEscapeUtils.escapeSql(tok.substring(tok.indexOf(":") + 1)) + rightTruncationCharacter + "')";
+    protected static String filterProcessLog(String value, boolean negate, List<Object> values) {
+        if (SearchIndexManager.isAvailable()) {
+            List<String> tokens = SearchIndexManager.tokenize(value);
+            if (!tokens.isEmpty()) {
+                return "prozesse.ProzesseID " + (negate ? "not in" : "in") + " (" + searchIndexQuery("processlog_tokens", new String[] { "logid" },
+                        null, tokens, values) + ")";
+            }
         }
-
-        return query;
+        values.add(like(value));
+        return "prozesse.ProzesseID " + (negate ? "not in" : "in") + " (select distinct processId from processlog where processlog.content like ?)";
     }
 
     /**
      * Filter processes by Ids
      * 
-     * @param crit {@link Criteria} to extend
-     * @param tok part of filter string to use
+     * @param value list of ids, separated by spaces
      ****************************************************************************/
-    protected static String filterIds(String tok, boolean negation) {
+    protected static String filterIds(String value, boolean negation, List<Object> values) {
         /* filtering by ids */
         String answer = "";
         List<Integer> listIds = new ArrayList<>();
-        if (tok.substring(tok.indexOf(":") + 1).length() > 0) {
-            String[] tempids = tok.substring(tok.indexOf(":") + 1).split(" ");
+        if (value.length() > 0) {
+            String[] tempids = value.split(" ");
             for (int i = 0; i < tempids.length; i++) {
                 try {
                     int tempid = Integer.parseInt(tempids[i]);
@@ -471,7 +507,8 @@ public class FilterHelper {
                 answer = " prozesse.prozesseId in (";
             }
             for (int id : listIds) {
-                answer += id + ", ";
+                answer += "?, ";
+                values.add(id);
             }
             answer = answer.substring(0, answer.length() - 2);
             answer += ")";
@@ -482,38 +519,22 @@ public class FilterHelper {
     /**
      * Filter processes by workpiece
      * 
-     * @param crit {@link Criteria} to extend
-     * @param tok part of filter string to use
+     * @param value part of filter string to use
      ****************************************************************************/
-    protected static String filterWorkpiece(String tok, boolean negate) {
+    protected static String filterWorkpiece(String value, boolean negate, List<Object> values) {
         /* filter according signature */
-        String[] ts = tok.substring(tok.indexOf(":") + 1).split(":");
-        if (!negate) {
-            if (ts.length > 1) {
-                return " prozesse.prozesseID in (select werkstuecke.prozesseID from werkstuecke where WerkstueckeID in (select WerkstueckeID from werkstueckeeigenschaften where werkstueckeeigenschaften.WERT like '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[1]) + rightTruncationCharacter
-                        + "' AND werkstueckeeigenschaften.Titel LIKE '" + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[0])
-                        + rightTruncationCharacter + "'))";
-            } else {
-
-                return " prozesse.prozesseID in (select werkstuecke.prozesseID from werkstuecke where WerkstueckeID in (select WerkstueckeID from werkstueckeeigenschaften where werkstueckeeigenschaften.WERT like '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[0]) + rightTruncationCharacter + "'))";
-            }
+        String[] ts = value.split(":");
+        String condition;
+        if (ts.length > 1) {
+            condition = "werkstueckeeigenschaften.WERT like ? AND werkstueckeeigenschaften.Titel LIKE ?";
+            values.add(like(ts[1]));
+            values.add(like(ts[0]));
         } else {
-            if (ts.length > 1) {
-                return " prozesse.prozesseID in (select werkstuecke.prozesseID from werkstuecke where WerkstueckeID not in (select WerkstueckeID from werkstueckeeigenschaften where werkstueckeeigenschaften.WERT like '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[1]) + rightTruncationCharacter
-                        + "' AND werkstueckeeigenschaften.Titel LIKE '" + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[0])
-                        + rightTruncationCharacter + "'))";
-
-            } else {
-
-                return " prozesse.prozesseID in (select prozesseID from werkstuecke where WerkstueckeID not in (select WerkstueckeID from werkstueckeeigenschaften where werkstueckeeigenschaften.WERT like '"
-                        + leftTruncationCharacter + StringEscapeUtils.escapeSql(ts[0]) + rightTruncationCharacter + "'))";
-
-            }
-
+            condition = "werkstueckeeigenschaften.WERT like ?";
+            values.add(like(ts[0]));
         }
+        return " prozesse.prozesseID in (select werkstuecke.prozesseID from werkstuecke where WerkstueckeID " + (negate ? "not in" : "in")
+                + " (select WerkstueckeID from werkstueckeeigenschaften where " + condition + "))";
     }
 
     private static StringBuilder checkStringBuilder(StringBuilder filter, boolean conjunction) {
@@ -536,6 +557,8 @@ public class FilterHelper {
      * and depending on which data structures are used for applying filtering restrictions conjunctions are formed and collect the restrictions and
      * then will be applied on the corresponding criteria. A criteria is only added if needed for the presence of filters applying to it.
      * 
+     * The searched values are written into the returned condition. Use {@link #compileFilter(String, Boolean, Boolean, Boolean, Boolean, boolean, boolean)}
+     * to get a condition with bind parameters.
      * 
      * @param inFilter
      * @param crit
@@ -547,39 +570,31 @@ public class FilterHelper {
      */
     public static String criteriaBuilder(String inFilter, Boolean isTemplate, Boolean stepOpenOnly, Boolean userAssignedStepsOnly,
             Boolean hideStepsFromOtherUsers, boolean isProcess, boolean isStep) {
-        if (inFilter == null) {
-            inFilter = "";
-        }
-        inFilter = inFilter.trim();
-        inFilter = MySQLHelper.escapeString(inFilter);
-
-        inFilter = inFilter.replace("(", " ( ").replace(")", " ) ");
+        return compileFilter(inFilter, isTemplate, stepOpenOnly, userAssignedStepsOnly, hideStepsFromOtherUsers, isProcess, isStep).toInlineSql();
+    }
 
+    /**
+     * Builds the condition for a filter string, like {@link #criteriaBuilder(String, Boolean, Boolean, Boolean, Boolean, boolean, boolean)}. All
+     * searched values and the id of the current user are bound as parameters, so the statement text only depends on the structure of the filter.
+     * 
+     * The compiled filter expressions are cached, the restrictions for the current user are added for each call.
+     * 
+     * @return the condition and its parameters
+     */
+    public static FilterQuery compileFilter(String inFilter, Boolean isTemplate, Boolean stepOpenOnly, Boolean userAssignedStepsOnly,
+            Boolean hideStepsFromOtherUsers, boolean isProcess, boolean isStep) {
         StringBuilder filter = new StringBuilder();
-        boolean flagSteps = false;
-        boolean flagProcesses = false;
-
-        if (isProcess) {
-            flagProcesses = true;
-        }
+        List<Object> parameters = new ArrayList<>();
 
         if (isStep) {
-            flagSteps = true;
             filter = checkStringBuilder(filter, true);
             filter.append(" prozesse.prozesseId not in (select prozesse.prozesseID from prozesse where prozesse.istTemplate = true) ");
         }
 
-        // to collect and return feedback about erroneous use of filter
-        // expressions
-
-        StrTokenizer tokenizer = new StrTokenizer(inFilter, ' ', '\"');
-
-        // conjunctions collecting conditions
-
         // this is needed if we filter processes
-        if (flagProcesses) {
+        if (isProcess) {
             filter = checkStringBuilder(filter, true);
-            filter.append(limitToUserAccessRights());
+            filter.append(limitToUserAccessRights(parameters));
 
             if (isTemplate != null) {
 
@@ -595,328 +610,212 @@ public class FilterHelper {
         }
 
         // this is needed if we filter steps
-        if (flagSteps) {
+        if (isStep) {
             filter = checkStringBuilder(filter, true);
-            filter.append(limitToUserAssignedSteps(stepOpenOnly, userAssignedStepsOnly, hideStepsFromOtherUsers));
+            filter.append(limitToUserAssignedSteps(stepOpenOnly, userAssignedStepsOnly, hideStepsFromOtherUsers, parameters));
         }
 
-        if (!inFilter.isEmpty()) {
+        FilterQuery expression = getExpression(inFilter, isStep);
+        if (!expression.isEmpty()) {
             filter = checkStringBuilder(filter, true);
-
-            filter.append("(");
+            filter.append(expression.getSql());
+            parameters.addAll(expression.getParameters());
         }
-        // this is needed for evaluating a filter string
-        while (tokenizer.hasNext()) {
-            String tok = tokenizer.nextToken().trim();
-            if (tok.equals("(")) {
-                filter.append("(");
-            } else if (tok.equals(")")) {
-                filter.append(")");
-            }
+        return new FilterQuery(filter.toString(), parameters);
+    }
 
-            else if (tok.toLowerCase().startsWith(FilterString.PROCESSPROPERTY) || tok.toLowerCase().startsWith(FilterString.PROZESSEIGENSCHAFT)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterProcessProperty(tok, false));
-            } else if (tok.toLowerCase().startsWith(FilterString.STEPPROPERTY) || tok.toLowerCase().startsWith(FilterString.SCHRITTEIGENSCHAFT)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterStepProperty(tok, false));
+    /**
+     * Get the condition for the filter string from the cache or compile it. The cache key consists of the normalized terms of the filter and
+     * everything else that changes the generated condition. Filters with id lists are not cached, they are usually generated and used only once.
+     */
+    private static FilterQuery getExpression(String inFilter, boolean flagSteps) {
+        List<FilterParser.Term> terms = FilterParser.parse(inFilter);
+        if (terms.isEmpty()) {
+            return new FilterQuery("");
+        }
+        List<String> key = new ArrayList<>(terms.size() + 1);
+        key.add(flagSteps + " " + SearchIndexManager.isAvailable());
+        boolean cacheable = true;
+        for (FilterParser.Term term : terms) {
+            key.add(term.toString());
+            if (term.getKeyword() == FilterParser.Keyword.ID) {
+                cacheable = false;
             }
-
-            else if (tok.toLowerCase().startsWith(FilterString.METADATA)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterMetadataValue(tok, false));
+        }
+        FilterQuery expression = cacheable ? COMPILED_FILTERS.getIfPresent(key) : null;
+        if (expression == null) {
+            expression = compileExpression(terms, flagSteps);
+            if (cacheable) {
+                COMPILED_FILTERS.put(key, expression);
             }
+        }
+        return expression;
+    }
 
-            // search over steps
-            // original filter, is left here for compatibility reason
-            // doesn't fit into new keyword scheme
-            else if (tok.toLowerCase().startsWith(FilterString.STEP) || tok.toLowerCase().startsWith(FilterString.SCHRITT)) {
-                if (flagSteps) {
+    private static FilterQuery compileExpression(List<FilterParser.Term> terms, boolean flagSteps) {
+        StringBuilder filter = new StringBuilder("(");
+        List<Object> values = new ArrayList<>();
+        for (FilterParser.Term term : terms) {
+            if (term.getType() == FilterParser.Type.OPEN) {
+                filter.append("(");
+                continue;
+            } else if (term.getType() == FilterParser.Type.CLOSE) {
+                filter.append(")");
+                continue;
+            }
+            String value = term.getValue();
+            boolean negate = term.isNegate();
+            switch (term.getKeyword()) {
+                case PROCESSPROPERTY:
+                    filter = checkStringBuilder(filter, !term.isDisjunction());
+                    filter.append(filterProcessProperty(value, negate, values));
+                    break;
+                case STEPPROPERTY:
+                    filter = checkStringBuilder(filter, !term.isDisjunction());
+                    filter.append(filterStepProperty(value, negate, values));
+                    break;
+                case METADATA:
+                    filter = checkStringBuilder(filter, !term.isDisjunction());
+                    filter.append(filterMetadataValue(value, negate, values));
+                    break;
+                case STEP:
+                    // original filter, is left here for compatibility reason
+                    // doesn't fit into new keyword scheme
+                    if (flagSteps) {
+                        filter = checkStringBuilder(filter, true);
+                        filter.append(createHistoricFilter(value, values));
+                    }
+                    break;
+                case STEPINWORK:
+                    filter = checkStringBuilder(filter, !term.isDisjunction());
+                    filter.append(createStepFilters(value, StepStatus.INWORK, negate, values));
+                    break;
+                case STEPLOCKED:
+                    filter = checkStringBuilder(filter, !term.isDisjunction());
+                    filter.append(createStepFilters(value, StepStatus.LOCKED, negate, values));
+                    break;
+                case STEPOPEN:
+                    filter = checkStringBuilder(filter, !term.isDisjunction());
+                    filter.append(createStepFilters(value, StepStatus.OPEN, negate, values));
+                    break;
+                case STEPDONE:
+                    filter = checkStringBuilder(filter, !term.isDisjunction());
+                    filter.append(createStepFilters(value, StepStatus.DONE, negate, values));
+                    break;
+                case STEPERROR:
                     filter = checkStringBuilder(filter, true);
-                    filter.append(createHistoricFilter(tok, flagSteps));
-                }
-            } else if (tok.toLowerCase().startsWith(FilterString.STEPINWORK) || tok.toLowerCase().startsWith(FilterString.SCHRITTINARBEIT)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(createStepFilters(tok, StepStatus.INWORK, false));
-
-                // new keyword stepLocked implemented
-            } else if (tok.toLowerCase().startsWith(FilterString.STEPLOCKED) || tok.toLowerCase().startsWith(FilterString.SCHRITTGESPERRT)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(createStepFilters(tok, StepStatus.LOCKED, false));
-
-                // new keyword stepOpen implemented
-            } else if (tok.toLowerCase().startsWith(FilterString.STEPOPEN) || tok.toLowerCase().startsWith(FilterString.SCHRITTOFFEN)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(createStepFilters(tok, StepStatus.OPEN, false));
-
-                // new keyword stepDone implemented
-            } else if (tok.toLowerCase().startsWith(FilterString.STEPDONE) || tok.toLowerCase().startsWith(FilterString.SCHRITTABGESCHLOSSEN)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(createStepFilters(tok, StepStatus.DONE, false));
-            } else if (tok.toLowerCase().startsWith(FilterString.STEPERROR)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(createStepFilters(tok, StepStatus.ERROR, false));
-            } else if (tok.toLowerCase().startsWith(FilterString.STEPDEACTIVATED)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(createStepFilters(tok, StepStatus.DEACTIVATED, false));
-                // new keyword stepDoneTitle implemented, replacing so far
-                // undocumented
-            } else if (tok.toLowerCase().startsWith(FilterString.STEPDONETITLE) || tok.toLowerCase().startsWith(
-                    FilterString.ABGESCHLOSSENERSCHRITTTITEL)) {
-
-                String stepTitel = tok.substring(tok.indexOf(":") + 1);
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterStepName(stepTitel, StepStatus.DONE, false));
-
-            } else if (tok.toLowerCase().startsWith(FilterString.STEPDONEUSER) || tok.toLowerCase().startsWith(
-                    FilterString.ABGESCHLOSSENERSCHRITTBENUTZER)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterStepDoneUser(tok));
-            } else if (tok.toLowerCase().startsWith(FilterString.STEPAUTOMATIC) || tok.toLowerCase().startsWith(FilterString.SCHRITTAUTOMATISCH)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterAutomaticSteps(tok, flagSteps));
-            } else if (tok.toLowerCase().startsWith(FilterString.PROJECT) || tok.toLowerCase().startsWith(FilterString.PROJEKT)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterProject(tok, false));
-
-            } else if (tok.toLowerCase().startsWith(FilterString.TEMPLATE) || tok.toLowerCase().startsWith(FilterString.VORLAGE)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterScanTemplate(tok, false));
-
-            } else if (tok.toLowerCase().startsWith(FilterString.ID)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterIds(tok, false));
-
-            } else if (tok.toLowerCase().startsWith(FilterString.PROCESS) || tok.toLowerCase().startsWith(FilterString.PROZESS)) {
-
-                filter = checkStringBuilder(filter, true);
-                filter.append(" prozesse.Titel like '" + leftTruncationCharacter + StringEscapeUtils.escapeSql(tok.substring(tok.indexOf(":") + 1))
-                + rightTruncationCharacter + "'");
-
-            } else if (tok.toLowerCase().startsWith(FilterString.PROCESSLOG)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(filterProcessLog(tok, false));
-            } else if (tok.toLowerCase().startsWith(FilterString.BATCH) || tok.toLowerCase().startsWith(FilterString.GRUPPE)) {
-                try {
-                    String substring = tok.substring(tok.indexOf(":") + 1);
+                    filter.append(createStepFilters(value, StepStatus.ERROR, negate, values));
+                    break;
+                case STEPDEACTIVATED:
+                    filter = checkStringBuilder(filter, true);
+                    filter.append(createStepFilters(value, StepStatus.DEACTIVATED, negate, values));
+                    break;
+                case STEPQUEUED:
+                    filter = checkStringBuilder(filter, true);
+                    filter.append(createStepFilters(value, StepStatus.QUEUED, negate, values));
+                    break;
+                case STEPDONETITLE:
+                    filter = checkStringBuilder(filter, !term.isDisjunction());
+                    filter.append(filterStepName(value, StepStatus.DONE, negate, values));
+                    break;
+                case STEPDONEUSER:
+                    filter = checkStringBuilder(filter, true);
+                    filter.append(filterStepDoneUser(value, values));
+                    break;
+                case STEPAUTOMATIC:
+                    filter = checkStringBuilder(filter, true);
+                    filter.append(filterAutomaticSteps(value));
+                    break;
+                case PROJECT:
+                    filter = checkStringBuilder(filter, !term.isDisjunction());
+                    filter.append(filterProject(value, negate, values));
+                    break;
+                case TEMPLATE:
+                    filter = checkStringBuilder(filter, !term.isDisjunction());
+                    filter.append(filterScanTemplate(value, negate, values));
+                    break;
+                case ID:
+                    filter = checkStringBuilder(filter, !term.isDisjunction());
+                    filter.append(filterIds(value, negate, values));
+                    break;
+                case PROCESSLOG:
+                    filter = checkStringBuilder(filter, !term.isDisjunction());
+                    filter.append(filterProcessLog(value, negate, values));
+                    break;
+                case BATCH:
+                    String substring = value;
                     if (substring.contains(" ")) {
                         substring = substring.substring(0, substring.indexOf(" "));
                     }
                     if (StringUtils.isNumeric(substring)) {
-
-                        int value = Integer.valueOf(substring);
-                        filter = checkStringBuilder(filter, true);
-                        filter.append(" prozesse.batchID = " + value);
+                        try {
+                            Integer batchId = Integer.valueOf(substring);
+                            filter = checkStringBuilder(filter, true);
+                            filter.append(" prozesse.batchID = ?");
+                            values.add(batchId);
+                        } catch (NumberFormatException e) {
+                            logger.warn("input " + value + " is not a number.");
+                        }
                     } else {
                         filter = checkStringBuilder(filter, true);
-                        filter.append(" batches.batchName like '" + leftTruncationCharacter + StringEscapeUtils.escapeSql(substring) + rightTruncationCharacter + "'");
+                        filter.append(" batches.batchName like ?");
+                        values.add(like(substring));
                     }
-
-                } catch (NumberFormatException e) {
-                    logger.warn("input " + tok.substring(tok.indexOf(":") + 1) + " is not a number.");
-                }
-
-            } else if (tok.toLowerCase().startsWith(FilterString.WORKPIECE) || tok.toLowerCase().startsWith(FilterString.WERKSTUECK)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterWorkpiece(tok, false));
-
-            } else if (tok.toLowerCase().startsWith("-" + FilterString.PROCESSPROPERTY) || tok.toLowerCase().startsWith("-"
-                    + FilterString.PROZESSEIGENSCHAFT)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterProcessProperty(tok, true));
-
-            } else if (tok.toLowerCase().startsWith("-" + FilterString.METADATA)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterMetadataValue(tok, true));
-            } else if (tok.toLowerCase().startsWith("-" + FilterString.STEPPROPERTY) || tok.toLowerCase().startsWith("-"
-                    + FilterString.SCHRITTEIGENSCHAFT)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterStepProperty(tok, true));
-            }
-
-            else if (tok.toLowerCase().startsWith("-" + FilterString.STEPINWORK) || tok.toLowerCase().startsWith("-"
-                    + FilterString.SCHRITTINARBEIT)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(createStepFilters(tok, StepStatus.INWORK, true));
-
-                // new keyword stepLocked implemented
-            } else if (tok.toLowerCase().startsWith("-" + FilterString.STEPLOCKED) || tok.toLowerCase().startsWith("-"
-                    + FilterString.SCHRITTGESPERRT)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(createStepFilters(tok, StepStatus.LOCKED, true));
-
-                // new keyword stepOpen implemented
-            } else if (tok.toLowerCase().startsWith("-" + FilterString.STEPOPEN) || tok.toLowerCase().startsWith("-" + FilterString.SCHRITTOFFEN)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(createStepFilters(tok, StepStatus.OPEN, true));
-
-                // new keyword stepDone implemented
-            } else if (tok.toLowerCase().startsWith("-" + FilterString.STEPDONE) || tok.toLowerCase().startsWith("-"
-                    + FilterString.SCHRITTABGESCHLOSSEN)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(createStepFilters(tok, StepStatus.DONE, true));
-            } else if (tok.toLowerCase().startsWith("-" + FilterString.STEPERROR)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(createStepFilters(tok, StepStatus.ERROR, true));
-
-            } else if (tok.toLowerCase().startsWith("-" + FilterString.STEPDEACTIVATED)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(createStepFilters(tok, StepStatus.DEACTIVATED, true));
-                // new keyword stepDoneTitle implemented, replacing so far
-                // undocumented
-            } else if (tok.toLowerCase().startsWith("-" + FilterString.STEPDONETITLE) || tok.toLowerCase().startsWith("-"
-                    + FilterString.ABGESCHLOSSENERSCHRITTTITEL)) {
-                String stepTitel = tok.substring(tok.indexOf(":") + 1);
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterStepName(stepTitel, StepStatus.DONE, true));
-
-            } else if (tok.toLowerCase().startsWith("-" + FilterString.PROJECT) || tok.toLowerCase().startsWith("-" + FilterString.PROJEKT)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterProject(tok, true));
-
-            } else if (tok.toLowerCase().startsWith("-" + FilterString.TEMPLATE) || tok.toLowerCase().startsWith("-" + FilterString.VORLAGE)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterScanTemplate(tok, true));
-
-            } else if (tok.toLowerCase().startsWith("-" + FilterString.WORKPIECE) || tok.toLowerCase().startsWith("-" + FilterString.WERKSTUECK)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterWorkpiece(tok, true));
-            } else if (tok.toLowerCase().startsWith("-" + FilterString.PROCESSLOG)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(filterProcessLog(tok, true));
-            } else if (tok.toLowerCase().startsWith("-" + FilterString.ID)) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(FilterHelper.filterIds(tok, true));
-            } else if (tok.toLowerCase().startsWith("-")) {
-                filter = checkStringBuilder(filter, true);
-                filter.append(" prozesse.Titel not like '" + leftTruncationCharacter + StringEscapeUtils.escapeSql(tok.substring(1))
-                + rightTruncationCharacter + "'");
-            }
-
-            // USE OR
-
-            else if (tok.toLowerCase().startsWith("|" + FilterString.ID)) {
-                filter = checkStringBuilder(filter, false);
-                filter.append(FilterHelper.filterIds(tok, false));
-            } else if (tok.toLowerCase().startsWith("|" + FilterString.PROCESSPROPERTY) || tok.toLowerCase().startsWith("|"
-                    + FilterString.PROZESSEIGENSCHAFT)) {
-                filter = checkStringBuilder(filter, false);
-                filter.append(FilterHelper.filterProcessProperty(tok, false));
-
-            } else if (tok.toLowerCase().startsWith("|" + FilterString.METADATA)) {
-                filter = checkStringBuilder(filter, false);
-                filter.append(FilterHelper.filterMetadataValue(tok, false));
-            } else if (tok.toLowerCase().startsWith("|" + FilterString.STEPPROPERTY) || tok.toLowerCase().startsWith("|"
-                    + FilterString.SCHRITTEIGENSCHAFT)) {
-                filter = checkStringBuilder(filter, false);
-                filter.append(FilterHelper.filterStepProperty(tok, false));
-            }
-
-            else if (tok.toLowerCase().startsWith("|" + FilterString.STEPINWORK) || tok.toLowerCase().startsWith("|"
-                    + FilterString.SCHRITTINARBEIT)) {
-                filter = checkStringBuilder(filter, false);
-                filter.append(createStepFilters(tok, StepStatus.INWORK, false));
-
-                // new keyword stepLocked implemented
-            } else if (tok.toLowerCase().startsWith("|" + FilterString.STEPLOCKED) || tok.toLowerCase().startsWith("|"
-                    + FilterString.SCHRITTGESPERRT)) {
-                filter = checkStringBuilder(filter, false);
-                filter.append(createStepFilters(tok, StepStatus.LOCKED, false));
-
-                // new keyword stepOpen implemented
-            } else if (tok.toLowerCase().startsWith("|" + FilterString.STEPOPEN) || tok.toLowerCase().startsWith("|" + FilterString.SCHRITTOFFEN)) {
-                filter = checkStringBuilder(filter, false);
-                filter.append(createStepFilters(tok, StepStatus.OPEN, false));
-
-                // new keyword stepDone implemented
-            } else if (tok.toLowerCase().startsWith("|" + FilterString.STEPDONE) || tok.toLowerCase().startsWith("|"
-                    + FilterString.SCHRITTABGESCHLOSSEN)) {
-                filter = checkStringBuilder(filter, false);
-                filter.append(createStepFilters(tok, StepStatus.DONE, false));
-
-                // new keyword stepDoneTitle implemented, replacing so far
-                // undocumented
-            } else if (tok.toLowerCase().startsWith("|" + FilterString.STEPDONETITLE) || tok.toLowerCase().startsWith("|"
-                    + FilterString.ABGESCHLOSSENERSCHRITTTITEL)) {
-                String stepTitel = tok.substring(tok.indexOf(":") + 1);
-                filter = checkStringBuilder(filter, false);
-                filter.append(FilterHelper.filterStepName(stepTitel, StepStatus.DONE, true));
-
-            } else if (tok.toLowerCase().startsWith("|" + FilterString.PROJECT) || tok.toLowerCase().startsWith("|" + FilterString.PROJEKT)) {
-                filter = checkStringBuilder(filter, false);
-                filter.append(FilterHelper.filterProject(tok, false));
-
-            } else if (tok.toLowerCase().startsWith("|" + FilterString.TEMPLATE) || tok.toLowerCase().startsWith("|" + FilterString.VORLAGE)) {
-                filter = checkStringBuilder(filter, false);
-                filter.append(FilterHelper.filterScanTemplate(tok, false));
-
-            } else if (tok.toLowerCase().startsWith("|" + FilterString.WORKPIECE) || tok.toLowerCase().startsWith("|" + FilterString.WERKSTUECK)) {
-                filter = checkStringBuilder(filter, false);
-                filter.append(FilterHelper.filterWorkpiece(tok, false));
-
-            } else if (tok.toLowerCase().startsWith("|" + FilterString.PROCESSLOG)) {
-                filter = checkStringBuilder(filter, false);
-                filter.append(filterProcessLog(tok, false));
-            } else {
-                filter = checkStringBuilder(filter, true);
-                filter.append(" prozesse.Titel like '" + leftTruncationCharacter + StringEscapeUtils.escapeSql(tok.substring(tok.indexOf(":") + 1))
-                + rightTruncationCharacter + "'");
+                    break;
+                case WORKPIECE:
+                    filter = checkStringBuilder(filter, !term.isDisjunction());
+                    filter.append(filterWorkpiece(value, negate, values));
+                    break;
+                case PROCESS:
+                case TITLE:
+                default:
+                    filter = checkStringBuilder(filter, true);
+                    filter.append(negate ? " prozesse.Titel not like ?" : " prozesse.Titel like ?");
+                    values.add(like(value));
+                    break;
             }
         }
-        if (!inFilter.isEmpty()) {
-            filter.append(")");
-        }
-        return filter.toString();
+        filter.append(")");
+        return new FilterQuery(filter.toString(), values);
     }
 
     /**
      * 
-     * @param conjSteps
      * @param filterPart
+     * @param values
      * @return
      */
-    private static String createHistoricFilter(String filterPart, Boolean stepCriteria) {
+    private static String createHistoricFilter(String stepTitle, List<Object> values) {
         /* filtering by a certain minimal status */
         Integer stepReihenfolge;
 
-        String stepTitle = filterPart.substring(filterPart.indexOf(":") + 1);
         // if the criteria is build on steps the table need not be identified
         try {
             stepReihenfolge = Integer.parseInt(stepTitle);
         } catch (NumberFormatException e) {
-            stepTitle = filterPart.substring(filterPart.indexOf(":") + 1);
             if (stepTitle.startsWith("-")) {
-                stepTitle = stepTitle.substring(1);
-
-                return " schritte.SchritteID NOT IN (select schritte.SchritteID from schritte where schritte.Titel like '" + leftTruncationCharacter
-                        + StringEscapeUtils.escapeSql(stepTitle) + rightTruncationCharacter
-                        + "' AND (schritte.Bearbeitungsstatus = 1 OR  schritte.Bearbeitungsstatus = 2))";
+                values.add(like(stepTitle.substring(1)));
+                return " schritte.SchritteID NOT IN (select schritte.SchritteID from schritte where schritte.Titel like ? AND (schritte.Bearbeitungsstatus = 1 OR  schritte.Bearbeitungsstatus = 2))";
 
             } else {
-
-                return " schritte.SchritteID IN (select schritte.SchritteID from schritte where schritte.Titel like '" + leftTruncationCharacter
-                        + StringEscapeUtils.escapeSql(stepTitle) + rightTruncationCharacter
-                        + "' AND (schritte.Bearbeitungsstatus = 1 OR  schritte.Bearbeitungsstatus = 2))";
+                values.add(like(stepTitle));
+                return " schritte.SchritteID IN (select schritte.SchritteID from schritte where schritte.Titel like ? AND (schritte.Bearbeitungsstatus = 1 OR  schritte.Bearbeitungsstatus = 2))";
 
             }
         }
-        return " schritte.SchritteID IN (select ProzesseID from schritte where schritte.Reihenfolge = " + stepReihenfolge
-                + " AND (schritte.Bearbeitungsstatus = 1 OR  schritte.Bearbeitungsstatus = 2))";
+        values.add(stepReihenfolge);
+        return " schritte.SchritteID IN (select ProzesseID from schritte where schritte.Reihenfolge = ? AND (schritte.Bearbeitungsstatus = 1 OR  schritte.Bearbeitungsstatus = 2))";
 
     }
 
     /************************************************************************************
-     * @param flagCriticalQuery
-     * @param crit
-     * @param parameters
+     * @param parameters filter parameters e.g. 5, -5, 5-10, 5- or "Qualitätssicherung"
+     * @param inStatus
+     * @param negate
+     * @param values
      * @return
      ************************************************************************************/
-    private static String createStepFilters(String filterPart, StepStatus inStatus, boolean negate) {
-        // extracting the substring into parameter (filter parameters e.g. 5,
-        // -5,
-        // 5-10, 5- or "Qualitätssicherung")
-
-        String parameters = filterPart.substring(filterPart.indexOf(":") + 1);
+    private static String createStepFilters(String parameters, StepStatus inStatus, boolean negate, List<Object> values) {
         String message = "";
         /*
          * -------------------------------- Analyzing the parameters and what user intended (5->exact, -5 ->max, 5-10 ->range, 5- ->min.,
@@ -927,71 +826,66 @@ public class FilterHelper {
 
             case exact:
                 try {
-                    return FilterHelper.filterStepExact(parameters, inStatus, negate);
+                    return FilterHelper.filterStepExact(parameters, inStatus, negate, values);
                 } catch (NullPointerException e) {
                     message = "stepdone is preset, don't use 'step' filters";
                 } catch (Exception e) {
                     logger.error(e);
-                    message = "filterpart '" + filterPart.substring(filterPart.indexOf(":") + 1) + "' in '" + filterPart + "' caused an error\n";
+                    message = "filterpart '" + parameters + "' caused an error\n";
                 }
                 break;
 
             case max:
                 try {
-                    return FilterHelper.filterStepMax(parameters, inStatus, negate);
-                    //                    returnParameters.setCriticalQuery();
+                    return FilterHelper.filterStepMax(parameters, inStatus, negate, values);
                 } catch (NullPointerException e) {
                     message = "stepdone is preset, don't use 'step' filters";
                 } catch (Exception e) {
-                    message = "filterpart '" + filterPart.substring(filterPart.indexOf(":") + 1) + "' in '" + filterPart + "' caused an error\n";
+                    message = "filterpart '" + parameters + "' caused an error\n";
                 }
                 break;
 
             case min:
                 try {
-                    return FilterHelper.filterStepMin(parameters, inStatus, negate);
-                    //                    returnParameters.setCriticalQuery();
+                    return FilterHelper.filterStepMin(parameters, inStatus, negate, values);
                 } catch (NullPointerException e) {
                     message = "stepdone is preset, don't use 'step' filters";
                 } catch (Exception e) {
-                    message = "filterpart '" + filterPart.substring(filterPart.indexOf(":") + 1) + "' in '" + filterPart + "' caused an error\n";
+                    message = "filterpart '" + parameters + "' caused an error\n";
                 }
                 break;
 
             case name:
                 /* filter for a specific done step by it's name (Titel) */
-                // myObservable.setMessage("Filter 'stepDone:" + parameters
-                // + "' is not yet implemented and will be ignored!");
                 try {
-                    return FilterHelper.filterStepName(parameters, inStatus, negate);
+                    return FilterHelper.filterStepName(parameters, inStatus, negate, values);
                 } catch (NullPointerException e) {
                     message = "stepdone is preset, don't use 'step' filters";
                 } catch (Exception e) {
-                    message = "filterpart '" + filterPart.substring(filterPart.indexOf(":") + 1) + "' in '" + filterPart + "' caused an error\n";
+                    message = "filterpart '" + parameters + "' caused an error\n";
                 }
                 break;
 
             case range:
                 try {
-                    return FilterHelper.filterStepRange(parameters, inStatus, negate);
-                    //                    returnParameters.setCriticalQuery();
+                    return FilterHelper.filterStepRange(parameters, inStatus, negate, values);
                 } catch (NullPointerException e) {
                     message = "stepdone is preset, don't use 'step' filters";
                 } catch (NumberFormatException e) {
                     try {
-                        return FilterHelper.filterStepName(parameters, inStatus, negate);
+                        return FilterHelper.filterStepName(parameters, inStatus, negate, values);
                     } catch (NullPointerException e1) {
                         message = "stepdone is preset, don't use 'step' filters";
                     } catch (Exception e1) {
-                        message = "filterpart '" + filterPart.substring(filterPart.indexOf(":") + 1) + "' in '" + filterPart + "' caused an error\n";
+                        message = "filterpart '" + parameters + "' caused an error\n";
                     }
                 } catch (Exception e) {
-                    message = "filterpart '" + filterPart.substring(filterPart.indexOf(":") + 1) + "' in '" + filterPart + "' caused an error\n";
+                    message = "filterpart '" + parameters + "' caused an error\n";
                 }
                 break;
 
             case unknown:
-                message = message + ("Filter '" + filterPart + "' is not known!\n");
+                message = message + ("Filter '" + parameters + "' is not known!\n");
         }
         return message;
     }
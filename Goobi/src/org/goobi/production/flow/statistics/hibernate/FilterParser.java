@@ -0,0 +1,208 @@
+package org.goobi.production.flow.statistics.hibernate;
+
+/**
+ * This file is part of the Goobi Application - a Workflow tool for the support of mass digitization.
+ * 
+ * Visit the websites for more information.
+ *     		- https://goobi.io
+ * 			- https://www.intranda.com
+ * 			- https://github.com/intranda/goobi
+ * 
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ * Linking this library statically or dynamically with other modules is making a combined work based on this library. Thus, the terms and conditions
+ * of the GNU General Public License cover the whole combination. As a special exception, the copyright holders of this library give you permission to
+ * link this library with independent modules to produce an executable, regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that you also meet, for each linked independent module, the terms and
+ * conditions of the license of that module. An independent module is a module which is not derived from or based on this library. If you modify this
+ * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
+ * exception statement from your version.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang.text.StrTokenizer;
+
+import de.sub.goobi.persistence.managers.MySQLHelper;
+
+/**
+ * Splits a filter string into a list of terms. Each term knows its keyword, whether it is negated or combined with OR and the searched value.
+ * Different spellings of the same filter, like german keywords or upper case letters, result in the same terms, so the terms can be used to identify
+ * the filter.
+ */
+class FilterParser {
+
+    /**
+     * The keywords in the order they are checked, the first matching prefix wins
+     */
+    enum Keyword {
+        PROCESSPROPERTY(true, true, FilterString.PROCESSPROPERTY, FilterString.PROZESSEIGENSCHAFT),
+        STEPPROPERTY(true, true, FilterString.STEPPROPERTY, FilterString.SCHRITTEIGENSCHAFT),
+        METADATA(true, true, FilterString.METADATA),
+        STEP(false, false, FilterString.STEP, FilterString.SCHRITT),
+        STEPINWORK(true, true, FilterString.STEPINWORK, FilterString.SCHRITTINARBEIT),
+        STEPLOCKED(true, true, FilterString.STEPLOCKED, FilterString.SCHRITTGESPERRT),
+        STEPOPEN(true, true, FilterString.STEPOPEN, FilterString.SCHRITTOFFEN),
+        STEPDONE(true, true, FilterString.STEPDONE, FilterString.SCHRITTABGESCHLOSSEN),
+        STEPERROR(true, false, FilterString.STEPERROR),
+        STEPDEACTIVATED(true, false, FilterString.STEPDEACTIVATED),
+        STEPQUEUED(true, false, FilterString.STEPQUEUED),
+        STEPDONETITLE(true, true, FilterString.STEPDONETITLE, FilterString.ABGESCHLOSSENERSCHRITTTITEL),
+        STEPDONEUSER(false, false, FilterString.STEPDONEUSER, FilterString.ABGESCHLOSSENERSCHRITTBENUTZER),
+        STEPAUTOMATIC(false, false, FilterString.STEPAUTOMATIC, FilterString.SCHRITTAUTOMATISCH),
+        PROJECT(true, true, FilterString.PROJECT, FilterString.PROJEKT),
+        TEMPLATE(true, true, FilterString.TEMPLATE, FilterString.VORLAGE),
+        ID(true, true, FilterString.ID),
+        PROCESS(false, false, FilterString.PROCESS, FilterString.PROZESS),
+        PROCESSLOG(true, true, FilterString.PROCESSLOG),
+        BATCH(false, false, FilterString.BATCH, FilterString.GRUPPE),
+        WORKPIECE(true, true, FilterString.WORKPIECE, FilterString.WERKSTUECK),
+        // search in the process title, used for all words without a known keyword
+        TITLE(false, false);
+
+        private final boolean negatable;
+        private final boolean disjunctive;
+        private final String[] prefixes;
+
+        private Keyword(boolean negatable, boolean disjunctive, String... prefixes) {
+            this.negatable = negatable;
+            this.disjunctive = disjunctive;
+            this.prefixes = prefixes;
+        }
+
+        private boolean matches(String token) {
+            for (String prefix : prefixes) {
+                if (token.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    enum Type {
+        OPEN,
+        CLOSE,
+        TERM
+    }
+
+    static class Term {
+        private final Type type;
+        private final Keyword keyword;
+        private final boolean negate;
+        private final boolean disjunction;
+        private final String value;
+
+        private Term(Type type, Keyword keyword, boolean negate, boolean disjunction, String value) {
+            this.type = type;
+            this.keyword = keyword;
+            this.negate = negate;
+            this.disjunction = disjunction;
+            this.value = value;
+        }
+
+        Type getType() {
+            return type;
+        }
+
+        Keyword getKeyword() {
+            return keyword;
+        }
+
+        boolean isNegate() {
+            return negate;
+        }
+
+        boolean isDisjunction() {
+            return disjunction;
+        }
+
+        String getValue() {
+            return value;
+        }
+
+        /**
+         * @return a normalized representation of the term
+         */
+        @Override
+        public String toString() {
+            switch (type) {
+                case OPEN:
+                    return "(";
+                case CLOSE:
+                    return ")";
+                default:
+                    return (disjunction ? "|" : "") + (negate ? "-" : "") + keyword.name().toLowerCase() + ":" + value;
+            }
+        }
+    }
+
+    private FilterParser() {
+    }
+
+    /**
+     * Splits the filter into terms. The wildcards * and ? are replaced by their SQL counterparts, the values are not escaped any further.
+     * 
+     * @param filter the filter as entered by the user, may be null
+     * @return list of terms
+     */
+    static List<Term> parse(String filter) {
+        List<Term> terms = new ArrayList<>();
+        if (filter == null) {
+            return terms;
+        }
+        String escaped = MySQLHelper.escapeString(filter.trim()).replace("(", " ( ").replace(")", " ) ");
+        StrTokenizer tokenizer = new StrTokenizer(escaped, ' ', '\"');
+        while (tokenizer.hasNext()) {
+            String tok = tokenizer.nextToken().trim();
+            if (tok.equals("(")) {
+                terms.add(new Term(Type.OPEN, null, false, false, null));
+            } else if (tok.equals(")")) {
+                terms.add(new Term(Type.CLOSE, null, false, false, null));
+            } else {
+                terms.add(parseTerm(tok));
+            }
+        }
+        return terms;
+    }
+
+    private static Term parseTerm(String tok) {
+        String lower = tok.toLowerCase();
+        String value = tok.substring(tok.indexOf(":") + 1);
+        Keyword keyword = getKeyword(lower);
+        if (keyword != null) {
+            return new Term(Type.TERM, keyword, false, false, value);
+        }
+        if (lower.startsWith("-")) {
+            keyword = getKeyword(lower.substring(1));
+            if (keyword != null && keyword.negatable) {
+                return new Term(Type.TERM, keyword, true, false, value);
+            }
+            return new Term(Type.TERM, Keyword.TITLE, true, false, tok.substring(1));
+        }
+        if (lower.startsWith("|")) {
+            keyword = getKeyword(lower.substring(1));
+            if (keyword != null && keyword.disjunctive) {
+                return new Term(Type.TERM, keyword, false, true, value);
+            }
+        }
+        return new Term(Type.TERM, Keyword.TITLE, false, false, value);
+    }
+
+    private static Keyword getKeyword(String token) {
+        for (Keyword keyword : Keyword.values()) {
+            if (keyword.matches(token)) {
+                return keyword;
+            }
+        }
+        return null;
+    }
+}
@@ -47,6 +47,7 @@ public class FilterString {
 	public static final String PROCESSLOG = "log:";
 	public static final String STEPERROR = "steperror:";
 	public static final String STEPDEACTIVATED = "stepdeactivated:";
+	public static final String STEPQUEUED = "stepqueued:";
 	
 	
 	// german
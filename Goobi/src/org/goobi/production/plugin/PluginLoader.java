@@ -24,10 +24,22 @@ package org.goobi.production.plugin;
  * library, you may extend this exception to your version of the library, but you are not obliged to do so. If you do not wish to do so, delete this
  * exception statement from your version.
  */
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.xeoh.plugins.base.PluginManager;
 import net.xeoh.plugins.base.impl.PluginManagerFactory;
@@ -37,41 +49,242 @@ import org.goobi.production.enums.PluginType;
 import org.goobi.production.plugin.interfaces.IPlugin;
 
 import de.sub.goobi.config.ConfigurationHelper;
+import lombok.extern.log4j.Log4j;
 
+/**
+ * Registry of all installed plugins. The plugin folder of each {@link PluginType} is scanned once, the found plugins are indexed by their title.
+ * The folders are watched, if a jar file is added, replaced or removed, the plugins of this type are scanned again with the next request. The plugin
+ * manager of the replaced scan is shut down. Folders on file systems that do not report changes can be scanned again from the administration page.
+ * 
+ * Plugins keep the state of the current step or process, so every request gets a new instance of the plugin class.
+ */
+@Log4j
 public class PluginLoader {
-	
-	public static List<IPlugin> getPluginList(PluginType inType) {
-		PluginManagerUtil pmu = initialize(inType);
-		Collection<IPlugin> plugins = pmu.getPlugins(IPlugin.class);
-		return new ArrayList<IPlugin>(plugins);
-	}
-
-	public static IPlugin getPluginByTitle(PluginType inType, String inTitle) {
-		PluginManagerUtil pmu = initialize(inType);
-		Collection<IPlugin> plugins = pmu.getPlugins(inType.getInterfaz());
-		for (IPlugin p : plugins) {
-			if (p.getTitle().equals(inTitle)) {
-				return p;
-			}
-		}
-		return null;
-	}
-		
-	private static PluginManagerUtil initialize(PluginType inType) {
-		PluginManager pm = PluginManagerFactory.createPluginManager();
-		String path = ConfigurationHelper.getInstance().getPluginFolder() + inType.getName() + "/";
-		pm.addPluginsFrom(Paths.get(path).toUri());
-		return new PluginManagerUtil(pm);
-	}
 
-    public static List<String> getListOfPlugins(PluginType inType) {
-        List<String> pluginList = new ArrayList<String>();
-        PluginManagerUtil pmu = initialize(inType);
-        Collection<IPlugin> plugins = pmu.getPlugins(inType.getInterfaz());
-        for (IPlugin p : plugins) {
-            pluginList.add(p.getTitle());
+    private static final Map<PluginType, PluginRegistry> registries = new ConcurrentHashMap<>();
+
+    private static final Map<WatchKey, PluginType> watchedFolders = new HashMap<>();
+
+    private static WatchService watchService = null;
+
+    public static List<IPlugin> getPluginList(PluginType inType) {
+        List<IPlugin> pluginList = new ArrayList<>();
+        for (PluginClass plugin : getRegistry(inType).allPlugins) {
+            pluginList.add(plugin.newInstance());
         }
-        
         return pluginList;
     }
+
+    public static IPlugin getPluginByTitle(PluginType inType, String inTitle) {
+        PluginClass plugin = getRegistry(inType).pluginsByTitle.get(inTitle);
+        if (plugin == null) {
+            return null;
+        }
+        return plugin.newInstance();
+    }
+
+    public static List<String> getListOfPlugins(PluginType inType) {
+        return new ArrayList<>(getRegistry(inType).pluginsByTitle.keySet());
+    }
+
+    /**
+     * Scan the plugin folders again with the next request
+     */
+    public static void reload() {
+        for (PluginType type : registries.keySet()) {
+            reload(type);
+        }
+    }
+
+    /**
+     * Scan the plugin folder of the given type again with the next request
+     * 
+     * @param inType type of the plugins
+     */
+    public static void reload(PluginType inType) {
+        discard(registries.remove(inType));
+    }
+
+    /**
+     * Shut down the plugin manager of a registry that is no longer used. Plugin instances that were already created keep working.
+     */
+    private static void discard(PluginRegistry registry) {
+        if (registry == null) {
+            return;
+        }
+        try {
+            registry.pluginManager.shutdown();
+        } catch (RuntimeException e) {
+            log.warn("Cannot shut down plugin manager", e);
+        }
+    }
+
+    private static PluginRegistry getRegistry(PluginType inType) {
+        PluginRegistry registry = registries.get(inType);
+        if (registry == null) {
+            synchronized (PluginLoader.class) {
+                registry = registries.get(inType);
+                if (registry == null) {
+                    Path folder = Paths.get(ConfigurationHelper.getInstance().getPluginFolder() + inType.getName() + "/");
+                    // watch before scanning, so a jar copied during the scan causes a new scan
+                    watchFolder(inType, folder);
+                    registry = scan(inType, folder);
+                    registries.put(inType, registry);
+                }
+            }
+        }
+        return registry;
+    }
+
+    private static PluginRegistry scan(PluginType inType, Path folder) {
+        long start = System.currentTimeMillis();
+        PluginManager pm = PluginManagerFactory.createPluginManager();
+        pm.addPluginsFrom(folder.toUri());
+        PluginManagerUtil pmu = new PluginManagerUtil(pm);
+
+        PluginRegistry registry = createRegistry(pm, pmu.getPlugins(IPlugin.class), pmu.getPlugins(inType.getInterfaz()));
+        log.info("Loaded " + registry.allPlugins.size() + " " + inType.getName() + " plugins in " + (System.currentTimeMillis() - start) + " ms");
+        return registry;
+    }
+
+    private static PluginRegistry createRegistry(PluginManager pm, Collection<IPlugin> allPlugins, Collection<IPlugin> typedPlugins) {
+        PluginRegistry registry = new PluginRegistry(pm);
+        for (IPlugin plugin : allPlugins) {
+            registry.allPlugins.add(new PluginClass(plugin));
+        }
+        for (IPlugin plugin : typedPlugins) {
+            // the first plugin with a title wins, like it did when the folder was searched on every request
+            if (!registry.pluginsByTitle.containsKey(plugin.getTitle())) {
+                registry.pluginsByTitle.put(plugin.getTitle(), new PluginClass(plugin));
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Use the given plugins for the type instead of scanning its folder. The plugin manager of a previous scan is shut down.
+     * 
+     * @param inType type of the plugins
+     * @param pm plugin manager that loaded the plugins
+     * @param plugins all plugins, the ones implementing the interface of the type can be requested by title
+     */
+    static void register(PluginType inType, PluginManager pm, Collection<IPlugin> plugins) {
+        List<IPlugin> typedPlugins = new ArrayList<>();
+        for (IPlugin plugin : plugins) {
+            if (inType.getInterfaz().isInstance(plugin)) {
+                typedPlugins.add(plugin);
+            }
+        }
+        discard(registries.put(inType, createRegistry(pm, plugins, typedPlugins)));
+    }
+
+    /**
+     * @param inType type of the plugins
+     * @return the plugin manager of the current scan or null, if the plugins of this type are not loaded
+     */
+    static PluginManager getPluginManager(PluginType inType) {
+        PluginRegistry registry = registries.get(inType);
+        return registry == null ? null : registry.pluginManager;
+    }
+
+    private static void watchFolder(PluginType inType, Path folder) {
+        if (watchedFolders.containsValue(inType) || !Files.isDirectory(folder)) {
+            return;
+        }
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread watcher = new Thread(new PluginWatcher(watchService), "plugin-watcher");
+                watcher.setDaemon(true);
+                watcher.start();
+            }
+            WatchKey key = folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedFolders.put(key, inType);
+        } catch (IOException e) {
+            // without a watcher the plugins are only loaded again by reload()
+            log.warn("Cannot watch plugin folder " + folder + " for changes", e);
+        }
+    }
+
+    /**
+     * Stop watching the plugin folders
+     */
+    public static synchronized void shutdown() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.error(e);
+            }
+            watchService = null;
+        }
+        watchedFolders.clear();
+        reload();
+    }
+
+    private static class PluginWatcher implements Runnable {
+        private final WatchService service;
+
+        private PluginWatcher(WatchService service) {
+            this.service = service;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    WatchKey key = service.take();
+                    // the events are not needed, every change causes a new scan of the folder
+                    key.pollEvents();
+                    synchronized (PluginLoader.class) {
+                        PluginType type = watchedFolders.get(key);
+                        if (type != null) {
+                            log.info("Plugin folder of type " + type.getName() + " changed, plugins will be reloaded");
+                            discard(registries.remove(type));
+                        }
+                        if (!key.reset()) {
+                            // the folder was deleted
+                            watchedFolders.remove(key);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ClosedWatchServiceException e) {
+                // shutdown
+            }
+        }
+    }
+
+    private static class PluginRegistry {
+        private final PluginManager pluginManager;
+        private final List<PluginClass> allPlugins = new ArrayList<>();
+        private final Map<String, PluginClass> pluginsByTitle = new LinkedHashMap<>();
+
+        private PluginRegistry(PluginManager pluginManager) {
+            this.pluginManager = pluginManager;
+        }
+    }
+
+    /**
+     * A plugin found during the scan. The class stays loaded by the class loader of the plugin manager, new instances are created from it.
+     */
+    private static class PluginClass {
+        private final IPlugin prototype;
+
+        private PluginClass(IPlugin prototype) {
+            this.prototype = prototype;
+        }
+
+        private IPlugin newInstance() {
+            try {
+                return prototype.getClass().newInstance();
+            } catch (InstantiationException | IllegalAccessException | RuntimeException e) {
+                // plugins without a public default constructor can only be used as they were created by the plugin manager
+                log.warn("Cannot create a new instance of plugin " + prototype.getTitle() + ", using the loaded instance", e);
+                return prototype;
+            }
+        }
+    }
 }
@@ -45,6 +45,17 @@ public class ConfigurationHelperTest {
         assertEquals("/opt/digiverso/junit/data/", helper.getConfigurationFolder());
     }
 
+    @Test
+    public void testSetParameterWithoutFileChange() {
+        ConfigurationHelper helper = ConfigurationHelper.getInstance();
+        helper.setParameter("MetsEditorThumbnailsize", "123");
+        assertEquals(123, helper.getMetsEditorThumbnailSize());
+        // the files are unchanged, so the modified configuration is kept
+        assertFalse(helper.reloadIfModified());
+        assertEquals(123, helper.getMetsEditorThumbnailSize());
+        helper.setParameter("MetsEditorThumbnailsize", "200");
+    }
+
     @Test
     public void testGetTempImagesPath() {
         assertEquals("/imagesTemp/", ConfigurationHelper.getTempImagesPath());
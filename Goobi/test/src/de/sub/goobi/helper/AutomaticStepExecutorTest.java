@@ -0,0 +1,92 @@
+package de.sub.goobi.helper;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.goobi.beans.Step;
+import org.junit.After;
+import org.junit.Test;
+
+import de.sub.goobi.helper.AutomaticStepExecutor.TaskType;
+import de.sub.goobi.helper.enums.StepStatus;
+
+public class AutomaticStepExecutorTest {
+
+    private static final int THREADS = 2;
+    private static final int QUEUE_SIZE = 3;
+
+    // the steps as stored in the database, by id
+    private final Map<Integer, Step> database = new ConcurrentSkipListMap<>();
+    // number of times each step was started
+    private final Map<Integer, AtomicInteger> executions = new ConcurrentHashMap<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final AutomaticStepExecutor executor = new AutomaticStepExecutor(THREADS, QUEUE_SIZE) {
+        @Override
+        void saveStep(Step step) {
+            database.put(step.getId(), step);
+            if (step.getBearbeitungsstatusEnum() == StepStatus.INWORK) {
+                executions.putIfAbsent(step.getId(), new AtomicInteger());
+                executions.get(step.getId()).incrementAndGet();
+                try {
+                    // keep the threads busy until all steps are submitted
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        List<Step> getQueuedSteps(TaskType type, Set<Integer> excludedIds, int count) {
+            List<Step> steps = new ArrayList<>();
+            for (Step step : database.values()) {
+                if (steps.size() < count && step.getBearbeitungsstatusEnum() == StepStatus.QUEUED && !excludedIds.contains(step.getId())) {
+                    steps.add(step);
+                }
+            }
+            return steps;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        executor.stop();
+    }
+
+    @Test
+    public void testMoreStepsThanThreads() throws Exception {
+        int numberOfSteps = 20;
+        for (int id = 1; id <= numberOfSteps; id++) {
+            Step step = new Step();
+            step.setId(id);
+            step.setTypAutomatisch(true);
+            executor.submit(step);
+        }
+        // two steps are running, three wait in memory and the others in the database
+        assertEquals(numberOfSteps - THREADS, executor.getNumberOfQueuedSteps(TaskType.HTTP));
+
+        release.countDown();
+        long end = System.currentTimeMillis() + 10000;
+        while ((executions.size() < numberOfSteps || executor.getNumberOfQueuedSteps() > 0 || !executor.getRunningSteps().isEmpty())
+                && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+
+        // each step was executed exactly once
+        assertEquals(numberOfSteps, executions.size());
+        for (AtomicInteger count : executions.values()) {
+            assertEquals(1, count.get());
+        }
+        assertEquals(0, executor.getNumberOfQueuedSteps());
+    }
+}
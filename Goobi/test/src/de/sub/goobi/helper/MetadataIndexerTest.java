@@ -0,0 +1,94 @@
+package de.sub.goobi.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.sub.goobi.config.ConfigurationHelper;
+
+public class MetadataIndexerTest {
+
+    private static final String METS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<mets:mets xmlns:mets=\"http://www.loc.gov/METS/\" xmlns:mods=\"http://www.loc.gov/mods/v3\" xmlns:goobi=\"http://meta.goobi.org/v1.5.1/\">"
+            + "<mets:dmdSec ID=\"DMDLOG_0000\"><mets:mdWrap MDTYPE=\"MODS\"><mets:xmlData><mods:mods><mods:extension><goobi:goobi>"
+            + "<goobi:metadata name=\"TitleDocMain\">Main &amp; title</goobi:metadata>"
+            + "<goobi:metadata name=\"singleDigCollection\">Varia</goobi:metadata>"
+            + "<goobi:metadata name=\"singleDigCollection\">Varia</goobi:metadata>"
+            + "<goobi:metadata name=\"singleDigCollection\"><![CDATA[Digi]]>wunsch</goobi:metadata>"
+            + "<goobi:metadata name=\"Author\" type=\"person\"><goobi:lastName>Klein</goobi:lastName><goobi:firstName>Felix</goobi:firstName>"
+            + "<goobi:displayName>Klein, Felix</goobi:displayName><goobi:authorityValue>118562584</goobi:authorityValue></goobi:metadata>"
+            + "<goobi:metadata name=\"Editor\" type=\"person\"><goobi:displayName>,</goobi:displayName></goobi:metadata>"
+            + "<goobi:metadata name=\"PublicationGroup\" type=\"group\"><goobi:metadata name=\"PlaceOfPublication\">Berlin</goobi:metadata>"
+            + "</goobi:metadata>"
+            + "<goobi:metadata name=\"Subject\">Math<goobi:authorityValue>4037944-9</goobi:authorityValue></goobi:metadata>"
+            + "</goobi:goobi></mods:extension></mods:mods></mets:xmlData></mets:mdWrap></mets:dmdSec>"
+            + "<mets:dmdSec ID=\"DMDLOG_0001\"><mets:mdWrap MDTYPE=\"MODS\"><mets:xmlData><mods:mods><mods:extension><goobi:goobi>"
+            + "<goobi:metadata name=\"TitleDocMain\">Chapter</goobi:metadata>"
+            + "<goobi:metadata name=\"Subject\"><goobi:authorityValue>4038935-2</goobi:authorityValue></goobi:metadata>"
+            + "</goobi:goobi></mods:extension></mods:mods></mets:xmlData></mets:mdWrap></mets:dmdSec>"
+            + "<mets:dmdSec ID=\"DMDPHYS_0000\"><mets:mdWrap MDTYPE=\"MODS\"><mets:xmlData><mods:mods><mods:extension><goobi:goobi>"
+            + "<goobi:metadata name=\"pathimagefiles\">file:///images</goobi:metadata>"
+            + "</goobi:goobi></mods:extension></mods:mods></mets:xmlData></mets:mdWrap></mets:dmdSec>"
+            + "<mets:structMap TYPE=\"LOGICAL\"><mets:div ID=\"LOG_0000\" TYPE=\"Monograph\"><mets:div ID=\"LOG_0001\" TYPE=\"Chapter\"/></mets:div>"
+            + "</mets:structMap><mets:structMap TYPE=\"PHYSICAL\"><mets:div ID=\"PHYS_0000\" TYPE=\"BoundBook\"/></mets:structMap></mets:mets>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path metadataFile;
+
+    @Before
+    public void setUp() throws IOException {
+        String configFolder = System.getenv("junitdata");
+        if (configFolder == null) {
+            configFolder = "/opt/digiverso/junit/data/";
+        }
+        ConfigurationHelper.CONFIG_FILE_NAME = configFolder + "goobi_config.properties";
+
+        metadataFile = folder.newFile("meta.xml").toPath();
+        Files.write(metadataFile, METS.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReadMetadata() {
+        Map<String, List<String>> pairs = new HashMap<>();
+        Map<String, List<String>> authorityPairs = new HashMap<>();
+        MetadataIndexer.readMetadata(metadataFile, pairs, authorityPairs);
+
+        assertEquals(Collections.singletonList("Main & title"), pairs.get("TitleDocMain"));
+        assertEquals(Arrays.asList("Varia", "Digiwunsch"), pairs.get("singleDigCollection"));
+        assertEquals(Collections.singletonList("Klein, Felix"), pairs.get("Author"));
+        assertFalse(pairs.containsKey("Editor"));
+        assertFalse(pairs.containsKey("PublicationGroup"));
+        assertEquals(Collections.singletonList("Berlin"), pairs.get("PlaceOfPublication"));
+        assertEquals(Collections.singletonList("Math4037944-9"), pairs.get("Subject"));
+        assertEquals(Collections.singletonList("file:///images"), pairs.get("pathimagefiles"));
+        assertEquals(Collections.singletonList("Monograph"), pairs.get("DocStruct"));
+
+        assertEquals(Collections.singletonList("118562584"), authorityPairs.get("Author_authority"));
+        assertEquals(Arrays.asList("4037944-9", "4038935-2"), authorityPairs.get("Subject_authority"));
+        assertNull(authorityPairs.get("PlaceOfPublication_authority"));
+    }
+
+    @Test
+    public void testReadMissingFile() {
+        Map<String, List<String>> pairs = new HashMap<>();
+        MetadataIndexer.readMetadata(metadataFile.resolveSibling("missing.xml"), pairs, new HashMap<String, List<String>>());
+        assertEquals(0, pairs.size());
+    }
+}
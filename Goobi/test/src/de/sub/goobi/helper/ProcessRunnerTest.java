@@ -0,0 +1,93 @@
+package de.sub.goobi.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProcessRunnerTest {
+
+    @Before
+    public void setUp() {
+        ProcessRunner.setProcessLimit(0);
+    }
+
+    @After
+    public void tearDown() {
+        ProcessRunner.setProcessLimit(0);
+    }
+
+    private static List<String> shell(String script) {
+        return Arrays.asList("/bin/sh", "-c", script);
+    }
+
+    @Test
+    public void testExitCodeAndOutput() throws Exception {
+        ProcessRunner.Result result = new ProcessRunner(shell("echo first; echo second; echo problem >&2; exit 3"), 0, 100).run();
+        assertEquals(3, result.getExitCode());
+        assertFalse(result.isTimedOut());
+        assertEquals(Arrays.asList("first", "second"), result.getStdOut());
+        assertEquals(Arrays.asList("problem"), result.getStdErr());
+    }
+
+    @Test
+    public void testLargeOutputOnBothStreams() throws Exception {
+        // writes far more than the pipe buffer to standard error before standard out is finished
+        ProcessRunner.Result result = new ProcessRunner(shell("i=0; while [ $i -lt 20000 ]; do echo \"error line $i\" >&2; echo \"line $i\"; "
+                + "i=$((i+1)); done"), 60, 10).run();
+        assertEquals(0, result.getExitCode());
+        assertEquals(20000, result.getStdOutLineCount());
+        assertEquals(20000, result.getStdErrLineCount());
+        LinkedList<String> errors = result.getStdErr();
+        assertEquals(10, errors.size());
+        assertEquals("error line 19999", errors.getLast());
+        assertEquals("line 19990", result.getStdOut().getFirst());
+    }
+
+    @Test
+    public void testLongLineIsCut() throws Exception {
+        ProcessRunner.Result result = new ProcessRunner(shell("head -c 50000 /dev/zero | tr '\\0' 'a'; echo; echo end"), 0, 10).run();
+        assertEquals(2, result.getStdOut().size());
+        assertEquals(ProcessRunner.MAX_LINE_LENGTH, result.getStdOut().getFirst().length());
+        assertEquals("end", result.getStdOut().getLast());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        long start = System.currentTimeMillis();
+        ProcessRunner.Result result = new ProcessRunner(shell("echo started; exec sleep 30"), 1, 10).run();
+        assertTrue(result.isTimedOut());
+        assertTrue(System.currentTimeMillis() - start < 20000);
+        assertFalse(result.getExitCode() == 0);
+        assertEquals(Arrays.asList("started"), result.getStdOut());
+    }
+
+    @Test
+    public void testProcessLimit() throws Exception {
+        ProcessRunner.setProcessLimit(1);
+        final ProcessRunner runner = new ProcessRunner(shell("sleep 1"), 0, 10);
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    runner.run();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        long start = System.currentTimeMillis();
+        other.start();
+        runner.run();
+        other.join();
+        // both commands sleep one second and may not run in parallel
+        assertTrue(System.currentTimeMillis() - start >= 2000);
+    }
+}
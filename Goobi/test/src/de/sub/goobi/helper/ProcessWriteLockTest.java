@@ -0,0 +1,79 @@
+package de.sub.goobi.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.sub.goobi.config.ConfigurationHelper;
+
+public class ProcessWriteLockTest {
+
+    @Before
+    public void setUp() {
+        String configFolder = System.getenv("junitdata");
+        if (configFolder == null) {
+            configFolder = "/opt/digiverso/junit/data/";
+        }
+        ConfigurationHelper.CONFIG_FILE_NAME = configFolder + "goobi_config.properties";
+    }
+
+    @Test
+    public void testDifferentProcessesInParallel() throws Exception {
+        ProcessWriteLock.lock(1);
+        try {
+            CountDownLatch locked = new CountDownLatch(1);
+            Thread other = new Thread(() -> {
+                try {
+                    ProcessWriteLock.lock(2);
+                    locked.countDown();
+                    ProcessWriteLock.unlock(2);
+                } catch (Exception e) {
+                    // fails below
+                }
+            });
+            other.start();
+            assertTrue(locked.await(10, TimeUnit.SECONDS));
+            other.join();
+        } finally {
+            ProcessWriteLock.unlock(1);
+        }
+    }
+
+    @Test
+    public void testSameProcessSerialized() throws Exception {
+        ProcessWriteLock.lock(3);
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread other = new Thread(() -> {
+            try {
+                ProcessWriteLock.lock(3);
+                locked.countDown();
+                ProcessWriteLock.unlock(3);
+            } catch (Exception e) {
+                // fails below
+            }
+        });
+        try {
+            // reentrant for the same thread
+            ProcessWriteLock.lock(3);
+            ProcessWriteLock.unlock(3);
+
+            other.start();
+            assertEquals(1, locked.getCount());
+            assertEquals(false, locked.await(200, TimeUnit.MILLISECONDS));
+            List<String> lockedProcesses = ProcessWriteLock.getLockedProcesses();
+            assertEquals(1, lockedProcesses.size());
+            assertTrue(lockedProcesses.get(0).startsWith("Process 3: locked by thread '" + Thread.currentThread().getName() + "'"));
+        } finally {
+            ProcessWriteLock.unlock(3);
+        }
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+        other.join();
+        assertTrue(ProcessWriteLock.getLockedProcesses().isEmpty());
+    }
+}
@@ -0,0 +1,371 @@
+package de.sub.goobi.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.SocketException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ListPartsRequest;
+import com.amazonaws.services.s3.model.PartListing;
+import com.amazonaws.services.s3.model.PartSummary;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+
+import de.sub.goobi.config.ConfigurationHelper;
+
+public class S3TransferEngineTest {
+
+    private static final int PART_SIZE = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private S3TransferEngine engine;
+
+    @Before
+    public void setUp() {
+        String configFolder = System.getenv("junitdata");
+        if (configFolder == null) {
+            configFolder = "/opt/digiverso/junit/data/";
+        }
+        ConfigurationHelper.CONFIG_FILE_NAME = configFolder + "goobi_config.properties";
+        engine = new S3TransferEngine(AmazonS3ClientBuilder.standard()
+                .withRegion("us-east-1")
+                .withCredentials(new AWSStaticCredentialsProvider(new AnonymousAWSCredentials()))
+                .build());
+    }
+
+    @Test
+    public void testRetryTransientError() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        engine.retry("test", new S3TransferEngine.S3Task() {
+            @Override
+            public void execute() throws IOException {
+                if (attempts.incrementAndGet() < 2) {
+                    throw new SocketException("connection reset");
+                }
+            }
+        });
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void testNoRetryOnClientError() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        try {
+            engine.retry("test", new S3TransferEngine.S3Task() {
+                @Override
+                public void execute() throws IOException {
+                    attempts.incrementAndGet();
+                    AmazonServiceException e = new AmazonServiceException("Access Denied");
+                    e.setStatusCode(403);
+                    throw e;
+                }
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals(1, attempts.get());
+        }
+    }
+
+    @Test
+    public void testNoRetryOnLocalError() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        try {
+            engine.retry("test", new S3TransferEngine.S3Task() {
+                @Override
+                public void execute() throws IOException {
+                    attempts.incrementAndGet();
+                    throw new AccessDeniedException("/opt/digiverso/goobi/metadata/1/images");
+                }
+            });
+            fail();
+        } catch (AccessDeniedException e) {
+            assertEquals(1, attempts.get());
+        }
+    }
+
+    @Test
+    public void testIsRetryable() {
+        AmazonServiceException e = new AmazonServiceException("Slow Down");
+        e.setStatusCode(503);
+        assertTrue(S3TransferEngine.isRetryable(e));
+        e.setStatusCode(404);
+        assertFalse(S3TransferEngine.isRetryable(e));
+        // a failed part is wrapped by the transfer manager
+        assertFalse(S3TransferEngine.isRetryable(new AmazonClientException("Unable to complete transfer", new AmazonClientException("Part failed", e))));
+        e.setStatusCode(500);
+        assertTrue(S3TransferEngine.isRetryable(new AmazonClientException("Unable to complete transfer", new AmazonClientException("Part failed", e))));
+
+        // the client wraps errors of the connection and of the local file
+        assertTrue(S3TransferEngine.isRetryable(new AmazonClientException("Unable to execute HTTP request", new SocketException("Connection reset"))));
+        assertFalse(S3TransferEngine.isRetryable(new AmazonClientException("Unable to store object contents to disk", new IOException(
+                "No space left on device"))));
+        assertFalse(S3TransferEngine.isRetryable(new AccessDeniedException("/opt/digiverso/goobi/metadata/1/images")));
+    }
+
+    @Test
+    public void testOneEnginePerClient() {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3TransferEngine shared = S3TransferEngine.getInstance(s3);
+        assertSame(shared, S3TransferEngine.getInstance(s3));
+        assertNotSame(shared, S3TransferEngine.getInstance(new InMemoryS3()));
+    }
+
+    @Test
+    public void testBatchReportsError() throws Exception {
+        final AtomicInteger executed = new AtomicInteger();
+        S3TransferEngine.Batch batch = engine.newBatch();
+        for (int i = 0; i < 50; i++) {
+            batch.submit("task " + i, new S3TransferEngine.S3Task() {
+                @Override
+                public void execute() throws IOException {
+                    executed.incrementAndGet();
+                }
+            });
+        }
+        batch.await();
+        assertEquals(50, executed.get());
+
+        batch = engine.newBatch();
+        batch.submit("failing task", new S3TransferEngine.S3Task() {
+            @Override
+            public void execute() throws IOException {
+                AmazonServiceException e = new AmazonServiceException("Access Denied");
+                e.setStatusCode(403);
+                throw e;
+            }
+        });
+        try {
+            batch.await();
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof AmazonServiceException);
+        }
+    }
+
+    @Test
+    public void testMultipartUploadRetriesFailedPart() throws Exception {
+        InMemoryS3 s3 = new InMemoryS3();
+        s3.failingPart = 3;
+        s3.failures.set(1);
+        s3.failureStatus = 500;
+        S3TransferEngine multipartEngine = new S3TransferEngine(s3, 2, 3, PART_SIZE);
+        byte[] content = createContent(5 * PART_SIZE + 1000);
+        Path file = folder.newFile("upload.bin").toPath();
+        Files.write(file, content);
+
+        multipartEngine.upload("bucket", "key", file);
+
+        assertTrue(Arrays.equals(content, s3.objects.get("key")));
+        // the retry resumed the multipart upload and uploaded only the failed part again
+        assertEquals(1, s3.initiatedUploads.get());
+        assertTrue(s3.abortedUploads.isEmpty());
+        assertTrue(s3.uploads.isEmpty());
+        assertEquals(2, s3.partAttempts.get(3).get());
+        for (int partNumber = 1; partNumber <= 6; partNumber++) {
+            if (partNumber != 3) {
+                assertEquals(1, s3.partAttempts.get(partNumber).get());
+            }
+        }
+    }
+
+    @Test
+    public void testMultipartUploadAbortsOnClientError() throws Exception {
+        InMemoryS3 s3 = new InMemoryS3();
+        s3.failingPart = 2;
+        s3.failures.set(1);
+        s3.failureStatus = 403;
+        S3TransferEngine multipartEngine = new S3TransferEngine(s3, 2, 3, PART_SIZE);
+        Path file = folder.newFile("upload.bin").toPath();
+        Files.write(file, createContent(3 * PART_SIZE));
+
+        try {
+            multipartEngine.upload("bucket", "key", file);
+            fail();
+        } catch (IOException e) {
+            assertFalse(S3TransferEngine.isRetryable(e.getCause()));
+        }
+        assertEquals(1, s3.initiatedUploads.get());
+        assertEquals(1, s3.abortedUploads.size());
+        assertTrue(s3.uploads.isEmpty());
+        assertFalse(s3.objects.containsKey("key"));
+    }
+
+    private static byte[] createContent(int length) {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+
+    /**
+     * Keeps the objects and the parts of unfinished multipart uploads in memory. The upload of a given part fails as often as configured.
+     */
+    private static class InMemoryS3 extends AbstractAmazonS3 {
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+        private final Set<String> abortedUploads = ConcurrentHashMap.newKeySet();
+        private final Map<Integer, AtomicInteger> partAttempts = new ConcurrentHashMap<>();
+        private final AtomicInteger initiatedUploads = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile int failingPart;
+        private volatile int failureStatus;
+
+        @Override
+        public PutObjectResult putObject(PutObjectRequest request) {
+            try {
+                objects.put(request.getKey(), Files.readAllBytes(request.getFile().toPath()));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return new PutObjectResult();
+        }
+
+        @Override
+        public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+            String uploadId = "upload-" + initiatedUploads.incrementAndGet();
+            uploads.put(uploadId, new ConcurrentHashMap<Integer, byte[]>());
+            InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+            result.setBucketName(request.getBucketName());
+            result.setKey(request.getKey());
+            result.setUploadId(uploadId);
+            return result;
+        }
+
+        @Override
+        public UploadPartResult uploadPart(UploadPartRequest request) {
+            int partNumber = request.getPartNumber();
+            partAttempts.putIfAbsent(partNumber, new AtomicInteger());
+            partAttempts.get(partNumber).incrementAndGet();
+            if (partNumber == failingPart && failures.getAndDecrement() > 0) {
+                AmazonServiceException e = new AmazonServiceException("Injected failure of part " + partNumber);
+                e.setStatusCode(failureStatus);
+                throw e;
+            }
+            Map<Integer, byte[]> parts = uploads.get(request.getUploadId());
+            if (parts == null) {
+                AmazonServiceException e = new AmazonServiceException("NoSuchUpload");
+                e.setStatusCode(404);
+                throw e;
+            }
+            parts.put(partNumber, readPart(request));
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(partNumber);
+            result.setETag("etag-" + partNumber);
+            return result;
+        }
+
+        @Override
+        public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+            Map<Integer, byte[]> parts = uploads.remove(request.getUploadId());
+            ByteArrayOutputStream object = new ByteArrayOutputStream();
+            // the client sends the parts sorted by their number, there must be no gaps
+            List<PartETag> partETags = new ArrayList<>(request.getPartETags());
+            Collections.sort(partETags, new Comparator<PartETag>() {
+                @Override
+                public int compare(PartETag p1, PartETag p2) {
+                    return Integer.compare(p1.getPartNumber(), p2.getPartNumber());
+                }
+            });
+            for (int i = 0; i < partETags.size(); i++) {
+                assertEquals(i + 1, partETags.get(i).getPartNumber());
+                byte[] part = parts.get(i + 1);
+                object.write(part, 0, part.length);
+            }
+            assertEquals(parts.size(), partETags.size());
+            objects.put(request.getKey(), object.toByteArray());
+            CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+            result.setBucketName(request.getBucketName());
+            result.setKey(request.getKey());
+            return result;
+        }
+
+        @Override
+        public PartListing listParts(ListPartsRequest request) {
+            Map<Integer, byte[]> parts = uploads.get(request.getUploadId());
+            PartListing listing = new PartListing();
+            listing.setUploadId(request.getUploadId());
+            for (Map.Entry<Integer, byte[]> part : new TreeMap<>(parts).entrySet()) {
+                PartSummary summary = new PartSummary();
+                summary.setPartNumber(part.getKey());
+                summary.setETag("etag-" + part.getKey());
+                summary.setSize(part.getValue().length);
+                listing.getParts().add(summary);
+            }
+            listing.setTruncated(false);
+            return listing;
+        }
+
+        @Override
+        public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+            uploads.remove(request.getUploadId());
+            abortedUploads.add(request.getUploadId());
+        }
+
+        private static byte[] readPart(UploadPartRequest request) {
+            byte[] part = new byte[(int) request.getPartSize()];
+            try {
+                if (request.getInputStream() != null) {
+                    InputStream in = request.getInputStream();
+                    int read = 0;
+                    while (read < part.length) {
+                        int n = in.read(part, read, part.length - read);
+                        if (n < 0) {
+                            break;
+                        }
+                        read += n;
+                    }
+                } else {
+                    try (RandomAccessFile in = new RandomAccessFile(request.getFile(), "r")) {
+                        in.seek(request.getFileOffset());
+                        in.readFully(part);
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return part;
+        }
+    }
+}
@@ -56,4 +56,26 @@ public class StepStatusTest {
         assertEquals("stepdone", StepStatus.DONE.getSearchString());
 
     }
+
+    @Test
+    public void testStepStatusGetNextStatus() {
+        assertEquals(StepStatus.OPEN, StepStatus.LOCKED.getNextStatus());
+        assertEquals(StepStatus.INWORK, StepStatus.OPEN.getNextStatus());
+        assertEquals(StepStatus.DONE, StepStatus.INWORK.getNextStatus());
+        assertEquals(StepStatus.DONE, StepStatus.DONE.getNextStatus());
+        assertEquals(StepStatus.DONE, StepStatus.ERROR.getNextStatus());
+        assertEquals(StepStatus.DEACTIVATED, StepStatus.DEACTIVATED.getNextStatus());
+        assertEquals(StepStatus.INWORK, StepStatus.QUEUED.getNextStatus());
+    }
+
+    @Test
+    public void testStepStatusGetPreviousStatus() {
+        assertEquals(StepStatus.LOCKED, StepStatus.LOCKED.getPreviousStatus());
+        assertEquals(StepStatus.LOCKED, StepStatus.OPEN.getPreviousStatus());
+        assertEquals(StepStatus.OPEN, StepStatus.INWORK.getPreviousStatus());
+        assertEquals(StepStatus.INWORK, StepStatus.DONE.getPreviousStatus());
+        assertEquals(StepStatus.OPEN, StepStatus.ERROR.getPreviousStatus());
+        assertEquals(StepStatus.DEACTIVATED, StepStatus.DEACTIVATED.getPreviousStatus());
+        assertEquals(StepStatus.OPEN, StepStatus.QUEUED.getPreviousStatus());
+    }
 }
@@ -0,0 +1,122 @@
+package de.sub.goobi.helper.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LongRunningTaskManagerTest {
+
+    public static class LimitedTask extends LongRunningTask {
+    }
+
+    private List<LongRunningTask> tasks;
+    private Map<String, Integer> running;
+    private Map<String, Integer> limits;
+
+    @Before
+    public void setUp() {
+        tasks = new ArrayList<>();
+        running = new HashMap<>();
+        limits = new HashMap<>();
+        limits.put("LongRunningTask", 0);
+        limits.put("LimitedTask", 1);
+    }
+
+    private LongRunningTask task(LongRunningTask task, int priority) {
+        task.setQueuePriority(priority);
+        tasks.add(task);
+        return task;
+    }
+
+    @Test
+    public void testOrderOfTasks() {
+        LongRunningTask first = task(new LongRunningTask(), 0);
+        task(new LongRunningTask(), 0);
+        assertSame(first, LongRunningTaskManager.selectNext(tasks, running, limits));
+
+        LongRunningTask important = task(new LongRunningTask(), 5);
+        assertSame(important, LongRunningTaskManager.selectNext(tasks, running, limits));
+
+        important.setStatus(LongRunningTaskStatus.RUNNING);
+        first.setStatus(LongRunningTaskStatus.CANCELLED);
+        assertSame(tasks.get(1), LongRunningTaskManager.selectNext(tasks, running, limits));
+    }
+
+    @Test
+    public void testLimitPerType() {
+        LongRunningTask limited = task(new LimitedTask(), 10);
+        LongRunningTask other = task(new LongRunningTask(), 0);
+        assertSame(limited, LongRunningTaskManager.selectNext(tasks, running, limits));
+
+        running.put("LimitedTask", 1);
+        assertSame(other, LongRunningTaskManager.selectNext(tasks, running, limits));
+
+        other.setStatus(LongRunningTaskStatus.DONE);
+        assertNull(LongRunningTaskManager.selectNext(tasks, running, limits));
+    }
+
+    @Test
+    public void testCancelWithoutThread() {
+        LongRunningTask task = new LongRunningTask();
+        task.cancel();
+        // the flag is checked by the tasks while they run in a worker of the manager
+        assertTrue(task.isInterrupted());
+    }
+
+    @Test
+    public void testMoveTask() {
+        LongRunningTask first = task(new LongRunningTask(), 0);
+        LongRunningTask second = task(new LongRunningTask(), 0);
+        LongRunningTask third = task(new LongRunningTask(), 0);
+
+        // the first task cannot be moved up, the last one not down
+        assertTrue(LongRunningTaskManager.moveTask(tasks, first, -1).isEmpty());
+        assertTrue(LongRunningTaskManager.moveTask(tasks, third, 1).isEmpty());
+        assertEquals(Arrays.asList(first, second, third), tasks);
+
+        // only the neighbours swap their places
+        LongRunningTaskManager.moveTask(tasks, third, -1);
+        assertEquals(Arrays.asList(first, third, second), tasks);
+        assertSame(first, LongRunningTaskManager.selectNext(tasks, running, limits));
+        first.setStatus(LongRunningTaskStatus.RUNNING);
+        assertSame(third, LongRunningTaskManager.selectNext(tasks, running, limits));
+
+        // the priorities follow the list, so only the tasks that changed their place must be saved
+        assertEquals(Arrays.asList(second, third), LongRunningTaskManager.moveTask(tasks, second, -1));
+        assertEquals(Arrays.asList(first, second, third), tasks);
+        assertSame(second, LongRunningTaskManager.selectNext(tasks, running, limits));
+
+        // a task added later is started after the moved tasks
+        LongRunningTask added = task(new LongRunningTask(), 0);
+        second.setStatus(LongRunningTaskStatus.DONE);
+        assertSame(third, LongRunningTaskManager.selectNext(tasks, running, limits));
+        third.setStatus(LongRunningTaskStatus.DONE);
+        assertSame(added, LongRunningTaskManager.selectNext(tasks, running, limits));
+    }
+
+    @Test
+    public void testCancelInterruptsOnlyRunningWorker() {
+        LongRunningTask task = new LongRunningTask();
+        task.setWorker(Thread.currentThread());
+        task.cancel();
+        // clears the flag as well
+        assertTrue(Thread.interrupted());
+
+        // the worker already runs the next task
+        task.setWorker(null);
+        task.cancel();
+        assertFalse(Thread.currentThread().isInterrupted());
+        assertTrue(task.isCancelRequested());
+    }
+}
@@ -0,0 +1,99 @@
+package de.sub.goobi.metadaten;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ThumbnailGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path imageFolder;
+    private Path thumbsFolder;
+
+    @Before
+    public void setUp() throws IOException {
+        imageFolder = folder.newFolder("images", "test_media").toPath();
+        thumbsFolder = folder.newFolder("thumbs").toPath();
+        writeImage(imageFolder.resolve("00000001.png"), 1000, 500);
+        writeImage(imageFolder.resolve("00000002.png"), 150, 100);
+    }
+
+    @Test
+    public void testCreateThumbnails() throws IOException {
+        ThumbnailGenerator generator = new ThumbnailGenerator(Arrays.asList(100, 400));
+        assertEquals(2, generator.createThumbnails(imageFolder, thumbsFolder));
+
+        BufferedImage large = ImageIO.read(thumbsFolder.resolve("test_media_400").resolve("00000001.jpg").toFile());
+        assertEquals(400, large.getWidth());
+        assertEquals(200, large.getHeight());
+        BufferedImage small = ImageIO.read(thumbsFolder.resolve("test_media_100").resolve("00000001.jpg").toFile());
+        assertEquals(100, small.getWidth());
+
+        // images are never enlarged
+        assertTrue(Files.exists(thumbsFolder.resolve("test_media_100").resolve("00000002.jpg")));
+        assertFalse(Files.exists(thumbsFolder.resolve("test_media_400").resolve("00000002.jpg")));
+
+        ThumbnailManifest manifest = ThumbnailManifest.read(ThumbnailGenerator.getManifestPath(thumbsFolder, "test_media"));
+        assertNotNull(manifest);
+        assertTrue(manifest.hasThumbnail("00000001.png", 400));
+        assertTrue(manifest.hasThumbnail("00000002.png", 100));
+        assertFalse(manifest.hasThumbnail("00000002.png", 400));
+        assertTrue(manifest.isFresh("00000001.png", Files.getLastModifiedTime(imageFolder.resolve("00000001.png")).toMillis()));
+    }
+
+    @Test
+    public void testOnlyChangedImagesAreScaled() throws IOException {
+        ThumbnailGenerator generator = new ThumbnailGenerator(Arrays.asList(100, 400));
+        generator.createThumbnails(imageFolder, thumbsFolder);
+        assertEquals(0, generator.createThumbnails(imageFolder, thumbsFolder));
+
+        Path image = imageFolder.resolve("00000001.png");
+        writeImage(image, 800, 800);
+        Files.setLastModifiedTime(image, java.nio.file.attribute.FileTime.fromMillis(System.currentTimeMillis() + 10000));
+        assertEquals(1, generator.createThumbnails(imageFolder, thumbsFolder));
+        assertEquals(400, ImageIO.read(thumbsFolder.resolve("test_media_400").resolve("00000001.jpg").toFile()).getHeight());
+
+        // other sizes create all thumbnails again
+        assertEquals(2, new ThumbnailGenerator(Arrays.asList(100)).createThumbnails(imageFolder, thumbsFolder));
+    }
+
+    @Test
+    public void testThumbnailsOfDeletedImagesAreRemoved() throws IOException {
+        ThumbnailGenerator generator = new ThumbnailGenerator(Arrays.asList(100, 400));
+        generator.createThumbnails(imageFolder, thumbsFolder);
+        Files.delete(imageFolder.resolve("00000001.png"));
+        generator.createThumbnails(imageFolder, thumbsFolder);
+
+        assertFalse(Files.exists(thumbsFolder.resolve("test_media_400").resolve("00000001.jpg")));
+        ThumbnailManifest manifest = ThumbnailManifest.read(ThumbnailGenerator.getManifestPath(thumbsFolder, "test_media"));
+        assertEquals(1, manifest.getFilenames().size());
+    }
+
+    @Test
+    public void testScale() {
+        BufferedImage scaled = ThumbnailGenerator.scale(new BufferedImage(1000, 500, BufferedImage.TYPE_INT_ARGB), 123, 61);
+        assertEquals(123, scaled.getWidth());
+        assertEquals(61, scaled.getHeight());
+        assertEquals(BufferedImage.TYPE_INT_RGB, scaled.getType());
+    }
+
+    private static void writeImage(Path path, int width, int height) throws IOException {
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", path.toFile());
+    }
+}
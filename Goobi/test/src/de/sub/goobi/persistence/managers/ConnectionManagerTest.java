@@ -0,0 +1,70 @@
+package de.sub.goobi.persistence.managers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.dbcp2.DriverManagerConnectionFactory;
+import org.apache.commons.dbutils.QueryRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConnectionManagerTest {
+
+    private ConnectionManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new ConnectionManager(new DriverManagerConnectionFactory("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1", null), 2, 2, 1000, 60000, 5);
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void testConnectionsAreReused() throws SQLException {
+        try (Connection connection = manager.getConnection()) {
+            new QueryRunner().update(connection, "CREATE TABLE IF NOT EXISTS pooltest (id INT)");
+        }
+        try (Connection connection = manager.getConnection()) {
+            Map<String, Long> statistics = manager.getPoolStatistics();
+            assertEquals(Long.valueOf(1), statistics.get("active"));
+            assertEquals(Long.valueOf(0), statistics.get("idle"));
+            assertEquals(Long.valueOf(1), statistics.get("created"));
+        }
+        assertEquals(Long.valueOf(1), manager.getPoolStatistics().get("idle"));
+    }
+
+    @Test
+    public void testStatementsAreMonitored() throws SQLException {
+        try (Connection connection = manager.getConnection(); PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+            assertEquals(5, statement.getQueryTimeout());
+            assertSame(connection, statement.getConnection());
+            assertNotNull(statement.executeQuery());
+        }
+    }
+
+    @Test
+    public void testBorrowTimeout() throws SQLException {
+        try (Connection first = manager.getConnection(); Connection second = manager.getConnection()) {
+            try (Connection third = manager.getConnection()) {
+                fail("The pool has only two connections");
+            } catch (SQLException e) {
+                // MySQLHelper reports this to the caller instead of trying again
+                assertTrue(e.getCause() instanceof NoSuchElementException);
+            }
+            assertEquals(Long.valueOf(2), manager.getPoolStatistics().get("created"));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package de.sub.goobi.persistence.managers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class FilterQueryTest {
+
+    @Test
+    public void testAnd() {
+        FilterQuery first = new FilterQuery("a = ?", Arrays.<Object> asList(1));
+        FilterQuery second = new FilterQuery("b like ?", Arrays.<Object> asList("x%"));
+        FilterQuery combined = first.and(second).and("c = 3");
+        assertEquals("a = ? AND b like ? AND c = 3", combined.getSql());
+        assertArrayEquals(new Object[] { 1, "x%" }, combined.getParameterArray());
+
+        assertTrue(new FilterQuery(null).isEmpty());
+        assertEquals("c = 3", new FilterQuery("").and("c = 3").getSql());
+        assertEquals("a = ?", first.and("").getSql());
+    }
+
+    @Test
+    public void testToInlineSql() {
+        FilterQuery query = new FilterQuery("id in (?, ?) AND title like ?", Arrays.<Object> asList(1, 2, "%O'Neil%"));
+        assertEquals("id in (1, 2) AND title like '%O''Neil%'", query.toInlineSql());
+        assertEquals("x = 1", new FilterQuery("x = 1").toInlineSql());
+    }
+}
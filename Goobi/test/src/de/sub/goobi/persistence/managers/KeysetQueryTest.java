@@ -0,0 +1,91 @@
+package de.sub.goobi.persistence.managers;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ColumnListHandler;
+import org.junit.Test;
+
+public class KeysetQueryTest {
+
+    @Test
+    public void testOrder() {
+        assertEquals("prozesse.ProzesseID", new KeysetQuery(null, "prozesse.ProzesseID").getOrder());
+        assertEquals("prozesse.Titel desc, prozesse.ProzesseID", new KeysetQuery("prozesse.Titel desc", "prozesse.ProzesseID").getOrder());
+        assertEquals("prozesse.ProzesseID desc", new KeysetQuery("prozesse.ProzesseID desc", "prozesse.ProzesseID").getOrder());
+    }
+
+    @Test
+    public void testSeekCondition() {
+        KeysetQuery query = new KeysetQuery("prozesse.Titel", "prozesse.ProzesseID");
+        List<Object> params = new ArrayList<>();
+        assertEquals("((prozesse.Titel > ?) OR (prozesse.Titel = ? AND prozesse.ProzesseID > ?))",
+                query.getSeekCondition(new Object[] { "abc", 5 }, params));
+        assertEquals(Arrays.asList((Object) "abc", "abc", 5), params);
+
+        params.clear();
+        assertEquals("((prozesse.Titel IS NOT NULL) OR (prozesse.Titel IS NULL AND prozesse.ProzesseID > ?))",
+                query.getSeekCondition(new Object[] { null, 5 }, params));
+        assertEquals(Arrays.asList((Object) 5), params);
+    }
+
+    @Test
+    public void testSeekConditionDescending() {
+        KeysetQuery query = new KeysetQuery("prozesse.Titel desc", "prozesse.ProzesseID");
+        List<Object> params = new ArrayList<>();
+        assertEquals("((prozesse.Titel IS NULL AND prozesse.ProzesseID > ?))", query.getSeekCondition(new Object[] { null, 5 }, params));
+
+        params.clear();
+        assertEquals("(((prozesse.Titel < ? OR prozesse.Titel IS NULL)) OR (prozesse.Titel = ? AND prozesse.ProzesseID > ?))",
+                query.getSeekCondition(new Object[] { "abc", 5 }, params));
+    }
+
+    @Test
+    public void testPagesOfDatabase() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:h2:mem:keyset;MODE=MySQL");
+        try {
+            QueryRunner run = new QueryRunner();
+            run.update(connection, "CREATE TABLE prozesse (ProzesseID INT PRIMARY KEY, Titel VARCHAR(255), prioritaet INT)");
+            // few different values, so most pages start and end within a group of equal sort keys
+            for (int id = 1; id <= 25; id++) {
+                String title = id % 5 == 0 ? null : "title-" + (id % 3);
+                run.update(connection, "INSERT INTO prozesse VALUES (?, ?, ?)", id, title, id % 2);
+            }
+            FilterQuery filter = new FilterQuery("prozesse.ProzesseID <> ?", Arrays.asList((Object) 7));
+
+            for (String order : new String[] { "prozesse.Titel", "prozesse.Titel desc", "prioritaet desc, prozesse.Titel",
+                    "prioritaet, prozesse.Titel desc, prozesse.ProzesseID desc" }) {
+                KeysetQuery query = new KeysetQuery(order, "prozesse.ProzesseID");
+                List<Integer> expected = run.query(connection,
+                        "SELECT ProzesseID FROM prozesse WHERE ProzesseID <> 7 ORDER BY " + query.getOrder(), new ColumnListHandler<Integer>(1));
+                assertEquals(24, expected.size());
+
+                List<Object> ids = new ArrayList<>();
+                Object[] seekKey = null;
+                for (int page = 0; page < 9; page++) {
+                    List<Object[]> rows = query.getPageKeys(connection, "FROM prozesse WHERE 1 = 1", filter, seekKey, page * 3, 3);
+                    // the page is the same, if it is loaded with the offset
+                    List<Object[]> offsetRows = query.getPageKeys(connection, "FROM prozesse WHERE 1 = 1", filter, null, page * 3, 3);
+                    assertEquals(order, KeysetQuery.getIds(offsetRows), KeysetQuery.getIds(rows));
+                    for (Object[] row : rows) {
+                        ids.add(row[0]);
+                    }
+                    seekKey = KeysetQuery.getLastKey(rows);
+                    if (seekKey == null) {
+                        break;
+                    }
+                }
+                assertEquals(order, expected, ids);
+            }
+        } finally {
+            connection.close();
+        }
+    }
+}
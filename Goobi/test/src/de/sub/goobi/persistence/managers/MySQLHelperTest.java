@@ -1,8 +1,15 @@
 package de.sub.goobi.persistence.managers;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.commons.dbutils.QueryRunner;
 import org.junit.Test;
 
 public class MySQLHelperTest {
@@ -17,4 +24,21 @@ public class MySQLHelperTest {
         assertFalse(MySQLHelper.checkMariadbVersion("10.2.2-MariaDB-0ubuntu0.16.04.1"));
         assertTrue(MySQLHelper.checkMariadbVersion("10.3.12-MariaDB-0ubuntu0.20.04.1"));
     }
+
+    @Test
+    public void testInsertBatch() throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:insertBatch")) {
+            QueryRunner run = new QueryRunner();
+            run.update(connection, "CREATE TABLE batchtest (id INT AUTO_INCREMENT PRIMARY KEY, title VARCHAR(255))");
+            connection.setAutoCommit(false);
+            Object[][] params = { { "first" }, { "second" }, { "third" } };
+            List<Integer> ids = MySQLHelper.insertBatch(connection, "INSERT INTO batchtest (title) VALUES (?)", params);
+            assertEquals(3, ids.size());
+            assertEquals("second", run.query(connection, "SELECT title FROM batchtest WHERE id = ?", MySQLHelper.resultSetToStringHandler, ids.get(1)));
+
+            // nothing is visible after a rollback
+            MySQLHelper.rollback(connection);
+            assertEquals(Integer.valueOf(0), run.query(connection, "SELECT COUNT(*) FROM batchtest", MySQLHelper.resultSetToIntegerHandler));
+        }
+    }
 }
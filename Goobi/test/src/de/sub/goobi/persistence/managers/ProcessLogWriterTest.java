@@ -0,0 +1,99 @@
+package de.sub.goobi.persistence.managers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.goobi.beans.LogEntry;
+import org.goobi.production.enums.LogType;
+import org.junit.Test;
+
+public class ProcessLogWriterTest {
+
+    private static class RecordingWriter extends ProcessLogWriter {
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        private final List<LogEntry> direct = Collections.synchronizedList(new ArrayList<LogEntry>());
+        private final List<LogEntry> stored = Collections.synchronizedList(new ArrayList<LogEntry>());
+        private boolean failBatch = false;
+
+        RecordingWriter(int queueSize, long flushInterval, boolean asynchronous) {
+            super(queueSize, flushInterval, asynchronous);
+        }
+
+        @Override
+        void store(List<LogEntry> batch) throws SQLException {
+            if (failBatch) {
+                throw new SQLException("batch failed");
+            }
+            batchSizes.add(batch.size());
+            stored.addAll(batch);
+        }
+
+        @Override
+        void writeDirectly(LogEntry entry) {
+            direct.add(entry);
+        }
+    }
+
+    private static LogEntry entry(int number) {
+        return LogEntry.build(1, LogType.DEBUG, "message " + number, "test");
+    }
+
+    @Test
+    public void testFlushWritesBatches() {
+        RecordingWriter writer = new RecordingWriter(10000, 60000, true);
+        for (int i = 0; i < 1200; i++) {
+            writer.add(entry(i));
+        }
+        writer.flush();
+        assertEquals(0, writer.getWaitingEntries());
+        assertEquals(1200, writer.stored.size());
+        assertTrue(writer.direct.isEmpty());
+        for (int size : writer.batchSizes) {
+            assertTrue(size <= ProcessLogWriter.BATCH_SIZE);
+        }
+        writer.close();
+    }
+
+    @Test
+    public void testFlushInterval() throws Exception {
+        RecordingWriter writer = new RecordingWriter(100, 50, true);
+        writer.add(entry(1));
+        long end = System.currentTimeMillis() + 5000;
+        while (writer.stored.isEmpty() && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, writer.stored.size());
+        writer.close();
+    }
+
+    @Test
+    public void testFullQueueAndSynchronousMode() {
+        RecordingWriter writer = new RecordingWriter(2, 60000, true);
+        writer.add(entry(1));
+        writer.add(entry(2));
+        writer.add(entry(3));
+        assertEquals(1, writer.direct.size());
+        writer.close();
+        assertEquals(2, writer.stored.size());
+
+        RecordingWriter synchronous = new RecordingWriter(100, 60000, false);
+        synchronous.add(entry(1));
+        assertEquals(1, synchronous.direct.size());
+        assertEquals(0, synchronous.getWaitingEntries());
+    }
+
+    @Test
+    public void testFailedBatchIsWrittenOneByOne() {
+        RecordingWriter writer = new RecordingWriter(100, 60000, true);
+        writer.failBatch = true;
+        writer.add(entry(1));
+        writer.add(entry(2));
+        writer.close();
+        assertEquals(2, writer.direct.size());
+    }
+}
@@ -0,0 +1,92 @@
+package de.sub.goobi.persistence.managers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.goobi.beans.Process;
+import org.goobi.beans.Processproperty;
+import org.goobi.beans.Ruleset;
+import org.goobi.beans.Step;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProcessMysqlHelperTest {
+
+    private Connection connection;
+
+    private QueryRunner run = new QueryRunner();
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:saveprocess");
+        run.update(connection, "CREATE TABLE prozesse (ProzesseID INT AUTO_INCREMENT PRIMARY KEY, Titel VARCHAR(255), ausgabename VARCHAR(255), "
+                + "IstTemplate BOOLEAN, swappedOut BOOLEAN, inAuswahllisteAnzeigen BOOLEAN, sortHelperStatus VARCHAR(255), sortHelperImages INT, "
+                + "sortHelperArticles INT, erstellungsdatum TIMESTAMP, ProjekteID INT, MetadatenKonfigurationID INT, sortHelperDocstructs INT, "
+                + "sortHelperMetadata INT, batchID INT, docketID INT, mediaFolderExists BOOLEAN)");
+        // the title of a step must not be empty
+        StringBuilder sql = new StringBuilder("CREATE TABLE schritte (SchritteID INT AUTO_INCREMENT PRIMARY KEY, Titel VARCHAR(255) NOT NULL");
+        for (String column : Arrays.asList("Prioritaet", "Reihenfolge", "Bearbeitungsstatus", "BearbeitungsZeitpunkt", "BearbeitungsBeginn",
+                "BearbeitungsEnde", "homeverzeichnisNutzen", "typMetadaten", "typAutomatisch", "typImportFileUpload", "typExportRus",
+                "typImagesLesen", "typImagesSchreiben", "typExportDMS", "typBeimAnnehmenModul", "typBeimAnnehmenAbschliessen",
+                "typBeimAnnehmenModulUndAbschliessen", "typAutomatischScriptpfad", "typBeimAbschliessenVerifizieren", "typModulName",
+                "BearbeitungsBenutzerID", "ProzesseID", "edittype", "typScriptStep", "scriptName1", "scriptName2", "typAutomatischScriptpfad2",
+                "scriptName3", "typAutomatischScriptpfad3", "scriptName4", "typAutomatischScriptpfad4", "scriptName5", "typAutomatischScriptpfad5",
+                "batchStep", "stepPlugin", "validationPlugin", "delayStep", "updateMetadataIndex", "generateDocket", "httpStep", "httpMethod",
+                "httpUrl", "httpJsonBody", "httpCloseStep")) {
+            sql.append(", ").append(column).append(" VARCHAR(255)");
+        }
+        run.update(connection, sql.append(")").toString());
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        run.update(connection, "DROP ALL OBJECTS");
+        connection.close();
+    }
+
+    @Test
+    public void testRollbackWhenStepFails() throws SQLException {
+        Ruleset ruleset = new Ruleset();
+        ruleset.setId(1);
+        Process process = new Process();
+        process.setTitel("process");
+        process.setRegelsatz(ruleset);
+
+        Step first = new Step();
+        first.setTitel("first");
+        first.setProzess(process);
+        Step second = new Step();
+        second.setTitel(null);
+        second.setProzess(process);
+        List<Step> steps = Arrays.asList(first, second);
+        process.setSchritte(steps);
+
+        try {
+            ProcessMysqlHelper.saveProcess(process, steps, new ArrayList<Processproperty>(), null, null, null, connection);
+            fail("the second step must not be saved");
+        } catch (SQLException e) {
+            // expected
+        }
+
+        // the process and the first step were inserted before the second step failed, both rows are rolled back
+        assertEquals(Integer.valueOf(0), run.query(connection, "SELECT COUNT(*) FROM prozesse", MySQLHelper.resultSetToIntegerHandler));
+        assertEquals(Integer.valueOf(0), run.query(connection, "SELECT COUNT(*) FROM schritte", MySQLHelper.resultSetToIntegerHandler));
+        assertTrue(connection.getAutoCommit());
+
+        // the generated ids are removed again, the next save must insert the rows
+        assertNull(process.getId());
+        assertNull(first.getId());
+        assertNull(second.getId());
+    }
+}
@@ -0,0 +1,60 @@
+package de.sub.goobi.persistence.managers;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class QueryStatisticsTest {
+
+    @Test
+    public void testFingerprint() {
+        assertEquals("SELECT * FROM prozesse WHERE ProzesseID = ? AND Titel LIKE ?",
+                QueryStatistics.fingerprint("SELECT * FROM prozesse\n   WHERE ProzesseID = 12 AND Titel LIKE '%it''s%'"));
+        assertEquals("SELECT * FROM schritte WHERE ProzesseID IN (?)", QueryStatistics.fingerprint(
+                "SELECT * FROM schritte WHERE ProzesseID IN (1, 2, 3)"));
+        // numbers in names are kept
+        assertEquals("SELECT col1 FROM table2 LIMIT ?, ?", QueryStatistics.fingerprint("SELECT col1 FROM table2 LIMIT 10, 20"));
+        assertEquals("UPDATE t SET a = ?, b = ? WHERE c IN (?) AND d = ?", QueryStatistics.fingerprint(
+                "UPDATE t SET a = -1.5, b = 'x\\'y' WHERE c IN ( 'a', 'b' ) AND d = 2"));
+        assertEquals("SELECT f(?, x) FROM t", QueryStatistics.fingerprint("SELECT f(1, x) FROM t"));
+    }
+
+    @Test
+    public void testFingerprintLongLiteral() {
+        // a long string literal must not exhaust the stack
+        StringBuilder sql = new StringBuilder("INSERT INTO metadata VALUES ('");
+        for (int i = 0; i < 100000; i++) {
+            sql.append("a''b\\'c");
+        }
+        sql.append("')");
+        assertEquals("INSERT INTO metadata VALUES (?)", QueryStatistics.fingerprint(sql.toString()));
+    }
+
+    @Test
+    public void testDisabled() {
+        QueryStatistics statistics = new QueryStatistics(100, false);
+        statistics.record("SELECT * FROM prozesse WHERE ProzesseID = 1", 10);
+        statistics.record("SELECT * FROM prozesse WHERE ProzesseID = 2", 150);
+        assertEquals(0, statistics.getEntries(10).size());
+    }
+
+    @Test
+    public void testRecord() {
+        QueryStatistics statistics = new QueryStatistics(100, true);
+        statistics.record("SELECT * FROM prozesse WHERE ProzesseID = 1", 10);
+        statistics.record("SELECT * FROM prozesse WHERE ProzesseID = 2", 150);
+        statistics.record("SELECT * FROM benutzer", 20);
+
+        List<QueryStatistics.Entry> entries = statistics.getEntries(10);
+        assertEquals(2, entries.size());
+        QueryStatistics.Entry first = entries.get(0);
+        assertEquals("SELECT * FROM prozesse WHERE ProzesseID = ?", first.getFingerprint());
+        assertEquals(2, first.getCount());
+        assertEquals(1, first.getSlowCount());
+        assertEquals(160, first.getTotalTime());
+        assertEquals(150, first.getMaxTime());
+        assertEquals(1, statistics.getEntries(1).size());
+    }
+}
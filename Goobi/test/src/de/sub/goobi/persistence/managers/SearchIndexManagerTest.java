@@ -0,0 +1,29 @@
+package de.sub.goobi.persistence.managers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+public class SearchIndexManagerTest {
+
+    @Test
+    public void testTokenize() {
+        assertEquals(Arrays.asList("die", "große", "reise", "1865"), SearchIndexManager.tokenize("Die große Reise (1865)"));
+        assertEquals(Arrays.asList("ppn", "123", "x"), SearchIndexManager.tokenize("PPN_123-X, ppn"));
+        assertTrue(SearchIndexManager.tokenize(" -- ").isEmpty());
+        assertTrue(SearchIndexManager.tokenize(null).isEmpty());
+    }
+
+    @Test
+    public void testTokenizeLongWord() {
+        List<String> tokens = SearchIndexManager.tokenize(StringUtils.repeat("a", 150) + " b");
+        assertEquals(2, tokens.size());
+        assertEquals(SearchIndexManager.MAX_TOKEN_LENGTH, tokens.get(0).length());
+        assertEquals("b", tokens.get(1));
+    }
+}
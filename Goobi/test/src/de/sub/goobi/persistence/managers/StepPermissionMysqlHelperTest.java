@@ -0,0 +1,94 @@
+package de.sub.goobi.persistence.managers;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ColumnListHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StepPermissionMysqlHelperTest {
+
+    private Connection connection;
+
+    private QueryRunner run = new QueryRunner();
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:steppermissions");
+        run.update(connection, "CREATE TABLE prozesse (ProzesseID INT PRIMARY KEY, ProjekteID INT)");
+        run.update(connection, "CREATE TABLE schritte (SchritteID INT PRIMARY KEY, ProzesseID INT, Bearbeitungsstatus INT)");
+        run.update(connection, "CREATE TABLE projektbenutzer (BenutzerID INT, ProjekteID INT)");
+        run.update(connection, "CREATE TABLE benutzergruppenmitgliedschaft (BenutzerID INT, BenutzerGruppenID INT)");
+        run.update(connection, "CREATE TABLE schritteberechtigtegruppen (schritteID INT, BenutzerGruppenID INT)");
+        run.update(connection, "CREATE TABLE schritteberechtigtebenutzer (schritteID INT, BenutzerID INT)");
+        run.update(connection, "CREATE TABLE user_step_permissions (userid INT, stepid INT, status INT, PRIMARY KEY (userid, stepid))");
+
+        // user 1 and 2 are members of project 1, user 3 is member of project 2
+        run.update(connection, "INSERT INTO prozesse VALUES (1, 1), (2, 2)");
+        run.update(connection, "INSERT INTO projektbenutzer VALUES (1, 1), (2, 1), (3, 2)");
+        // user 1 and 3 are members of group 10
+        run.update(connection, "INSERT INTO benutzergruppenmitgliedschaft VALUES (1, 10), (3, 10)");
+        // step 1 is open and assigned to group 10, step 2 is done, step 3 is in work and assigned to user 2 directly
+        run.update(connection, "INSERT INTO schritte VALUES (1, 1, 1), (2, 1, 3), (3, 1, 2), (4, 2, 4)");
+        run.update(connection, "INSERT INTO schritteberechtigtegruppen VALUES (1, 10), (2, 10), (4, 10)");
+        run.update(connection, "INSERT INTO schritteberechtigtebenutzer VALUES (3, 2)");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void testRefreshSteps() throws SQLException {
+        StepPermissionMysqlHelper.refreshSteps(connection, Arrays.asList(1, 2, 3, null));
+        assertEquals(Arrays.asList("1-1", "2-3"), getPermissions());
+
+        // the step is closed, its rows are removed
+        run.update(connection, "UPDATE schritte SET Bearbeitungsstatus = 3 WHERE SchritteID = 1");
+        StepPermissionMysqlHelper.refreshSteps(connection, Arrays.asList(1));
+        assertEquals(Arrays.asList("2-3"), getPermissions());
+    }
+
+    @Test
+    public void testRefreshUser() throws SQLException {
+        StepPermissionMysqlHelper.refreshUser(connection, 3);
+        assertEquals(Arrays.asList("3-4"), getPermissions());
+
+        // user 3 joins project 1, the steps of group 10 in this project are added
+        run.update(connection, "INSERT INTO projektbenutzer VALUES (3, 1)");
+        StepPermissionMysqlHelper.refreshUser(connection, 3);
+        assertEquals(Arrays.asList("3-1", "3-4"), getPermissions());
+
+        // user 3 leaves group 10
+        run.update(connection, "DELETE FROM benutzergruppenmitgliedschaft WHERE BenutzerID = 3");
+        StepPermissionMysqlHelper.refreshUser(connection, 3);
+        assertEquals(0, getPermissions().size());
+    }
+
+    @Test
+    public void testRebuildRange() throws SQLException {
+        run.update(connection, "INSERT INTO user_step_permissions VALUES (2, 2, 3), (1, 9, 1)");
+        StepPermissionMysqlHelper.rebuildRange(connection, 1, 2, false);
+        assertEquals(Arrays.asList("1-1", "1-9"), getPermissions());
+
+        // a step created after the rebuild was started has an id above the last range
+        run.update(connection, "INSERT INTO schritte VALUES (5, 1, 1)");
+        run.update(connection, "INSERT INTO schritteberechtigtebenutzer VALUES (5, 1)");
+        StepPermissionMysqlHelper.rebuildRange(connection, 3, 4, true);
+        assertEquals(Arrays.asList("1-1", "1-5", "2-3", "3-4"), getPermissions());
+    }
+
+    private List<String> getPermissions() throws SQLException {
+        return run.query(connection, "SELECT CONCAT(userid, '-', stepid) FROM user_step_permissions ORDER BY userid, stepid",
+                new ColumnListHandler<String>(1));
+    }
+}
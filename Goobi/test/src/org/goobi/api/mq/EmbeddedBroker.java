@@ -0,0 +1,57 @@
+package org.goobi.api.mq;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.qpid.server.SystemLauncher;
+
+/**
+ * Qpid broker running in memory on a free port, with the user guest/guest
+ */
+class EmbeddedBroker {
+
+    private SystemLauncher launcher;
+    private Path workDir;
+    private int port;
+
+    void start() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        workDir = Files.createTempDirectory("qpid");
+        System.setProperty("qpid.work_dir", workDir.toString());
+        String config = "{\"name\":\"test\",\"modelVersion\":\"7.0\","
+                + "\"authenticationproviders\":[{\"name\":\"plain\",\"type\":\"Plain\",\"secureOnlyMechanisms\":[],"
+                + "\"users\":[{\"name\":\"guest\",\"password\":\"guest\",\"type\":\"managed\"}]}],"
+                + "\"ports\":[{\"name\":\"AMQP\",\"port\":" + port + ",\"authenticationProvider\":\"plain\","
+                + "\"virtualhostaliases\":[{\"name\":\"defaultAlias\",\"type\":\"defaultAlias\"}]}],"
+                + "\"virtualhostnodes\":[{\"name\":\"default\",\"type\":\"Memory\",\"defaultVirtualHostNode\":\"true\","
+                + "\"virtualHostInitialConfiguration\":\"{\\\"type\\\":\\\"Memory\\\"}\"}]}";
+        Path configFile = workDir.resolve("qpid.json");
+        Files.write(configFile, config.getBytes(StandardCharsets.UTF_8));
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("type", "Memory");
+        attributes.put("initialConfigurationLocation", configFile.toUri().toURL().toExternalForm());
+        launcher = new SystemLauncher();
+        launcher.startup(attributes);
+    }
+
+    void stop() throws IOException {
+        if (launcher != null) {
+            launcher.shutdown();
+        }
+        if (workDir != null) {
+            FileUtils.deleteQuietly(workDir.toFile());
+        }
+    }
+
+    int getPort() {
+        return port;
+    }
+}
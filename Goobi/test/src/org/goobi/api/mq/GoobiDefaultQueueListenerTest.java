@@ -0,0 +1,216 @@
+package org.goobi.api.mq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.goobi.production.enums.PluginReturnValue;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.GetResponse;
+
+public class GoobiDefaultQueueListenerTest {
+
+    private static final EmbeddedBroker broker = new EmbeddedBroker();
+
+    private Connection connection;
+    private Channel channel;
+    private GoobiDefaultQueueListener listener;
+
+    @BeforeClass
+    public static void startBroker() throws Exception {
+        broker.start();
+    }
+
+    @AfterClass
+    public static void stopBroker() throws IOException {
+        broker.stop();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        connection = MessagePublisher.createConnectionFactory("localhost", broker.getPort(), "guest", "guest").newConnection();
+        channel = connection.createChannel();
+        MessagePublisher.declareQueue(channel, GoobiDefaultQueueListener.DEFAULT_QUEUE);
+        MessagePublisher.declareQueue(channel, MessagePublisher.getDeadLetterQueueName(GoobiDefaultQueueListener.DEFAULT_QUEUE));
+        channel.queuePurge(GoobiDefaultQueueListener.DEFAULT_QUEUE);
+        channel.queuePurge(MessagePublisher.getDeadLetterQueueName(GoobiDefaultQueueListener.DEFAULT_QUEUE));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (listener != null) {
+            listener.close();
+        }
+        connection.close();
+    }
+
+    @Test
+    public void testRetryUntilSuccess() throws Exception {
+        CountingHandler handler = new CountingHandler("retry", 2);
+        startListener(handler, 2);
+        send("retry");
+
+        waitFor(handler.calls, 3);
+        assertEquals(0, waitForQueueSize(GoobiDefaultQueueListener.DEFAULT_QUEUE, 0));
+        assertEquals(0, channel.messageCount(MessagePublisher.getDeadLetterQueueName(GoobiDefaultQueueListener.DEFAULT_QUEUE)));
+    }
+
+    @Test
+    public void testDeadLetterAfterRetries() throws Exception {
+        CountingHandler handler = new CountingHandler("failing", Integer.MAX_VALUE);
+        startListener(handler, 2);
+        send("failing");
+
+        String deadLetterQueue = MessagePublisher.getDeadLetterQueueName(GoobiDefaultQueueListener.DEFAULT_QUEUE);
+        assertEquals(1, waitForQueueSize(deadLetterQueue, 1));
+        assertEquals(3, handler.calls.get());
+        GetResponse response = channel.basicGet(deadLetterQueue, true);
+        assertNotNull(response);
+        assertEquals(3, ((Number) response.getProps().getHeaders().get("x-goobi-attempts")).intValue());
+    }
+
+    @Test
+    public void testUnknownTicketType() throws Exception {
+        startListener(new CountingHandler("known", 0), 0);
+        send("unknown");
+
+        assertEquals(1, waitForQueueSize(MessagePublisher.getDeadLetterQueueName(GoobiDefaultQueueListener.DEFAULT_QUEUE), 1));
+    }
+
+    @Test
+    public void testUnfinishedTicketIsDeliveredAgain() throws Exception {
+        BlockingHandler blocking = new BlockingHandler("slow");
+        startListener(blocking, 0);
+        send("slow");
+        waitFor(blocking.calls, 1);
+        listener.close();
+        listener = null;
+
+        assertEquals(1, waitForQueueSize(GoobiDefaultQueueListener.DEFAULT_QUEUE, 1));
+    }
+
+    @Test(timeout = 30000)
+    public void testRequeueDeadLetters() throws Exception {
+        CountingHandler handler = new CountingHandler("known", 0);
+        startListener(handler, 0);
+        String deadLetterQueue = MessagePublisher.getDeadLetterQueueName(GoobiDefaultQueueListener.DEFAULT_QUEUE);
+        sendTo(deadLetterQueue, "known");
+        // tickets of an unknown type are moved back to the dead letter queue at once
+        sendTo(deadLetterQueue, "unknown");
+        sendTo(deadLetterQueue, "unknown");
+
+        MessagePublisher publisher = new MessagePublisher(MessagePublisher.createConnectionFactory("localhost", broker.getPort(), "guest", "guest"));
+        try {
+            assertEquals(3, GoobiDefaultQueueListener.requeueDeadLetters(publisher));
+        } finally {
+            publisher.close();
+        }
+        waitFor(handler.calls, 1);
+        assertEquals(2, waitForQueueSize(deadLetterQueue, 2));
+        assertEquals(0, waitForQueueSize(GoobiDefaultQueueListener.DEFAULT_QUEUE, 0));
+        assertEquals(1, handler.calls.get());
+    }
+
+    @Test
+    public void testRetryDelay() {
+        GoobiDefaultQueueListener delays = new GoobiDefaultQueueListener(new TicketHandlerRegistry(), 1, 1, 3, 1000);
+        assertEquals(1000, delays.getRetryDelay(1));
+        assertEquals(2000, delays.getRetryDelay(2));
+        assertEquals(4000, delays.getRetryDelay(3));
+        delays.close();
+    }
+
+    private void startListener(TicketHandler<PluginReturnValue> handler, int maxRetries) {
+        TicketHandlerRegistry registry = new TicketHandlerRegistry();
+        registry.register(handler);
+        listener = new GoobiDefaultQueueListener(registry, 5, 2, maxRetries, 10);
+        listener.register("localhost", broker.getPort(), "guest", "guest");
+    }
+
+    private void send(String ticketType) throws IOException {
+        sendTo(GoobiDefaultQueueListener.DEFAULT_QUEUE, ticketType);
+    }
+
+    private void sendTo(String queueName, String ticketType) throws IOException {
+        String message = new Gson().toJson(new TaskTicket(ticketType));
+        channel.basicPublish("", queueName, null, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long waitForQueueSize(String queueName, long expected) throws Exception {
+        long size = -1;
+        for (int i = 0; i < 100; i++) {
+            size = channel.messageCount(queueName);
+            if (size == expected) {
+                break;
+            }
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        return size;
+    }
+
+    private static void waitFor(AtomicInteger counter, int expected) throws InterruptedException {
+        for (int i = 0; i < 100 && counter.get() < expected; i++) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        assertTrue(counter.get() >= expected);
+    }
+
+    private static class CountingHandler implements TicketHandler<PluginReturnValue> {
+        private final String name;
+        private final int failures;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private CountingHandler(String name, int failures) {
+            this.name = name;
+            this.failures = failures;
+        }
+
+        @Override
+        public PluginReturnValue call(TaskTicket ticket) {
+            return calls.incrementAndGet() <= failures ? PluginReturnValue.ERROR : PluginReturnValue.FINISH;
+        }
+
+        @Override
+        public String getTicketHandlerName() {
+            return name;
+        }
+    }
+
+    private static class BlockingHandler implements TicketHandler<PluginReturnValue> {
+        private final String name;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private BlockingHandler(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public PluginReturnValue call(TaskTicket ticket) {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return PluginReturnValue.FINISH;
+        }
+
+        @Override
+        public String getTicketHandlerName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package org.goobi.api.mq;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.GetResponse;
+import com.rabbitmq.client.ShutdownSignalException;
+
+public class MessagePublisherTest {
+
+    private static final EmbeddedBroker broker = new EmbeddedBroker();
+
+    private Connection connection;
+    private Channel channel;
+    private MessagePublisher publisher;
+
+    // channels opened by the publisher
+    private final List<RecordedChannel> publisherChannels = Collections.synchronizedList(new ArrayList<RecordedChannel>());
+    // number of the next opened channels that fail on their first publish
+    private int channelsToBreak = 0;
+    // queues declared as not durable by an older version, the embedded broker does not check this
+    private final Set<String> notDurableQueues = Collections.synchronizedSet(new HashSet<String>());
+
+    @BeforeClass
+    public static void startBroker() throws Exception {
+        broker.start();
+    }
+
+    @AfterClass
+    public static void stopBroker() throws IOException {
+        broker.stop();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        connection = MessagePublisher.createConnectionFactory("localhost", broker.getPort(), "guest", "guest").newConnection();
+        channel = connection.createChannel();
+        publisher = new MessagePublisher(new RecordingConnectionFactory());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        publisher.close();
+        connection.close();
+    }
+
+    @Test
+    public void testPublishIsConfirmed() throws Exception {
+        String queue = newQueueName();
+        publisher.publish(queue, "{\"taskType\":\"confirmed\"}");
+
+        // the broker confirmed the message, so it is in the queue already
+        assertEquals(1, channel.messageCount(queue));
+        GetResponse response = channel.basicGet(queue, true);
+        assertNotNull(response);
+        assertEquals("{\"taskType\":\"confirmed\"}", new String(response.getBody(), StandardCharsets.UTF_8));
+        assertEquals(Integer.valueOf(2), response.getProps().getDeliveryMode());
+        assertEquals(1, publisherChannels.size());
+    }
+
+    @Test
+    public void testDurableQueue() throws Exception {
+        String queue = newQueueName();
+        publisher.publish(queue, "{}");
+        publisher.publish(queue, "{}");
+
+        // declared once per channel: durable, not exclusive, not deleted automatically
+        List<Object[]> declarations = publisherChannels.get(0).declarations;
+        assertEquals(1, declarations.size());
+        assertArrayEquals(new Object[] { queue, true, false, false, null }, declarations.get(0));
+        assertEquals(2, channel.messageCount(queue));
+    }
+
+    @Test
+    public void testReplaceQueueOfOlderVersion() throws Exception {
+        String queue = newQueueName();
+        channel.queueDeclare(queue, false, false, false, null);
+        notDurableQueues.add(queue);
+
+        // the empty queue is replaced, the publish succeeds on a new channel
+        publisher.publish(queue, "{}");
+        assertFalse(notDurableQueues.contains(queue));
+        assertEquals(1, channel.messageCount(queue));
+    }
+
+    @Test
+    public void testQueueOfOlderVersionWithTickets() throws Exception {
+        String queue = newQueueName();
+        channel.queueDeclare(queue, false, false, false, null);
+        channel.basicPublish("", queue, null, "old".getBytes(StandardCharsets.UTF_8));
+        notDurableQueues.add(queue);
+        try {
+            publisher.publish(queue, "new");
+            fail("queue with tickets was replaced");
+        } catch (IOException e) {
+            // expected
+        }
+        // the old ticket is still there
+        assertTrue(notDurableQueues.contains(queue));
+        assertEquals(1, channel.messageCount(queue));
+    }
+
+    @Test
+    public void testRetryOnNewChannel() throws Exception {
+        String queue = newQueueName();
+        publisher.publish(queue, "first");
+        publisherChannels.get(0).broken = true;
+
+        publisher.publish(queue, "second");
+
+        assertEquals(2, publisherChannels.size());
+        assertFalse(publisherChannels.get(0).target.isOpen());
+        assertEquals(2, channel.messageCount(queue));
+    }
+
+    @Test
+    public void testFailureIsReported() throws Exception {
+        String queue = newQueueName();
+        // the channel of the first attempt and the one of the retry
+        channelsToBreak = 2;
+        try {
+            publisher.publish(queue, "lost");
+            fail("failed publish was not reported");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(2, publisherChannels.size());
+
+        // the next publish opens a working channel
+        publisher.publish(queue, "delivered");
+        assertEquals(1, channel.messageCount(queue));
+        GetResponse response = channel.basicGet(queue, true);
+        assertEquals("delivered", new String(response.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private static String newQueueName() {
+        // the broker does not delete queues that do not exist, so every test gets a new one
+        return "test-" + System.nanoTime();
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Creates connections that record the channels opened by the publisher
+     */
+    private class RecordingConnectionFactory extends ConnectionFactory {
+
+        private RecordingConnectionFactory() {
+            setHost("localhost");
+            setPort(broker.getPort());
+            setUsername("guest");
+            setPassword("guest");
+        }
+
+        @Override
+        public Connection newConnection(String connectionName) throws IOException, TimeoutException {
+            final Connection target = super.newConnection(connectionName);
+            return (Connection) Proxy.newProxyInstance(MessagePublisherTest.class.getClassLoader(), new Class<?>[] { Connection.class },
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            Object result = call(target, method, args);
+                            if ("createChannel".equals(method.getName())) {
+                                RecordedChannel recorded = new RecordedChannel((Channel) result, (Connection) proxy);
+                                if (channelsToBreak > 0) {
+                                    channelsToBreak--;
+                                    recorded.broken = true;
+                                }
+                                publisherChannels.add(recorded);
+                                return Proxy.newProxyInstance(MessagePublisherTest.class.getClassLoader(), new Class<?>[] { Channel.class },
+                                        recorded);
+                            }
+                            return result;
+                        }
+                    });
+        }
+    }
+
+    /**
+     * A channel of the publisher, the queue declarations are recorded. If it is broken, the broker closes it with a channel error during the next
+     * publish, because it is asked for a queue that does not exist.
+     * A durable declaration of a queue in notDurableQueues fails like on a broker that checks the arguments.
+     */
+    private class RecordedChannel implements InvocationHandler {
+        private final Channel target;
+        private final Connection connection;
+        private final List<Object[]> declarations = Collections.synchronizedList(new ArrayList<Object[]>());
+        private volatile boolean broken = false;
+
+        private RecordedChannel(Channel target, Connection connection) {
+            this.target = target;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("getConnection".equals(method.getName())) {
+                // channels opened on the connection of this channel are recorded as well
+                return connection;
+            }
+            if ("queueDeclare".equals(method.getName()) && args != null) {
+                declarations.add(args.clone());
+                if (Boolean.TRUE.equals(args[1]) && notDurableQueues.contains(args[0])) {
+                    // as the broker does, the channel is closed
+                    target.close();
+                    AMQP.Channel.Close close = new AMQP.Channel.Close.Builder().replyCode(AMQP.PRECONDITION_FAILED)
+                            .replyText("PRECONDITION_FAILED - inequivalent arg 'durable'")
+                            .build();
+                    throw new IOException(new ShutdownSignalException(false, false, close, target));
+                }
+            }
+            if ("queueDelete".equals(method.getName()) && args != null && args.length == 3) {
+                Object result = call(target, method, args);
+                notDurableQueues.remove(args[0]);
+                return result;
+            }
+            if (broken && "basicPublish".equals(method.getName())) {
+                broken = false;
+                target.queueDeclarePassive("missing-queue");
+            }
+            return call(target, method, args);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.goobi.api.rest.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.goobi.api.rest.model.RestMetadata;
+import org.goobi.api.rest.model.RestProcess;
+import org.junit.Test;
+
+public class MetadataUtilsTest {
+
+    private static final String METS = "<mets:mets xmlns:mets=\"http://www.loc.gov/METS/\" xmlns:mods=\"http://www.loc.gov/mods/v3\" "
+            + "xmlns:goobi=\"http://meta.goobi.org/v1.5.1/\">"
+            + "<mets:dmdSec ID=\"DMDLOG_0000\"><mets:mdWrap MDTYPE=\"MODS\"><mets:xmlData><mods:mods><mods:extension><goobi:goobi>"
+            + "<goobi:metadata name=\"TitleDocMain\">Main title</goobi:metadata>"
+            + "<goobi:metadata name=\"PublicationYear\" authorityID=\"x\">1900</goobi:metadata>"
+            + "<goobi:metadata name=\"Author\" type=\"person\"><goobi:firstName>Jane</goobi:firstName>"
+            + "<goobi:displayName>Doe, Jane</goobi:displayName><goobi:authorityID>gnd</goobi:authorityID>"
+            + "<goobi:authorityURI>http://d-nb.info/gnd/</goobi:authorityURI><goobi:authorityValue>123</goobi:authorityValue></goobi:metadata>"
+            + "<goobi:metadata name=\"Publisher\" type=\"group\"><goobi:metadata name=\"Nested\">ignored</goobi:metadata></goobi:metadata>"
+            + "</goobi:goobi></mods:extension></mods:mods></mets:xmlData></mets:mdWrap></mets:dmdSec>"
+            + "<mets:dmdSec ID=\"DMDLOG_0001\"><mets:mdWrap MDTYPE=\"MODS\"><mets:xmlData><mods:mods><mods:extension><goobi:goobi>"
+            + "<goobi:metadata name=\"TitleDocMain\">Chapter</goobi:metadata>"
+            + "</goobi:goobi></mods:extension></mods:mods></mets:xmlData></mets:mdWrap></mets:dmdSec>"
+            + "<mets:fileSec><mets:xmlData><mods:mods><mods:extension><goobi:goobi>"
+            + "<goobi:metadata name=\"TitleDocMain\">not read</goobi:metadata>"
+            + "</goobi:goobi></mods:extension></mods:mods></mets:xmlData></mets:fileSec>"
+            + "</mets:mets>";
+
+    private static RestProcess read(Set<String> wantedFields, Map<String, Map<String, String>> labels) throws XMLStreamException {
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(METS));
+        RestProcess p = new RestProcess(1);
+        MetadataUtils.readMetadata(reader, p, labels, wantedFields);
+        return p;
+    }
+
+    @Test
+    public void testReadAllMetadata() throws XMLStreamException {
+        Map<String, Map<String, String>> labels = new HashMap<>();
+        labels.put("TitleDocMain", Collections.singletonMap("de", "Haupttitel"));
+        RestProcess p = read(null, labels);
+
+        assertEquals(2, p.getMetadata().get("TitleDocMain").size());
+        assertEquals("Main title", p.getMetadata().get("TitleDocMain").get(0).getValue());
+        assertEquals("Chapter", p.getMetadata().get("TitleDocMain").get(1).getValue());
+        assertEquals("Haupttitel", p.getMetadata().get("TitleDocMain").get(0).getLabels().get("de"));
+        assertEquals("1900", p.getMetadata().get("PublicationYear").get(0).getValue());
+        assertFalse(p.getMetadata().containsKey("Nested"));
+        assertTrue(p.getMetadata().containsKey("Publisher"));
+    }
+
+    @Test
+    public void testReadPerson() throws XMLStreamException {
+        RestMetadata author = read(null, new HashMap<String, Map<String, String>>()).getMetadata().get("Author").get(0);
+        assertEquals("Doe, Jane", author.getValue());
+        assertEquals("gnd", author.getAuthorityID());
+        assertEquals("http://d-nb.info/gnd/", author.getAuthorityURI());
+        assertEquals("123", author.getAuthorityValue());
+        assertNull(author.getLabels());
+    }
+
+    @Test
+    public void testWantedFields() throws XMLStreamException {
+        RestProcess p = read(new HashSet<>(Collections.singletonList("Author")), new HashMap<String, Map<String, String>>());
+        assertEquals(1, p.getMetadata().size());
+        assertEquals("Doe, Jane", p.getMetadata().get("Author").get(0).getValue());
+    }
+}
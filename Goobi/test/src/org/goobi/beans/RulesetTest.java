@@ -0,0 +1,55 @@
+package org.goobi.beans;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ugh.dl.Prefs;
+
+public class RulesetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path rulesetFile;
+
+    @Before
+    public void setUp() throws Exception {
+        String dataFolder = System.getenv("junitdata");
+        if (dataFolder == null) {
+            dataFolder = "/opt/digiverso/junit/data/";
+        }
+        rulesetFile = folder.getRoot().toPath().resolve("ruleset.xml");
+        Files.copy(Paths.get(dataFolder, "ruleset.xml"), rulesetFile);
+    }
+
+    @Test
+    public void testCachedPreferences() {
+        Prefs prefs = Ruleset.getPreferences(rulesetFile.toString());
+        assertNotNull(prefs.getAllDocStructTypes());
+
+        // the file is parsed only once
+        assertSame(prefs, Ruleset.getPreferences(rulesetFile.toString()));
+    }
+
+    @Test
+    public void testReloadOnFileChange() throws Exception {
+        Prefs prefs = Ruleset.getPreferences(rulesetFile.toString());
+        FileTime lastModified = Files.getLastModifiedTime(rulesetFile);
+        Files.setLastModifiedTime(rulesetFile, FileTime.fromMillis(lastModified.toMillis() + 10000));
+
+        Prefs reloaded = Ruleset.getPreferences(rulesetFile.toString());
+        assertNotSame(prefs, reloaded);
+        assertSame(reloaded, Ruleset.getPreferences(rulesetFile.toString()));
+    }
+}
@@ -0,0 +1,239 @@
+package org.goobi.goobiScript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.goobi.production.enums.GoobiScriptResultType;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.sub.goobi.config.ConfigurationHelper;
+
+public class GoobiScriptEngineTest {
+
+    @Before
+    public void setUp() {
+        String configFolder = System.getenv("junitdata");
+        if (configFolder == null) {
+            configFolder = "/opt/digiverso/junit/data/";
+        }
+        ConfigurationHelper.CONFIG_FILE_NAME = configFolder + "goobi_config.properties";
+    }
+
+    @Test
+    public void testSameProcessNotInParallel() throws Exception {
+        final Map<Integer, AtomicInteger> active = new ConcurrentHashMap<>();
+        final AtomicInteger maxActive = new AtomicInteger();
+        TestScript script = new TestScript() {
+            @Override
+            public void execute(GoobiScriptResult gsr) {
+                AtomicInteger counter = active.get(gsr.getProcessId());
+                int current = counter.incrementAndGet();
+                maxActive.set(Math.max(maxActive.get(), current));
+                sleep(10);
+                counter.decrementAndGet();
+                super.execute(gsr);
+            }
+        };
+        active.put(1, new AtomicInteger());
+        active.put(2, new AtomicInteger());
+        List<GoobiScriptResult> entries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            entries.add(new GoobiScriptResult(i % 2 + 1, "action:parallel", 1, "user"));
+        }
+        GoobiScriptEngine.getInstance().startWork(script, entries);
+        waitForResults(entries);
+        assertEquals(1, maxActive.get());
+    }
+
+    @Test
+    public void testUsersTakeTurns() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+        TestScript blocking = new TestScript() {
+            @Override
+            public void execute(GoobiScriptResult gsr) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.execute(gsr);
+            }
+        };
+        TestScript recording = new TestScript() {
+            @Override
+            public void execute(GoobiScriptResult gsr) {
+                started.add(gsr.getUsername());
+                // keep the threads busy, so a late start of the thread of the second user does not let the first user finish all entries
+                sleep(20);
+                super.execute(gsr);
+            }
+        };
+        // occupy all threads
+        List<GoobiScriptResult> blocker = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            blocker.add(new GoobiScriptResult(100 + i, "action:block", 2, "blocker"));
+        }
+        GoobiScriptEngine.getInstance().startWork(blocking, blocker);
+
+        List<GoobiScriptResult> first = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            first.add(new GoobiScriptResult(200 + i, "action:first", 3, "first user"));
+        }
+        GoobiScriptEngine.getInstance().startWork(recording, first);
+        List<GoobiScriptResult> second = new ArrayList<>();
+        second.add(new GoobiScriptResult(300, "action:second", 4, "second user"));
+        GoobiScriptEngine.getInstance().startWork(recording, second);
+
+        release.countDown();
+        waitForResults(blocker);
+        waitForResults(first);
+        waitForResults(second);
+        assertTrue(started.indexOf("second user") < 10);
+    }
+
+    @Test
+    public void testCancelWaiting() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        TestScript blocking = new TestScript() {
+            @Override
+            public void execute(GoobiScriptResult gsr) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.execute(gsr);
+            }
+        };
+        List<GoobiScriptResult> entries = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            entries.add(new GoobiScriptResult(400 + i, "action:cancel", 5, "cancelling user"));
+        }
+        GoobiScriptEngine.getInstance().startWork(blocking, entries);
+        int cancelled = GoobiScriptEngine.getInstance().cancelWaiting(5);
+        release.countDown();
+        waitForResults(entries);
+
+        int count = 0;
+        for (GoobiScriptResult gsr : entries) {
+            if (gsr.getResultType() == GoobiScriptResultType.CANCELLED) {
+                count++;
+            }
+        }
+        assertTrue(cancelled > 0);
+        assertEquals(cancelled, count);
+        assertTrue(!GoobiScriptEngine.getInstance().isWaiting("action:cancel"));
+    }
+
+    @Test
+    public void testResultsOfUser() throws Exception {
+        List<GoobiScriptResult> entries = new ArrayList<>();
+        entries.add(new GoobiScriptResult(500, "action:results", 6, "owner"));
+        entries.add(new GoobiScriptResult(501, "action:results", 6, "owner"));
+        entries.add(new GoobiScriptResult(502, "action:results", 7, "other user"));
+        GoobiScriptEngine.getInstance().startWork(new TestScript(), entries);
+        waitForResults(entries);
+
+        List<GoobiScriptResult> results = GoobiScriptEngine.getInstance().getResults(6);
+        assertEquals(2, results.size());
+        for (GoobiScriptResult gsr : results) {
+            assertEquals(Integer.valueOf(6), gsr.getUserId());
+        }
+    }
+
+    @Test
+    public void testUsersWithSameName() throws Exception {
+        List<GoobiScriptResult> entries = new ArrayList<>();
+        entries.add(new GoobiScriptResult(600, "action:samename", 8, "Doe, John"));
+        entries.add(new GoobiScriptResult(601, "action:samename", 9, "Doe, John"));
+        GoobiScriptEngine.getInstance().startWork(new TestScript(), entries);
+        waitForResults(entries);
+
+        List<GoobiScriptResult> results = GoobiScriptEngine.getInstance().getResults(8);
+        assertEquals(1, results.size());
+        assertEquals(Integer.valueOf(600), results.get(0).getProcessId());
+
+        // resetting the results of one user keeps the results of the other
+        GoobiScriptEngine.getInstance().reset(8);
+        assertEquals(0, GoobiScriptEngine.getInstance().getResults(8).size());
+        assertEquals(1, GoobiScriptEngine.getInstance().getResults(9).size());
+    }
+
+    @Test
+    public void testLockKeyOfImports() throws Exception {
+        final CountDownLatch started = new CountDownLatch(2);
+        TestScript script = new TestScript() {
+            @Override
+            public void execute(GoobiScriptResult gsr) {
+                started.countDown();
+                try {
+                    // only returns in time if both entries run at the same time
+                    started.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.execute(gsr);
+            }
+        };
+        // imports use the id of the template as process id, but lock their identifiers
+        List<GoobiScriptResult> entries = new ArrayList<>();
+        for (String identifier : new String[] { "PPN1", "PPN2" }) {
+            GoobiScriptResult gsr = new GoobiScriptResult(700, "action:import", 10, "importer");
+            gsr.setLockKey("import:" + identifier);
+            entries.add(gsr);
+        }
+        long start = System.currentTimeMillis();
+        GoobiScriptEngine.getInstance().startWork(script, entries);
+        waitForResults(entries);
+        assertEquals(0, started.getCount());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    private static void waitForResults(List<GoobiScriptResult> entries) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        for (GoobiScriptResult gsr : entries) {
+            while ((gsr.getResultType() == GoobiScriptResultType.WAITING || gsr.getResultType() == GoobiScriptResultType.RUNNING)
+                    && System.currentTimeMillis() < end) {
+                Thread.sleep(5);
+            }
+            assertTrue(gsr.getResultType() == GoobiScriptResultType.OK || gsr.getResultType() == GoobiScriptResultType.CANCELLED);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class TestScript implements IGoobiScript {
+
+        @Override
+        public boolean prepare(List<Integer> processes, String command, HashMap<String, String> parameters) {
+            return true;
+        }
+
+        @Override
+        public void execute() {
+        }
+
+        @Override
+        public void execute(GoobiScriptResult gsr) {
+            gsr.setResultType(GoobiScriptResultType.OK);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.goobi.production.flow.jobs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.goobi.beans.HistoryEvent;
+import org.goobi.beans.Process;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.sub.goobi.helper.enums.HistoryEventType;
+
+public class HistoryUpdateTest {
+
+    private Process process;
+    private List<HistoryEvent> stored;
+
+    @Before
+    public void setUp() {
+        process = new Process();
+        stored = new ArrayList<>();
+    }
+
+    private HistoryEvent storedEvent(int id, Date date, Number value, String text, HistoryEventType type) {
+        HistoryEvent he = new HistoryEvent(date, value, text, type, process);
+        he.setId(id);
+        stored.add(he);
+        return he;
+    }
+
+    @Test
+    public void testExistingEventIsNotAdded() {
+        Date date = new Date(1000);
+        storedEvent(1, date, 1, "Scanning", HistoryEventType.stepDone);
+        HistoryUpdate update = new HistoryUpdate(process, stored);
+
+        assertNull(update.addHistoryEvent(date, 1, "Scanning", HistoryEventType.stepDone));
+        assertNotNull(update.addHistoryEvent(date, 1, "Scanning", HistoryEventType.stepOpen));
+        // the event added before is known as well
+        assertNull(update.addHistoryEvent(date, 1, "Scanning", HistoryEventType.stepOpen));
+        assertEquals(1, update.getAddedEvents().size());
+        assertTrue(update.getDeletedEvents().isEmpty());
+    }
+
+    @Test
+    public void testDifferenceToStoredValue() {
+        storedEvent(1, new Date(1000), 10, null, HistoryEventType.imagesWorkDiff);
+        storedEvent(2, new Date(2000), 5, null, HistoryEventType.imagesWorkDiff);
+        storedEvent(3, new Date(2000), 7, null, HistoryEventType.imagesMasterDiff);
+        HistoryUpdate update = new HistoryUpdate(process, stored);
+
+        assertEquals(15, update.getStoredValue(HistoryEventType.imagesWorkDiff));
+        assertFalse(update.updateHistoryEvent(HistoryEventType.imagesWorkDiff, 15));
+        assertTrue(update.updateHistoryEvent(HistoryEventType.imagesWorkDiff, 12));
+        assertEquals(-3, update.getAddedEvents().get(0).getNumericValue().intValue());
+        // the new event is part of the stored value
+        assertEquals(12, update.getStoredValue(HistoryEventType.imagesWorkDiff));
+        assertFalse(update.updateHistoryEvent(HistoryEventType.imagesWorkDiff, 12));
+    }
+
+    @Test
+    public void testRemoveDuplicatesKeepsOneEvent() {
+        Date date = new Date(1000);
+        storedEvent(1, date, 1, "Scanning", HistoryEventType.stepLocked);
+        HistoryEvent duplicate = storedEvent(2, date, 1, "Scanning", HistoryEventType.stepLocked);
+        storedEvent(3, date, 2, "Export", HistoryEventType.stepLocked);
+        HistoryUpdate update = new HistoryUpdate(process, stored);
+
+        assertTrue(update.removeDuplicates());
+        assertEquals(1, update.getDeletedEvents().size());
+        assertSame(duplicate, update.getDeletedEvents().get(0));
+        assertFalse(update.removeDuplicates());
+        // the remaining event still prevents a new one
+        assertNull(update.addHistoryEvent(date, 1, "Scanning", HistoryEventType.stepLocked));
+        assertTrue(update.hasChanges());
+    }
+}
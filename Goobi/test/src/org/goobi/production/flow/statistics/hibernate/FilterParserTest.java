@@ -0,0 +1,83 @@
+package org.goobi.production.flow.statistics.hibernate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.goobi.production.flow.statistics.hibernate.FilterParser.Keyword;
+import org.goobi.production.flow.statistics.hibernate.FilterParser.Term;
+import org.goobi.production.flow.statistics.hibernate.FilterParser.Type;
+import org.junit.Test;
+
+public class FilterParserTest {
+
+    private static List<String> normalize(String filter) {
+        List<String> answer = new ArrayList<>();
+        for (Term term : FilterParser.parse(filter)) {
+            answer.add(term.toString());
+        }
+        return answer;
+    }
+
+    @Test
+    public void testEmptyFilter() {
+        assertTrue(FilterParser.parse(null).isEmpty());
+        assertTrue(FilterParser.parse("  ").isEmpty());
+    }
+
+    @Test
+    public void testKeywords() {
+        List<Term> terms = FilterParser.parse("\"meta:TitleDocMain:Die Reise\" -stepdone:5 |project:Test");
+        assertEquals(3, terms.size());
+
+        assertEquals(Keyword.METADATA, terms.get(0).getKeyword());
+        assertEquals("TitleDocMain:Die Reise", terms.get(0).getValue());
+        assertFalse(terms.get(0).isNegate());
+
+        assertEquals(Keyword.STEPDONE, terms.get(1).getKeyword());
+        assertEquals("5", terms.get(1).getValue());
+        assertTrue(terms.get(1).isNegate());
+
+        assertEquals(Keyword.PROJECT, terms.get(2).getKeyword());
+        assertTrue(terms.get(2).isDisjunction());
+    }
+
+    @Test
+    public void testTitleSearch() {
+        List<Term> terms = FilterParser.parse("goobi -test -step:3 |steperror:2");
+        assertEquals(Keyword.TITLE, terms.get(0).getKeyword());
+        assertEquals("goobi", terms.get(0).getValue());
+        // negated words without a negatable keyword exclude titles
+        assertEquals(Keyword.TITLE, terms.get(1).getKeyword());
+        assertTrue(terms.get(1).isNegate());
+        assertEquals("test", terms.get(1).getValue());
+        assertEquals("step:3", terms.get(2).getValue());
+        // keywords that can't be combined with OR search in the title
+        assertEquals(Keyword.TITLE, terms.get(3).getKeyword());
+        assertFalse(terms.get(3).isDisjunction());
+        assertEquals("2", terms.get(3).getValue());
+    }
+
+    @Test
+    public void testBrackets() {
+        List<Term> terms = FilterParser.parse("(id:1 |id:2)");
+        assertEquals(4, terms.size());
+        assertEquals(Type.OPEN, terms.get(0).getType());
+        assertEquals(Keyword.ID, terms.get(1).getKeyword());
+        assertEquals(Type.CLOSE, terms.get(3).getType());
+    }
+
+    @Test
+    public void testWildcards() {
+        assertEquals("process:abc%\\_d_", FilterParser.parse("process:abc*_d?").get(0).toString());
+    }
+
+    @Test
+    public void testNormalization() {
+        assertEquals(normalize("projekt:Test   PROZESSEIGENSCHAFT:a:b"), normalize("project:Test processproperty:a:b"));
+        assertFalse(normalize("project:Test").equals(normalize("project:Other")));
+    }
+}
@@ -0,0 +1,133 @@
+package org.goobi.production.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.goobi.production.enums.PluginType;
+import org.goobi.production.plugin.interfaces.IAdministrationPlugin;
+import org.goobi.production.plugin.interfaces.IPlugin;
+import org.junit.After;
+import org.junit.Test;
+
+import net.xeoh.plugins.base.PluginManager;
+
+public class PluginLoaderTest {
+
+    @After
+    public void tearDown() {
+        PluginLoader.reload();
+    }
+
+    @Test
+    public void testCachedPlugins() {
+        PluginManager pm = createPluginManager(new AtomicInteger());
+        AdministrationPlugin loaded = new AdministrationPlugin();
+        PluginLoader.register(PluginType.Administration, pm, Arrays.<IPlugin> asList(loaded, new OtherPlugin()));
+
+        // only the plugins implementing the interface of the type can be requested by title
+        assertEquals(Collections.singletonList("administration"), PluginLoader.getListOfPlugins(PluginType.Administration));
+        assertNull(PluginLoader.getPluginByTitle(PluginType.Administration, "other"));
+        assertEquals(2, PluginLoader.getPluginList(PluginType.Administration).size());
+
+        // every request gets a new instance of the plugin
+        IPlugin first = PluginLoader.getPluginByTitle(PluginType.Administration, "administration");
+        IPlugin second = PluginLoader.getPluginByTitle(PluginType.Administration, "administration");
+        assertTrue(first instanceof AdministrationPlugin);
+        assertNotSame(loaded, first);
+        assertNotSame(first, second);
+
+        // the folder was not scanned again
+        assertSame(pm, PluginLoader.getPluginManager(PluginType.Administration));
+    }
+
+    @Test
+    public void testReload() {
+        AtomicInteger shutdowns = new AtomicInteger();
+        PluginLoader.register(PluginType.Administration, createPluginManager(shutdowns), Collections.<IPlugin> singletonList(
+                new AdministrationPlugin()));
+        AtomicInteger otherShutdowns = new AtomicInteger();
+        PluginLoader.register(PluginType.Step, createPluginManager(otherShutdowns), Collections.<IPlugin> emptyList());
+
+        PluginLoader.reload(PluginType.Administration);
+        assertNull(PluginLoader.getPluginManager(PluginType.Administration));
+        assertEquals(1, shutdowns.get());
+        // the plugins of other types stay loaded
+        assertNotNull(PluginLoader.getPluginManager(PluginType.Step));
+        assertEquals(0, otherShutdowns.get());
+
+        PluginLoader.reload();
+        assertNull(PluginLoader.getPluginManager(PluginType.Step));
+        assertEquals(1, otherShutdowns.get());
+        assertEquals(1, shutdowns.get());
+    }
+
+    @Test
+    public void testReplacedPluginManagerIsShutDown() {
+        AtomicInteger replacedShutdowns = new AtomicInteger();
+        PluginLoader.register(PluginType.Administration, createPluginManager(replacedShutdowns), Collections.<IPlugin> singletonList(
+                new AdministrationPlugin()));
+        AtomicInteger shutdowns = new AtomicInteger();
+        PluginManager pm = createPluginManager(shutdowns);
+        PluginLoader.register(PluginType.Administration, pm, Collections.<IPlugin> emptyList());
+
+        assertEquals(1, replacedShutdowns.get());
+        assertEquals(0, shutdowns.get());
+        assertSame(pm, PluginLoader.getPluginManager(PluginType.Administration));
+        assertTrue(PluginLoader.getListOfPlugins(PluginType.Administration).isEmpty());
+    }
+
+    private static PluginManager createPluginManager(final AtomicInteger shutdowns) {
+        return (PluginManager) Proxy.newProxyInstance(PluginManager.class.getClassLoader(), new Class<?>[] { PluginManager.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("shutdown")) {
+                            shutdowns.incrementAndGet();
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    public static class AdministrationPlugin implements IAdministrationPlugin {
+
+        @Override
+        public PluginType getType() {
+            return PluginType.Administration;
+        }
+
+        @Override
+        public String getTitle() {
+            return "administration";
+        }
+
+        @Override
+        public String getGui() {
+            return null;
+        }
+    }
+
+    public static class OtherPlugin implements IPlugin {
+
+        @Override
+        public PluginType getType() {
+            return PluginType.Step;
+        }
+
+        @Override
+        public String getTitle() {
+            return "other";
+        }
+    }
+}